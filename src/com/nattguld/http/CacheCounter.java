@@ -0,0 +1,127 @@
+package com.nattguld.http;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class CacheCounter {
+	
+	/**
+	 * The amount of responses served from the cache without contacting the server.
+	 */
+	private final LongAdder hits;
+	
+	/**
+	 * The amount of cacheable requests the cache couldn't answer.
+	 */
+	private final LongAdder misses;
+	
+	/**
+	 * The amount of stale responses the server confirmed as unchanged.
+	 */
+	private final LongAdder revalidations;
+	
+	/**
+	 * The amount of bytes that didn't have to be transferred.
+	 */
+	private final LongAdder savedBytes;
+	
+	
+	/**
+	 * Creates a new cache counter.
+	 */
+	public CacheCounter() {
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.revalidations = new LongAdder();
+		this.savedBytes = new LongAdder();
+	}
+	
+	/**
+	 * Registers a response served from the cache.
+	 * 
+	 * @param saved The amount of bytes that didn't have to be transferred.
+	 */
+	public void registerHit(long saved) {
+		hits.increment();
+		savedBytes.add(saved);
+	}
+	
+	/**
+	 * Registers a request the cache couldn't answer.
+	 */
+	public void registerMiss() {
+		misses.increment();
+	}
+	
+	/**
+	 * Registers a stale response the server confirmed as unchanged.
+	 * 
+	 * @param saved The amount of bytes that didn't have to be transferred.
+	 */
+	public void registerRevalidation(long saved) {
+		revalidations.increment();
+		savedBytes.add(saved);
+	}
+	
+	/**
+	 * Resets the counts.
+	 */
+	public void reset() {
+		hits.reset();
+		misses.reset();
+		revalidations.reset();
+		savedBytes.reset();
+	}
+	
+	/**
+	 * Retrieves the amount of responses served from the cache without contacting the server.
+	 * 
+	 * @return The amount.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	/**
+	 * Retrieves the amount of cacheable requests the cache couldn't answer.
+	 * 
+	 * @return The amount.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 * Retrieves the amount of stale responses the server confirmed as unchanged.
+	 * 
+	 * @return The amount.
+	 */
+	public long getRevalidations() {
+		return revalidations.sum();
+	}
+	
+	/**
+	 * Retrieves the amount of bytes that didn't have to be transferred.
+	 * 
+	 * @return The amount.
+	 */
+	public long getSavedBytes() {
+		return savedBytes.sum();
+	}
+	
+	/**
+	 * Retrieves a readable summary of the counts.
+	 * 
+	 * @return The summary.
+	 */
+	public String getSummary() {
+		return "Hits: " + getHits() + ", Misses: " + getMisses() + ", Revalidated: " + getRevalidations()
+				+ ", Saved: " + DataCounter.getReadableFormat(getSavedBytes());
+	}
+
+}
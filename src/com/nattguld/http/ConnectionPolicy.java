@@ -9,6 +9,8 @@ package com.nattguld.http;
 public enum ConnectionPolicy {
 	
 	NO_AUTO_REDIRECT,
-	DISABLE_COOKIES;
+	DISABLE_COOKIES,
+	DISABLE_CONNECTION_REUSE,
+	NIO_TRANSPORT;
 
 }
@@ -1,6 +1,8 @@
 package com.nattguld.http;
 
 import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 
@@ -11,15 +13,71 @@ import java.math.BigDecimal;
 public class DataCounter {
 	
 	/**
-	 * The data downloaded.
+	 * The counter of all traffic.
+	 */
+	private static final DataCounter GLOBAL = new DataCounter(true);
+	
+	/**
+	 * The data downloaded before counting started, restored from the config or set.
 	 */
 	private long down;
 	
 	/**
-	 * The data uploaded.
+	 * The data uploaded before counting started, restored from the config or set.
 	 */
 	private long up;
 	
+	/**
+	 * The data downloaded since, striped so concurrent streams don't contend or lose counts.
+	 */
+	private final transient LongAdder downCount;
+	
+	/**
+	 * The data uploaded since, striped so concurrent streams don't contend or lose counts.
+	 */
+	private final transient LongAdder upCount;
+	
+	/**
+	 * The download throughput, null when rates aren't tracked.
+	 */
+	private final transient ThroughputMeter downRate;
+	
+	/**
+	 * The upload throughput, null when rates aren't tracked.
+	 */
+	private final transient ThroughputMeter upRate;
+	
+	
+	/**
+	 * Creates a new data counter.
+	 */
+	public DataCounter() {
+		this(false);
+	}
+	
+	/**
+	 * Creates a new data counter.
+	 * 
+	 * @param trackRates Whether to track the throughput or only count.
+	 */
+	public DataCounter(boolean trackRates) {
+		this.downCount = new LongAdder();
+		this.upCount = new LongAdder();
+		this.downRate = trackRates ? new ThroughputMeter() : null;
+		this.upRate = trackRates ? new ThroughputMeter() : null;
+	}
+	
+	/**
+	 * Creates a new data counter holding the totals of another one.
+	 * 
+	 * @param other The other data counter.
+	 */
+	public DataCounter(DataCounter other) {
+		this(false);
+		
+		this.down = other.getDown();
+		this.up = other.getUp();
+	}
 	
 	/**
 	 * Modifies the down data.
@@ -29,6 +87,7 @@ public class DataCounter {
 	 * @return The down data.
 	 */
 	public long setDown(long down) {
+		downCount.reset();
 		this.down = down;
 		return down;
 	}
@@ -41,6 +100,7 @@ public class DataCounter {
 	 * @return The up data.
 	 */
 	public long setUp(long up) {
+		upCount.reset();
 		this.up = up;
 		return up;
 	}
@@ -49,24 +109,26 @@ public class DataCounter {
 	 * Adds downloaded data.
 	 * 
 	 * @param amount The amount.
-	 * 
-	 * @return The total amount downloaded.
 	 */
-	public long addDown(long amount) {
-		this.down += amount;
-		return down;
+	public void addDown(long amount) {
+		downCount.add(amount);
+		
+		if (Objects.nonNull(downRate)) {
+			downRate.add(amount);
+		}
 	}
 	
 	/**
 	 * Adds uploaded data.
 	 * 
 	 * @param amount The amount.
-	 * 
-	 * @return The total amount uploaded.
 	 */
-	public long addUp(long amount) {
-		this.up += amount;
-		return up;
+	public void addUp(long amount) {
+		upCount.add(amount);
+		
+		if (Objects.nonNull(upRate)) {
+			upRate.add(amount);
+		}
 	}
 	
 	/**
@@ -75,7 +137,7 @@ public class DataCounter {
 	 * @return The downloaded data.
 	 */
 	public long getDown() {
-		return down;
+		return down + downCount.sum();
 	}
 	
 	/**
@@ -84,15 +146,70 @@ public class DataCounter {
 	 * @return The uploaded data.
 	 */
 	public long getUp() {
-		return up;
+		return up + upCount.sum();
+	}
+	
+	/**
+	 * Retrieves the download throughput over a window ending now.
+	 * 
+	 * @param window The window in seconds, 1 to 60.
+	 * 
+	 * @return The amount of bytes per second, 0 when rates aren't tracked.
+	 */
+	public long getDownRate(int window) {
+		return Objects.nonNull(downRate) ? downRate.getRate(window) : 0L;
+	}
+	
+	/**
+	 * Retrieves the upload throughput over a window ending now.
+	 * 
+	 * @param window The window in seconds, 1 to 60.
+	 * 
+	 * @return The amount of bytes per second, 0 when rates aren't tracked.
+	 */
+	public long getUpRate(int window) {
+		return Objects.nonNull(upRate) ? upRate.getRate(window) : 0L;
+	}
+	
+	/**
+	 * Retrieves whether the throughput is tracked.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isTrackingRates() {
+		return Objects.nonNull(downRate);
 	}
 	
 	/**
 	 * Resets the counters.
 	 */
 	public void reset() {
-		this.down = 0L;
-		this.up = 0L;
+		setDown(0L);
+		setUp(0L);
+	}
+	
+	/**
+	 * Retrieves a readable summary of the totals and the throughput over 1, 10 and 60 seconds.
+	 * 
+	 * @return The summary.
+	 */
+	public String getSummary() {
+		String summary = "Down: " + getReadableFormat(getDown()) + ", Up: " + getReadableFormat(getUp());
+		
+		if (!isTrackingRates()) {
+			return summary;
+		}
+		return summary + ", Down/s: " + getReadableFormat(getDownRate(1)) + " " + getReadableFormat(getDownRate(10)) + " " + getReadableFormat(getDownRate(60))
+				+ ", Up/s: " + getReadableFormat(getUpRate(1)) + " " + getReadableFormat(getUpRate(10)) + " " + getReadableFormat(getUpRate(60));
+	}
+	
+	/**
+	 * Retrieves the counter of all traffic.
+	 * 
+	 * @return The data counter.
+	 */
+	public static DataCounter getGlobal() {
+		return GLOBAL;
 	}
 	
 	/**
@@ -4,13 +4,21 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 import com.nattguld.http.browser.Browser;
 import com.nattguld.http.cfg.NetConfig;
 import com.nattguld.http.content.cookies.CookieJar;
+import com.nattguld.http.download.ParallelDownloader;
 import com.nattguld.http.proxies.HttpProxy;
+import com.nattguld.http.proxies.ProxyLease;
+import com.nattguld.http.proxies.ProxyManager;
 import com.nattguld.http.proxies.rotating.RotatingProxy;
 import com.nattguld.http.requests.Request;
+import com.nattguld.http.requests.execute.DispatchExecutors;
+import com.nattguld.http.requests.execute.IRetryPolicy;
 import com.nattguld.http.requests.execute.RequestBuilder;
 import com.nattguld.http.requests.execute.RequestExecutor;
 import com.nattguld.http.requests.impl.GetRequest;
@@ -18,6 +26,7 @@ import com.nattguld.http.response.RequestResponse;
 import com.nattguld.http.response.bodies.impl.FileResponseBody;
 import com.nattguld.http.sec.ConnectionSecurityHandler;
 import com.nattguld.http.socket.HttpSocket;
+import com.nattguld.http.socket.NioTransport;
 
 /**
  * 
@@ -38,9 +47,9 @@ public class HttpClient implements AutoCloseable {
 	private final DataCounter dataCounter;
 	
 	/**
-	 * The proxy to use.
+	 * The proxy to use, switched for another one when it fails to connect while the client holds a lease.
 	 */
-	private final HttpProxy proxy;
+	private volatile HttpProxy proxy;
 	
 	/**
 	 * The browser configurations.
@@ -62,6 +71,16 @@ public class HttpClient implements AutoCloseable {
 	 */
 	private final RequestExecutor requestExecutor;
 	
+	/**
+	 * The executor for asynchronous dispatching.
+	 */
+	private Executor executor;
+	
+	/**
+	 * The last asynchronously dispatched request, later requests are chained behind it to keep the session order.
+	 */
+	private CompletableFuture<RequestResponse> lastDispatch;
+	
 	/**
 	 * The connection security handler if required.
 	 */
@@ -72,6 +91,11 @@ public class HttpClient implements AutoCloseable {
 	 */
 	private String user;
 	
+	/**
+	 * The lease of the proxy slot held by the client, released when the client closes.
+	 */
+	private ProxyLease proxyLease;
+	
 	
 	/**
 	 * Creates a new default HTTP connection.
@@ -121,20 +145,23 @@ public class HttpClient implements AutoCloseable {
 	 */
 	public HttpClient(Browser browser, HttpProxy proxy, ConnectionPolicy... policies) {
 		this.httpSocket = new HttpSocket();
-		this.dataCounter = new DataCounter();
+		this.dataCounter = new DataCounter(true);
 		this.proxy = proxy;
 		this.browser = browser;
 		this.cookieJar = new CookieJar();
 		this.policies = new ArrayList<>();
 		this.conSecHandler = new ConnectionSecurityHandler();
+		this.executor = DispatchExecutors.getDefault();
+		this.lastDispatch = CompletableFuture.completedFuture(null);
 		
 		if (Objects.nonNull(policies) && policies.length > 0) {
 			for (ConnectionPolicy policy : policies) {
 				this.policies.add(policy);
 			}
 		}
-		this.requestExecutor = new RequestExecutor(httpSocket, proxy, browser, cookieJar, dataCounter
-				, hasPolicy(ConnectionPolicy.NO_AUTO_REDIRECT), hasPolicy(ConnectionPolicy.DISABLE_COOKIES));
+		this.requestExecutor = new RequestExecutor(hasPolicy(ConnectionPolicy.NIO_TRANSPORT) ? NioTransport.getSingleton() : httpSocket, proxy, browser, cookieJar, dataCounter
+				, hasPolicy(ConnectionPolicy.NO_AUTO_REDIRECT), hasPolicy(ConnectionPolicy.DISABLE_COOKIES)
+				, hasPolicy(ConnectionPolicy.DISABLE_CONNECTION_REUSE));
 	}
 	
 	/**
@@ -151,8 +178,49 @@ public class HttpClient implements AutoCloseable {
 		return this;
 	}
 	
+	/**
+	 * Initializes the proxies for the client which releases the given lease when it closes.
+	 * 
+	 * @param proxyLease The lease of the slot held on the client's proxy.
+	 */
+	public HttpClient initProxies(ProxyLease proxyLease) {
+		this.proxyLease = proxyLease;
+		this.requestExecutor.setProxyRotator(this::rotateProxy);
+		return initProxies(proxyLease.getUser());
+	}
+	
+	/**
+	 * Switches the client to another proxy of the same kind, moving its lease over.
+	 * 
+	 * @param failed The proxy that failed.
+	 * 
+	 * @return The new proxy, null when no other proxy has room.
+	 */
+	private synchronized HttpProxy rotateProxy(HttpProxy failed) {
+		if (Objects.isNull(proxyLease) || proxyLease.isReleased() || failed != proxy) {
+			return null;
+		}
+		ProxyLease replacement = ProxyManager.leaseReplacement(failed, user, proxyLease.isUnique());
+		
+		if (Objects.isNull(replacement)) {
+			return null;
+		}
+		proxyLease.close();
+		proxyLease = replacement;
+		proxy = replacement.getProxy();
+		
+		if (proxy instanceof RotatingProxy) {
+			((RotatingProxy)proxy).setInUse(user);
+		}
+		return proxy;
+	}
+	
 	@Override
-	public void close() {
+	public synchronized void close() {
+		if (Objects.nonNull(proxyLease)) {
+			proxyLease.close();
+			return;
+		}
 		if (Objects.nonNull(proxy)) {
 			proxy.getLocalConfig().removeUser(user);
 		}
@@ -172,15 +240,62 @@ public class HttpClient implements AutoCloseable {
 	 * @return The request response.
 	 */
 	public RequestResponse dispatchRequest(Request request) {
-		RequestResponse rr = requestExecutor.execute(request);
-		
-		if (rr.validate(0)) {
-			return rr;
-		}
-		if (!ConnectionSecurityHandler.bypass(this, request, rr)) {
-			return dispatchRequest(request);
+		while (true) {
+			RequestResponse rr = requestExecutor.execute(request);
+			
+			if (rr.validate(0) || ConnectionSecurityHandler.bypass(this, request, rr)) {
+				return rr;
+			}
 		}
-		return rr;
+	}
+	
+	/**
+	 * Dispatches a request without blocking the calling thread.
+	 * Requests of the same client are executed in the order they were dispatched in, as they share the session state.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @return The future request response.
+	 */
+	public synchronized CompletableFuture<RequestResponse> dispatchAsync(Request request) {
+		CompletableFuture<RequestResponse> future = lastDispatch
+				.handle((rr, ex) -> null)
+				.thenCompose(v -> dispatchStage(request));
+		
+		lastDispatch = future;
+		return future;
+	}
+	
+	/**
+	 * Dispatches a batch of requests without blocking the calling thread.
+	 * 
+	 * @param requests The requests.
+	 * 
+	 * @return The future request responses in the order of the requests.
+	 */
+	public CompletableFuture<List<RequestResponse>> dispatchAllAsync(List<Request> requests) {
+		List<CompletableFuture<RequestResponse>> futures = requests.stream()
+				.map(this::dispatchAsync)
+				.collect(Collectors.toList());
+		
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+				.thenApply(v -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+	}
+	
+	/**
+	 * Executes a request and its connection security bypass as future stages.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @return The future request response.
+	 */
+	private CompletableFuture<RequestResponse> dispatchStage(Request request) {
+		return requestExecutor.executeAsync(request, executor).thenComposeAsync(rr -> {
+			if (rr.validate(0) || ConnectionSecurityHandler.bypass(this, request, rr)) {
+				return CompletableFuture.completedFuture(rr);
+			}
+			return dispatchStage(request);
+		}, executor);
 	}
 	
 	
@@ -224,6 +339,21 @@ public class HttpClient implements AutoCloseable {
 		return f;
 	}
 	
+	/**
+	 * Attempts to download a resource, fetching segments of it at the same time when the server supports ranges.
+	 * 
+	 * @param path The save path.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @param segments The amount of segments to fetch at the same time.
+	 * 
+	 * @return The saved file.
+	 */
+	public File download(String path, String url, int segments) {
+		return new ParallelDownloader(this, segments).download(url, path);
+	}
+	
 	/**
 	 * Fetches the IP of the client session.
 	 * 
@@ -253,6 +383,15 @@ public class HttpClient implements AutoCloseable {
 		return conSecHandler;
 	}
 	
+	/**
+	 * Retrieves the traffic of the client.
+	 * 
+	 * @return The data counter.
+	 */
+	public DataCounter getDataCounter() {
+		return dataCounter;
+	}
+	
 	/**
 	 * Retrieves the proxy.
 	 * 
@@ -280,6 +419,39 @@ public class HttpClient implements AutoCloseable {
 		return browser;
 	}
 	
+	/**
+	 * Modifies the executor for asynchronous dispatching.
+	 * 
+	 * @param executor The new executor.
+	 * 
+	 * @return The client.
+	 */
+	public HttpClient setExecutor(Executor executor) {
+		this.executor = executor;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the executor for asynchronous dispatching.
+	 * 
+	 * @return The executor.
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * Modifies the policy deciding when and how failed attempts are retried.
+	 * 
+	 * @param retryPolicy The new retry policy.
+	 * 
+	 * @return The client.
+	 */
+	public HttpClient setRetryPolicy(IRetryPolicy retryPolicy) {
+		requestExecutor.setRetryPolicy(retryPolicy);
+		return this;
+	}
+	
 	/**
 	 * Retrieves the request executor.
 	 * 
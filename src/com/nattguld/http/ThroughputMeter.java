@@ -0,0 +1,104 @@
+package com.nattguld.http;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ThroughputMeter {
+	
+	/**
+	 * The longest window in seconds rates can be measured over.
+	 */
+	public static final int MAX_WINDOW = 60;
+	
+	/**
+	 * The amount of one second buckets, one more than the longest window so the window can slide through the oldest second.
+	 */
+	private static final int BUCKETS = MAX_WINDOW + 1;
+	
+	/**
+	 * The amount of nanoseconds in a second.
+	 */
+	private static final long SECOND = 1000000000L;
+	
+	/**
+	 * The second each bucket is counting.
+	 */
+	private final AtomicLongArray seconds;
+	
+	/**
+	 * The amount of bytes counted in each bucket.
+	 */
+	private final AtomicLongArray amounts;
+	
+	
+	/**
+	 * Creates a new throughput meter.
+	 */
+	public ThroughputMeter() {
+		this.seconds = new AtomicLongArray(BUCKETS);
+		this.amounts = new AtomicLongArray(BUCKETS);
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			seconds.set(i, Long.MIN_VALUE);
+		}
+	}
+	
+	/**
+	 * Registers transferred bytes.
+	 * 
+	 * @param amount The amount of bytes.
+	 */
+	public void add(long amount) {
+		long second = Math.floorDiv(System.nanoTime(), SECOND);
+		int index = (int)Math.floorMod(second, (long)BUCKETS);
+		long counting = seconds.get(index);
+		
+		if (counting != second && seconds.compareAndSet(index, counting, second)) {
+			//Bytes added by another thread while the bucket rolls over may land in the wrong second, which the rates tolerate
+			amounts.set(index, 0L);
+		}
+		amounts.addAndGet(index, amount);
+	}
+	
+	/**
+	 * Retrieves the amount of bytes per second transferred over a window ending now.
+	 * The window slides through the oldest second so the rate doesn't jump when a new second starts.
+	 * 
+	 * @param window The window in seconds, between 1 and 60.
+	 * 
+	 * @return The amount of bytes per second.
+	 */
+	public long getRate(int window) {
+		window = Math.max(1, Math.min(MAX_WINDOW, window));
+		
+		long now = System.nanoTime();
+		long second = Math.floorDiv(now, SECOND);
+		double elapsed = (double)Math.floorMod(now, SECOND) / (double)SECOND;
+		double total = 0D;
+		
+		for (int i = 0; i <= window; i++) {
+			double weight = i == window ? 1D - elapsed : 1D;
+			total += getAmount(second - i) * weight;
+		}
+		return Math.round(total / window);
+	}
+	
+	/**
+	 * Retrieves the amount of bytes counted in a second.
+	 * 
+	 * @param second The second.
+	 * 
+	 * @return The amount of bytes, 0 when the bucket moved on to a later second.
+	 */
+	private long getAmount(long second) {
+		int index = (int)Math.floorMod(second, (long)BUCKETS);
+		long amount = amounts.get(index);
+		return seconds.get(index) == second ? amount : 0L;
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.nattguld.http.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class CacheControl {
+	
+	/**
+	 * Holds the directives by their lowercase name, valueless directives hold an empty value.
+	 */
+	private final Map<String, String> directives;
+	
+	
+	/**
+	 * Parses a Cache-Control header value.
+	 * 
+	 * @param value The value, may be null.
+	 */
+	public CacheControl(String value) {
+		this.directives = new HashMap<>();
+		
+		if (Objects.isNull(value)) {
+			return;
+		}
+		for (String part : value.split(",")) {
+			int split = part.indexOf('=');
+			String name = (split < 0 ? part : part.substring(0, split)).trim().toLowerCase();
+			
+			if (!name.isEmpty()) {
+				directives.put(name, split < 0 ? "" : part.substring(split + 1).trim().replace("\"", ""));
+			}
+		}
+	}
+	
+	/**
+	 * Retrieves whether a directive is present.
+	 * 
+	 * @param name The lowercase name.
+	 * 
+	 * @return The result.
+	 */
+	public boolean has(String name) {
+		return directives.containsKey(name);
+	}
+	
+	/**
+	 * Retrieves the seconds a directive holds.
+	 * 
+	 * @param name The lowercase name.
+	 * 
+	 * @return The seconds, -1 when absent or invalid.
+	 */
+	public long getSeconds(String name) {
+		String value = directives.get(name);
+		
+		if (Objects.isNull(value)) {
+			return -1L;
+		}
+		try {
+			return Math.max(0L, Long.parseLong(value));
+		
+		} catch (NumberFormatException ex) {
+			return -1L;
+		}
+	}
+
+}
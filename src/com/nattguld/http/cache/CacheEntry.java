@@ -0,0 +1,498 @@
+package com.nattguld.http.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import com.nattguld.http.HTTPCode;
+import com.nattguld.http.headers.Headers;
+import com.nattguld.http.requests.Request;
+import com.nattguld.http.response.RequestResponse;
+import com.nattguld.http.response.ResponseStatus;
+import com.nattguld.http.response.bodies.impl.StringResponseBody;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class CacheEntry {
+	
+	/**
+	 * The share of the time since the last modification a response without explicit freshness stays fresh.
+	 */
+	private static final double HEURISTIC_SHARE = 0.1D;
+	
+	/**
+	 * The longest time in milliseconds a response without explicit freshness stays fresh.
+	 */
+	private static final long MAX_HEURISTIC_LIFETIME = 86400000L;
+	
+	/**
+	 * The headers a not modified response doesn't update, they describe the stored body.
+	 */
+	private static final List<String> BODY_HEADERS = Arrays.asList("content-length", "content-encoding", "transfer-encoding", "content-range");
+	
+	/**
+	 * The url.
+	 */
+	private final String url;
+	
+	/**
+	 * The request header values the response varies on, by header name.
+	 */
+	private final Map<String, String> vary;
+	
+	/**
+	 * The status code.
+	 */
+	private final int code;
+	
+	/**
+	 * The status message.
+	 */
+	private final String message;
+	
+	/**
+	 * The response headers.
+	 */
+	private final Headers headers;
+	
+	/**
+	 * The response body.
+	 */
+	private final String body;
+	
+	/**
+	 * The amount of bytes transferred to receive the response.
+	 */
+	private final long wireSize;
+	
+	/**
+	 * The amount of memory the entry roughly takes.
+	 */
+	private final long size;
+	
+	/**
+	 * The time the response was received at.
+	 */
+	private long responseTime;
+	
+	/**
+	 * The age in milliseconds the response had when it was received.
+	 */
+	private long initialAge;
+	
+	/**
+	 * The time in milliseconds the response stays fresh for.
+	 */
+	private long lifetime;
+	
+	
+	/**
+	 * Creates a new cache entry.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @param vary The request header values the response varies on, by header name.
+	 * 
+	 * @param code The status code.
+	 * 
+	 * @param message The status message.
+	 * 
+	 * @param headers The response headers.
+	 * 
+	 * @param body The response body.
+	 * 
+	 * @param wireSize The amount of bytes transferred to receive the response.
+	 * 
+	 * @param requestTime The time the request was sent at.
+	 * 
+	 * @param responseTime The time the response was received at.
+	 */
+	public CacheEntry(String url, Map<String, String> vary, int code, String message, Headers headers, String body, long wireSize
+			, long requestTime, long responseTime) {
+		this.url = url;
+		this.vary = vary;
+		this.code = code;
+		this.message = message;
+		this.headers = headers;
+		this.body = body;
+		this.wireSize = wireSize;
+		this.size = (body.length() * 2L) + (headers.getHeaders().size() * 64L) + url.length();
+		refresh(requestTime, responseTime);
+	}
+	
+	/**
+	 * Recalculates the age and lifetime of the response from its headers.
+	 * 
+	 * @param requestTime The time the request was sent at.
+	 * 
+	 * @param responseTime The time the response was received at.
+	 */
+	private void refresh(long requestTime, long responseTime) {
+		long date = parseDate(headers.getValueIgnoreCase("Date"));
+		long age = parseSeconds(headers.getValueIgnoreCase("Age"));
+		
+		this.responseTime = responseTime;
+		this.initialAge = Math.max(date > 0 ? Math.max(0L, responseTime - date) : 0L, age * 1000L)
+				+ (responseTime - requestTime);
+		this.lifetime = calculateLifetime(date > 0 ? date : responseTime);
+	}
+	
+	/**
+	 * Calculates the time the response stays fresh for.
+	 * The explicit lifetime comes first, a response that was last modified long ago is assumed to stay unchanged for a while otherwise.
+	 * 
+	 * @param date The time the response was generated at.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	private long calculateLifetime(long date) {
+		CacheControl cacheControl = new CacheControl(headers.getValueIgnoreCase("Cache-Control"));
+		
+		if (cacheControl.has("no-cache")) {
+			return 0L;
+		}
+		long maxAge = cacheControl.has("s-maxage") ? cacheControl.getSeconds("s-maxage") : cacheControl.getSeconds("max-age");
+		
+		if (maxAge >= 0) {
+			return maxAge * 1000L;
+		}
+		String expires = headers.getValueIgnoreCase("Expires");
+		
+		if (Objects.nonNull(expires)) {
+			return Math.max(0L, parseDate(expires) - date);
+		}
+		long lastModified = parseDate(headers.getValueIgnoreCase("Last-Modified"));
+		
+		if (lastModified > 0 && lastModified < date && (code == 200 || code == 203)) {
+			return Math.min(MAX_HEURISTIC_LIFETIME, (long)((date - lastModified) * HEURISTIC_SHARE));
+		}
+		return 0L;
+	}
+	
+	/**
+	 * Updates the entry with the headers of a response that confirmed it's unchanged.
+	 * 
+	 * @param notModified The headers of the not modified response.
+	 * 
+	 * @param requestTime The time the request was sent at.
+	 * 
+	 * @param responseTime The time the response was received at.
+	 */
+	public synchronized void revalidate(Headers notModified, long requestTime, long responseTime) {
+		if (Objects.nonNull(notModified)) {
+			for (Entry<String, String> header : notModified.getHeaders().entrySet()) {
+				if (!BODY_HEADERS.contains(header.getKey().toLowerCase())) {
+					replace(headers, header.getKey(), header.getValue());
+				}
+			}
+		}
+		refresh(requestTime, responseTime);
+	}
+	
+	/**
+	 * Retrieves whether the response can be served without asking the server.
+	 * 
+	 * @param requestCacheControl The Cache-Control directives of the request, may be null.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean isFresh(String requestCacheControl) {
+		CacheControl cacheControl = new CacheControl(requestCacheControl);
+		
+		if (cacheControl.has("no-cache")) {
+			return false;
+		}
+		long age = getAge();
+		long maxAge = cacheControl.getSeconds("max-age");
+		
+		if (maxAge >= 0 && age > maxAge * 1000L) {
+			return false;
+		}
+		return age < lifetime;
+	}
+	
+	/**
+	 * Retrieves whether the response was stored for the values a request sends for the headers it varies on.
+	 * 
+	 * @param sent The headers the request sends.
+	 * 
+	 * @return The result.
+	 */
+	public boolean matches(Headers sent) {
+		for (Entry<String, String> entry : vary.entrySet()) {
+			if (!Objects.equals(entry.getValue(), sent.getValueIgnoreCase(entry.getKey()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds the headers asking the server to only send the response when it changed.
+	 * 
+	 * @param requestHeaders The request headers.
+	 * 
+	 * @return Whether the entry can be revalidated.
+	 */
+	public synchronized boolean addValidators(Headers requestHeaders) {
+		String etag = headers.getValueIgnoreCase("ETag");
+		String lastModified = headers.getValueIgnoreCase("Last-Modified");
+		
+		if (Objects.nonNull(etag)) {
+			requestHeaders.add("If-None-Match", etag);
+		}
+		if (Objects.nonNull(lastModified)) {
+			requestHeaders.add("If-Modified-Since", lastModified);
+		}
+		return Objects.nonNull(etag) || Objects.nonNull(lastModified);
+	}
+	
+	/**
+	 * Creates the response a request receives from the cache.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @return The response.
+	 */
+	public synchronized RequestResponse toResponse(Request request) {
+		Headers copy = new Headers();
+		copy.add(headers);
+		replace(copy, "Age", String.valueOf(getAge() / 1000L));
+		return new RequestResponse(request.getUrl(), request.getCode(), new ResponseStatus(HTTPCode.getForCode(code), message)
+				, new StringResponseBody(body), copy);
+	}
+	
+	/**
+	 * Retrieves the current age of the response.
+	 * 
+	 * @return The age in milliseconds.
+	 */
+	public synchronized long getAge() {
+		return initialAge + (System.currentTimeMillis() - responseTime);
+	}
+	
+	/**
+	 * Retrieves the url.
+	 * 
+	 * @return The url.
+	 */
+	public String getUrl() {
+		return url;
+	}
+	
+	/**
+	 * Retrieves the amount of bytes transferred to receive the response.
+	 * 
+	 * @return The amount.
+	 */
+	public long getWireSize() {
+		return wireSize;
+	}
+	
+	/**
+	 * Retrieves the amount of memory the entry roughly takes.
+	 * 
+	 * @return The size in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+	
+	/**
+	 * Writes the entry.
+	 * 
+	 * @param out The output stream.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void write(DataOutputStream out) throws IOException {
+		out.writeUTF(url);
+		out.writeInt(code);
+		out.writeUTF(Objects.isNull(message) ? "" : message);
+		out.writeLong(wireSize);
+		out.writeLong(responseTime);
+		out.writeLong(initialAge);
+		out.writeInt(vary.size());
+		
+		for (Entry<String, String> entry : vary.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeBoolean(Objects.nonNull(entry.getValue()));
+			
+			if (Objects.nonNull(entry.getValue())) {
+				out.writeUTF(entry.getValue());
+			}
+		}
+		out.writeInt(headers.getHeaders().size());
+		
+		for (Entry<String, String> header : headers.getHeaders().entrySet()) {
+			out.writeUTF(header.getKey());
+			out.writeUTF(Objects.isNull(header.getValue()) ? "" : header.getValue());
+		}
+		byte[] content = body.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(content.length);
+		out.write(content);
+	}
+	
+	/**
+	 * Reads an entry.
+	 * 
+	 * @param in The input stream.
+	 * 
+	 * @return The entry.
+	 * 
+	 * @throws IOException
+	 */
+	public static CacheEntry read(DataInputStream in) throws IOException {
+		String url = in.readUTF();
+		int code = in.readInt();
+		String message = in.readUTF();
+		long wireSize = in.readLong();
+		long responseTime = in.readLong();
+		long initialAge = in.readLong();
+		Map<String, String> vary = new LinkedHashMap<>();
+		
+		for (int i = in.readInt(); i > 0; i--) {
+			String name = in.readUTF();
+			vary.put(name, in.readBoolean() ? in.readUTF() : null);
+		}
+		Headers headers = new Headers();
+		
+		for (int i = in.readInt(); i > 0; i--) {
+			headers.add(in.readUTF(), in.readUTF());
+		}
+		byte[] content = new byte[in.readInt()];
+		in.readFully(content);
+		
+		CacheEntry entry = new CacheEntry(url, vary, code, message, headers, new String(content, StandardCharsets.UTF_8), wireSize
+				, responseTime, responseTime);
+		entry.initialAge = initialAge;
+		return entry;
+	}
+	
+	/**
+	 * Creates the entry for a response.
+	 * Responses that are private to the user, only carry part of the body or vary on everything are never stored.
+	 * The cache is shared by all sessions, so responses to requests that sent cookies are only stored when marked public.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param sent The headers the request sent.
+	 * 
+	 * @param rr The response.
+	 * 
+	 * @param requestTime The time the request was sent at.
+	 * 
+	 * @param responseTime The time the response was received at.
+	 * 
+	 * @return The entry, null when the response can't be stored.
+	 */
+	public static CacheEntry create(Request request, Headers sent, RequestResponse rr, long requestTime, long responseTime) {
+		if ((rr.getCode() != 200 && rr.getCode() != 203) || Objects.isNull(rr.getHeaders())
+				|| !(rr.getResponseBody() instanceof StringResponseBody)) {
+			return null;
+		}
+		CacheControl cacheControl = new CacheControl(rr.getHeaders().getValueIgnoreCase("Cache-Control"));
+		
+		if (cacheControl.has("no-store") || cacheControl.has("private")) {
+			return null;
+		}
+		String cookie = sent.getValueIgnoreCase("Cookie");
+		
+		if (Objects.nonNull(cookie) && !cookie.isEmpty() && !cacheControl.has("public")) { //May hold what the cookies unlocked for the session
+			return null;
+		}
+		Map<String, String> vary = new LinkedHashMap<>();
+		String varyHeader = rr.getHeaders().getValueIgnoreCase("Vary");
+		
+		if (Objects.nonNull(varyHeader)) {
+			for (String name : varyHeader.split(",")) {
+				name = name.trim();
+				
+				if (name.equals("*")) {
+					return null;
+				}
+				if (!name.isEmpty()) {
+					vary.put(name, sent.getValueIgnoreCase(name));
+				}
+			}
+		}
+		Headers headers = new Headers();
+		headers.add(rr.getHeaders());
+		headers.getHeaders().keySet().removeIf(k -> k.equalsIgnoreCase("Set-Cookie")); //Cookies belong to the session that received them
+		
+		CacheEntry entry = new CacheEntry(request.getUrl(), vary, rr.getCode(), rr.getResponseStatus().getMessage(), headers
+				, ((StringResponseBody)rr.getResponseBody()).getBody(), request.getDataCounter().getDown(), requestTime, responseTime);
+		
+		if (entry.lifetime <= 0 && Objects.isNull(headers.getValueIgnoreCase("ETag"))
+				&& Objects.isNull(headers.getValueIgnoreCase("Last-Modified"))) {
+			return null;
+		}
+		return entry;
+	}
+	
+	/**
+	 * Sets a header, replacing any present under a different capitalization.
+	 * 
+	 * @param headers The headers.
+	 * 
+	 * @param key The key.
+	 * 
+	 * @param value The value.
+	 */
+	private static void replace(Headers headers, String key, String value) {
+		headers.getHeaders().keySet().removeIf(k -> k.equalsIgnoreCase(key));
+		headers.add(key, value);
+	}
+	
+	/**
+	 * Parses a number of seconds.
+	 * 
+	 * @param value The value, may be null.
+	 * 
+	 * @return The seconds, 0 when absent or invalid.
+	 */
+	private static long parseSeconds(String value) {
+		if (Objects.isNull(value)) {
+			return 0L;
+		}
+		try {
+			return Math.max(0L, Long.parseLong(value.trim()));
+		
+		} catch (NumberFormatException ex) {
+			return 0L;
+		}
+	}
+	
+	/**
+	 * Parses an HTTP date.
+	 * 
+	 * @param value The value, may be null.
+	 * 
+	 * @return The time, 0 when absent or invalid.
+	 */
+	public static long parseDate(String value) {
+		if (Objects.isNull(value)) {
+			return 0L;
+		}
+		try {
+			return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		
+		} catch (Exception ex) {
+			return 0L;
+		}
+	}
+
+}
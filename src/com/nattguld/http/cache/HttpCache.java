@@ -0,0 +1,400 @@
+package com.nattguld.http.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.nattguld.http.CacheCounter;
+import com.nattguld.http.cfg.NetConfig;
+import com.nattguld.http.headers.Headers;
+import com.nattguld.http.requests.Request;
+import com.nattguld.http.requests.RequestType;
+import com.nattguld.http.requests.execute.DispatchExecutors;
+import com.nattguld.http.response.RequestResponse;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class HttpCache {
+	
+	/**
+	 * The extension of cache files.
+	 */
+	private static final String EXTENSION = ".cache";
+	
+	/**
+	 * The cache instance.
+	 */
+	private static HttpCache singleton;
+	
+	/**
+	 * Holds the cached responses by url, least recently used first.
+	 */
+	private final Map<String, CacheEntry> entries;
+	
+	/**
+	 * The counter of the cache results.
+	 */
+	private final CacheCounter counter;
+	
+	/**
+	 * The amount of memory the cached responses take.
+	 */
+	private long memorySize;
+	
+	
+	/**
+	 * Creates a new HTTP cache.
+	 */
+	private HttpCache() {
+		this.entries = new LinkedHashMap<>(16, 0.75F, true);
+		this.counter = new CacheCounter();
+	}
+	
+	/**
+	 * Looks up the cached response for a request.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param sent The headers the request sends.
+	 * 
+	 * @return The entry, null when there's none for the headers sent.
+	 */
+	public CacheEntry lookup(Request request, Headers sent) {
+		CacheEntry entry;
+		
+		synchronized (this) {
+			entry = entries.get(request.getUrl());
+		}
+		if (Objects.isNull(entry)) {
+			entry = readFromDisk(request.getUrl());
+			
+			if (Objects.nonNull(entry)) {
+				store(entry, false);
+			}
+		}
+		return Objects.nonNull(entry) && entry.matches(sent) ? entry : null;
+	}
+	
+	/**
+	 * Serves a response from the cache.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param entry The cached response.
+	 * 
+	 * @return The response.
+	 */
+	public RequestResponse hit(Request request, CacheEntry entry) {
+		counter.registerHit(entry.getWireSize());
+		return entry.toResponse(request);
+	}
+	
+	/**
+	 * Updates the cache with a response received from the server.
+	 * A not modified response is answered with the cached one, other responses replace it.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param sent The headers the request sent.
+	 * 
+	 * @param cached The cached response that was revalidated, null when there's none.
+	 * 
+	 * @param rr The response.
+	 * 
+	 * @param requestTime The time the request was sent at.
+	 * 
+	 * @return The response to hand out.
+	 */
+	public RequestResponse update(Request request, Headers sent, CacheEntry cached, RequestResponse rr, long requestTime) {
+		long now = System.currentTimeMillis();
+		
+		if (Objects.nonNull(cached) && rr.getCode() == 304) {
+			cached.revalidate(rr.getHeaders(), requestTime, now);
+			counter.registerRevalidation(cached.getWireSize());
+			store(cached, true);
+			return cached.toResponse(request);
+		}
+		counter.registerMiss();
+		
+		CacheEntry entry = CacheEntry.create(request, sent, rr, requestTime, now);
+		
+		if (Objects.isNull(entry)) {
+			invalidate(request.getUrl());
+		} else {
+			store(entry, true);
+		}
+		return rr;
+	}
+	
+	/**
+	 * Stores a response, dropping the least recently used ones when the cache is full.
+	 * 
+	 * @param entry The entry.
+	 * 
+	 * @param persist Whether to write the entry to disk.
+	 */
+	private void store(CacheEntry entry, boolean persist) {
+		long maxSize = NetConfig.getConfig().getHttpCacheMemorySize() * 1048576L;
+		
+		synchronized (this) {
+			CacheEntry old = entries.put(entry.getUrl(), entry);
+			
+			if (Objects.nonNull(old)) {
+				memorySize -= old.getSize();
+			}
+			memorySize += entry.getSize();
+			
+			Iterator<CacheEntry> it = entries.values().iterator();
+			
+			while (memorySize > maxSize && it.hasNext()) {
+				memorySize -= it.next().getSize();
+				it.remove();
+			}
+		}
+		if (persist && Objects.nonNull(getDirectory())) {
+			DispatchExecutors.getDefault().execute(() -> writeToDisk(entry));
+		}
+	}
+	
+	/**
+	 * Drops the cached response for a url.
+	 * 
+	 * @param url The url.
+	 */
+	public void invalidate(String url) {
+		synchronized (this) {
+			CacheEntry old = entries.remove(url);
+			
+			if (Objects.nonNull(old)) {
+				memorySize -= old.getSize();
+			}
+		}
+		File file = getFile(url);
+		
+		if (Objects.nonNull(file)) {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Drops all cached responses.
+	 */
+	public void clear() {
+		synchronized (this) {
+			entries.clear();
+			memorySize = 0L;
+		}
+		File dir = getDirectory();
+		
+		if (Objects.isNull(dir)) {
+			return;
+		}
+		File[] files = dir.listFiles((d, name) -> name.endsWith(EXTENSION));
+		
+		if (Objects.nonNull(files)) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Reads a cached response from disk.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @return The entry, null when there's none.
+	 */
+	private CacheEntry readFromDisk(String url) {
+		File file = getFile(url);
+		
+		if (Objects.isNull(file) || !file.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			CacheEntry entry = CacheEntry.read(in);
+			file.setLastModified(System.currentTimeMillis()); //Keeps recently used files from being evicted
+			return entry.getUrl().equals(url) ? entry : null;
+		
+		} catch (IOException ex) {
+			file.delete();
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes a cached response to disk, dropping the least recently used files when the disk cache is full.
+	 * 
+	 * @param entry The entry.
+	 */
+	private void writeToDisk(CacheEntry entry) {
+		File file = getFile(entry.getUrl());
+		
+		if (Objects.isNull(file)) {
+			return;
+		}
+		file.getParentFile().mkdirs();
+		
+		File temp = new File(file.getPath() + ".tmp");
+		
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			entry.write(out);
+		
+		} catch (IOException ex) {
+			System.err.println("Failed to write cache file for " + entry.getUrl() + " (" + ex.getMessage() + ")");
+			temp.delete();
+			return;
+		}
+		file.delete();
+		
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			return;
+		}
+		evictFromDisk(file.getParentFile());
+	}
+	
+	/**
+	 * Drops the least recently used cache files until the disk cache fits its size.
+	 * 
+	 * @param dir The cache directory.
+	 */
+	private static synchronized void evictFromDisk(File dir) {
+		File[] files = dir.listFiles((d, name) -> name.endsWith(EXTENSION));
+		
+		if (Objects.isNull(files)) {
+			return;
+		}
+		long maxSize = NetConfig.getConfig().getHttpCacheDiskSize() * 1048576L;
+		long size = 0L;
+		
+		for (File file : files) {
+			size += file.length();
+		}
+		if (size <= maxSize) {
+			return;
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		
+		for (File file : files) {
+			if (size <= maxSize) {
+				break;
+			}
+			size -= file.length();
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Retrieves the cache file for a url.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @return The file, null when responses are only cached in memory.
+	 */
+	private static File getFile(String url) {
+		File dir = getDirectory();
+		
+		if (Objects.isNull(dir)) {
+			return null;
+		}
+		try {
+			StringBuilder name = new StringBuilder();
+			
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8))) {
+				name.append(String.format("%02x", b));
+			}
+			return new File(dir, name.append(EXTENSION).toString());
+		
+		} catch (NoSuchAlgorithmException ex) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Retrieves the directory cached responses are written to.
+	 * 
+	 * @return The directory, null when responses are only cached in memory.
+	 */
+	private static File getDirectory() {
+		String dir = NetConfig.getConfig().getHttpCacheDir();
+		return Objects.isNull(dir) || dir.trim().isEmpty() ? null : new File(dir);
+	}
+	
+	/**
+	 * Retrieves whether a request may be answered from the cache.
+	 * Only plain GET requests without credentials are, streamed bodies, downloads to disk and requests asking not to be stored aren't.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @return The result.
+	 */
+	public static boolean isCacheable(Request request) {
+		if (request.getRequestType() != RequestType.GET || request.isStreamBody() || Objects.nonNull(request.getSavePath())
+				|| Objects.nonNull(request.getDownloadSegment())) {
+			return false;
+		}
+		if (new CacheControl(request.getCacheControl()).has("no-store")) {
+			return false;
+		}
+		return Objects.isNull(request.getHeaders()) || Objects.isNull(request.getHeaders().getValueIgnoreCase("Authorization"));
+	}
+	
+	/**
+	 * Retrieves the amount of responses cached in memory.
+	 * 
+	 * @return The amount.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Retrieves the amount of memory the cached responses take.
+	 * 
+	 * @return The amount in bytes.
+	 */
+	public synchronized long getMemorySize() {
+		return memorySize;
+	}
+	
+	/**
+	 * Retrieves the counter of the cache results.
+	 * 
+	 * @return The counter.
+	 */
+	public CacheCounter getCounter() {
+		return counter;
+	}
+	
+	/**
+	 * Retrieves the cache instance.
+	 * 
+	 * @return The cache instance.
+	 */
+	public static synchronized HttpCache getSingleton() {
+		if (Objects.isNull(singleton)) {
+			singleton = new HttpCache();
+		}
+		return singleton;
+	}
+
+}
@@ -35,6 +35,16 @@ public enum HttpVersion {
 		return name;
 	}
 	
+	/**
+	 * Retrieves the version to write in HTTP/1 style message lines.
+	 * HTTP/2 has no textual request line, so connections that didn't negotiate it fall back to HTTP/1.1.
+	 * 
+	 * @return The HTTP version.
+	 */
+	public HttpVersion getMessageVersion() {
+		return this == HTTP_2_0 ? HTTP_1_1 : this;
+	}
+	
 	@Override
 	public String toString() {
 		return getName();
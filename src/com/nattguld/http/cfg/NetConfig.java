@@ -66,6 +66,101 @@ public class NetConfig extends Config {
 	 */
 	private int maxConnections = SystemUtil.getCPUCores() * 50;
 	
+	/**
+	 * The maximum connections open at once per route.
+	 */
+	private int maxConnectionsPerRoute = 6;
+	
+	/**
+	 * The time in seconds idle connections are kept open for reuse.
+	 */
+	private int keepAliveTimeout = 30;
+	
+	/**
+	 * The maximum amount of TLS sessions cached for resumption.
+	 */
+	private int sslSessionCacheSize = 1000;
+	
+	/**
+	 * The time in seconds cached TLS sessions remain valid for resumption.
+	 */
+	private int sslSessionTimeout = 3600;
+	
+	/**
+	 * The maximum amount of header lines accepted in a response.
+	 */
+	private int maxResponseHeaders = 128;
+	
+	/**
+	 * The maximum length of a single response header line.
+	 */
+	private int maxHeaderLineLength = 16384;
+	
+	/**
+	 * The receive window in bytes granted to each HTTP/2 stream.
+	 */
+	private int http2StreamWindow = 1048576;
+	
+	/**
+	 * The receive window in bytes granted to each HTTP/2 connection.
+	 */
+	private int http2ConnectionWindow = 16777216;
+	
+	/**
+	 * The requests per second allowed to each host through each proxy, 0 for no limit.
+	 */
+	private int rateLimit;
+	
+	/**
+	 * The requests that may be sent to a host at once before the rate limit kicks in.
+	 */
+	private int rateLimitBurst = 10;
+	
+	/**
+	 * The time in seconds to wait after being throttled by a host that doesn't say how long to wait.
+	 */
+	private int rateLimitBackoff = 30;
+	
+	/**
+	 * The longest time in seconds a request waits for a rate limit before giving up.
+	 */
+	private int maxRateLimitWait = 300;
+	
+	/**
+	 * The time in seconds resolved hosts are cached.
+	 */
+	private int dnsTtl = 60;
+	
+	/**
+	 * The time in seconds hosts that failed to resolve are cached.
+	 */
+	private int dnsNegativeTtl = 10;
+	
+	/**
+	 * The time in milliseconds a connection attempt gets before the next address of a host is tried alongside it.
+	 */
+	private int happyEyeballsDelay = 250;
+	
+	/**
+	 * The amount of memory in megabytes cached responses may take.
+	 */
+	private int httpCacheMemorySize = 32;
+	
+	/**
+	 * The amount of disk space in megabytes cached responses may take.
+	 */
+	private int httpCacheDiskSize = 256;
+	
+	/**
+	 * The directory cached responses are written to, empty to only cache in memory.
+	 */
+	private String httpCacheDir = "";
+	
+	/**
+	 * Whether identical concurrent requests without cookies share one exchange.
+	 */
+	private boolean coalesceRequests;
+	
 
 	@Override
 	protected void read(JsonReader reader) {
@@ -79,6 +174,25 @@ public class NetConfig extends Config {
 		this.cellularDataCounter = (DataCounter)reader.getAsObject("data_counter_cellular", DataCounter.class, new DataCounter());
 		this.saveDataMode = reader.getAsBoolean("save_data_mode", false);
 		this.maxConnections = reader.getAsInt("max_connections", SystemUtil.getCPUCores() * 50);
+		this.maxConnectionsPerRoute = reader.getAsInt("max_connections_per_route", 6);
+		this.keepAliveTimeout = reader.getAsInt("keep_alive_timeout", 30);
+		this.sslSessionCacheSize = reader.getAsInt("ssl_session_cache_size", 1000);
+		this.sslSessionTimeout = reader.getAsInt("ssl_session_timeout", 3600);
+		this.maxResponseHeaders = reader.getAsInt("max_response_headers", 128);
+		this.maxHeaderLineLength = reader.getAsInt("max_header_line_length", 16384);
+		this.http2StreamWindow = reader.getAsInt("http2_stream_window", 1048576);
+		this.http2ConnectionWindow = reader.getAsInt("http2_connection_window", 16777216);
+		this.rateLimit = reader.getAsInt("rate_limit", 0);
+		this.rateLimitBurst = reader.getAsInt("rate_limit_burst", 10);
+		this.rateLimitBackoff = reader.getAsInt("rate_limit_backoff", 30);
+		this.maxRateLimitWait = reader.getAsInt("max_rate_limit_wait", 300);
+		this.dnsTtl = reader.getAsInt("dns_ttl", 60);
+		this.dnsNegativeTtl = reader.getAsInt("dns_negative_ttl", 10);
+		this.happyEyeballsDelay = reader.getAsInt("happy_eyeballs_delay", 250);
+		this.httpCacheMemorySize = reader.getAsInt("http_cache_memory_size", 32);
+		this.httpCacheDiskSize = reader.getAsInt("http_cache_disk_size", 256);
+		this.httpCacheDir = reader.getAsString("http_cache_dir", "");
+		this.coalesceRequests = reader.getAsBoolean("coalesce_requests", false);
 	}
 
 	@Override
@@ -90,9 +204,28 @@ public class NetConfig extends Config {
 		writer.write("connection_timeout", connectionTimeout);
 		writer.write("read_timeout", readTimeout);
 		writer.write("chunk_size", chunkSize);
-		writer.write("data_counter_cellular", cellularDataCounter);
+		writer.write("data_counter_cellular", new DataCounter(cellularDataCounter)); //Only the totals are written, the counts being added aren't serialized
 		writer.write("save_data_mode", saveDataMode);
 		writer.write("max_connections", maxConnections);
+		writer.write("max_connections_per_route", maxConnectionsPerRoute);
+		writer.write("keep_alive_timeout", keepAliveTimeout);
+		writer.write("ssl_session_cache_size", sslSessionCacheSize);
+		writer.write("ssl_session_timeout", sslSessionTimeout);
+		writer.write("max_response_headers", maxResponseHeaders);
+		writer.write("max_header_line_length", maxHeaderLineLength);
+		writer.write("http2_stream_window", http2StreamWindow);
+		writer.write("http2_connection_window", http2ConnectionWindow);
+		writer.write("rate_limit", rateLimit);
+		writer.write("rate_limit_burst", rateLimitBurst);
+		writer.write("rate_limit_backoff", rateLimitBackoff);
+		writer.write("max_rate_limit_wait", maxRateLimitWait);
+		writer.write("dns_ttl", dnsTtl);
+		writer.write("dns_negative_ttl", dnsNegativeTtl);
+		writer.write("happy_eyeballs_delay", happyEyeballsDelay);
+		writer.write("http_cache_memory_size", httpCacheMemorySize);
+		writer.write("http_cache_disk_size", httpCacheDiskSize);
+		writer.write("http_cache_dir", httpCacheDir);
+		writer.write("coalesce_requests", coalesceRequests);
 	}
 	
 	@Override
@@ -121,6 +254,405 @@ public class NetConfig extends Config {
 		return maxConnections;
 	}
 	
+	/**
+	 * Modifies the maximum connections open at once per route.
+	 * 
+	 * @param maxConnectionsPerRoute The new maximum connections per route.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the maximum connections open at once per route.
+	 * 
+	 * @return The maximum connections per route.
+	 */
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+	
+	/**
+	 * Modifies the time in seconds idle connections are kept open for reuse.
+	 * 
+	 * @param keepAliveTimeout The new keep-alive timeout.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setKeepAliveTimeout(int keepAliveTimeout) {
+		this.keepAliveTimeout = keepAliveTimeout;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the time in seconds idle connections are kept open for reuse.
+	 * 
+	 * @return The keep-alive timeout.
+	 */
+	public int getKeepAliveTimeout() {
+		return keepAliveTimeout;
+	}
+	
+	/**
+	 * Modifies the maximum amount of TLS sessions cached for resumption.
+	 * 
+	 * @param sslSessionCacheSize The new session cache size.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setSSLSessionCacheSize(int sslSessionCacheSize) {
+		this.sslSessionCacheSize = sslSessionCacheSize;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the maximum amount of TLS sessions cached for resumption.
+	 * 
+	 * @return The session cache size.
+	 */
+	public int getSSLSessionCacheSize() {
+		return sslSessionCacheSize;
+	}
+	
+	/**
+	 * Modifies the time in seconds cached TLS sessions remain valid for resumption.
+	 * 
+	 * @param sslSessionTimeout The new session timeout.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setSSLSessionTimeout(int sslSessionTimeout) {
+		this.sslSessionTimeout = sslSessionTimeout;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the time in seconds cached TLS sessions remain valid for resumption.
+	 * 
+	 * @return The session timeout.
+	 */
+	public int getSSLSessionTimeout() {
+		return sslSessionTimeout;
+	}
+	
+	/**
+	 * Modifies the maximum amount of header lines accepted in a response.
+	 * 
+	 * @param maxResponseHeaders The new maximum amount of header lines.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setMaxResponseHeaders(int maxResponseHeaders) {
+		this.maxResponseHeaders = maxResponseHeaders;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the maximum amount of header lines accepted in a response.
+	 * 
+	 * @return The maximum amount of header lines.
+	 */
+	public int getMaxResponseHeaders() {
+		return maxResponseHeaders;
+	}
+	
+	/**
+	 * Modifies the maximum length of a single response header line.
+	 * 
+	 * @param maxHeaderLineLength The new maximum line length.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setMaxHeaderLineLength(int maxHeaderLineLength) {
+		this.maxHeaderLineLength = maxHeaderLineLength;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the maximum length of a single response header line.
+	 * 
+	 * @return The maximum line length.
+	 */
+	public int getMaxHeaderLineLength() {
+		return maxHeaderLineLength;
+	}
+	
+	/**
+	 * Modifies the receive window granted to each HTTP/2 stream.
+	 * 
+	 * @param http2StreamWindow The new window in bytes.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setHttp2StreamWindow(int http2StreamWindow) {
+		this.http2StreamWindow = http2StreamWindow;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the receive window granted to each HTTP/2 stream.
+	 * 
+	 * @return The window in bytes.
+	 */
+	public int getHttp2StreamWindow() {
+		return http2StreamWindow;
+	}
+	
+	/**
+	 * Modifies the receive window granted to each HTTP/2 connection.
+	 * 
+	 * @param http2ConnectionWindow The new window in bytes.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setHttp2ConnectionWindow(int http2ConnectionWindow) {
+		this.http2ConnectionWindow = http2ConnectionWindow;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the receive window granted to each HTTP/2 connection.
+	 * 
+	 * @return The window in bytes.
+	 */
+	public int getHttp2ConnectionWindow() {
+		return http2ConnectionWindow;
+	}
+	
+	/**
+	 * Modifies the requests per second allowed to each host through each proxy.
+	 * 
+	 * @param rateLimit The new rate limit, 0 for no limit.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setRateLimit(int rateLimit) {
+		this.rateLimit = rateLimit;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the requests per second allowed to each host through each proxy.
+	 * 
+	 * @return The rate limit, 0 for no limit.
+	 */
+	public int getRateLimit() {
+		return rateLimit;
+	}
+	
+	/**
+	 * Modifies the requests that may be sent to a host at once before the rate limit kicks in.
+	 * 
+	 * @param rateLimitBurst The new burst.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setRateLimitBurst(int rateLimitBurst) {
+		this.rateLimitBurst = rateLimitBurst;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the requests that may be sent to a host at once before the rate limit kicks in.
+	 * 
+	 * @return The burst.
+	 */
+	public int getRateLimitBurst() {
+		return rateLimitBurst;
+	}
+	
+	/**
+	 * Modifies the time to wait after being throttled by a host that doesn't say how long to wait.
+	 * 
+	 * @param rateLimitBackoff The new time in seconds.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setRateLimitBackoff(int rateLimitBackoff) {
+		this.rateLimitBackoff = rateLimitBackoff;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the time to wait after being throttled by a host that doesn't say how long to wait.
+	 * 
+	 * @return The time in seconds.
+	 */
+	public int getRateLimitBackoff() {
+		return rateLimitBackoff;
+	}
+	
+	/**
+	 * Modifies the longest time a request waits for a rate limit before giving up.
+	 * 
+	 * @param maxRateLimitWait The new time in seconds.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setMaxRateLimitWait(int maxRateLimitWait) {
+		this.maxRateLimitWait = maxRateLimitWait;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the longest time a request waits for a rate limit before giving up.
+	 * 
+	 * @return The time in seconds.
+	 */
+	public int getMaxRateLimitWait() {
+		return maxRateLimitWait;
+	}
+	
+	/**
+	 * Modifies the time resolved hosts are cached.
+	 * 
+	 * @param dnsTtl The new time in seconds.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setDnsTtl(int dnsTtl) {
+		this.dnsTtl = dnsTtl;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the time resolved hosts are cached.
+	 * 
+	 * @return The time in seconds.
+	 */
+	public int getDnsTtl() {
+		return dnsTtl;
+	}
+	
+	/**
+	 * Modifies the time hosts that failed to resolve are cached.
+	 * 
+	 * @param dnsNegativeTtl The new time in seconds.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setDnsNegativeTtl(int dnsNegativeTtl) {
+		this.dnsNegativeTtl = dnsNegativeTtl;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the time hosts that failed to resolve are cached.
+	 * 
+	 * @return The time in seconds.
+	 */
+	public int getDnsNegativeTtl() {
+		return dnsNegativeTtl;
+	}
+	
+	/**
+	 * Modifies the time a connection attempt gets before the next address of a host is tried alongside it.
+	 * 
+	 * @param happyEyeballsDelay The new time in milliseconds.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setHappyEyeballsDelay(int happyEyeballsDelay) {
+		this.happyEyeballsDelay = happyEyeballsDelay;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the time a connection attempt gets before the next address of a host is tried alongside it.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public int getHappyEyeballsDelay() {
+		return happyEyeballsDelay;
+	}
+	
+	/**
+	 * Modifies the amount of memory cached responses may take.
+	 * 
+	 * @param httpCacheMemorySize The new amount in megabytes.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setHttpCacheMemorySize(int httpCacheMemorySize) {
+		this.httpCacheMemorySize = httpCacheMemorySize;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the amount of memory cached responses may take.
+	 * 
+	 * @return The amount in megabytes.
+	 */
+	public int getHttpCacheMemorySize() {
+		return httpCacheMemorySize;
+	}
+	
+	/**
+	 * Modifies the amount of disk space cached responses may take.
+	 * 
+	 * @param httpCacheDiskSize The new amount in megabytes.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setHttpCacheDiskSize(int httpCacheDiskSize) {
+		this.httpCacheDiskSize = httpCacheDiskSize;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the amount of disk space cached responses may take.
+	 * 
+	 * @return The amount in megabytes.
+	 */
+	public int getHttpCacheDiskSize() {
+		return httpCacheDiskSize;
+	}
+	
+	/**
+	 * Modifies the directory cached responses are written to.
+	 * 
+	 * @param httpCacheDir The new directory, empty to only cache in memory.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setHttpCacheDir(String httpCacheDir) {
+		this.httpCacheDir = httpCacheDir;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the directory cached responses are written to.
+	 * 
+	 * @return The directory, empty to only cache in memory.
+	 */
+	public String getHttpCacheDir() {
+		return httpCacheDir;
+	}
+	
+	/**
+	 * Modifies whether identical concurrent requests without cookies share one exchange.
+	 * 
+	 * @param coalesceRequests The new state.
+	 * 
+	 * @return The config.
+	 */
+	public NetConfig setCoalesceRequests(boolean coalesceRequests) {
+		this.coalesceRequests = coalesceRequests;
+		return this;
+	}
+	
+	/**
+	 * Retrieves whether identical concurrent requests without cookies share one exchange.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isCoalesceRequests() {
+		return coalesceRequests;
+	}
+	
 	/**
 	 * Retrieves the cellular data counter.
 	 * 
@@ -1,10 +1,11 @@
 package com.nattguld.http.content;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
 
 import com.nattguld.http.cfg.NetConfig;
 import com.nattguld.http.stream.HTTPOutputStream;
@@ -28,45 +29,30 @@ public class ChunkHandler implements AutoCloseable {
 	private final long fileSize;
 	
 	/**
-	 * The buffered file input stream.
+	 * The file channel, opened when the first chunk is written.
 	 */
-	private final BufferedInputStream bis;
+	private FileChannel channel;
 	
 	/**
-	 * The amount of chunks.
+	 * The amount of bytes the server acknowledged, the next chunk starts here.
 	 */
-	private long chunks;
-	
-	/**
-	 * The current chunk id.
-	 */
-	private int chunkId;
+	private long acknowledged;
 	
 	/**
 	 * The chunk size.
 	 */
 	private int chunkSize;
 	
-	/**
-	 * The rest chunk size.
-	 */
-	private long restChunkSize;
-	
 	/**
 	 * The start range.
 	 */
-	private int startRange;
+	private long startRange;
 	
 	/**
 	 * The end range.
 	 */
 	private long endRange;
 	
-	/**
-	 * The amount of bytes sent.
-	 */
-	private int bytesSent;
-	
 	
 	/**
 	 * Creates a new chunked file handler.
@@ -76,58 +62,73 @@ public class ChunkHandler implements AutoCloseable {
 	 * @throws FileNotFoundException 
 	 */
 	public ChunkHandler(File file) throws FileNotFoundException {
+		this(file, 0L);
+	}
+	
+	/**
+	 * Creates a new chunked file handler which resumes an earlier upload.
+	 * 
+	 * @param file The file to chunk.
+	 * 
+	 * @param acknowledged The amount of bytes the server already acknowledged.
+	 * 
+	 * @throws FileNotFoundException 
+	 */
+	public ChunkHandler(File file, long acknowledged) throws FileNotFoundException {
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file.getPath());
+		}
 		this.file = file;
 		this.fileSize = file.length();
-		this.chunks = fileSize <= NetConfig.getConfig().getChunkSize() ? 1 
-				: (fileSize / NetConfig.getConfig().getChunkSize()); 
-		this.bis = new BufferedInputStream(new FileInputStream(file));
-		
-		if (chunks > 1) {
-			restChunkSize = fileSize % (chunks * NetConfig.getConfig().getChunkSize());
-			
-			if (restChunkSize > 0) {
-				chunks++;
-			}
-		}
+		this.acknowledged = Math.max(0L, Math.min(acknowledged, fileSize));
 	}
 	
 	/**
-	 * Prepares the chunk to send.
+	 * Prepares the chunk to send, which is the range following the acknowledged bytes.
+	 * Preparing again before the chunk got acknowledged prepares the same range, so retries resend it.
 	 */
 	public void prepare() {
-		chunkSize = NetConfig.getConfig().getChunkSize();
-		startRange = chunkId * chunkSize;
-		endRange = ((chunkId + 1) * chunkSize) - 1;
-		
-		if ((chunkId + 1) == chunks) {
-			endRange = file.length() - 1;
-			chunkSize = (int)restChunkSize;
-		}
+		chunkSize = (int)Math.min(NetConfig.getConfig().getChunkSize(), fileSize - acknowledged);
+		startRange = acknowledged;
+		endRange = acknowledged + chunkSize - 1;
 	}
 	
 	/**
-	 * Writes a chunk.
+	 * Writes the prepared chunk.
 	 * 
-	 * @param out The output stream.
+	 * @param httpStream The HTTP output stream.
 	 * 
-	 * @throws IOException 
+	 * @throws IOException
 	 */
 	public void writeChunk(HTTPOutputStream httpStream) throws IOException {
-		byte[] buffer = new byte[chunkSize];
-		bis.read(buffer);
+		if (Objects.isNull(channel) || !channel.isOpen()) {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		}
+		if (httpStream.transferFrom(channel, startRange, chunkSize) != chunkSize) {
+			throw new IOException("Failed to write chunk " + startRange + "-" + endRange + " of " + file.getName());
+		}
+	}
+	
+	/**
+	 * Marks the prepared chunk as received by the server, the file is released once every chunk has been.
+	 */
+	public void acknowledge() {
+		acknowledged = Math.max(acknowledged, endRange + 1);
 		
-		try {
-			httpStream.write(buffer, 0, chunkSize);
-		} catch (Exception ex) {
-			httpStream.write(buffer, 0, chunkSize);
+		if (isFinished()) {
+			try {
+				close();
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
 		}
-		bytesSent += chunkSize;
-		chunkId++;
 	}
 	
 	@Override
 	public void close() throws IOException {
-		bis.close();
+		if (Objects.nonNull(channel)) {
+			channel.close();
+		}
 	}
 	
 	/**
@@ -153,7 +154,7 @@ public class ChunkHandler implements AutoCloseable {
 	 * 
 	 * @return The current start range.
 	 */
-	public int getStartRange() {
+	public long getStartRange() {
 		return startRange;
 	}
 	
@@ -166,13 +167,22 @@ public class ChunkHandler implements AutoCloseable {
 		return endRange;
 	}
 	
+	/**
+	 * Retrieves the amount of bytes the server acknowledged.
+	 * 
+	 * @return The amount of bytes.
+	 */
+	public long getAcknowledged() {
+		return acknowledged;
+	}
+	
 	/**
 	 * Retrieves the transfer progress.
 	 * 
 	 * @return The transfer progress.
 	 */
 	public int getProgress() {
-		return (int)Math.round((((double)bytesSent / (double)fileSize) * 100));
+		return fileSize == 0 ? 100 : (int)Math.round((((double)acknowledged / (double)fileSize) * 100));
 	}
 	
 	/**
@@ -181,7 +191,7 @@ public class ChunkHandler implements AutoCloseable {
 	 * @return The result.
 	 */
 	public boolean isFinished() {
-		return bytesSent >= fileSize;
+		return acknowledged >= fileSize;
 	}
 
 }
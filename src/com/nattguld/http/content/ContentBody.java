@@ -22,7 +22,7 @@ public abstract class ContentBody<T> {
 	/**
 	 * The content length.
 	 */
-	private int contentLength;
+	private long contentLength;
 	
 	/**
 	 * Whether the body is supposed to be sent chunked or not.
@@ -62,6 +62,7 @@ public abstract class ContentBody<T> {
 	
 	/**
 	 * Prepares the content body for write.
+	 * The body is measured rather than built, files only add their length.
 	 * 
 	 * @param headers The current request headers.
 	 * 
@@ -84,16 +85,15 @@ public abstract class ContentBody<T> {
 	}
 	
 	/**
-	 * Writes the content body.
+	 * Writes the content body straight to the output stream.
 	 * 
-	 * @param out The buffered output stream.
+	 * @param out The output stream.
 	 * 
 	 * @return The content body.
 	 */
 	public ContentBody<T> write(OutputStream out) {
-		try (HTTPOutputStream httpStream = new HTTPOutputStream()) {
+		try (HTTPOutputStream httpStream = out instanceof HTTPOutputStream ? (HTTPOutputStream)out : new HTTPOutputStream(out)) {
 			build(httpStream, false);
-			httpStream.writeTo(out);
 			
 		} catch (IOException ex) {
 			ex.printStackTrace();
@@ -109,7 +109,7 @@ public abstract class ContentBody<T> {
 	 */
 	protected void setContentHeaders(Headers headers) {
 		headers.add("Content-Type", getEncType().getContentTypeHeader());
-		headers.add("Content-Length", Integer.toString(getContentLength()));
+		headers.add("Content-Length", Long.toString(getContentLength()));
 		//headers.add("Transfer-Encoding", "chunked");
 	}
 	
@@ -181,7 +181,7 @@ public abstract class ContentBody<T> {
 	 * 
 	 * @param contentLength The new content length.
 	 */
-	protected void setContentLength(int contentLength) {
+	protected void setContentLength(long contentLength) {
 		this.contentLength = contentLength;
 	}
 	
@@ -190,7 +190,7 @@ public abstract class ContentBody<T> {
 	 * 
 	 * @return The content length.
 	 */
-	protected int getContentLength() {
+	protected long getContentLength() {
 		return contentLength;
 	}
 	
@@ -1,14 +1,12 @@
 package com.nattguld.http.content.bodies;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 
-import com.nattguld.http.cfg.NetConfig;
 import com.nattguld.http.content.ChunkHandler;
 import com.nattguld.http.content.ContentBody;
 import com.nattguld.http.content.EncType;
@@ -41,7 +39,7 @@ public class MultipartBody extends ContentBody<List<AttributeKeyValuePair>> {
 	/**
 	 * The total file size in the body.
 	 */
-	private int fileSize;
+	private long fileSize;
 	
 	/**
 	 * Whether to use no media extension when adding media files.
@@ -143,7 +141,7 @@ public class MultipartBody extends ContentBody<List<AttributeKeyValuePair>> {
 					getChunkHandler().prepare();
 					fileSize += getChunkHandler().getChunkSize();
 				} else {
-					fileSize += (int)((File)kvp.getValue()).length();
+					fileSize += ((File)kvp.getValue()).length();
 				}
 				writeFilePart(httpStream, prepare, key, (File)kvp.getValue());
 				continue;
@@ -267,27 +265,12 @@ public class MultipartBody extends ContentBody<List<AttributeKeyValuePair>> {
 	 */
 	protected void writeFile(HTTPOutputStream httpStream, File file) throws IOException {
 		if (isChunked()) {
-			getChunkHandler().writeChunk(httpStream);
+			getChunkHandler().writeChunk(httpStream); //Only written, the executor acknowledges it once the server responded
 			httpStream.flush();
-			
-			if (getChunkHandler().isFinished()) {
-				getChunkHandler().close();
-			}
 			return;
 		}
-		try (FileInputStream fis = new FileInputStream(file)) {
-			int bytesRead = -1;
-			byte[] buffer = new byte[NetConfig.getConfig().getChunkSize()];
-    	
-			while ((bytesRead = fis.read(buffer)) != -1) {
-				try {
-					httpStream.write(buffer, 0, bytesRead);
-				} catch (Exception ex) {
-					httpStream.write(buffer, 0, bytesRead);
-				}
-			}
-			httpStream.flush();
-		}
+		httpStream.writeFile(file);
+		httpStream.flush();
 	}
 	
 	/**
@@ -333,7 +316,7 @@ public class MultipartBody extends ContentBody<List<AttributeKeyValuePair>> {
 	}
 	
 	@Override
-	protected void setContentLength(int contentLength) {
+	protected void setContentLength(long contentLength) {
 		super.setContentLength(contentLength + fileSize);
 	}
 
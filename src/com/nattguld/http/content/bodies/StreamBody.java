@@ -1,10 +1,8 @@
 package com.nattguld.http.content.bodies;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 
-import com.nattguld.http.cfg.NetConfig;
 import com.nattguld.http.content.ContentBody;
 import com.nattguld.http.content.EncType;
 import com.nattguld.http.headers.Headers;
@@ -46,29 +44,13 @@ public class StreamBody extends ContentBody<File> {
 	
 	@Override
 	protected void build(HTTPOutputStream httpStream, boolean prepare) throws IOException {
-		if (prepare) {
-			return;
-		}
-		try (FileInputStream fis = new FileInputStream(file)) {
-			int bytesRead = -1;
-			byte[] buffer = new byte[NetConfig.getConfig().getChunkSize()];
-    	
-			while ((bytesRead = fis.read(buffer)) != -1) {
-				httpStream.write(buffer, 0, bytesRead);
-			}
-			httpStream.flush();
-		}
-	}
-	
-	@Override
-	protected void setContentLength(int contentLength) {
-		super.setContentLength(contentLength + (int)file.length());
+		httpStream.writeFile(file); //Only measures the file when preparing
 	}
 	
 	@Override
 	protected void setContentHeaders(Headers headers) {
 		headers.add("Content-Type", raw ? getEncType().getContentTypeHeader() : MimeType.getByFile(file).getName());
-		headers.add("Content-Length", Integer.toString(getContentLength()));
+		headers.add("Content-Length", Long.toString(getContentLength()));
 	}
 
 	@Override
@@ -1,5 +1,10 @@
 package com.nattguld.http.content.cookies;
 
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
 /**
  * 
  * @author randqm
@@ -39,10 +44,25 @@ public class Cookie {
 	private final boolean secure;
 	
 	/**
-	 * The max age of the cookie.
+	 * The max age of the cookie in seconds, -1 when not set.
 	 */
 	private final long maxAge;
 	
+	/**
+	 * Whether the cookie is only sent to the exact host that set it or not.
+	 */
+	private final boolean hostOnly;
+	
+	/**
+	 * The time the cookie was created at.
+	 */
+	private final long creationTime;
+	
+	/**
+	 * The time the cookie expires at, Long.MAX_VALUE for session cookies.
+	 */
+	private final long expiryTime;
+	
 	
 	/**
 	 * Creates a new cookie.
@@ -54,7 +74,7 @@ public class Cookie {
 	 * @param domain The domain.
 	 */
 	public Cookie(String name, String value, String domain) {
-		this(name, value, "/", domain);
+		this(name, value, null, domain);
 	}
 	
 	/**
@@ -105,7 +125,7 @@ public class Cookie {
 	 * @param secure The security.
 	 */
 	public Cookie(String name, String value, String expires, String path, String domain, boolean secure) {
-		this(name, value, expires, path, domain, secure, 0L);
+		this(name, value, expires, path, domain, secure, -1L);
 	}
 	
 	/**
@@ -123,9 +143,34 @@ public class Cookie {
 	 * 
 	 * @param secure The security.
 	 * 
-	 * @param maxAge The max age of the cookie.
+	 * @param maxAge The max age of the cookie in seconds, -1 when not set.
 	 */
 	public Cookie(String name, String value, String expires, String path, String domain, boolean secure, long maxAge) {
+		this(name, value, expires, path, domain, secure, maxAge, false, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Creates a new cookie.
+	 * 
+	 * @param name The name.
+	 * 
+	 * @param value The value.
+	 * 
+	 * @param expires The expiration.
+	 * 
+	 * @param path The path.
+	 * 
+	 * @param domain The domain.
+	 * 
+	 * @param secure The security.
+	 * 
+	 * @param maxAge The max age of the cookie in seconds, -1 when not set.
+	 * 
+	 * @param hostOnly Whether the cookie is only sent to the exact host that set it or not.
+	 * 
+	 * @param creationTime The time the cookie was created at.
+	 */
+	private Cookie(String name, String value, String expires, String path, String domain, boolean secure, long maxAge, boolean hostOnly, long creationTime) {
 		this.name = name;
 		this.value = value;
 		this.expires = expires;
@@ -133,6 +178,35 @@ public class Cookie {
 		this.domain = domain;
 		this.secure = secure;
 		this.maxAge = maxAge;
+		this.hostOnly = hostOnly;
+		this.creationTime = creationTime;
+		this.expiryTime = getExpiryTime(expires, maxAge, creationTime);
+	}
+	
+	/**
+	 * Creates a copy of the cookie scoped to the request that received it.
+	 * 
+	 * @param domain The domain.
+	 * 
+	 * @param path The path.
+	 * 
+	 * @param hostOnly Whether the cookie is only sent to the exact host that set it or not.
+	 * 
+	 * @return The scoped cookie.
+	 */
+	protected Cookie scope(String domain, String path, boolean hostOnly) {
+		return new Cookie(name, value, expires, path, domain, secure, maxAge, hostOnly, creationTime);
+	}
+	
+	/**
+	 * Retrieves whether the cookie has expired or not.
+	 * 
+	 * @param now The current time.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isExpired(long now) {
+		return now >= expiryTime;
 	}
 
 	/**
@@ -198,6 +272,61 @@ public class Cookie {
 		return maxAge;
 	}
 	
+	/**
+	 * Retrieves whether the cookie is only sent to the exact host that set it or not.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isHostOnly() {
+		return hostOnly;
+	}
+	
+	/**
+	 * Retrieves the time the cookie was created at.
+	 * 
+	 * @return The creation time.
+	 */
+	public long getCreationTime() {
+		return creationTime;
+	}
+	
+	/**
+	 * Retrieves the time the cookie expires at.
+	 * 
+	 * @return The expiry time, Long.MAX_VALUE for session cookies.
+	 */
+	public long getExpiryTime() {
+		return expiryTime;
+	}
+	
+	/**
+	 * Resolves the time a cookie expires at, Max-Age takes precedence over Expires.
+	 * 
+	 * @param expires The expiration.
+	 * 
+	 * @param maxAge The max age in seconds, -1 when not set.
+	 * 
+	 * @param creationTime The time the cookie was created at.
+	 * 
+	 * @return The expiry time.
+	 */
+	private static long getExpiryTime(String expires, long maxAge, long creationTime) {
+		if (maxAge >= 0L) {
+			return maxAge > (Long.MAX_VALUE - creationTime) / 1000L ? Long.MAX_VALUE : creationTime + maxAge * 1000L;
+		}
+		if (Objects.isNull(expires) || expires.isEmpty()) {
+			return Long.MAX_VALUE;
+		}
+		try {
+			//Servers commonly separate the date with dashes, e.g. Wed, 21-Oct-2026 07:28:00 GMT
+			return ZonedDateTime.parse(expires.trim().replace('-', ' '), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			
+		} catch (DateTimeParseException ex) {
+			System.err.println("Unable to parse cookie expiration: " + expires);
+			return Long.MAX_VALUE;
+		}
+	}
+	
 	@Override
 	public String toString() {
 		return getName() + "=" + getValue();
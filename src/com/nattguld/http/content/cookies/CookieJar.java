@@ -1,7 +1,17 @@
 package com.nattguld.http.content.cookies;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.nattguld.http.util.NetUtil;
 
 /**
  * 
@@ -12,18 +22,39 @@ import java.util.List;
 public class CookieJar {
 	
 	/**
-	 * The cookies.
+	 * The key of the cookies that aren't bound to a domain and are sent to every host.
 	 */
-	private final List<Cookie> cookies = new ArrayList<>();
+	private static final String ANY_DOMAIN = "";
+	
+	/**
+	 * The second level labels commonly registered under a country code, e.g. co.uk.
+	 */
+	private static final List<String> SECOND_LEVEL_LABELS = Arrays.asList("ac", "co", "com", "edu", "go", "gov", "ne", "net", "or", "org");
+	
+	/**
+	 * The order cookies are sent in, longer paths first and older cookies first within the same path.
+	 */
+	private static final Comparator<Cookie> SEND_ORDER = Comparator.comparingInt((Cookie c) -> -c.getPath().length())
+			.thenComparingLong(Cookie::getCreationTime);
+	
+	/**
+	 * Holds the cookies by registrable domain.
+	 */
+	private final Map<String, DomainCookies> domains = new ConcurrentHashMap<>();
+	
 	
-
 	/**
-	 * Adds a cookie.
+	 * Adds a cookie, replacing a cookie with the same name, domain and path.
 	 * 
 	 * @param cookie The cookie to add.
 	 */
 	public void add(Cookie cookie) {
-		cookies.add(cookie);
+		String domain = normalizeDomain(cookie.getDomain());
+		
+		if (!Objects.equals(domain, cookie.getDomain()) || Objects.isNull(cookie.getPath())) {
+			cookie = cookie.scope(domain, Objects.isNull(cookie.getPath()) ? "/" : cookie.getPath(), cookie.isHostOnly());
+		}
+		store(cookie);
 	}
 	
 	/**
@@ -32,7 +63,6 @@ public class CookieJar {
 	 * @param cookie The cookie.
 	 */
 	public void replaceOrAdd(Cookie cookie) {
-		remove(getByName(cookie.getName()));
 		add(cookie);
 	}
 	
@@ -47,13 +77,67 @@ public class CookieJar {
 		}
 	}
 	
+	/**
+	 * Imports the cookies received in response to a request.
+	 * Cookies are scoped to the request host and path unless they widen it, cookies for foreign domains are rejected.
+	 * 
+	 * @param cookies The cookies to import.
+	 * 
+	 * @param url The request url.
+	 */
+	public void importCookies(List<Cookie> cookies, String url) {
+		String host = getHost(url);
+		long now = System.currentTimeMillis();
+		
+		for (Cookie cookie : cookies) {
+			String domain = normalizeDomain(cookie.getDomain());
+			boolean hostOnly = Objects.isNull(domain) || (isPublicSuffix(domain) && domain.equals(host));
+			
+			if (hostOnly) {
+				domain = host;
+			
+			} else if (isPublicSuffix(domain) || !domainMatches(host, domain)) {
+				System.err.println("Rejected cookie " + cookie.getName() + " for domain " + cookie.getDomain() + " set by " + host);
+				continue;
+			}
+			String path = cookie.getPath();
+			
+			if (Objects.isNull(path) || !path.startsWith("/")) {
+				path = getDefaultPath(NetUtil.getPath(url));
+			}
+			Cookie scoped = cookie.scope(domain, path, hostOnly);
+			
+			if (scoped.isExpired(now)) { //Servers delete cookies by sending them expired
+				remove(scoped);
+				continue;
+			}
+			store(scoped);
+		}
+	}
+	
+	/**
+	 * Stores a scoped cookie.
+	 * 
+	 * @param cookie The cookie.
+	 */
+	private void store(Cookie cookie) {
+		domains.compute(getBucket(cookie), (key, bucket) -> {
+			DomainCookies cookies = Objects.isNull(bucket) ? new DomainCookies() : bucket;
+			cookies.put(cookie);
+			return cookies;
+		});
+	}
+	
 	/**
 	 * Removes a cookie.
 	 * 
 	 * @param cookie The cookie.
 	 */
 	public void remove(Cookie cookie) {
-		cookies.remove(cookie);
+		if (Objects.isNull(cookie)) {
+			return;
+		}
+		domains.computeIfPresent(getBucket(cookie), (key, bucket) -> bucket.remove(cookie) && bucket.isEmpty() ? null : bucket);
 	}
 	
 	/**
@@ -64,17 +148,73 @@ public class CookieJar {
 	 * @return The cookie.
 	 */
 	public Cookie getByName(String name) {
-		return cookies.stream()
-				.filter(c -> c.getName().equalsIgnoreCase(name))
-				.findFirst()
-				.orElse(null);
+		long now = System.currentTimeMillis();
+		
+		for (DomainCookies bucket : domains.values()) {
+			Cookie cookie = bucket.getByName(name, now);
+			
+			if (Objects.nonNull(cookie)) {
+				return cookie;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Builds the value of the cookie header for a request.
+	 * 
+	 * @param url The request url.
+	 * 
+	 * @return The header value or null when no cookie applies.
+	 */
+	public String getCookieHeader(String url) {
+		String host = getHost(url);
+		String path = NetUtil.getPath(url);
+		boolean secure = url.startsWith("https");
+		long now = System.currentTimeMillis();
+		
+		StringBuilder sb = new StringBuilder();
+		
+		appendCookies(sb, domains.get(getRegistrableDomain(host)), host, path, secure, now);
+		appendCookies(sb, domains.get(ANY_DOMAIN), host, path, secure, now);
+		return sb.length() == 0 ? null : sb.toString();
+	}
+	
+	/**
+	 * Appends the cookies of a domain that apply to a request.
+	 * 
+	 * @param sb The header value being built.
+	 * 
+	 * @param bucket The cookies of the domain if any.
+	 * 
+	 * @param host The request host.
+	 * 
+	 * @param path The request path.
+	 * 
+	 * @param secure Whether the request is sent over a secure channel or not.
+	 * 
+	 * @param now The current time.
+	 */
+	private static void appendCookies(StringBuilder sb, DomainCookies bucket, String host, String path, boolean secure, long now) {
+		if (Objects.isNull(bucket)) {
+			return;
+		}
+		for (Cookie cookie : bucket.getView(host, now)) {
+			if ((cookie.isSecure() && !secure) || !pathMatches(path, cookie.getPath())) {
+				continue;
+			}
+			if (sb.length() > 0) {
+				sb.append("; ");
+			}
+			sb.append(cookie.getName()).append('=').append(cookie.getValue());
+		}
 	}
 	
 	/**
 	 * Empties the cookie jar.
 	 */
 	public void empty() {
-		cookies.clear();
+		domains.clear();
 	}
 	
 	/**
@@ -83,16 +223,360 @@ public class CookieJar {
 	 * @return The result.
 	 */
 	public boolean isEmpty() {
-		return cookies.isEmpty();
+		for (DomainCookies bucket : domains.values()) {
+			if (!bucket.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	/**
-	 * Retrieves the cookies.
+	 * Retrieves a snapshot of the cookies.
 	 * 
 	 * @return The cookies.
 	 */
 	public List<Cookie> getCookies() {
+		List<Cookie> cookies = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		
+		for (DomainCookies bucket : domains.values()) {
+			bucket.collect(cookies, now);
+		}
 		return cookies;
 	}
+	
+	/**
+	 * Retrieves the key of the domain a cookie is stored under.
+	 * 
+	 * @param cookie The cookie.
+	 * 
+	 * @return The key.
+	 */
+	private static String getBucket(Cookie cookie) {
+		return Objects.isNull(cookie.getDomain()) ? ANY_DOMAIN : getRegistrableDomain(cookie.getDomain());
+	}
+	
+	/**
+	 * Normalizes the domain attribute of a cookie.
+	 * 
+	 * @param domain The domain attribute.
+	 * 
+	 * @return The domain or null when the cookie isn't bound to a domain.
+	 */
+	private static String normalizeDomain(String domain) {
+		if (Objects.isNull(domain)) {
+			return null;
+		}
+		domain = domain.trim().toLowerCase();
+		
+		if (domain.startsWith(".")) {
+			domain = domain.substring(1);
+		}
+		return domain.isEmpty() || domain.equals("/") ? null : domain;
+	}
+	
+	/**
+	 * Retrieves the host of a url without the port.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @return The host.
+	 */
+	private static String getHost(String url) {
+		String host = NetUtil.getDomain(url).toLowerCase();
+		int portIndex = host.lastIndexOf(':');
+		
+		if (portIndex > host.lastIndexOf(']')) {
+			host = host.substring(0, portIndex);
+		}
+		return host;
+	}
+	
+	/**
+	 * Retrieves the part of a host that's registered with a registrar, e.g. example.co.uk for www.example.co.uk.
+	 * Approximates the public suffix list by treating short labels under a country code as part of the suffix.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @return The registrable domain.
+	 */
+	private static String getRegistrableDomain(String host) {
+		if (isIpAddress(host)) {
+			return host;
+		}
+		int last = host.lastIndexOf('.');
+		
+		if (last < 0) {
+			return host;
+		}
+		int second = host.lastIndexOf('.', last - 1);
+		
+		if (second < 0) {
+			return host;
+		}
+		if (isPublicSuffix(host.substring(second + 1))) {
+			second = host.lastIndexOf('.', second - 1);
+		}
+		return second < 0 ? host : host.substring(second + 1);
+	}
+	
+	/**
+	 * Retrieves whether a domain is a public suffix cookies can't be set for.
+	 * 
+	 * @param domain The domain.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isPublicSuffix(String domain) {
+		int dot = domain.indexOf('.');
+		
+		if (dot < 0) {
+			return !isIpAddress(domain);
+		}
+		if (dot != domain.lastIndexOf('.')) {
+			return false;
+		}
+		return domain.length() - dot - 1 == 2 && SECOND_LEVEL_LABELS.contains(domain.substring(0, dot));
+	}
+	
+	/**
+	 * Retrieves whether a host is an IP address.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isIpAddress(String host) {
+		if (host.indexOf(':') >= 0) {
+			return true;
+		}
+		for (int i = 0; i < host.length(); i++) {
+			char c = host.charAt(i);
+			
+			if (c != '.' && (c < '0' || c > '9')) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Retrieves whether a host falls within a cookie domain.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param domain The domain.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean domainMatches(String host, String domain) {
+		if (host.equals(domain)) {
+			return true;
+		}
+		return host.endsWith(domain) && host.charAt(host.length() - domain.length() - 1) == '.' && !isIpAddress(host);
+	}
+	
+	/**
+	 * Retrieves whether a request path falls within a cookie path.
+	 * 
+	 * @param path The request path.
+	 * 
+	 * @param cookiePath The cookie path.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean pathMatches(String path, String cookiePath) {
+		if (path.equals(cookiePath)) {
+			return true;
+		}
+		if (!path.startsWith(cookiePath)) {
+			return false;
+		}
+		return cookiePath.endsWith("/") || path.charAt(cookiePath.length()) == '/';
+	}
+	
+	/**
+	 * Retrieves the path a cookie applies to when the server didn't specify one, the directory of the request path.
+	 * 
+	 * @param path The request path.
+	 * 
+	 * @return The default path.
+	 */
+	private static String getDefaultPath(String path) {
+		int last = path.lastIndexOf('/');
+		return last <= 0 ? "/" : path.substring(0, last);
+	}
+	
+	/**
+	 * 
+	 * @author randqm
+	 * 
+	 */
+	
+	private static class DomainCookies {
+		
+		/**
+		 * Holds the cookies by path, then by name and domain.
+		 */
+		private final Map<String, Map<String, Cookie>> paths = new HashMap<>();
+		
+		/**
+		 * Holds the cookies that apply to a host in the order they're sent, dropped on every change.
+		 */
+		private final Map<String, List<Cookie>> views = new HashMap<>();
+		
+		/**
+		 * The time the first cookie expires at.
+		 */
+		private long nextExpiry = Long.MAX_VALUE;
+		
+		
+		/**
+		 * Stores a cookie, replacing the cookie with the same name, domain and path.
+		 * 
+		 * @param cookie The cookie.
+		 */
+		private synchronized void put(Cookie cookie) {
+			paths.computeIfAbsent(cookie.getPath(), path -> new HashMap<>()).put(getKey(cookie), cookie);
+			nextExpiry = Math.min(nextExpiry, cookie.getExpiryTime());
+			views.clear();
+		}
+		
+		/**
+		 * Removes the cookie with the same name, domain and path as a given cookie.
+		 * 
+		 * @param cookie The cookie.
+		 * 
+		 * @return Whether a cookie was removed or not.
+		 */
+		private synchronized boolean remove(Cookie cookie) {
+			Map<String, Cookie> cookies = paths.get(cookie.getPath());
+			
+			if (Objects.isNull(cookies) || Objects.isNull(cookies.remove(getKey(cookie)))) {
+				return false;
+			}
+			if (cookies.isEmpty()) {
+				paths.remove(cookie.getPath());
+			}
+			views.clear();
+			return true;
+		}
+		
+		/**
+		 * Retrieves the cookies that apply to a host in the order they're sent.
+		 * 
+		 * @param host The host.
+		 * 
+		 * @param now The current time.
+		 * 
+		 * @return The cookies.
+		 */
+		private synchronized List<Cookie> getView(String host, long now) {
+			if (now >= nextExpiry) {
+				evictExpired(now);
+			}
+			List<Cookie> view = views.get(host);
+			
+			if (Objects.nonNull(view)) {
+				return view;
+			}
+			view = new ArrayList<>();
+			
+			for (Map<String, Cookie> cookies : paths.values()) {
+				for (Cookie cookie : cookies.values()) {
+					if (Objects.isNull(cookie.getDomain()) || (cookie.isHostOnly() ? host.equals(cookie.getDomain()) : domainMatches(host, cookie.getDomain()))) {
+						view.add(cookie);
+					}
+				}
+			}
+			view.sort(SEND_ORDER);
+			view = Collections.unmodifiableList(view);
+			views.put(host, view);
+			return view;
+		}
+		
+		/**
+		 * Retrieves a cookie by it's name.
+		 * 
+		 * @param name The name.
+		 * 
+		 * @param now The current time.
+		 * 
+		 * @return The cookie.
+		 */
+		private synchronized Cookie getByName(String name, long now) {
+			for (Map<String, Cookie> cookies : paths.values()) {
+				for (Cookie cookie : cookies.values()) {
+					if (cookie.getName().equalsIgnoreCase(name) && !cookie.isExpired(now)) {
+						return cookie;
+					}
+				}
+			}
+			return null;
+		}
+		
+		/**
+		 * Collects the cookies that haven't expired.
+		 * 
+		 * @param collection The collection to add to.
+		 * 
+		 * @param now The current time.
+		 */
+		private synchronized void collect(List<Cookie> collection, long now) {
+			for (Map<String, Cookie> cookies : paths.values()) {
+				for (Cookie cookie : cookies.values()) {
+					if (!cookie.isExpired(now)) {
+						collection.add(cookie);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Removes the expired cookies.
+		 * 
+		 * @param now The current time.
+		 */
+		private void evictExpired(long now) {
+			nextExpiry = Long.MAX_VALUE;
+			Iterator<Map<String, Cookie>> it = paths.values().iterator();
+			
+			while (it.hasNext()) {
+				Map<String, Cookie> cookies = it.next();
+				
+				cookies.values().removeIf(cookie -> cookie.isExpired(now));
+				
+				for (Cookie cookie : cookies.values()) {
+					nextExpiry = Math.min(nextExpiry, cookie.getExpiryTime());
+				}
+				if (cookies.isEmpty()) {
+					it.remove();
+				}
+			}
+			views.clear();
+		}
+		
+		/**
+		 * Retrieves whether there are no cookies for the domain.
+		 * 
+		 * @return The result.
+		 */
+		private synchronized boolean isEmpty() {
+			return paths.isEmpty();
+		}
+		
+		/**
+		 * Retrieves the key a cookie is stored under within its path.
+		 * 
+		 * @param cookie The cookie.
+		 * 
+		 * @return The key.
+		 */
+		private static String getKey(Cookie cookie) {
+			return cookie.getName() + ';' + (Objects.isNull(cookie.getDomain()) ? ANY_DOMAIN : cookie.getDomain());
+		}
+	
+	}
 
 }
@@ -0,0 +1,114 @@
+package com.nattguld.http.download;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class DownloadSegment {
+	
+	/**
+	 * The position of the first byte of the segment in the file.
+	 */
+	private final long start;
+	
+	/**
+	 * The position of the last byte of the segment in the file.
+	 */
+	private final long end;
+	
+	/**
+	 * The amount of bytes of the segment written to the file.
+	 */
+	private volatile long written;
+	
+	
+	/**
+	 * Creates a new download segment.
+	 * 
+	 * @param start The position of the first byte of the segment in the file.
+	 * 
+	 * @param end The position of the last byte of the segment in the file.
+	 * 
+	 * @param written The amount of bytes of the segment already written to the file.
+	 */
+	public DownloadSegment(long start, long end, long written) {
+		this.start = start;
+		this.end = end;
+		this.written = Math.max(0L, Math.min(written, end - start + 1));
+	}
+	
+	/**
+	 * Registers bytes written to the file.
+	 * 
+	 * @param amount The amount of bytes.
+	 */
+	public void addWritten(long amount) {
+		written += amount; //Only the thread downloading the segment writes
+	}
+	
+	/**
+	 * Retrieves the position in the file the next byte of the segment goes to.
+	 * 
+	 * @return The position.
+	 */
+	public long getOffset() {
+		return start + written;
+	}
+	
+	/**
+	 * Retrieves the amount of bytes of the segment left to download.
+	 * 
+	 * @return The amount of bytes.
+	 */
+	public long getRemaining() {
+		return end - getOffset() + 1;
+	}
+	
+	/**
+	 * Retrieves whether the segment has been downloaded completely.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isComplete() {
+		return getRemaining() <= 0;
+	}
+	
+	/**
+	 * Retrieves the range header value requesting the rest of the segment.
+	 * 
+	 * @return The range header value.
+	 */
+	public String getRange() {
+		return "bytes=" + getOffset() + "-" + end;
+	}
+	
+	/**
+	 * Retrieves the position of the first byte of the segment in the file.
+	 * 
+	 * @return The position.
+	 */
+	public long getStart() {
+		return start;
+	}
+	
+	/**
+	 * Retrieves the position of the last byte of the segment in the file.
+	 * 
+	 * @return The position.
+	 */
+	public long getEnd() {
+		return end;
+	}
+	
+	/**
+	 * Retrieves the amount of bytes of the segment written to the file.
+	 * 
+	 * @return The amount of bytes.
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+}
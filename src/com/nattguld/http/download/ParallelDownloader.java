@@ -0,0 +1,323 @@
+package com.nattguld.http.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.nattguld.http.ConnectionPolicy;
+import com.nattguld.http.HttpClient;
+import com.nattguld.http.requests.execute.DispatchExecutors;
+import com.nattguld.http.requests.impl.GetRequest;
+import com.nattguld.http.response.RequestResponse;
+import com.nattguld.http.response.bodies.impl.StreamResponseBody;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ParallelDownloader {
+	
+	/**
+	 * The default amount of segments.
+	 */
+	public static final int DEFAULT_SEGMENTS = 4;
+	
+	/**
+	 * The smallest segment worth its own connection.
+	 */
+	private static final long MIN_SEGMENT_SIZE = 1048576L;
+	
+	/**
+	 * The maximum amount of attempts in a row that don't make progress on a segment.
+	 */
+	private static final int MAX_STALLED_ATTEMPTS = 3;
+	
+	/**
+	 * The interval in milliseconds at which the segment progress is saved.
+	 */
+	private static final long SAVE_INTERVAL = 1000L;
+	
+	/**
+	 * The client whose browser, proxy, policies and cookies are used.
+	 */
+	private final HttpClient client;
+	
+	/**
+	 * The amount of segments to split files into.
+	 */
+	private final int segments;
+	
+	
+	/**
+	 * Creates a new parallel downloader.
+	 * 
+	 * @param client The client whose browser, proxy, policies and cookies are used.
+	 */
+	public ParallelDownloader(HttpClient client) {
+		this(client, DEFAULT_SEGMENTS);
+	}
+	
+	/**
+	 * Creates a new parallel downloader.
+	 * 
+	 * @param client The client whose browser, proxy, policies and cookies are used.
+	 * 
+	 * @param segments The amount of segments to split files into.
+	 */
+	public ParallelDownloader(HttpClient client, int segments) {
+		this.client = client;
+		this.segments = Math.max(1, segments);
+	}
+	
+	/**
+	 * Downloads a file, fetching its segments at the same time when the server supports ranges.
+	 * The progress is kept next to the file, so an interrupted download resumes where its segments left off.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @param path The save path.
+	 * 
+	 * @return The saved file or null when the download failed.
+	 */
+	public File download(String url, String path) {
+		long length = probe(url);
+		
+		if (length < 0) { //Ranges aren't supported so there's nothing to split
+			return client.download(path, new GetRequest(url));
+		}
+		File file = new File(path);
+		File part = new File(path + ".part");
+		File state = new File(path + ".segments");
+		
+		List<DownloadSegment> parts = load(state, part, length);
+		
+		try {
+			if (Objects.isNull(parts)) {
+				parts = split(length);
+				Files.deleteIfExists(part.toPath());
+			}
+			try (RandomAccessFile raf = new RandomAccessFile(part, "rw")) {
+				raf.setLength(length);
+			}
+			save(state, length, parts);
+		
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			System.err.println("Failed to prepare the download of " + url);
+			return null;
+		}
+		List<CompletableFuture<Void>> fetches = new ArrayList<>();
+		
+		for (DownloadSegment segment : parts) {
+			if (!segment.isComplete()) {
+				fetches.add(CompletableFuture.runAsync(() -> fetch(url, part, segment), DispatchExecutors.getDefault()));
+			}
+		}
+		CompletableFuture<Void> all = CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[0]));
+		
+		while (true) {
+			try {
+				all.get(SAVE_INTERVAL, TimeUnit.MILLISECONDS);
+				break;
+			
+			} catch (TimeoutException ex) {
+				save(state, length, parts);
+			
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				save(state, length, parts);
+				return null;
+			
+			} catch (ExecutionException ex) {
+				ex.printStackTrace();
+				break;
+			}
+		}
+		save(state, length, parts);
+		
+		for (DownloadSegment segment : parts) {
+			if (!segment.isComplete()) {
+				System.err.println("Failed to download " + url + ", segment " + segment.getStart() + "-" + segment.getEnd()
+						+ " stopped at " + segment.getOffset() + ", run the download again to resume");
+				return null;
+			}
+		}
+		if (part.length() != length) {
+			System.err.println("Downloaded " + part.length() + " bytes of " + url + " while " + length + " were expected");
+			return null;
+		}
+		try {
+			Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.deleteIfExists(state.toPath());
+			return file;
+		
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Requests the first byte of a file to learn whether ranges are supported and how large the file is.
+	 * The body is streamed and closed right away, so a server ignoring the range doesn't get the whole file read into memory.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @return The file length or -1 when ranges aren't supported.
+	 */
+	private long probe(String url) {
+		GetRequest request = new GetRequest(url, 200); //Only a full response is left streaming, a range of one byte is read as usual
+		request.getHeaders().add("Range", "bytes=0-0");
+		request.getHeaders().add("Accept-Encoding", "identity"); //Ranges of encoded content don't add up to the file
+		request.setStreamBody(true);
+		
+		RequestResponse rr = client.dispatchRequest(request);
+		
+		if (rr.getResponseBody() instanceof StreamResponseBody) {
+			try {
+				((StreamResponseBody)rr.getResponseBody()).close();
+			
+			} catch (IOException ex) {
+				//Nothing to do, the connection is dropped either way
+			}
+		}
+		if (rr.getCode() != 206 || Objects.isNull(rr.getHeaders())) {
+			return -1;
+		}
+		String contentRange = rr.getHeaders().getValueIgnoreCase("Content-Range");
+		
+		if (Objects.isNull(contentRange) || contentRange.indexOf('/') < 0) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1).trim());
+		
+		} catch (NumberFormatException ex) { //The length is unknown when it's an asterisk
+			return -1;
+		}
+	}
+	
+	/**
+	 * Downloads a segment over its own connection, resuming from the last written byte when an attempt breaks off.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @param part The file the segments are written into.
+	 * 
+	 * @param segment The segment.
+	 */
+	private void fetch(String url, File part, DownloadSegment segment) {
+		HttpClient segmentClient = new HttpClient(client.getBrowser(), client.getProxy()
+				, client.getPolicies().toArray(new ConnectionPolicy[client.getPolicies().size()]));
+		segmentClient.getCookieJar().importCookies(client.getCookieJar().getCookies());
+		
+		int stalled = 0;
+		
+		while (!segment.isComplete() && stalled < MAX_STALLED_ATTEMPTS) {
+			long written = segment.getWritten();
+			
+			GetRequest request = new GetRequest(url, 206);
+			request.getHeaders().add("Range", segment.getRange());
+			request.getHeaders().add("Accept-Encoding", "identity");
+			request.setSavePath(part.getPath());
+			request.setDownloadSegment(segment);
+			
+			segmentClient.dispatchRequest(request);
+			
+			stalled = segment.getWritten() > written ? 0 : stalled + 1;
+		}
+	}
+	
+	/**
+	 * Splits a file into segments.
+	 * 
+	 * @param length The file length.
+	 * 
+	 * @return The segments.
+	 */
+	private List<DownloadSegment> split(long length) {
+		int amount = (int)Math.max(1, Math.min(segments, (length + MIN_SEGMENT_SIZE - 1) / MIN_SEGMENT_SIZE));
+		long size = (length + amount - 1) / amount;
+		
+		List<DownloadSegment> parts = new ArrayList<>();
+		
+		for (long start = 0; start < length; start += size) {
+			parts.add(new DownloadSegment(start, Math.min(start + size, length) - 1, 0));
+		}
+		return parts;
+	}
+	
+	/**
+	 * Loads the segments of an interrupted download.
+	 * 
+	 * @param state The file holding the segment progress.
+	 * 
+	 * @param part The file the segments are written into.
+	 * 
+	 * @param length The file length.
+	 * 
+	 * @return The segments or null when there's no download of the same file to resume.
+	 */
+	private static List<DownloadSegment> load(File state, File part, long length) {
+		if (!state.exists() || !part.exists()) {
+			return null;
+		}
+		try {
+			List<String> lines = Files.readAllLines(state.toPath(), StandardCharsets.UTF_8);
+			
+			if (lines.isEmpty() || Long.parseLong(lines.get(0).trim()) != length) {
+				return null;
+			}
+			List<DownloadSegment> parts = new ArrayList<>();
+			
+			for (String line : lines.subList(1, lines.size())) {
+				String[] args = line.trim().split(" ");
+				parts.add(new DownloadSegment(Long.parseLong(args[0]), Long.parseLong(args[1]), Long.parseLong(args[2])));
+			}
+			return parts.isEmpty() ? null : parts;
+		
+		} catch (IOException | RuntimeException ex) {
+			System.err.println("Failed to load download progress from " + state.getName() + ", starting over");
+			return null;
+		}
+	}
+	
+	/**
+	 * Saves the segment progress, replacing the earlier progress at once so a crash never leaves half of it behind.
+	 * 
+	 * @param state The file holding the segment progress.
+	 * 
+	 * @param length The file length.
+	 * 
+	 * @param parts The segments.
+	 */
+	private static synchronized void save(File state, long length, List<DownloadSegment> parts) {
+		StringBuilder sb = new StringBuilder().append(length).append("\n");
+		
+		for (DownloadSegment segment : parts) {
+			sb.append(segment.getStart()).append(" ").append(segment.getEnd()).append(" ").append(segment.getWritten()).append("\n");
+		}
+		File temp = new File(state.getPath() + ".tmp");
+		
+		try {
+			Files.write(temp.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+			Files.move(temp.toPath(), state.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+}
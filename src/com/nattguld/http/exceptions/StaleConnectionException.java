@@ -0,0 +1,31 @@
+package com.nattguld.http.exceptions;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+@SuppressWarnings("serial")
+public class StaleConnectionException extends NetException {
+
+	
+	/**
+	 * Creates a new stale connection exception.
+	 * 
+	 * @param message The message.
+	 */
+	public StaleConnectionException(String message) {
+		super(message);
+	}
+	
+	/**
+	 * Creates a new stale connection exception.
+	 * 
+	 * @param ex The exception.
+	 */
+	public StaleConnectionException(Exception ex) {
+		super(ex);
+	}
+	
+}
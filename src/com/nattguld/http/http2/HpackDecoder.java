@@ -0,0 +1,176 @@
+package com.nattguld.http.http2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nattguld.http.cfg.NetConfig;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class HpackDecoder {
+	
+	/**
+	 * The header table.
+	 */
+	private final HpackTable table;
+	
+	/**
+	 * The maximum dynamic table size the peer may use, as announced in our settings.
+	 */
+	private final int maxTableSize;
+	
+	/**
+	 * The position in the header block being decoded.
+	 */
+	private int pos;
+	
+	
+	/**
+	 * Creates a new decoder.
+	 * 
+	 * @param maxTableSize The maximum dynamic table size the peer may use.
+	 */
+	public HpackDecoder(int maxTableSize) {
+		this.table = new HpackTable(maxTableSize);
+		this.maxTableSize = maxTableSize;
+	}
+	
+	/**
+	 * Decodes a complete header block.
+	 * Every block has to be decoded, even for unknown streams, to keep the table in sync with the peer.
+	 * 
+	 * @param block The header block.
+	 * 
+	 * @param len The length of the header block.
+	 * 
+	 * @return The header fields as name and value pairs.
+	 * 
+	 * @throws Http2Exception
+	 */
+	public List<String[]> decode(byte[] block, int len) throws Http2Exception {
+		List<String[]> fields = new ArrayList<>();
+		int maxFields = NetConfig.getConfig().getMaxResponseHeaders() + 1; //Include the status pseudo header
+		pos = 0;
+		
+		while (pos < len) {
+			int b = block[pos] & 0xFF;
+			
+			if ((b & 0x80) != 0) { //Indexed field
+				fields.add(table.get(readInt(block, len, 7)));
+			
+			} else if ((b & 0xC0) == 0x40) { //Literal with incremental indexing
+				String[] field = readLiteral(block, len, 6);
+				table.add(field[0], field[1], field[0].length() + field[1].length());
+				fields.add(field);
+			
+			} else if ((b & 0xE0) == 0x20) { //Dynamic table size update
+				int size = readInt(block, len, 5);
+				
+				if (size > maxTableSize) {
+					throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Table size update exceeds " + maxTableSize);
+				}
+				table.setMaxSize(size);
+			
+			} else { //Literal without indexing or never indexed, both use a 4 bit prefix
+				fields.add(readLiteral(block, len, 4));
+			}
+			if (fields.size() > maxFields) {
+				throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Response exceeds " + (maxFields - 1) + " headers");
+			}
+		}
+		return fields;
+	}
+	
+	/**
+	 * Reads a literal field.
+	 * 
+	 * @param block The header block.
+	 * 
+	 * @param len The length of the header block.
+	 * 
+	 * @param prefix The bit length of the name index prefix.
+	 * 
+	 * @return The name and value.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private String[] readLiteral(byte[] block, int len, int prefix) throws Http2Exception {
+		int nameIndex = readInt(block, len, prefix);
+		String name = nameIndex == 0 ? readString(block, len) : table.get(nameIndex)[0];
+		return new String[] {name, readString(block, len)};
+	}
+	
+	/**
+	 * Reads a prefixed integer.
+	 * 
+	 * @param block The header block.
+	 * 
+	 * @param len The length of the header block.
+	 * 
+	 * @param prefix The bit length of the prefix.
+	 * 
+	 * @return The integer.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private int readInt(byte[] block, int len, int prefix) throws Http2Exception {
+		int max = (1 << prefix) - 1;
+		int value = block[pos++] & max;
+		
+		if (value < max) {
+			return value;
+		}
+		for (int shift = 0; shift <= 28; shift += 7) {
+			if (pos >= len) {
+				throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated integer in header block");
+			}
+			int b = block[pos++] & 0xFF;
+			value += (b & 0x7F) << shift;
+			
+			if (value < 0) {
+				break;
+			}
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Integer overflow in header block");
+	}
+	
+	/**
+	 * Reads a string literal.
+	 * 
+	 * @param block The header block.
+	 * 
+	 * @param len The length of the header block.
+	 * 
+	 * @return The string.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private String readString(byte[] block, int len) throws Http2Exception {
+		if (pos >= len) {
+			throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated string in header block");
+		}
+		boolean huffman = (block[pos] & 0x80) != 0;
+		int length = readInt(block, len, 7);
+		
+		if (length > len - pos) {
+			throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated string in header block");
+		}
+		int start = pos;
+		pos += length;
+		
+		if (huffman) {
+			byte[] decoded = Huffman.decode(block, start, length);
+			return new String(decoded, StandardCharsets.ISO_8859_1);
+		}
+		return new String(block, start, length, StandardCharsets.ISO_8859_1);
+	}
+
+}
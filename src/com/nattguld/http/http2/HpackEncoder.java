@@ -0,0 +1,193 @@
+package com.nattguld.http.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class HpackEncoder {
+	
+	/**
+	 * The dynamic table size we prefer to use at most.
+	 */
+	private static final int PREFERRED_TABLE_SIZE = 4096;
+	
+	/**
+	 * The header table.
+	 */
+	private final HpackTable table;
+	
+	/**
+	 * Whether a table size update has to be emitted at the start of the next block.
+	 */
+	private boolean sizeUpdatePending;
+	
+	
+	/**
+	 * Creates a new encoder.
+	 */
+	public HpackEncoder() {
+		this.table = new HpackTable(PREFERRED_TABLE_SIZE);
+	}
+	
+	/**
+	 * Applies the maximum table size announced by the peer.
+	 * 
+	 * @param maxTableSize The maximum table size in octets.
+	 */
+	public void setMaxTableSize(int maxTableSize) {
+		int size = Math.min(maxTableSize, PREFERRED_TABLE_SIZE);
+		
+		if (size == table.getMaxSize()) {
+			return;
+		}
+		table.setMaxSize(size);
+		sizeUpdatePending = true;
+	}
+	
+	/**
+	 * Encodes a header block.
+	 * Blocks must be sent in the order they're encoded as the peer mirrors the table.
+	 * 
+	 * @param fields The header fields as lower case name and value pairs.
+	 * 
+	 * @param out The output to write to.
+	 */
+	public void encode(List<String[]> fields, ByteArrayOutputStream out) {
+		if (sizeUpdatePending) {
+			writeInt(out, 0x20, 5, table.getMaxSize());
+			sizeUpdatePending = false;
+		}
+		for (String[] field : fields) {
+			String name = field[0];
+			String value = field[1];
+			
+			if (isSensitive(name)) { //Never indexed, so intermediaries won't compress them either
+				writeLiteral(out, 0x10, 4, name, value, table.find(name, ""));
+				continue;
+			}
+			int index = table.find(name, value);
+			
+			if (index > 0) {
+				writeInt(out, 0x80, 7, index);
+				continue;
+			}
+			if (!isIndexable(name)) {
+				writeLiteral(out, 0x00, 4, name, value, index);
+				continue;
+			}
+			byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+			
+			writeInt(out, 0x40, 6, -index);
+			
+			if (index == 0) {
+				writeString(out, nameBytes);
+			}
+			writeString(out, valueBytes);
+			table.add(name, value, nameBytes.length + valueBytes.length);
+		}
+	}
+	
+	/**
+	 * Writes a literal field without adding it to the table.
+	 * 
+	 * @param out The output.
+	 * 
+	 * @param pattern The representation pattern.
+	 * 
+	 * @param prefix The bit length of the name index prefix.
+	 * 
+	 * @param name The name.
+	 * 
+	 * @param value The value.
+	 * 
+	 * @param index The lookup result of the field.
+	 */
+	private static void writeLiteral(ByteArrayOutputStream out, int pattern, int prefix, String name, String value, int index) {
+		int nameIndex = index < 0 ? -index : index;
+		
+		writeInt(out, pattern, prefix, nameIndex);
+		
+		if (nameIndex == 0) {
+			writeString(out, name.getBytes(StandardCharsets.UTF_8));
+		}
+		writeString(out, value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Writes a string literal, Huffman encoded when that's shorter.
+	 * 
+	 * @param out The output.
+	 * 
+	 * @param data The octets of the string.
+	 */
+	private static void writeString(ByteArrayOutputStream out, byte[] data) {
+		int encodedLength = Huffman.encodedLength(data);
+		
+		if (encodedLength < data.length) {
+			writeInt(out, 0x80, 7, encodedLength);
+			Huffman.encode(data, out);
+			return;
+		}
+		writeInt(out, 0x00, 7, data.length);
+		out.write(data, 0, data.length);
+	}
+	
+	/**
+	 * Writes a prefixed integer.
+	 * 
+	 * @param out The output.
+	 * 
+	 * @param pattern The bits preceding the prefix.
+	 * 
+	 * @param prefix The bit length of the prefix.
+	 * 
+	 * @param value The integer.
+	 */
+	private static void writeInt(ByteArrayOutputStream out, int pattern, int prefix, int value) {
+		int max = (1 << prefix) - 1;
+		
+		if (value < max) {
+			out.write(pattern | value);
+			return;
+		}
+		out.write(pattern | max);
+		value -= max;
+		
+		while (value >= 0x80) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+	
+	/**
+	 * Retrieves whether a field carries credentials that must never be indexed.
+	 * 
+	 * @param name The name.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isSensitive(String name) {
+		return name.equals("authorization") || name.equals("proxy-authorization");
+	}
+	
+	/**
+	 * Retrieves whether a field is worth adding to the table.
+	 * Fields that change with nearly every request would only push out the reusable ones.
+	 * 
+	 * @param name The name.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isIndexable(String name) {
+		return !name.equals(":path") && !name.equals("content-length");
+	}
+
+}
@@ -0,0 +1,239 @@
+package com.nattguld.http.http2;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class HpackTable {
+	
+	/**
+	 * The static table entries, the first entry has index 1.
+	 */
+	private static final String[][] STATIC = {
+		{":authority", ""}, {":method", "GET"}, {":method", "POST"}, {":path", "/"}, {":path", "/index.html"},
+		{":scheme", "http"}, {":scheme", "https"}, {":status", "200"}, {":status", "204"}, {":status", "206"},
+		{":status", "304"}, {":status", "400"}, {":status", "404"}, {":status", "500"}, {"accept-charset", ""},
+		{"accept-encoding", "gzip, deflate"}, {"accept-language", ""}, {"accept-ranges", ""}, {"accept", ""},
+		{"access-control-allow-origin", ""}, {"age", ""}, {"allow", ""}, {"authorization", ""}, {"cache-control", ""},
+		{"content-disposition", ""}, {"content-encoding", ""}, {"content-language", ""}, {"content-length", ""},
+		{"content-location", ""}, {"content-range", ""}, {"content-type", ""}, {"cookie", ""}, {"date", ""},
+		{"etag", ""}, {"expect", ""}, {"expires", ""}, {"from", ""}, {"host", ""}, {"if-match", ""},
+		{"if-modified-since", ""}, {"if-none-match", ""}, {"if-range", ""}, {"if-unmodified-since", ""},
+		{"last-modified", ""}, {"link", ""}, {"location", ""}, {"max-forwards", ""}, {"proxy-authenticate", ""},
+		{"proxy-authorization", ""}, {"range", ""}, {"referer", ""}, {"refresh", ""}, {"retry-after", ""},
+		{"server", ""}, {"set-cookie", ""}, {"strict-transport-security", ""}, {"transfer-encoding", ""},
+		{"user-agent", ""}, {"vary", ""}, {"via", ""}, {"www-authenticate", ""}
+	};
+	
+	/**
+	 * Holds the static table index of every name, pointing at its first entry.
+	 */
+	private static final Map<String, Integer> STATIC_NAMES = new HashMap<>();
+	
+	/**
+	 * Holds the static table index of every name and value pair.
+	 */
+	private static final Map<String, Integer> STATIC_FIELDS = new HashMap<>();
+	
+	/**
+	 * The amount of overhead in octets every dynamic entry is accounted for.
+	 */
+	private static final int ENTRY_OVERHEAD = 32;
+	
+	static {
+		for (int i = STATIC.length - 1; i >= 0; i--) { //Iterated backwards so the lowest index of a name wins
+			STATIC_NAMES.put(STATIC[i][0], i + 1);
+			STATIC_FIELDS.put(STATIC[i][0] + '\0' + STATIC[i][1], i + 1);
+		}
+	}
+	
+	/**
+	 * Holds the dynamic table entries, most recently added first.
+	 */
+	private final Deque<Entry> entries;
+	
+	/**
+	 * The current size of the dynamic table in octets.
+	 */
+	private int size;
+	
+	/**
+	 * The maximum size of the dynamic table in octets.
+	 */
+	private int maxSize;
+	
+	
+	/**
+	 * Creates a new table.
+	 * 
+	 * @param maxSize The maximum size of the dynamic table in octets.
+	 */
+	public HpackTable(int maxSize) {
+		this.entries = new ArrayDeque<>();
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * Retrieves the entry at a given index.
+	 * 
+	 * @param index The index, static entries come first.
+	 * 
+	 * @return The name and value.
+	 * 
+	 * @throws Http2Exception
+	 */
+	public String[] get(int index) throws Http2Exception {
+		if (index < 1 || index > STATIC.length + entries.size()) {
+			throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Invalid header table index: " + index);
+		}
+		if (index <= STATIC.length) {
+			return STATIC[index - 1];
+		}
+		Iterator<Entry> it = entries.iterator();
+		Entry entry = null;
+		
+		for (int i = STATIC.length; i < index; i++) {
+			entry = it.next();
+		}
+		return new String[] {entry.name, entry.value};
+	}
+	
+	/**
+	 * Looks up a header field.
+	 * 
+	 * @param name The name.
+	 * 
+	 * @param value The value.
+	 * 
+	 * @return The index of a matching field, the negated index of an entry with a matching name or 0 when none matches.
+	 */
+	public int find(String name, String value) {
+		Integer staticField = STATIC_FIELDS.get(name + '\0' + value);
+		
+		if (Objects.nonNull(staticField)) {
+			return staticField;
+		}
+		int nameMatch = 0;
+		int index = STATIC.length;
+		
+		for (Entry entry : entries) {
+			index++;
+			
+			if (!entry.name.equals(name)) {
+				continue;
+			}
+			if (entry.value.equals(value)) {
+				return index;
+			}
+			if (nameMatch == 0) {
+				nameMatch = -index;
+			}
+		}
+		Integer staticName = STATIC_NAMES.get(name);
+		return Objects.nonNull(staticName) ? -staticName : nameMatch;
+	}
+	
+	/**
+	 * Adds an entry to the dynamic table, evicting the oldest entries to make room.
+	 * An entry larger than the table empties it without being added.
+	 * 
+	 * @param name The name.
+	 * 
+	 * @param value The value.
+	 * 
+	 * @param octets The length of the name and value in octets.
+	 */
+	public void add(String name, String value, int octets) {
+		int entrySize = octets + ENTRY_OVERHEAD;
+		
+		evict(maxSize - entrySize);
+		
+		if (entrySize > maxSize) {
+			return;
+		}
+		entries.addFirst(new Entry(name, value, entrySize));
+		size += entrySize;
+	}
+	
+	/**
+	 * Modifies the maximum size of the dynamic table.
+	 * 
+	 * @param maxSize The new maximum size in octets.
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		
+		evict(maxSize);
+	}
+	
+	/**
+	 * Retrieves the maximum size of the dynamic table.
+	 * 
+	 * @return The maximum size in octets.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * Evicts the oldest entries until the table fits a given size.
+	 * 
+	 * @param targetSize The size in octets.
+	 */
+	private void evict(int targetSize) {
+		while (size > Math.max(0, targetSize) && !entries.isEmpty()) {
+			size -= entries.removeLast().size;
+		}
+	}
+	
+	/**
+	 * 
+	 * @author randqm
+	 * 
+	 */
+	
+	private static class Entry {
+		
+		/**
+		 * The name.
+		 */
+		private final String name;
+		
+		/**
+		 * The value.
+		 */
+		private final String value;
+		
+		/**
+		 * The size accounted for in octets.
+		 */
+		private final int size;
+		
+		
+		/**
+		 * Creates a new entry.
+		 * 
+		 * @param name The name.
+		 * 
+		 * @param value The value.
+		 * 
+		 * @param size The size accounted for in octets.
+		 */
+		private Entry(String name, String value, int size) {
+			this.name = name;
+			this.value = value;
+			this.size = size;
+		}
+	
+	}
+
+}
@@ -0,0 +1,1230 @@
+package com.nattguld.http.http2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.nattguld.http.cfg.NetConfig;
+import com.nattguld.http.headers.Headers;
+import com.nattguld.http.pooling.PooledSocket;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class Http2Connection implements Runnable {
+	
+	/**
+	 * The protocol identifier negotiated through ALPN.
+	 */
+	public static final String PROTOCOL = "h2";
+	
+	/**
+	 * The client connection preface.
+	 */
+	private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+	
+	/**
+	 * The length of a frame header.
+	 */
+	private static final int FRAME_HEADER_LENGTH = 9;
+	
+	/**
+	 * The initial flow control window of connections and streams.
+	 */
+	private static final int DEFAULT_WINDOW_SIZE = 65535;
+	
+	/**
+	 * The largest frame payload accepted, we never announce more than the default.
+	 */
+	private static final int MAX_FRAME_SIZE = 16384;
+	
+	/**
+	 * The largest frame payload the peer may announce.
+	 */
+	private static final int MAX_ALLOWED_FRAME_SIZE = 16777215;
+	
+	/**
+	 * The largest flow control window allowed.
+	 */
+	private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+	
+	/**
+	 * The dynamic table size the peer's encoder may use.
+	 */
+	private static final int HEADER_TABLE_SIZE = 4096;
+	
+	/**
+	 * The data frame type.
+	 */
+	private static final int DATA = 0x0;
+	
+	/**
+	 * The headers frame type.
+	 */
+	private static final int HEADERS = 0x1;
+	
+	/**
+	 * The stream reset frame type.
+	 */
+	private static final int RST_STREAM = 0x3;
+	
+	/**
+	 * The settings frame type.
+	 */
+	private static final int SETTINGS = 0x4;
+	
+	/**
+	 * The push promise frame type.
+	 */
+	private static final int PUSH_PROMISE = 0x5;
+	
+	/**
+	 * The ping frame type.
+	 */
+	private static final int PING = 0x6;
+	
+	/**
+	 * The go away frame type.
+	 */
+	private static final int GOAWAY = 0x7;
+	
+	/**
+	 * The window update frame type.
+	 */
+	private static final int WINDOW_UPDATE = 0x8;
+	
+	/**
+	 * The continuation frame type.
+	 */
+	private static final int CONTINUATION = 0x9;
+	
+	/**
+	 * The flag marking the last frame of a stream.
+	 */
+	private static final int FLAG_END_STREAM = 0x1;
+	
+	/**
+	 * The flag marking an acknowledgement.
+	 */
+	private static final int FLAG_ACK = 0x1;
+	
+	/**
+	 * The flag marking the last frame of a header block.
+	 */
+	private static final int FLAG_END_HEADERS = 0x4;
+	
+	/**
+	 * The flag marking a padded frame.
+	 */
+	private static final int FLAG_PADDED = 0x8;
+	
+	/**
+	 * The flag marking headers carrying priority information.
+	 */
+	private static final int FLAG_PRIORITY = 0x20;
+	
+	/**
+	 * The header table size setting.
+	 */
+	private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+	
+	/**
+	 * The server push setting.
+	 */
+	private static final int SETTINGS_ENABLE_PUSH = 0x2;
+	
+	/**
+	 * The maximum concurrent streams setting.
+	 */
+	private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+	
+	/**
+	 * The initial window size setting.
+	 */
+	private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+	
+	/**
+	 * The maximum frame size setting.
+	 */
+	private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+	
+	/**
+	 * The request headers that only apply to HTTP/1 connections.
+	 */
+	private static final List<String> CONNECTION_HEADERS = List.of("host", "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+	
+	/**
+	 * The socket carrying the connection.
+	 */
+	private final PooledSocket socket;
+	
+	/**
+	 * The input stream.
+	 */
+	private final InputStream in;
+	
+	/**
+	 * The output stream.
+	 */
+	private final OutputStream out;
+	
+	/**
+	 * The header encoder, only used while holding the write lock.
+	 */
+	private final HpackEncoder encoder;
+	
+	/**
+	 * The header decoder, only used by the reader.
+	 */
+	private final HpackDecoder decoder;
+	
+	/**
+	 * Holds the open streams.
+	 */
+	private final Map<Integer, Http2Stream> streams;
+	
+	/**
+	 * The lock keeping frames from being interleaved.
+	 */
+	private final Object writeLock;
+	
+	/**
+	 * The receive window granted to each stream.
+	 */
+	private final int streamWindow;
+	
+	/**
+	 * The receive window granted to the connection.
+	 */
+	private final int connectionWindow;
+	
+	/**
+	 * Buffers the header block fragments of the headers being received.
+	 */
+	private final ByteArrayOutputStream headerBlock;
+	
+	/**
+	 * The stream the headers being received belong to, 0 when none are being received.
+	 */
+	private int headerStreamId;
+	
+	/**
+	 * Whether the headers being received end their stream.
+	 */
+	private boolean headerEndStream;
+	
+	/**
+	 * The identifier of the next stream.
+	 */
+	private int nextStreamId;
+	
+	/**
+	 * The maximum amount of concurrent streams the peer allows.
+	 */
+	private int maxConcurrentStreams;
+	
+	/**
+	 * The initial send window of new streams announced by the peer.
+	 */
+	private int initialWindowSize;
+	
+	/**
+	 * The largest frame payload the peer accepts.
+	 */
+	private int maxFrameSize;
+	
+	/**
+	 * The amount of bytes that may still be sent before the peer updates the connection window.
+	 */
+	private long sendWindow;
+	
+	/**
+	 * The amount of bytes the peer may still send before the connection window is updated.
+	 */
+	private long receiveWindow;
+	
+	/**
+	 * The amount of read bytes that have yet to be acknowledged with a connection window update.
+	 */
+	private int unacknowledged;
+	
+	/**
+	 * The amount of open streams.
+	 */
+	private int active;
+	
+	/**
+	 * The time the last stream closed.
+	 */
+	private long idleSince;
+	
+	/**
+	 * Whether new streams may be opened or not.
+	 */
+	private boolean accepting;
+	
+	/**
+	 * Whether the socket has been closed or not.
+	 */
+	private boolean closed;
+	
+	/**
+	 * The failure that ended the connection if any.
+	 */
+	private IOException failure;
+	
+	
+	/**
+	 * Creates a new HTTP/2 connection and sends the connection preface.
+	 * 
+	 * @param socket The socket that negotiated HTTP/2.
+	 * 
+	 * @throws IOException
+	 */
+	public Http2Connection(PooledSocket socket) throws IOException {
+		this.socket = socket;
+		this.in = new BufferedInputStream(socket.getInputStream(), MAX_FRAME_SIZE + FRAME_HEADER_LENGTH);
+		this.out = new BufferedOutputStream(socket.getOutputStream(), MAX_FRAME_SIZE + FRAME_HEADER_LENGTH);
+		this.encoder = new HpackEncoder();
+		this.decoder = new HpackDecoder(HEADER_TABLE_SIZE);
+		this.streams = new ConcurrentHashMap<>();
+		this.writeLock = new Object();
+		this.streamWindow = NetConfig.getConfig().getHttp2StreamWindow();
+		this.connectionWindow = Math.max(DEFAULT_WINDOW_SIZE, NetConfig.getConfig().getHttp2ConnectionWindow());
+		this.headerBlock = new ByteArrayOutputStream();
+		this.nextStreamId = 1;
+		this.maxConcurrentStreams = Integer.MAX_VALUE;
+		this.initialWindowSize = DEFAULT_WINDOW_SIZE;
+		this.maxFrameSize = MAX_FRAME_SIZE;
+		this.sendWindow = DEFAULT_WINDOW_SIZE;
+		this.receiveWindow = connectionWindow;
+		this.idleSince = System.currentTimeMillis();
+		this.accepting = true;
+		
+		socket.setReadTimeout(0); //The reader waits for frames as long as the connection lives, streams time out on their own
+		
+		synchronized (writeLock) {
+			out.write(PREFACE);
+			
+			ByteBuffer settings = ByteBuffer.allocate(12);
+			settings.putShort((short)SETTINGS_ENABLE_PUSH).putInt(0);
+			settings.putShort((short)SETTINGS_INITIAL_WINDOW_SIZE).putInt(streamWindow);
+			writeFrame(SETTINGS, 0, 0, settings.array());
+			
+			if (connectionWindow > DEFAULT_WINDOW_SIZE) {
+				writeFrame(WINDOW_UPDATE, 0, 0, intPayload(connectionWindow - DEFAULT_WINDOW_SIZE));
+			}
+			out.flush();
+		}
+		Thread reader = new Thread(this, "Http2-Reader-" + socket.getRoute());
+		reader.setDaemon(true);
+		reader.start();
+	}
+	
+	/**
+	 * Opens a new stream by sending the request headers.
+	 * 
+	 * @param fields The request header fields.
+	 * 
+	 * @param endStream Whether the request has no body.
+	 * 
+	 * @param readTimeout The read timeout of the stream in milliseconds.
+	 * 
+	 * @return The stream.
+	 * 
+	 * @throws IOException
+	 */
+	public Http2Stream openStream(List<String[]> fields, boolean endStream, int readTimeout) throws IOException {
+		synchronized (writeLock) {
+			Http2Stream stream = null;
+			int frameSize = 0;
+			
+			synchronized (this) {
+				if (Objects.nonNull(failure)) {
+					throw failure;
+				}
+				if (!accepting || active >= maxConcurrentStreams) {
+					throw new Http2Exception(Http2Exception.REFUSED_STREAM, "Connection does not accept new streams");
+				}
+				stream = new Http2Stream(this, nextStreamId, initialWindowSize, streamWindow, readTimeout);
+				streams.put(stream.getId(), stream);
+				frameSize = maxFrameSize;
+				active++;
+				nextStreamId += 2;
+				
+				if (nextStreamId < 0) { //Stream identifiers can't be reused, a new connection is required
+					accepting = false;
+				}
+			}
+			if (endStream) {
+				stream.closeLocal();
+			}
+			ByteArrayOutputStream block = new ByteArrayOutputStream(512);
+			encoder.encode(fields, block);
+			
+			try {
+				writeHeaderBlock(stream.getId(), block.toByteArray(), frameSize, endStream);
+				out.flush();
+			
+			} catch (IOException ex) {
+				fail(ex);
+				throw ex;
+			}
+			return stream;
+		}
+	}
+	
+	/**
+	 * Sends request body data, waiting for the flow control windows to open up when needed.
+	 * 
+	 * @param stream The stream.
+	 * 
+	 * @param buffer The data.
+	 * 
+	 * @param off The offset of the data.
+	 * 
+	 * @param len The length of the data.
+	 * 
+	 * @param endStream Whether the data ends the request.
+	 * 
+	 * @throws IOException
+	 */
+	protected void writeData(Http2Stream stream, byte[] buffer, int off, int len, boolean endStream) throws IOException {
+		if (endStream ? !stream.closeLocal() : stream.isLocalClosed()) {
+			if (endStream) {
+				return;
+			}
+			throw new Http2Exception(Http2Exception.STREAM_CLOSED, "Stream " + stream.getId() + " is closed for sending");
+		}
+		do {
+			int length = 0;
+			
+			synchronized (this) {
+				long window = 0;
+				
+				while (true) {
+					IOException ex = Objects.nonNull(failure) ? failure : stream.getFailure();
+					
+					if (Objects.nonNull(ex)) {
+						throw ex;
+					}
+					window = Math.min(sendWindow, stream.getSendWindow());
+					
+					if (len == 0 || window > 0) {
+						break;
+					}
+					awaitWindow(stream.getReadTimeout());
+				}
+				length = (int)Math.min(Math.min(len, window), maxFrameSize);
+				sendWindow -= length;
+				stream.adjustSendWindow(-length);
+			}
+			boolean last = endStream && length == len;
+			
+			synchronized (writeLock) {
+				try {
+					writeFrameHeader(length, DATA, last ? FLAG_END_STREAM : 0, stream.getId());
+					out.write(buffer, off, length);
+					out.flush();
+				
+				} catch (IOException ex) {
+					fail(ex);
+					throw ex;
+				}
+			}
+			off += length;
+			len -= length;
+		
+		} while (len > 0);
+	}
+	
+	/**
+	 * Waits for a flow control window to open up.
+	 * Must be called while holding the connection lock.
+	 * 
+	 * @param timeout The timeout in milliseconds.
+	 * 
+	 * @throws IOException
+	 */
+	private void awaitWindow(int timeout) throws IOException {
+		long start = System.currentTimeMillis();
+		
+		try {
+			wait(timeout);
+		
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the send window");
+		}
+		if (timeout > 0 && System.currentTimeMillis() - start >= timeout) {
+			throw new SocketTimeoutException("Send window remained closed for " + timeout + "ms");
+		}
+	}
+	
+	/**
+	 * Acknowledges data that has been read or discarded so the peer can send more.
+	 * 
+	 * @param stream The stream the data belonged to.
+	 * 
+	 * @param amount The amount of bytes.
+	 * 
+	 * @param streamLevel Whether the stream window should be updated as well.
+	 */
+	protected void consumed(Http2Stream stream, int amount, boolean streamLevel) {
+		if (amount <= 0) {
+			return;
+		}
+		int connectionIncrement = 0;
+		
+		synchronized (this) {
+			unacknowledged += amount;
+			
+			if (unacknowledged >= connectionWindow / 2) { //Update once half of the window has been consumed
+				connectionIncrement = unacknowledged;
+				receiveWindow += connectionIncrement;
+				unacknowledged = 0;
+			}
+		}
+		int streamIncrement = streamLevel ? stream.acknowledge(amount) : 0;
+		
+		try {
+			if (connectionIncrement > 0) {
+				writeControlFrame(WINDOW_UPDATE, 0, 0, intPayload(connectionIncrement));
+			}
+			if (streamIncrement > 0) {
+				writeControlFrame(WINDOW_UPDATE, 0, stream.getId(), intPayload(streamIncrement));
+			}
+		} catch (IOException ex) {
+			fail(ex);
+		}
+	}
+	
+	/**
+	 * Resets a stream.
+	 * 
+	 * @param stream The stream.
+	 * 
+	 * @param errorCode The error code.
+	 */
+	protected void reset(Http2Stream stream, int errorCode) {
+		try {
+			writeControlFrame(RST_STREAM, 0, stream.getId(), intPayload(errorCode));
+		
+		} catch (IOException ex) {
+			fail(ex);
+		}
+	}
+	
+	/**
+	 * Forgets a stream that has ended.
+	 * 
+	 * @param stream The stream.
+	 */
+	protected void streamClosed(Http2Stream stream) {
+		boolean close = false;
+		
+		synchronized (this) {
+			if (!streams.remove(stream.getId(), stream)) {
+				return;
+			}
+			active--;
+			
+			if (active == 0) {
+				idleSince = System.currentTimeMillis();
+				close = !accepting;
+			}
+			notifyAll();
+		}
+		if (close) {
+			shutdown();
+		}
+	}
+	
+	@Override
+	public void run() {
+		byte[] header = new byte[FRAME_HEADER_LENGTH];
+		
+		try {
+			while (true) {
+				readFully(header, FRAME_HEADER_LENGTH);
+				
+				int length = ((header[0] & 0xFF) << 16) | ((header[1] & 0xFF) << 8) | (header[2] & 0xFF);
+				int type = header[3] & 0xFF;
+				int flags = header[4] & 0xFF;
+				int streamId = ByteBuffer.wrap(header, 5, 4).getInt() & 0x7FFFFFFF;
+				
+				if (length > MAX_FRAME_SIZE) {
+					throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Frame of " + length + " bytes exceeds " + MAX_FRAME_SIZE);
+				}
+				byte[] payload = new byte[length];
+				readFully(payload, length);
+				
+				if (headerStreamId != 0 && type != CONTINUATION) {
+					throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Expected a continuation of the headers of stream " + headerStreamId);
+				}
+				switch (type) {
+				case DATA:
+					handleData(flags, streamId, payload);
+					break;
+				
+				case HEADERS:
+					handleHeaders(flags, streamId, payload);
+					break;
+				
+				case CONTINUATION:
+					handleContinuation(flags, streamId, payload);
+					break;
+				
+				case RST_STREAM:
+					handleReset(streamId, payload);
+					break;
+				
+				case SETTINGS:
+					handleSettings(flags, streamId, payload);
+					break;
+				
+				case PUSH_PROMISE:
+					throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Server push is disabled");
+				
+				case PING:
+					handlePing(flags, streamId, payload);
+					break;
+				
+				case GOAWAY:
+					handleGoAway(payload);
+					break;
+				
+				case WINDOW_UPDATE:
+					handleWindowUpdate(streamId, payload);
+					break;
+				
+				default: //Priority and unknown frames are ignored
+					break;
+				}
+			}
+		} catch (Http2Exception ex) {
+			goAway(ex.getErrorCode());
+			fail(ex);
+		
+		} catch (IOException ex) {
+			fail(ex);
+		}
+	}
+	
+	/**
+	 * Handles a data frame.
+	 * 
+	 * @param flags The flags.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private void handleData(int flags, int streamId, byte[] payload) throws Http2Exception {
+		if (streamId == 0) {
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Data frame without stream");
+		}
+		int off = 0;
+		int end = payload.length;
+		
+		if ((flags & FLAG_PADDED) != 0) {
+			end -= payload.length > 0 ? (payload[0] & 0xFF) : 1;
+			off = 1;
+		}
+		if (end < off) {
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Data frame padding exceeds its payload");
+		}
+		synchronized (this) {
+			receiveWindow -= payload.length;
+			
+			if (receiveWindow < 0) {
+				throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Connection receive window exceeded");
+			}
+		}
+		Http2Stream stream = streams.get(streamId);
+		
+		if (Objects.isNull(stream)) { //The stream has been cancelled, only the connection window is affected
+			consumed(null, payload.length, false);
+			return;
+		}
+		stream.receiveData(ByteBuffer.wrap(payload, off, end - off), payload.length, (flags & FLAG_END_STREAM) != 0);
+		
+		if (payload.length > end - off) { //Padding counts towards the windows but is never read
+			consumed(stream, payload.length - (end - off), true);
+		}
+	}
+	
+	/**
+	 * Handles a headers frame.
+	 * 
+	 * @param flags The flags.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private void handleHeaders(int flags, int streamId, byte[] payload) throws Http2Exception {
+		if (streamId == 0) {
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Headers frame without stream");
+		}
+		int off = 0;
+		int end = payload.length;
+		
+		if ((flags & FLAG_PADDED) != 0) {
+			end -= payload.length > 0 ? (payload[0] & 0xFF) : 1;
+			off = 1;
+		}
+		if ((flags & FLAG_PRIORITY) != 0) {
+			off += 5;
+		}
+		if (end < off) {
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Headers frame padding exceeds its payload");
+		}
+		headerBlock.reset();
+		headerBlock.write(payload, off, end - off);
+		headerStreamId = streamId;
+		headerEndStream = (flags & FLAG_END_STREAM) != 0;
+		
+		if ((flags & FLAG_END_HEADERS) != 0) {
+			finishHeaders();
+		}
+	}
+	
+	/**
+	 * Handles a continuation frame.
+	 * 
+	 * @param flags The flags.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private void handleContinuation(int flags, int streamId, byte[] payload) throws Http2Exception {
+		if (headerStreamId == 0 || streamId != headerStreamId) {
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Unexpected continuation frame on stream " + streamId);
+		}
+		long maxBlockSize = (long)NetConfig.getConfig().getMaxHeaderLineLength() * (NetConfig.getConfig().getMaxResponseHeaders() + 1);
+		
+		if (headerBlock.size() + payload.length > maxBlockSize) {
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Header block exceeds " + maxBlockSize + " bytes");
+		}
+		headerBlock.write(payload, 0, payload.length);
+		
+		if ((flags & FLAG_END_HEADERS) != 0) {
+			finishHeaders();
+		}
+	}
+	
+	/**
+	 * Decodes a complete header block and hands it to its stream.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private void finishHeaders() throws Http2Exception {
+		byte[] block = headerBlock.toByteArray();
+		List<String[]> fields = decoder.decode(block, block.length);
+		Http2Stream stream = streams.get(headerStreamId);
+		
+		headerStreamId = 0;
+		
+		if (Objects.nonNull(stream)) {
+			stream.receiveHeaders(fields, headerEndStream);
+		}
+	}
+	
+	/**
+	 * Handles a stream reset.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private void handleReset(int streamId, byte[] payload) throws Http2Exception {
+		if (payload.length != 4) {
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid reset frame size");
+		}
+		Http2Stream stream = streams.get(streamId);
+		
+		if (Objects.nonNull(stream)) {
+			int errorCode = ByteBuffer.wrap(payload).getInt();
+			stream.fail(new Http2Exception(errorCode, "Stream " + streamId + " reset by the server (error " + errorCode + ")"));
+		}
+	}
+	
+	/**
+	 * Handles a settings frame.
+	 * 
+	 * @param flags The flags.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws IOException
+	 */
+	private void handleSettings(int flags, int streamId, byte[] payload) throws IOException {
+		if (streamId != 0) {
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Settings frame on stream " + streamId);
+		}
+		if ((flags & FLAG_ACK) != 0) {
+			if (payload.length != 0) {
+				throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Settings acknowledgement with payload");
+			}
+			return;
+		}
+		if (payload.length % 6 != 0) {
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid settings frame size");
+		}
+		ByteBuffer settings = ByteBuffer.wrap(payload);
+		int tableSize = -1;
+		
+		synchronized (this) {
+			while (settings.hasRemaining()) {
+				int id = settings.getShort() & 0xFFFF;
+				int value = settings.getInt();
+				
+				switch (id) {
+				case SETTINGS_HEADER_TABLE_SIZE:
+					tableSize = value < 0 ? Integer.MAX_VALUE : value;
+					break;
+				
+				case SETTINGS_MAX_CONCURRENT_STREAMS:
+					maxConcurrentStreams = value < 0 ? Integer.MAX_VALUE : value;
+					break;
+				
+				case SETTINGS_INITIAL_WINDOW_SIZE:
+					if (value < 0) {
+						throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Initial window size exceeds " + MAX_WINDOW_SIZE);
+					}
+					int delta = value - initialWindowSize;
+					initialWindowSize = value;
+					
+					for (Http2Stream stream : streams.values()) { //Changes apply to the windows of the open streams as well
+						stream.adjustSendWindow(delta);
+						
+						if (stream.getSendWindow() > MAX_WINDOW_SIZE) {
+							throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Stream window exceeds " + MAX_WINDOW_SIZE);
+						}
+					}
+					break;
+				
+				case SETTINGS_MAX_FRAME_SIZE:
+					if (value < MAX_FRAME_SIZE || value > MAX_ALLOWED_FRAME_SIZE) {
+						throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid maximum frame size: " + value);
+					}
+					maxFrameSize = value;
+					break;
+				
+				default: //Unknown settings are ignored
+					break;
+				}
+			}
+			notifyAll();
+		}
+		synchronized (writeLock) {
+			if (tableSize >= 0) {
+				encoder.setMaxTableSize(tableSize);
+			}
+			writeFrameHeader(0, SETTINGS, FLAG_ACK, 0);
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Handles a ping frame.
+	 * 
+	 * @param flags The flags.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws IOException
+	 */
+	private void handlePing(int flags, int streamId, byte[] payload) throws IOException {
+		if (payload.length != 8) {
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid ping frame size");
+		}
+		if (streamId != 0) {
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Ping frame on stream " + streamId);
+		}
+		if ((flags & FLAG_ACK) == 0) {
+			writeControlFrame(PING, FLAG_ACK, 0, payload);
+		}
+	}
+	
+	/**
+	 * Handles a go away frame, streams the server didn't process fail with a retryable error.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private void handleGoAway(byte[] payload) throws Http2Exception {
+		if (payload.length < 8) {
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid go away frame size");
+		}
+		int lastStreamId = ByteBuffer.wrap(payload).getInt() & 0x7FFFFFFF;
+		List<Http2Stream> refused = new ArrayList<>();
+		
+		synchronized (this) {
+			accepting = false;
+			
+			for (Http2Stream stream : streams.values()) {
+				if (stream.getId() > lastStreamId) {
+					refused.add(stream);
+				}
+			}
+		}
+		for (Http2Stream stream : refused) {
+			stream.fail(new Http2Exception(Http2Exception.REFUSED_STREAM, "Stream " + stream.getId() + " was not processed before the connection shut down"));
+		}
+		synchronized (this) {
+			if (active > 0) {
+				return;
+			}
+		}
+		shutdown();
+	}
+	
+	/**
+	 * Handles a window update frame.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws Http2Exception
+	 */
+	private void handleWindowUpdate(int streamId, byte[] payload) throws Http2Exception {
+		if (payload.length != 4) {
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid window update frame size");
+		}
+		int increment = ByteBuffer.wrap(payload).getInt() & 0x7FFFFFFF;
+		Http2Stream stream = streamId == 0 ? null : streams.get(streamId);
+		
+		if (increment == 0) {
+			if (streamId == 0) {
+				throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Window update without increment");
+			}
+			if (Objects.nonNull(stream)) {
+				reset(stream, Http2Exception.PROTOCOL_ERROR);
+				stream.fail(new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Window update without increment on stream " + streamId));
+			}
+			return;
+		}
+		synchronized (this) {
+			if (streamId == 0) {
+				sendWindow += increment;
+				
+				if (sendWindow > MAX_WINDOW_SIZE) {
+					throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Connection window exceeds " + MAX_WINDOW_SIZE);
+				}
+			} else if (Objects.nonNull(stream)) {
+				stream.adjustSendWindow(increment);
+			}
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Ends the connection with a failure, failing all open streams.
+	 * 
+	 * @param ex The failure.
+	 */
+	private void fail(IOException ex) {
+		List<Http2Stream> open = null;
+		
+		synchronized (this) {
+			if (Objects.nonNull(failure)) {
+				return;
+			}
+			failure = ex;
+			accepting = false;
+			open = new ArrayList<>(streams.values());
+			notifyAll();
+		}
+		if (NetConfig.getConfig().isDebug() && !open.isEmpty()) {
+			System.err.println("[Http2] Connection to " + socket.getRoute() + " failed: " + ex.getMessage());
+		}
+		for (Http2Stream stream : open) {
+			stream.fail(ex);
+		}
+		closeSocket();
+	}
+	
+	/**
+	 * Stops accepting new streams and closes the connection once the open streams have ended.
+	 */
+	public void shutdown() {
+		synchronized (this) {
+			accepting = false;
+			
+			if (active > 0) {
+				return;
+			}
+		}
+		goAway(Http2Exception.NO_ERROR);
+		fail(new EOFException("Connection shut down"));
+	}
+	
+	/**
+	 * Notifies the peer that the connection is being closed.
+	 * 
+	 * @param errorCode The error code.
+	 */
+	private void goAway(int errorCode) {
+		try {
+			ByteBuffer payload = ByteBuffer.allocate(8);
+			payload.putInt(0).putInt(errorCode); //No server initiated streams are ever processed
+			writeControlFrame(GOAWAY, 0, 0, payload.array());
+		
+		} catch (IOException ex) {
+			//Nothing to do, the connection is being closed either way
+		}
+	}
+	
+	/**
+	 * Closes the underlaying socket once.
+	 */
+	private void closeSocket() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		try {
+			socket.setReusable(false).close();
+		
+		} catch (IOException ex) {
+			//Nothing to do, the socket is discarded either way
+		}
+	}
+	
+	/**
+	 * Writes a complete header block, split over continuation frames when needed.
+	 * Must be called while holding the write lock.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param block The encoded header block.
+	 * 
+	 * @param frameSize The largest frame payload the peer accepts.
+	 * 
+	 * @param endStream Whether the headers end the stream.
+	 * 
+	 * @throws IOException
+	 */
+	private void writeHeaderBlock(int streamId, byte[] block, int frameSize, boolean endStream) throws IOException {
+		int off = 0;
+		
+		do {
+			int length = Math.min(block.length - off, frameSize);
+			boolean last = off + length == block.length;
+			int flags = last ? FLAG_END_HEADERS : 0;
+			
+			if (off == 0) {
+				writeFrameHeader(length, HEADERS, flags | (endStream ? FLAG_END_STREAM : 0), streamId);
+			} else {
+				writeFrameHeader(length, CONTINUATION, flags, streamId);
+			}
+			out.write(block, off, length);
+			off += length;
+		
+		} while (off < block.length);
+	}
+	
+	/**
+	 * Writes and flushes a control frame.
+	 * 
+	 * @param type The frame type.
+	 * 
+	 * @param flags The flags.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws IOException
+	 */
+	private void writeControlFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+		synchronized (writeLock) {
+			writeFrame(type, flags, streamId, payload);
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Writes a frame without flushing, must be called while holding the write lock.
+	 * 
+	 * @param type The frame type.
+	 * 
+	 * @param flags The flags.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @param payload The payload.
+	 * 
+	 * @throws IOException
+	 */
+	private void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+		writeFrameHeader(payload.length, type, flags, streamId);
+		out.write(payload);
+	}
+	
+	/**
+	 * Writes a frame header, must be called while holding the write lock.
+	 * 
+	 * @param length The payload length.
+	 * 
+	 * @param type The frame type.
+	 * 
+	 * @param flags The flags.
+	 * 
+	 * @param streamId The stream identifier.
+	 * 
+	 * @throws IOException
+	 */
+	private void writeFrameHeader(int length, int type, int flags, int streamId) throws IOException {
+		out.write(length >>> 16);
+		out.write(length >>> 8);
+		out.write(length);
+		out.write(type);
+		out.write(flags);
+		out.write(streamId >>> 24);
+		out.write(streamId >>> 16);
+		out.write(streamId >>> 8);
+		out.write(streamId);
+	}
+	
+	/**
+	 * Reads an exact amount of bytes.
+	 * 
+	 * @param buffer The buffer.
+	 * 
+	 * @param length The amount of bytes.
+	 * 
+	 * @throws IOException
+	 */
+	private void readFully(byte[] buffer, int length) throws IOException {
+		int off = 0;
+		
+		while (off < length) {
+			int read = in.read(buffer, off, length - off);
+			
+			if (read < 0) {
+				throw new EOFException("Connection closed by the server");
+			}
+			off += read;
+		}
+	}
+	
+	/**
+	 * Creates a 4 byte payload.
+	 * 
+	 * @param value The value.
+	 * 
+	 * @return The payload.
+	 */
+	private static byte[] intPayload(int value) {
+		return ByteBuffer.allocate(4).putInt(value).array();
+	}
+	
+	/**
+	 * Retrieves whether new streams can be opened or not.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean hasCapacity() {
+		return accepting && Objects.isNull(failure) && active < maxConcurrentStreams;
+	}
+	
+	/**
+	 * Retrieves whether the connection still accepts new streams at all.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean isUsable() {
+		return accepting && Objects.isNull(failure);
+	}
+	
+	/**
+	 * Retrieves whether the connection has been without streams for too long.
+	 * 
+	 * @param now The current time.
+	 * 
+	 * @param maxIdle The maximum idle time in milliseconds.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean isExpired(long now, long maxIdle) {
+		return active == 0 && now - idleSince >= maxIdle;
+	}
+	
+	/**
+	 * Retrieves the amount of open streams.
+	 * 
+	 * @return The amount of streams.
+	 */
+	public synchronized int getActiveStreams() {
+		return active;
+	}
+	
+	/**
+	 * Converts HTTP/1 style request headers into HTTP/2 header fields.
+	 * The pseudo headers come first, names are lower case and connection specific headers are dropped.
+	 * 
+	 * @param method The request method.
+	 * 
+	 * @param authority The host and optional port.
+	 * 
+	 * @param path The path and query.
+	 * 
+	 * @param headers The request headers.
+	 * 
+	 * @return The header fields.
+	 */
+	public static List<String[]> createRequestFields(String method, String authority, String path, Headers headers) {
+		List<String[]> fields = new ArrayList<>(headers.getHeaders().size() + 4);
+		fields.add(new String[] {":method", method});
+		fields.add(new String[] {":scheme", "https"});
+		fields.add(new String[] {":authority", authority});
+		fields.add(new String[] {":path", path});
+		
+		for (Entry<String, String> header : headers.getHeaders().entrySet()) {
+			String name = header.getKey().toLowerCase();
+			
+			if (!CONNECTION_HEADERS.contains(name)) {
+				fields.add(new String[] {name, header.getValue()});
+			}
+		}
+		return fields;
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.nattguld.http.http2;
+
+import com.nattguld.http.exceptions.NetException;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+@SuppressWarnings("serial")
+public class Http2Exception extends NetException {
+	
+	/**
+	 * The graceful shutdown code.
+	 */
+	public static final int NO_ERROR = 0x0;
+	
+	/**
+	 * The unspecific protocol violation code.
+	 */
+	public static final int PROTOCOL_ERROR = 0x1;
+	
+	/**
+	 * The unexpected internal error code.
+	 */
+	public static final int INTERNAL_ERROR = 0x2;
+	
+	/**
+	 * The flow control violation code.
+	 */
+	public static final int FLOW_CONTROL_ERROR = 0x3;
+	
+	/**
+	 * The code for frames received on a half closed stream.
+	 */
+	public static final int STREAM_CLOSED = 0x5;
+	
+	/**
+	 * The invalid frame size code.
+	 */
+	public static final int FRAME_SIZE_ERROR = 0x6;
+	
+	/**
+	 * The code for streams refused before any processing.
+	 */
+	public static final int REFUSED_STREAM = 0x7;
+	
+	/**
+	 * The code for streams that are no longer needed.
+	 */
+	public static final int CANCEL = 0x8;
+	
+	/**
+	 * The header compression failure code.
+	 */
+	public static final int COMPRESSION_ERROR = 0x9;
+	
+	/**
+	 * The error code.
+	 */
+	private final int errorCode;
+	
+	
+	/**
+	 * Creates a new HTTP/2 exception.
+	 * 
+	 * @param errorCode The error code.
+	 * 
+	 * @param message The message.
+	 */
+	public Http2Exception(int errorCode, String message) {
+		super(message);
+		
+		this.errorCode = errorCode;
+	}
+	
+	/**
+	 * Retrieves the error code.
+	 * 
+	 * @return The error code.
+	 */
+	public int getErrorCode() {
+		return errorCode;
+	}
+	
+	/**
+	 * Retrieves whether the request was never processed by the server and can safely be retried.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isRetryable() {
+		return errorCode == REFUSED_STREAM;
+	}
+
+}
@@ -0,0 +1,497 @@
+package com.nattguld.http.http2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class Http2Stream implements AutoCloseable {
+	
+	/**
+	 * The connection carrying the stream.
+	 */
+	private final Http2Connection connection;
+	
+	/**
+	 * The stream identifier.
+	 */
+	private final int id;
+	
+	/**
+	 * The read timeout in milliseconds, 0 to wait indefinitely.
+	 */
+	private final int readTimeout;
+	
+	/**
+	 * Holds the received data that has yet to be read.
+	 */
+	private final Deque<ByteBuffer> received;
+	
+	/**
+	 * The input stream.
+	 */
+	private final InputStream in;
+	
+	/**
+	 * The output stream.
+	 */
+	private final OutputStream out;
+	
+	/**
+	 * The final response header fields.
+	 */
+	private List<String[]> headers;
+	
+	/**
+	 * The trailer fields received after the data.
+	 */
+	private List<String[]> trailers;
+	
+	/**
+	 * The receive window granted to the peer.
+	 */
+	private final int windowSize;
+	
+	/**
+	 * The amount of bytes the peer may still send before the window is updated.
+	 */
+	private long receiveWindow;
+	
+	/**
+	 * The amount of read bytes that have yet to be acknowledged with a window update.
+	 */
+	private int unacknowledged;
+	
+	/**
+	 * The amount of bytes that may still be sent before the peer updates the window.
+	 * Guarded by the connection as it's shared with the connection window.
+	 */
+	private long sendWindow;
+	
+	/**
+	 * Whether the end of the request has been sent or not.
+	 */
+	private boolean localClosed;
+	
+	/**
+	 * Whether the end of the response has been received or not.
+	 */
+	private boolean remoteClosed;
+	
+	/**
+	 * The failure that ended the stream if any.
+	 */
+	private IOException failure;
+	
+	
+	/**
+	 * Creates a new stream.
+	 * 
+	 * @param connection The connection carrying the stream.
+	 * 
+	 * @param id The stream identifier.
+	 * 
+	 * @param sendWindow The initial send window.
+	 * 
+	 * @param windowSize The receive window granted to the peer.
+	 * 
+	 * @param readTimeout The read timeout in milliseconds.
+	 */
+	protected Http2Stream(Http2Connection connection, int id, long sendWindow, int windowSize, int readTimeout) {
+		this.connection = connection;
+		this.id = id;
+		this.sendWindow = sendWindow;
+		this.windowSize = windowSize;
+		this.receiveWindow = windowSize;
+		this.readTimeout = readTimeout;
+		this.received = new ArrayDeque<>();
+		this.in = new StreamInputStream();
+		this.out = new StreamOutputStream();
+	}
+	
+	/**
+	 * Handles a received header block.
+	 * Informational responses are skipped, a block after the final headers holds the trailers.
+	 * 
+	 * @param fields The header fields.
+	 * 
+	 * @param endStream Whether the block ends the stream.
+	 */
+	protected synchronized void receiveHeaders(List<String[]> fields, boolean endStream) {
+		if (Objects.isNull(headers)) {
+			if (!isInformational(fields)) {
+				headers = fields;
+			}
+		} else {
+			trailers = fields;
+		}
+		if (endStream) {
+			remoteClosed = true;
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Handles received data.
+	 * 
+	 * @param data The data.
+	 * 
+	 * @param flowLength The length of the frame counted towards the window, including padding.
+	 * 
+	 * @param endStream Whether the data ends the stream.
+	 * 
+	 * @throws Http2Exception
+	 */
+	protected void receiveData(ByteBuffer data, int flowLength, boolean endStream) throws Http2Exception {
+		int discarded = 0;
+		
+		synchronized (this) {
+			receiveWindow -= flowLength;
+			
+			if (receiveWindow < 0) {
+				throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Stream " + id + " exceeded its receive window");
+			}
+			if (Objects.isNull(headers)) {
+				throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Data received before the headers on stream " + id);
+			}
+			if (Objects.isNull(failure)) {
+				if (data.hasRemaining()) {
+					received.addLast(data);
+				}
+			} else { //Cancelled locally, the data only counts towards the connection window
+				discarded = data.remaining();
+			}
+			if (endStream) {
+				remoteClosed = true;
+			}
+			notifyAll();
+		}
+		if (discarded > 0) {
+			connection.consumed(this, discarded, false);
+		}
+	}
+	
+	/**
+	 * Ends the stream with a failure.
+	 * Data that has yet to be read is discarded.
+	 * 
+	 * @param ex The failure.
+	 */
+	protected void fail(IOException ex) {
+		int discarded = 0;
+		
+		synchronized (this) {
+			if (Objects.nonNull(failure)) {
+				return;
+			}
+			failure = ex;
+			localClosed = true;
+			remoteClosed = true;
+			
+			for (ByteBuffer data : received) {
+				discarded += data.remaining();
+			}
+			received.clear();
+			notifyAll();
+		}
+		connection.consumed(this, discarded, false);
+		connection.streamClosed(this);
+	}
+	
+	/**
+	 * Waits for the final response headers.
+	 * 
+	 * @return The header fields.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized List<String[]> awaitHeaders() throws IOException {
+		while (Objects.isNull(headers)) {
+			if (Objects.nonNull(failure)) {
+				throw failure;
+			}
+			if (remoteClosed) {
+				throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Stream " + id + " ended without response headers");
+			}
+			await();
+		}
+		return headers;
+	}
+	
+	/**
+	 * Waits for a change in the stream state.
+	 * Must be called while holding the stream lock.
+	 * 
+	 * @throws IOException
+	 */
+	private void await() throws IOException {
+		long start = System.currentTimeMillis();
+		
+		try {
+			wait(readTimeout);
+		
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for stream " + id);
+		}
+		if (readTimeout > 0 && System.currentTimeMillis() - start >= readTimeout) {
+			throw new SocketTimeoutException("Stream " + id + " timed out after " + readTimeout + "ms");
+		}
+	}
+	
+	/**
+	 * Marks the end of the request as sent.
+	 * 
+	 * @return Whether the stream was still open for sending.
+	 */
+	protected synchronized boolean closeLocal() {
+		if (localClosed) {
+			return false;
+		}
+		localClosed = true;
+		return true;
+	}
+	
+	/**
+	 * Retrieves whether the end of the request has been sent or not.
+	 * 
+	 * @return The result.
+	 */
+	protected synchronized boolean isLocalClosed() {
+		return localClosed;
+	}
+	
+	/**
+	 * Aborts the stream when it hasn't been completed yet.
+	 */
+	@Override
+	public void close() {
+		boolean ended = false;
+		
+		synchronized (this) {
+			ended = Objects.nonNull(failure) || (localClosed && remoteClosed);
+		}
+		if (ended) {
+			connection.streamClosed(this);
+			return;
+		}
+		connection.reset(this, Http2Exception.CANCEL);
+		fail(new Http2Exception(Http2Exception.CANCEL, "Stream " + id + " cancelled"));
+	}
+	
+	/**
+	 * Grants the peer more room to send after data has been read.
+	 * 
+	 * @param amount The amount of bytes read.
+	 * 
+	 * @return The window increment to send or 0 when it's not worth an update yet.
+	 */
+	protected synchronized int acknowledge(int amount) {
+		if (remoteClosed) { //The peer won't send anymore so there's no point in updating the window
+			return 0;
+		}
+		unacknowledged += amount;
+		
+		if (unacknowledged < windowSize / 2) { //Update once half of the window has been consumed
+			return 0;
+		}
+		int increment = unacknowledged;
+		receiveWindow += increment;
+		unacknowledged = 0;
+		return increment;
+	}
+	
+	/**
+	 * Modifies the send window, must be called while holding the connection lock.
+	 * 
+	 * @param delta The change in bytes.
+	 */
+	protected void adjustSendWindow(long delta) {
+		this.sendWindow += delta;
+	}
+	
+	/**
+	 * Retrieves the send window, must be called while holding the connection lock.
+	 * 
+	 * @return The send window.
+	 */
+	protected long getSendWindow() {
+		return sendWindow;
+	}
+	
+	/**
+	 * Retrieves the failure that ended the stream if any.
+	 * 
+	 * @return The failure.
+	 */
+	protected synchronized IOException getFailure() {
+		return failure;
+	}
+	
+	/**
+	 * Retrieves the stream identifier.
+	 * 
+	 * @return The identifier.
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Retrieves the read timeout.
+	 * 
+	 * @return The timeout in milliseconds.
+	 */
+	protected int getReadTimeout() {
+		return readTimeout;
+	}
+	
+	/**
+	 * Retrieves the input stream carrying the response body.
+	 * 
+	 * @return The input stream.
+	 */
+	public InputStream getInputStream() {
+		return in;
+	}
+	
+	/**
+	 * Retrieves the output stream carrying the request body.
+	 * Closing it ends the request.
+	 * 
+	 * @return The output stream.
+	 */
+	public OutputStream getOutputStream() {
+		return out;
+	}
+	
+	/**
+	 * Retrieves the trailer fields received after the data.
+	 * 
+	 * @return The trailer fields.
+	 */
+	public synchronized List<String[]> getTrailers() {
+		return Objects.isNull(trailers) ? Collections.emptyList() : trailers;
+	}
+	
+	/**
+	 * Retrieves whether the response has been received and read up to its end.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean isComplete() {
+		return remoteClosed && Objects.isNull(failure) && received.isEmpty();
+	}
+	
+	/**
+	 * Retrieves whether a header block belongs to an informational response.
+	 * 
+	 * @param fields The header fields.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isInformational(List<String[]> fields) {
+		for (String[] field : fields) {
+			if (field[0].equals(":status")) {
+				return field[1].startsWith("1");
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * 
+	 * @author randqm
+	 * 
+	 */
+	
+	private class StreamInputStream extends InputStream {
+		
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+		
+		@Override
+		public int read(byte[] buffer, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			int read = 0;
+			
+			synchronized (Http2Stream.this) {
+				while (received.isEmpty()) {
+					if (Objects.nonNull(failure)) {
+						throw failure;
+					}
+					if (remoteClosed) {
+						return -1;
+					}
+					await();
+				}
+				ByteBuffer data = received.peekFirst();
+				read = Math.min(len, data.remaining());
+				data.get(buffer, off, read);
+				
+				if (!data.hasRemaining()) {
+					received.pollFirst();
+				}
+			}
+			connection.consumed(Http2Stream.this, read, true);
+			return read;
+		}
+		
+		@Override
+		public int available() {
+			synchronized (Http2Stream.this) {
+				return received.isEmpty() ? 0 : received.peekFirst().remaining();
+			}
+		}
+		
+		@Override
+		public void close() {
+			//The stream is closed by its owner once the exchange is done
+		}
+	
+	}
+	
+	/**
+	 * 
+	 * @author randqm
+	 * 
+	 */
+	
+	private class StreamOutputStream extends OutputStream {
+		
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte)b}, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] buffer, int off, int len) throws IOException {
+			connection.writeData(Http2Stream.this, buffer, off, len, false);
+		}
+		
+		@Override
+		public void close() throws IOException {
+			connection.writeData(Http2Stream.this, new byte[0], 0, 0, true);
+		}
+	
+	}
+
+}
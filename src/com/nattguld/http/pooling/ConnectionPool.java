@@ -0,0 +1,578 @@
+package com.nattguld.http.pooling;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.nattguld.http.cfg.HttpVersion;
+import com.nattguld.http.cfg.NetConfig;
+import com.nattguld.http.exceptions.NetException;
+import com.nattguld.http.headers.Headers;
+import com.nattguld.http.http2.Http2Connection;
+import com.nattguld.http.response.ResponseStatus;
+import com.nattguld.http.socket.ITestSocket;
+import com.nattguld.util.maths.Maths;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ConnectionPool {
+	
+	/**
+	 * The interval in milliseconds at which idle sockets are checked for expiration.
+	 */
+	private static final long EVICTION_INTERVAL = 5000L;
+	
+	/**
+	 * The pool instance.
+	 */
+	private static ConnectionPool singleton;
+	
+	/**
+	 * Holds the idle sockets per route, least recently used first.
+	 */
+	private final Map<ConnectionRoute, Deque<PooledSocket>> idleSockets;
+	
+	/**
+	 * Holds the amount of leased sockets per route, reserved ones included.
+	 */
+	private final Map<ConnectionRoute, Integer> leasedSockets;
+	
+	/**
+	 * Holds the shared HTTP/2 connection per route.
+	 */
+	private final Map<ConnectionRoute, Http2Connection> multiplexed;
+	
+	/**
+	 * The eviction scheduler.
+	 */
+	private final ScheduledExecutorService evictor;
+	
+	/**
+	 * The lock guarding the pool state, waiting on it doesn't pin virtual threads.
+	 */
+	private final ReentrantLock lock;
+	
+	/**
+	 * Signalled when a leased socket is handed back.
+	 */
+	private final Condition released;
+	
+	/**
+	 * The amount of idle sockets.
+	 */
+	private int idle;
+	
+	/**
+	 * The amount of leased sockets, reserved ones included.
+	 */
+	private int leased;
+	
+	
+	/**
+	 * Creates a new connection pool.
+	 */
+	private ConnectionPool() {
+		this.idleSockets = new HashMap<>();
+		this.leasedSockets = new HashMap<>();
+		this.multiplexed = new HashMap<>();
+		this.lock = new ReentrantLock();
+		this.released = lock.newCondition();
+		this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ConnectionPool-Evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		this.evictor.scheduleWithFixedDelay(this::evictExpired, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Attempts to lease an idle socket for a given route.
+	 * 
+	 * @param route The route.
+	 * 
+	 * @return The socket or null when none is available.
+	 */
+	private PooledSocket acquire(ConnectionRoute route) {
+		long maxIdle = getMaxIdleTime();
+		
+		while (true) {
+			PooledSocket socket = null;
+			
+			lock.lock();
+			
+			try {
+				Deque<PooledSocket> sockets = idleSockets.get(route);
+				
+				if (Objects.isNull(sockets) || sockets.isEmpty()) {
+					return null;
+				}
+				socket = sockets.pollLast(); //The most recently used socket is the most likely to still be alive
+				idle--;
+				
+				if (sockets.isEmpty()) {
+					idleSockets.remove(route);
+				}
+				addLeased(route, 1);
+			} finally {
+				lock.unlock();
+			}
+			if (!socket.isExpired(System.currentTimeMillis(), maxIdle) && socket.isAlive()) {
+				socket.lease();
+				
+				if (NetConfig.getConfig().isDebug()) {
+					System.out.println("[ConnectionPool] Reusing connection to " + route + " (exchanges: " + socket.getExchanges() + ")");
+				}
+				return socket;
+			}
+			lock.lock();
+			
+			try {
+				addLeased(route, -1);
+			} finally {
+				lock.unlock();
+			}
+			socket.destroy();
+		}
+	}
+	
+	/**
+	 * Leases an idle socket of a route or reserves room for a new connection to it.
+	 * When the leased sockets of the route reach the route cap this waits for one to be handed back,
+	 * an idle socket of the route is closed instead when it can't be reused.
+	 * The reservation is taken over by registering the connected socket or handed back by cancelling it.
+	 * 
+	 * @param route The route.
+	 * 
+	 * @param reuse Whether an idle socket may be reused or not.
+	 * 
+	 * @param timeout The maximum time to wait in milliseconds.
+	 * 
+	 * @return The idle socket or null when room for a new connection was reserved.
+	 * 
+	 * @throws IOException
+	 */
+	public PooledSocket lease(ConnectionRoute route, boolean reuse, long timeout) throws IOException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		
+		while (true) {
+			if (reuse) {
+				PooledSocket pooled = acquire(route);
+				
+				if (Objects.nonNull(pooled)) {
+					return pooled;
+				}
+			}
+			PooledSocket evicted = null;
+			boolean reserved = false;
+			
+			lock.lock();
+			
+			try {
+				int maxPerRoute = NetConfig.getConfig().getMaxConnectionsPerRoute();
+				int leasedOfRoute = leasedSockets.getOrDefault(route, 0);
+				Deque<PooledSocket> sockets = idleSockets.get(route);
+				
+				if (leasedOfRoute >= maxPerRoute) {
+					long remaining = deadline - System.nanoTime();
+					
+					if (remaining <= 0L) {
+						throw new NetException("No connection to " + route + " came free within " + timeout + "ms");
+					}
+					released.awaitNanos(remaining);
+					
+				} else if (!reuse || Objects.isNull(sockets)) { //Otherwise a socket was handed back in the meantime, which is tried first
+					if (Objects.nonNull(sockets) && sockets.size() + leasedOfRoute >= maxPerRoute) {
+						evicted = sockets.pollFirst();
+						idle--;
+						
+						if (sockets.isEmpty()) {
+							idleSockets.remove(route);
+						}
+					}
+					addLeased(route, 1);
+					reserved = true;
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a connection to " + route);
+				
+			} finally {
+				lock.unlock();
+			}
+			if (Objects.nonNull(evicted)) {
+				evicted.destroy();
+			}
+			if (reserved) {
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Hands back the room reserved for a connection that couldn't be established.
+	 * 
+	 * @param route The route.
+	 */
+	public void cancel(ConnectionRoute route) {
+		lock.lock();
+		
+		try {
+			addLeased(route, -1);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Registers a freshly connected socket with the pool, taking over the room reserved for it.
+	 * Idle sockets of other routes are closed when the global cap is reached.
+	 * 
+	 * @param route The route.
+	 * 
+	 * @param socket The connected socket.
+	 * 
+	 * @return The pooled socket.
+	 */
+	public PooledSocket register(ConnectionRoute route, ITestSocket socket) {
+		PooledSocket pooled = new PooledSocket(this, route, socket);
+		pooled.lease();
+		
+		List<PooledSocket> evicted = new ArrayList<>();
+		
+		lock.lock();
+		
+		try {
+			while (idle > 0 && (leased + idle) > NetConfig.getConfig().getMaxConnections()) {
+				evicted.add(pollOldestIdle());
+			}
+		} finally {
+			lock.unlock();
+		}
+		evicted.forEach(PooledSocket::destroy);
+		return pooled;
+	}
+	
+	/**
+	 * Hands a leased socket back to the pool.
+	 * The socket is closed when it isn't reusable or when the route or global cap is reached.
+	 * Both the idle and the leased sockets of a route count towards the route cap.
+	 * 
+	 * @param socket The socket.
+	 */
+	protected void release(PooledSocket socket) {
+		ConnectionRoute route = socket.getRoute();
+		boolean pooled = false;
+		
+		lock.lock();
+		
+		try {
+			addLeased(route, -1);
+			
+			if (socket.isReusable() && socket.isOpen() && (leased + idle) < NetConfig.getConfig().getMaxConnections()) {
+				Deque<PooledSocket> sockets = idleSockets.get(route);
+				int open = (Objects.isNull(sockets) ? 0 : sockets.size()) + leasedSockets.getOrDefault(route, 0);
+				
+				if (open < NetConfig.getConfig().getMaxConnectionsPerRoute()) {
+					if (Objects.isNull(sockets)) {
+						sockets = new ArrayDeque<>();
+						idleSockets.put(route, sockets);
+					}
+					socket.idle();
+					sockets.offerLast(socket);
+					idle++;
+					pooled = true;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (!pooled) {
+			socket.destroy();
+		}
+	}
+	
+	/**
+	 * Retrieves the shared HTTP/2 connection of a route when it can take another stream.
+	 * 
+	 * @param route The route.
+	 * 
+	 * @return The connection or null when none is available.
+	 */
+	public Http2Connection acquireMultiplexed(ConnectionRoute route) {
+		Http2Connection connection = null;
+		
+		lock.lock();
+		
+		try {
+			connection = multiplexed.get(route);
+			
+			if (Objects.isNull(connection)) {
+				return null;
+			}
+			if (!connection.isUsable()) {
+				multiplexed.remove(route);
+				return null;
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (!connection.hasCapacity()) {
+			return null;
+		}
+		if (NetConfig.getConfig().isDebug()) {
+			System.out.println("[ConnectionPool] Multiplexing over connection to " + route + " (streams: " + connection.getActiveStreams() + ")");
+		}
+		return connection;
+	}
+	
+	/**
+	 * Turns a freshly connected socket that negotiated HTTP/2 into the shared connection of its route.
+	 * A connection it replaces finishes its open streams before closing.
+	 * 
+	 * @param route The route.
+	 * 
+	 * @param socket The socket.
+	 * 
+	 * @return The connection.
+	 * 
+	 * @throws IOException
+	 */
+	public Http2Connection registerMultiplexed(ConnectionRoute route, PooledSocket socket) throws IOException {
+		Http2Connection connection = new Http2Connection(socket);
+		Http2Connection replaced = null;
+		
+		lock.lock();
+		
+		try {
+			replaced = multiplexed.put(route, connection);
+		} finally {
+			lock.unlock();
+		}
+		if (Objects.nonNull(replaced)) {
+			replaced.shutdown();
+		}
+		return connection;
+	}
+	
+	/**
+	 * Closes the idle sockets that exceeded their keep-alive time.
+	 */
+	public void evictExpired() {
+		long now = System.currentTimeMillis();
+		long maxIdle = getMaxIdleTime();
+		List<PooledSocket> evicted = new ArrayList<>();
+		
+		List<Http2Connection> expired = new ArrayList<>();
+		
+		lock.lock();
+		
+		try {
+			Iterator<Entry<ConnectionRoute, Deque<PooledSocket>>> it = idleSockets.entrySet().iterator();
+			
+			while (it.hasNext()) {
+				Deque<PooledSocket> sockets = it.next().getValue();
+				
+				while (!sockets.isEmpty() && sockets.peekFirst().isExpired(now, maxIdle)) {
+					evicted.add(sockets.pollFirst());
+					idle--;
+				}
+				if (sockets.isEmpty()) {
+					it.remove();
+				}
+			}
+			Iterator<Http2Connection> connections = multiplexed.values().iterator();
+			
+			while (connections.hasNext()) {
+				Http2Connection connection = connections.next();
+				
+				if (!connection.isUsable() || connection.isExpired(now, maxIdle)) {
+					expired.add(connection);
+					connections.remove();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		evicted.forEach(PooledSocket::destroy);
+		expired.forEach(Http2Connection::shutdown);
+	}
+	
+	/**
+	 * Closes all idle sockets and HTTP/2 connections.
+	 */
+	public void closeIdle() {
+		List<PooledSocket> evicted = new ArrayList<>();
+		
+		List<Http2Connection> connections = null;
+		
+		lock.lock();
+		
+		try {
+			idleSockets.values().forEach(evicted::addAll);
+			idleSockets.clear();
+			idle = 0;
+			connections = new ArrayList<>(multiplexed.values());
+			multiplexed.clear();
+		} finally {
+			lock.unlock();
+		}
+		evicted.forEach(PooledSocket::destroy);
+		connections.forEach(Http2Connection::shutdown); //Connections with open streams close once those have ended
+	}
+	
+	/**
+	 * Modifies the amount of leased sockets of a route, waking those waiting for room when it drops.
+	 * Must be called while holding the pool lock.
+	 * 
+	 * @param route The route.
+	 * 
+	 * @param delta The amount to add.
+	 */
+	private void addLeased(ConnectionRoute route, int delta) {
+		leased += delta;
+		
+		if (leasedSockets.merge(route, delta, Integer::sum) <= 0) {
+			leasedSockets.remove(route);
+		}
+		if (delta < 0) {
+			released.signalAll();
+		}
+	}
+	
+	/**
+	 * Removes the idle socket that has been idle the longest across all routes.
+	 * Must be called while holding the pool lock.
+	 * 
+	 * @return The socket.
+	 */
+	private PooledSocket pollOldestIdle() {
+		Deque<PooledSocket> oldest = null;
+		ConnectionRoute oldestRoute = null;
+		
+		for (Entry<ConnectionRoute, Deque<PooledSocket>> entry : idleSockets.entrySet()) {
+			if (Objects.isNull(oldest) || entry.getValue().peekFirst().getIdleSince() < oldest.peekFirst().getIdleSince()) {
+				oldest = entry.getValue();
+				oldestRoute = entry.getKey();
+			}
+		}
+		PooledSocket socket = oldest.pollFirst();
+		idle--;
+		
+		if (oldest.isEmpty()) {
+			idleSockets.remove(oldestRoute);
+		}
+		return socket;
+	}
+	
+	/**
+	 * Retrieves the amount of idle sockets.
+	 * 
+	 * @return The amount of idle sockets.
+	 */
+	public int getIdleCount() {
+		lock.lock();
+		
+		try {
+			return idle;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Retrieves the amount of leased sockets.
+	 * 
+	 * @return The amount of leased sockets.
+	 */
+	public int getLeasedCount() {
+		lock.lock();
+		
+		try {
+			return leased;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Retrieves the maximum idle time in milliseconds.
+	 * 
+	 * @return The maximum idle time.
+	 */
+	private static long getMaxIdleTime() {
+		return NetConfig.getConfig().getKeepAliveTimeout() * 1000L;
+	}
+	
+	/**
+	 * Retrieves whether the connection of a response can be kept open for further exchanges.
+	 * This does not take the body framing into account.
+	 * 
+	 * @param rs The response status.
+	 * 
+	 * @param headers The response headers.
+	 * 
+	 * @return The result.
+	 */
+	public static boolean isPersistent(ResponseStatus rs, Headers headers) {
+		String connection = headers.getValueIgnoreCase("Connection");
+		
+		if (rs.getHttpVersion() == HttpVersion.HTTP_1_0) {
+			return Objects.nonNull(connection) && connection.toLowerCase().contains("keep-alive");
+		}
+		return Objects.isNull(connection) || !connection.toLowerCase().contains("close");
+	}
+	
+	/**
+	 * Retrieves the keep-alive timeout announced by the server.
+	 * 
+	 * @param headers The response headers.
+	 * 
+	 * @return The timeout in milliseconds or -1 when none was announced.
+	 */
+	public static long getKeepAliveTimeout(Headers headers) {
+		String keepAlive = headers.getValueIgnoreCase("Keep-Alive");
+		
+		if (Objects.isNull(keepAlive)) {
+			return -1L;
+		}
+		for (String param : keepAlive.split(",")) {
+			String trim = param.trim();
+			
+			if (trim.toLowerCase().startsWith("timeout=")) {
+				int timeout = Maths.parseInt(trim.substring(8).trim(), -1);
+				return timeout > 0 ? timeout * 1000L : -1L;
+			}
+		}
+		return -1L;
+	}
+	
+	/**
+	 * Retrieves the singleton instance.
+	 * 
+	 * @return The singleton instance.
+	 */
+	public static synchronized ConnectionPool getSingleton() {
+		if (Objects.isNull(singleton)) {
+			singleton = new ConnectionPool();
+		}
+		return singleton;
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.nattguld.http.pooling;
+
+import java.util.Objects;
+
+import com.nattguld.http.proxies.HttpProxy;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ConnectionRoute {
+	
+	/**
+	 * The proxy address or null for direct connections.
+	 */
+	private final String proxyAddress;
+	
+	/**
+	 * The proxy url without credentials for logging purposes.
+	 */
+	private final String proxyUrl;
+	
+	/**
+	 * The target host.
+	 */
+	private final String host;
+	
+	/**
+	 * The target port.
+	 */
+	private final int port;
+	
+	/**
+	 * Whether the route uses SSL or not.
+	 */
+	private final boolean ssl;
+	
+	
+	/**
+	 * Creates a new connection route.
+	 * 
+	 * @param proxy The proxy if any.
+	 * 
+	 * @param host The target host.
+	 * 
+	 * @param port The target port.
+	 * 
+	 * @param ssl Whether the route uses SSL or not.
+	 */
+	public ConnectionRoute(HttpProxy proxy, String host, int port, boolean ssl) {
+		this.proxyAddress = Objects.isNull(proxy) ? null : proxy.toString();
+		this.proxyUrl = Objects.isNull(proxy) ? null : proxy.getUrl();
+		this.host = host.toLowerCase();
+		this.port = port;
+		this.ssl = ssl;
+	}
+	
+	/**
+	 * Retrieves the proxy address.
+	 * 
+	 * @return The proxy address.
+	 */
+	public String getProxyAddress() {
+		return proxyAddress;
+	}
+	
+	/**
+	 * Retrieves the target host.
+	 * 
+	 * @return The target host.
+	 */
+	public String getHost() {
+		return host;
+	}
+	
+	/**
+	 * Retrieves the target port.
+	 * 
+	 * @return The target port.
+	 */
+	public int getPort() {
+		return port;
+	}
+	
+	/**
+	 * Retrieves whether the route uses SSL or not.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isSSL() {
+		return ssl;
+	}
+	
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof ConnectionRoute)) {
+			return false;
+		}
+		ConnectionRoute route = (ConnectionRoute)other;
+		return port == route.port && ssl == route.ssl
+				&& host.equals(route.host) && Objects.equals(proxyAddress, route.proxyAddress);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(proxyAddress, host, port, ssl);
+	}
+	
+	@Override
+	public String toString() {
+		return (ssl ? "https://" : "http://") + host + ":" + port + (Objects.isNull(proxyUrl) ? "" : " via " + proxyUrl);
+	}
+
+}
@@ -0,0 +1,230 @@
+package com.nattguld.http.pooling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import com.nattguld.http.socket.ITestSocket;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class PooledSocket implements ITestSocket {
+	
+	/**
+	 * The pool owning the socket.
+	 */
+	private final ConnectionPool pool;
+	
+	/**
+	 * The route the socket is connected to.
+	 */
+	private final ConnectionRoute route;
+	
+	/**
+	 * The underlaying socket.
+	 */
+	private final ITestSocket delegate;
+	
+	/**
+	 * The amount of exchanges performed over the socket.
+	 */
+	private int exchanges;
+	
+	/**
+	 * The time the socket was last returned to the pool.
+	 */
+	private long idleSince;
+	
+	/**
+	 * The keep-alive timeout announced by the server in milliseconds.
+	 */
+	private long keepAliveTimeout;
+	
+	/**
+	 * Whether the socket can be returned to the pool after the current exchange.
+	 */
+	private boolean reusable;
+	
+	/**
+	 * Whether the socket has been handed back for the current lease.
+	 */
+	private boolean released;
+	
+	
+	/**
+	 * Creates a new pooled socket.
+	 * 
+	 * @param pool The pool owning the socket.
+	 * 
+	 * @param route The route the socket is connected to.
+	 * 
+	 * @param delegate The underlaying socket.
+	 */
+	protected PooledSocket(ConnectionPool pool, ConnectionRoute route, ITestSocket delegate) {
+		this.pool = pool;
+		this.route = route;
+		this.delegate = delegate;
+		this.keepAliveTimeout = -1L;
+	}
+	
+	/**
+	 * Marks the socket as leased.
+	 */
+	protected void lease() {
+		this.exchanges++;
+		this.reusable = false;
+		this.released = false;
+	}
+	
+	/**
+	 * Marks the socket as idle.
+	 */
+	protected void idle() {
+		this.idleSince = System.currentTimeMillis();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (released) {
+			return;
+		}
+		released = true;
+		pool.release(this);
+	}
+	
+	/**
+	 * Closes the underlaying socket.
+	 */
+	protected void destroy() {
+		try {
+			delegate.close();
+		
+		} catch (Exception ex) {
+			//Nothing to do, the socket is discarded either way
+		}
+	}
+	
+	/**
+	 * Retrieves whether the socket has been idle for too long.
+	 * 
+	 * @param now The current time.
+	 * 
+	 * @param maxIdle The maximum idle time in milliseconds.
+	 * 
+	 * @return The result.
+	 */
+	protected boolean isExpired(long now, long maxIdle) {
+		long timeout = keepAliveTimeout > 0 ? Math.min(keepAliveTimeout, maxIdle) : maxIdle;
+		return now - idleSince >= timeout;
+	}
+	
+	/**
+	 * Modifies whether the socket can be returned to the pool after the current exchange.
+	 * 
+	 * @param reusable The new state.
+	 * 
+	 * @return The socket.
+	 */
+	public PooledSocket setReusable(boolean reusable) {
+		this.reusable = reusable;
+		return this;
+	}
+	
+	/**
+	 * Retrieves whether the socket can be returned to the pool after the current exchange.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isReusable() {
+		return reusable;
+	}
+	
+	/**
+	 * Modifies the keep-alive timeout announced by the server.
+	 * 
+	 * @param keepAliveTimeout The new timeout in milliseconds.
+	 * 
+	 * @return The socket.
+	 */
+	public PooledSocket setKeepAliveTimeout(long keepAliveTimeout) {
+		this.keepAliveTimeout = keepAliveTimeout;
+		return this;
+	}
+	
+	/**
+	 * Retrieves whether the socket was reused from an earlier exchange.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isReused() {
+		return exchanges > 1;
+	}
+	
+	/**
+	 * Retrieves the amount of exchanges performed over the socket.
+	 * 
+	 * @return The amount of exchanges.
+	 */
+	public int getExchanges() {
+		return exchanges;
+	}
+	
+	/**
+	 * Retrieves the time the socket was last returned to the pool.
+	 * 
+	 * @return The time.
+	 */
+	protected long getIdleSince() {
+		return idleSince;
+	}
+	
+	/**
+	 * Retrieves the route the socket is connected to.
+	 * 
+	 * @return The route.
+	 */
+	public ConnectionRoute getRoute() {
+		return route;
+	}
+	
+	@Override
+	public Socket getSocket() {
+		return delegate.getSocket();
+	}
+	
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return delegate.getInputStream();
+	}
+	
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return delegate.getOutputStream();
+	}
+	
+	@Override
+	public void setReadTimeout(int timeout) throws IOException {
+		delegate.setReadTimeout(timeout);
+	}
+	
+	@Override
+	public String getApplicationProtocol() {
+		return delegate.getApplicationProtocol();
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return delegate.isOpen();
+	}
+	
+	@Override
+	public boolean isAlive() {
+		return delegate.isAlive();
+	}
+
+}
@@ -6,6 +6,8 @@ import java.util.Objects;
 import com.nattguld.data.json.JsonReader;
 import com.nattguld.data.json.JsonResource;
 import com.nattguld.data.json.JsonWriter;
+import com.nattguld.http.DataCounter;
+import com.nattguld.http.cfg.NetConfig;
 import com.nattguld.http.proxies.cfg.LocalProxyConfig;
 import com.nattguld.util.maths.Maths;
 
@@ -52,6 +54,16 @@ public class HttpProxy extends JsonResource {
 	 */
 	private ProxyState state;
 	
+	/**
+	 * The traffic sent through the proxy since it was loaded.
+	 */
+	private final DataCounter dataCounter = new DataCounter(true);
+	
+	/**
+	 * The proxy health.
+	 */
+	private final ProxyHealth health;
+	
 	
 	/**
 	 * Creates a new proxy.
@@ -154,6 +166,7 @@ public class HttpProxy extends JsonResource {
 		this.port = port;
 		this.authCreds = authCreds;
 		this.state = ProxyState.ONLINE;
+		this.health = new ProxyHealth();
 	}
 	
 	/**
@@ -171,6 +184,7 @@ public class HttpProxy extends JsonResource {
 		this.port = getReader().getAsInt("port");
 		this.authCreds = (ProxyAuthCredentials)getReader().getAsObject("auth_credentials", ProxyAuthCredentials.class, null);
 		this.state = (ProxyState)getReader().getAsObject("state", ProxyState.class, ProxyState.ONLINE);
+		this.health = (ProxyHealth)getReader().getAsObject("health", ProxyHealth.class, new ProxyHealth());
 	}
 	
 	@Override
@@ -182,6 +196,7 @@ public class HttpProxy extends JsonResource {
 		writer.write("port", port);
 		writer.write("auth_credentials", authCreds);
 		writer.write("state", state);
+		writer.write("health", health);
 	}
 	
 	@Override
@@ -206,7 +221,7 @@ public class HttpProxy extends JsonResource {
 	 * 
 	 * @return The proxy.
 	 */
-	public HttpProxy setState(ProxyState state) {
+	public synchronized HttpProxy setState(ProxyState state) {
 		this.state = state;
 		return this;
 	}
@@ -216,10 +231,95 @@ public class HttpProxy extends JsonResource {
 	 * 
 	 * @return The proxy state.
 	 */
-	public ProxyState getState() {
+	public synchronized ProxyState getState() {
 		return state;
 	}
 	
+	/**
+	 * Registers the outcome of an attempt through the proxy, which moves the proxy between states.
+	 * 
+	 * @param success Whether a response was received.
+	 */
+	public synchronized void registerAttempt(boolean success) {
+		ProxyState next = health.registerAttempt(state, success);
+		
+		if (next != state && NetConfig.getConfig().isDebug()) {
+			System.out.println("[Proxy] " + getUrl() + " went from " + state.getName() + " to " + next.getName());
+		}
+		this.state = next;
+	}
+	
+	/**
+	 * Retrieves whether the proxy can be picked, a proxy that's down can once its backoff passed.
+	 * Unlike checking whether it's available this doesn't claim the probe, so proxies that are looked at but not picked keep theirs.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean isSelectable() {
+		switch (state) {
+		case ONLINE:
+		case ISSUES:
+			return true;
+			
+		case DOWN:
+			return health.isProbeDue();
+			
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Retrieves whether the proxy can take an attempt, claiming the probe of a proxy that's down.
+	 * A proxy that's down takes a single probe once its backoff passed, proxies set as blacklisted or ghosted take none.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean isAvailable() {
+		switch (state) {
+		case ONLINE:
+		case ISSUES:
+			return true;
+			
+		case DOWN:
+			return health.claimProbe();
+			
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Reserves a connection slot on the proxy.
+	 * 
+	 * @param user The user.
+	 * 
+	 * @param unique Whether the user may only hold one slot.
+	 * 
+	 * @return The lease or null when there's no room or the user already holds a slot while unique.
+	 */
+	public ProxyLease reserve(String user, boolean unique) {
+		return lCfg.reserve(this, user, unique);
+	}
+	
+	/**
+	 * Retrieves the proxy health.
+	 * 
+	 * @return The proxy health.
+	 */
+	public ProxyHealth getHealth() {
+		return health;
+	}
+	
+	/**
+	 * Retrieves the traffic sent through the proxy since it was loaded.
+	 * 
+	 * @return The data counter.
+	 */
+	public DataCounter getDataCounter() {
+		return dataCounter;
+	}
+	
 	/**
 	 * Retrieves the local config.
 	 * 
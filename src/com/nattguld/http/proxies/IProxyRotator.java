@@ -0,0 +1,21 @@
+package com.nattguld.http.proxies;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public interface IProxyRotator {
+	
+	
+	/**
+	 * Switches away from a proxy that failed to reach a host.
+	 * 
+	 * @param failed The proxy that failed.
+	 * 
+	 * @return The proxy to use instead, null when there's none.
+	 */
+	public HttpProxy rotate(HttpProxy failed);
+
+}
@@ -0,0 +1,273 @@
+package com.nattguld.http.proxies;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ProxyHealth {
+	
+	/**
+	 * The weight of the latest sample in the averages.
+	 */
+	private static final double SAMPLE_WEIGHT = 0.1D;
+	
+	/**
+	 * The amount of failed attempts in a row after which the proxy is taken down.
+	 */
+	private static final int FAILURE_THRESHOLD = 3;
+	
+	/**
+	 * The time in milliseconds a proxy stays down the first time.
+	 */
+	private static final long BASE_BACKOFF = 30000L;
+	
+	/**
+	 * The longest time in milliseconds a proxy stays down.
+	 */
+	private static final long MAX_BACKOFF = 1800000L;
+	
+	/**
+	 * The time in milliseconds a probe has to report back before another one is let through.
+	 */
+	private static final long PROBE_WINDOW = 60000L;
+	
+	/**
+	 * The reliability below which a proxy has issues.
+	 */
+	private static final double ISSUES_THRESHOLD = 0.5D;
+	
+	/**
+	 * The reliability from which a proxy with issues is online again.
+	 */
+	private static final double RECOVERY_THRESHOLD = 0.8D;
+	
+	/**
+	 * The recent share of attempts that received a response.
+	 */
+	private double successRate = 1D;
+	
+	/**
+	 * The recent share of responses that were proxy or server errors.
+	 */
+	private double errorRate;
+	
+	/**
+	 * The average time in milliseconds to connect to the proxy.
+	 */
+	private double connectLatency;
+	
+	/**
+	 * The average time in milliseconds of SSL handshakes through the proxy.
+	 */
+	private double handshakeLatency;
+	
+	/**
+	 * The amount of tunnels the proxy refused or broke off.
+	 */
+	private int connectFailures;
+	
+	/**
+	 * The amount of failed attempts in a row.
+	 */
+	private int consecutiveFailures;
+	
+	/**
+	 * The time in milliseconds the proxy stays down, doubled each time a probe fails.
+	 */
+	private long backoff;
+	
+	/**
+	 * The time at which a proxy that's down takes a probe.
+	 */
+	private long retryAt;
+	
+	
+	/**
+	 * Registers the time it took to connect to the proxy.
+	 * 
+	 * @param millis The time in milliseconds.
+	 */
+	public synchronized void registerConnect(long millis) {
+		connectLatency = average(connectLatency, millis);
+	}
+	
+	/**
+	 * Registers the time an SSL handshake through the proxy took.
+	 * 
+	 * @param millis The time in milliseconds.
+	 */
+	public synchronized void registerHandshake(long millis) {
+		handshakeLatency = average(handshakeLatency, millis);
+	}
+	
+	/**
+	 * Registers a tunnel the proxy refused or broke off.
+	 */
+	public synchronized void registerConnectFailure() {
+		connectFailures++;
+	}
+	
+	/**
+	 * Registers the status code of a response received through the proxy.
+	 * 
+	 * @param code The status code.
+	 */
+	public synchronized void registerResponse(int code) {
+		boolean error = code == 407 || code >= 500;
+		errorRate += ((error ? 1D : 0D) - errorRate) * SAMPLE_WEIGHT;
+	}
+	
+	/**
+	 * Registers the outcome of an attempt through the proxy and moves the proxy to its next state.
+	 * A proxy goes down after a few failures in a row, once its backoff passed a single probe decides whether it comes back or stays down twice as long.
+	 * 
+	 * @param state The current state.
+	 * 
+	 * @param success Whether a response was received.
+	 * 
+	 * @return The next state.
+	 */
+	public synchronized ProxyState registerAttempt(ProxyState state, boolean success) {
+		successRate += ((success ? 1D : 0D) - successRate) * SAMPLE_WEIGHT;
+		consecutiveFailures = success ? 0 : consecutiveFailures + 1;
+		
+		if (state == ProxyState.BLACKLISTED || state == ProxyState.GHOSTED) { //Set by hand, never changed here
+			return state;
+		}
+		if (success) {
+			if (state == ProxyState.DOWN) {
+				backoff = 0L;
+				retryAt = 0L;
+				return getReliability() >= ISSUES_THRESHOLD ? ProxyState.ONLINE : ProxyState.ISSUES;
+			}
+			if (state == ProxyState.ISSUES) {
+				return getReliability() >= RECOVERY_THRESHOLD ? ProxyState.ONLINE : ProxyState.ISSUES;
+			}
+			return getReliability() < ISSUES_THRESHOLD ? ProxyState.ISSUES : state;
+		}
+		if (state == ProxyState.DOWN) { //The probe failed
+			backoff = Math.min(MAX_BACKOFF, Math.max(BASE_BACKOFF, backoff * 2));
+			retryAt = System.currentTimeMillis() + backoff;
+			return ProxyState.DOWN;
+		}
+		if (consecutiveFailures >= FAILURE_THRESHOLD) {
+			backoff = BASE_BACKOFF;
+			retryAt = System.currentTimeMillis() + backoff;
+			return ProxyState.DOWN;
+		}
+		return getReliability() < ISSUES_THRESHOLD ? ProxyState.ISSUES : state;
+	}
+	
+	/**
+	 * Retrieves whether a proxy that's down may be probed, without claiming the probe.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean isProbeDue() {
+		return System.currentTimeMillis() >= retryAt;
+	}
+	
+	/**
+	 * Claims the probe of a proxy that's down, which is available once its backoff passed.
+	 * The next probe is let through after a while in case the claimed one is never attempted.
+	 * 
+	 * @return Whether the probe was claimed.
+	 */
+	public synchronized boolean claimProbe() {
+		long now = System.currentTimeMillis();
+		
+		if (now < retryAt) {
+			return false;
+		}
+		retryAt = now + PROBE_WINDOW;
+		return true;
+	}
+	
+	/**
+	 * Retrieves the share of attempts that received a response without a proxy or server error.
+	 * 
+	 * @return The reliability, from 0 to 1.
+	 */
+	public synchronized double getReliability() {
+		return successRate * (1D - errorRate);
+	}
+	
+	/**
+	 * Retrieves the health score used to weigh the proxy against others, the reliability lowered by slow connects and handshakes.
+	 * 
+	 * @return The score, from 0 to 1.
+	 */
+	public synchronized double getScore() {
+		return getReliability() / (1D + ((connectLatency + handshakeLatency) / 1000D));
+	}
+	
+	/**
+	 * Retrieves the average time in milliseconds to connect to the proxy.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public synchronized double getConnectLatency() {
+		return connectLatency;
+	}
+	
+	/**
+	 * Retrieves the average time in milliseconds of SSL handshakes through the proxy.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public synchronized double getHandshakeLatency() {
+		return handshakeLatency;
+	}
+	
+	/**
+	 * Retrieves the amount of tunnels the proxy refused or broke off.
+	 * 
+	 * @return The amount.
+	 */
+	public synchronized int getConnectFailures() {
+		return connectFailures;
+	}
+	
+	/**
+	 * Retrieves the recent share of responses that were proxy or server errors.
+	 * 
+	 * @return The error rate, from 0 to 1.
+	 */
+	public synchronized double getErrorRate() {
+		return errorRate;
+	}
+	
+	/**
+	 * Retrieves the recent share of attempts that received a response.
+	 * 
+	 * @return The success rate, from 0 to 1.
+	 */
+	public synchronized double getSuccessRate() {
+		return successRate;
+	}
+	
+	/**
+	 * Retrieves the time at which a proxy that's down takes a probe.
+	 * 
+	 * @return The time.
+	 */
+	public synchronized long getRetryAt() {
+		return retryAt;
+	}
+	
+	/**
+	 * Adds a sample to an average, the first sample becomes the average.
+	 * 
+	 * @param average The average.
+	 * 
+	 * @param sample The sample.
+	 * 
+	 * @return The new average.
+	 */
+	private static double average(double average, double sample) {
+		return average <= 0D ? sample : average + ((sample - average) * SAMPLE_WEIGHT);
+	}
+
+}
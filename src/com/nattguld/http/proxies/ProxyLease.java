@@ -0,0 +1,136 @@
+package com.nattguld.http.proxies;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.nattguld.http.proxies.cfg.LocalProxyConfig;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ProxyLease implements AutoCloseable {
+	
+	/**
+	 * The config the slot is reserved in.
+	 */
+	private final LocalProxyConfig config;
+	
+	/**
+	 * The leased proxy, null when the slot was reserved on the config directly.
+	 */
+	private final HttpProxy proxy;
+	
+	/**
+	 * The user holding the slot.
+	 */
+	private final String user;
+	
+	/**
+	 * Whether the user may only hold one slot on the proxy.
+	 */
+	private final boolean unique;
+	
+	/**
+	 * The time the slot was reserved at.
+	 */
+	private final long acquiredAt;
+	
+	/**
+	 * Whether the slot has been released.
+	 */
+	private final AtomicBoolean released;
+	
+	
+	/**
+	 * Creates a new proxy lease.
+	 * 
+	 * @param config The config the slot is reserved in.
+	 * 
+	 * @param proxy The leased proxy, null when the slot was reserved on the config directly.
+	 * 
+	 * @param user The user holding the slot.
+	 * 
+	 * @param unique Whether the user may only hold one slot on the proxy.
+	 */
+	public ProxyLease(LocalProxyConfig config, HttpProxy proxy, String user, boolean unique) {
+		this.config = config;
+		this.proxy = proxy;
+		this.user = user;
+		this.unique = unique;
+		this.acquiredAt = System.currentTimeMillis();
+		this.released = new AtomicBoolean();
+	}
+	
+	/**
+	 * Releases the slot, releasing it again does nothing.
+	 */
+	@Override
+	public void close() {
+		if (released.compareAndSet(false, true)) {
+			config.release(this);
+		}
+	}
+	
+	/**
+	 * Retrieves the leased proxy.
+	 * 
+	 * @return The proxy.
+	 */
+	public HttpProxy getProxy() {
+		return proxy;
+	}
+	
+	/**
+	 * Retrieves the user holding the slot.
+	 * 
+	 * @return The user.
+	 */
+	public String getUser() {
+		return user;
+	}
+	
+	/**
+	 * Retrieves whether the user may only hold one slot on the proxy.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isUnique() {
+		return unique;
+	}
+	
+	/**
+	 * Retrieves the time the slot was reserved at.
+	 * 
+	 * @return The time.
+	 */
+	public long getAcquiredAt() {
+		return acquiredAt;
+	}
+	
+	/**
+	 * Retrieves how long the slot has been held.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public long getAge() {
+		return System.currentTimeMillis() - acquiredAt;
+	}
+	
+	/**
+	 * Retrieves whether the slot has been released.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isReleased() {
+		return released.get();
+	}
+	
+	@Override
+	public String toString() {
+		return (Objects.nonNull(proxy) ? proxy.getUrl() : "Proxy") + " leased by " + user + " for " + getAge() + "ms";
+	}
+
+}
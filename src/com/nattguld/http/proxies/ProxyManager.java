@@ -2,11 +2,11 @@ package com.nattguld.http.proxies;
 
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 import com.nattguld.data.json.JsonResourceManager;
 import com.nattguld.http.proxies.cfg.LocalProxyConfig;
@@ -40,12 +40,27 @@ public abstract class ProxyManager extends JsonResourceManager<HttpProxy> {
 	 * Represents a local host proxy.
 	 */
 	public static final HttpProxy LOCALHOST = new HttpProxy("localhost", 80);
+	
+	/**
+	 * The proxies indexed for lookups and selection.
+	 */
+	private final ProxyRegistry registry = new ProxyRegistry();
 
 	
 	static {
 		ProxyConfig.getConfig();
 	}
 	
+	@Override
+	public JsonResourceManager<HttpProxy> load() {
+		super.load();
+		
+		for (HttpProxy proxy : getResources()) {
+			registry.register(proxy);
+		}
+		return this;
+	}
+	
 	/**
 	 * Adds a proxy or retrieves it if it already exists.
 	 * 
@@ -66,11 +81,17 @@ public abstract class ProxyManager extends JsonResourceManager<HttpProxy> {
 		super.add(proxy, new Predicate<HttpProxy>() {
 			@Override
 			public boolean test(HttpProxy proxy) {
-				return Objects.isNull(getProxyByAddress(proxy.toString()));
+				return registry.register(proxy); //Only registers when no proxy with the same address is
 			}
 		});
 	}
 	
+	@Override
+	public void remove(HttpProxy proxy) {
+		super.remove(proxy);
+		registry.unregister(proxy);
+	}
+	
 	/**
 	 * Retrieves a proxy by it's host.
 	 * 
@@ -79,9 +100,7 @@ public abstract class ProxyManager extends JsonResourceManager<HttpProxy> {
 	 * @return The proxy.
 	 */
 	public HttpProxy getProxyByHost(String host) {
-		return getResources().stream()
-				.filter(p -> p.getHost().equals(host))
-				.findFirst().orElse(null);
+		return registry.getByHost(host);
 	}
 
 	/**
@@ -92,9 +111,7 @@ public abstract class ProxyManager extends JsonResourceManager<HttpProxy> {
 	 * @return The proxy.
 	 */
 	public HttpProxy getProxyByAddress(String address) {
-		return getResources().stream()
-				.filter(p -> p.toString().equals(address))
-				.findFirst().orElse(null);
+		return registry.getByAddress(address);
 	}
 	
 	/**
@@ -209,6 +226,34 @@ public abstract class ProxyManager extends JsonResourceManager<HttpProxy> {
     	return INVALID_PROXY;
 	}
 	
+	/**
+	 * Reserves a slot on another proxy of the same kind as one that failed.
+	 * 
+	 * @param failed The proxy that failed.
+	 * 
+	 * @param user The user.
+	 * 
+	 * @param unique Whether the user should be unique to the proxy or not.
+	 * 
+	 * @return The lease or null when no other proxy has room.
+	 */
+	public static ProxyLease leaseReplacement(HttpProxy failed, String user, boolean unique) {
+		for (int i = 0; i < 3; i++) {
+			ProxyLease lease = failed instanceof RotatingProxy 
+					? RotatingProxyManager.getSingleton().leaseRandomProxy(((RotatingProxy)failed).getConnType(), user, unique)
+							: StandardProxyManager.getSingleton().leaseRandomProxy(user, unique);
+			
+			if (Objects.isNull(lease)) {
+				return null;
+			}
+			if (lease.getProxy() != failed) {
+				return lease;
+			}
+			lease.close(); //Picked the failed proxy again
+		}
+		return null;
+	}
+	
 	/**
 	 * Retrieves the best available proxy choice.
 	 * 
@@ -251,9 +296,35 @@ public abstract class ProxyManager extends JsonResourceManager<HttpProxy> {
 	 * @return The proxies matching the given proxy type.
 	 */
 	public List<HttpProxy> getByProxyType(ProxyType proxyType) {
-		return getResources().stream()
-				.filter(p -> p.getType() == proxyType)
-				.collect(Collectors.toList());
+		return registry.getProxies(proxyType);
+	}
+	
+	/**
+	 * Releases the slots held longer than a given time on every proxy, which have most likely been leaked.
+	 * 
+	 * @param maxAge The time in milliseconds.
+	 * 
+	 * @return The reclaimed leases.
+	 */
+	public List<ProxyLease> reclaimLeases(long maxAge) {
+		List<ProxyLease> reclaimed = new ArrayList<>();
+		
+		for (HttpProxy proxy : getResources()) {
+			for (ProxyLease lease : proxy.getLocalConfig().reclaim(maxAge)) {
+				System.err.println("[ProxyManager] Reclaimed " + lease);
+				reclaimed.add(lease);
+			}
+		}
+		return reclaimed;
+	}
+	
+	/**
+	 * Retrieves the proxies indexed for lookups and selection.
+	 * 
+	 * @return The proxy registry.
+	 */
+	public ProxyRegistry getRegistry() {
+		return registry;
 	}
 
 }
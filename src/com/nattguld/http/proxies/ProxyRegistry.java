@@ -0,0 +1,532 @@
+package com.nattguld.http.proxies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import com.nattguld.http.proxies.rotating.RotatingProxy;
+import com.nattguld.http.util.InternetConnectionType;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ProxyRegistry {
+	
+	/**
+	 * The amount of eligible proxies sampled to pick from.
+	 */
+	private static final int SAMPLE_SIZE = 3;
+	
+	/**
+	 * The maximum amount of random draws before falling back to going over every proxy.
+	 */
+	private static final int MAX_DRAWS = 16;
+	
+	/**
+	 * The maximum amount of proxies picked when their slots or probes keep being taken by others.
+	 */
+	private static final int MAX_LEASE_ATTEMPTS = 3;
+	
+	/**
+	 * The proxies by their address.
+	 */
+	private final Map<String, HttpProxy> byAddress;
+	
+	/**
+	 * The first registered proxy by host.
+	 */
+	private final Map<String, HttpProxy> byHost;
+	
+	/**
+	 * Every proxy.
+	 */
+	private final ProxyGroup all;
+	
+	/**
+	 * The proxies by proxy type.
+	 */
+	private final Map<ProxyType, ProxyGroup> byType;
+	
+	/**
+	 * The rotating proxies by internet connection type.
+	 */
+	private final Map<InternetConnectionType, ProxyGroup> byConnType;
+	
+	
+	/**
+	 * Creates a new proxy registry.
+	 */
+	public ProxyRegistry() {
+		this.byAddress = new ConcurrentHashMap<>();
+		this.byHost = new ConcurrentHashMap<>();
+		this.all = new ProxyGroup();
+		this.byType = new EnumMap<>(ProxyType.class);
+		this.byConnType = new EnumMap<>(InternetConnectionType.class);
+		
+		//The group maps are filled once here and only read afterwards, so they need no locking
+		for (ProxyType proxyType : ProxyType.values()) {
+			byType.put(proxyType, new ProxyGroup());
+		}
+		for (InternetConnectionType connType : InternetConnectionType.values()) {
+			byConnType.put(connType, new ProxyGroup());
+		}
+	}
+	
+	/**
+	 * Registers a proxy.
+	 * 
+	 * @param proxy The proxy.
+	 * 
+	 * @return Whether the proxy was registered, false when a proxy with the same address already is.
+	 */
+	public boolean register(HttpProxy proxy) {
+		if (Objects.nonNull(byAddress.putIfAbsent(proxy.toString(), proxy))) {
+			return false;
+		}
+		byHost.putIfAbsent(proxy.getHost(), proxy);
+		all.add(proxy);
+		byType.get(proxy.getType()).add(proxy);
+		
+		ProxyGroup usageGroup = all;
+		
+		if (proxy instanceof RotatingProxy) {
+			usageGroup = byConnType.get(((RotatingProxy)proxy).getConnType());
+			usageGroup.add(proxy);
+		}
+		proxy.getLocalConfig().setUsageCounter(usageGroup.getInUse());
+		return true;
+	}
+	
+	/**
+	 * Unregisters a proxy.
+	 * 
+	 * @param proxy The proxy.
+	 */
+	public void unregister(HttpProxy proxy) {
+		if (!byAddress.remove(proxy.toString(), proxy)) {
+			return;
+		}
+		all.remove(proxy);
+		byType.get(proxy.getType()).remove(proxy);
+		
+		if (proxy instanceof RotatingProxy) {
+			byConnType.get(((RotatingProxy)proxy).getConnType()).remove(proxy);
+		}
+		proxy.getLocalConfig().setUsageCounter(null);
+		
+		if (byHost.remove(proxy.getHost(), proxy)) { //Another proxy on the same host takes its place
+			for (HttpProxy other : all.getProxies()) {
+				if (other.getHost().equals(proxy.getHost())) {
+					byHost.putIfAbsent(other.getHost(), other);
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Picks an eligible proxy that's available, weighted by its free capacity and health.
+	 * 
+	 * @param filter Whether a proxy is eligible.
+	 * 
+	 * @return The proxy or null when none is eligible.
+	 */
+	public HttpProxy select(Predicate<HttpProxy> filter) {
+		return select(all, filter);
+	}
+	
+	/**
+	 * Picks an eligible rotating proxy that's available, weighted by its free capacity and health.
+	 * 
+	 * @param connType The internet connection type.
+	 * 
+	 * @param filter Whether a proxy is eligible.
+	 * 
+	 * @return The proxy or null when none is eligible.
+	 */
+	public HttpProxy select(InternetConnectionType connType, Predicate<HttpProxy> filter) {
+		return select(byConnType.get(connType), filter);
+	}
+	
+	/**
+	 * Picks an available proxy with room for a user and reserves a slot on it.
+	 * 
+	 * @param user The user.
+	 * 
+	 * @param unique Whether the user may only hold one slot per proxy.
+	 * 
+	 * @return The lease or null when no proxy has room.
+	 */
+	public ProxyLease lease(String user, boolean unique) {
+		return lease(all, user, unique);
+	}
+	
+	/**
+	 * Picks an available rotating proxy with room for a user and reserves a slot on it.
+	 * 
+	 * @param connType The internet connection type.
+	 * 
+	 * @param user The user.
+	 * 
+	 * @param unique Whether the user may only hold one slot per proxy.
+	 * 
+	 * @return The lease or null when no proxy has room.
+	 */
+	public ProxyLease lease(InternetConnectionType connType, String user, boolean unique) {
+		return lease(byConnType.get(connType), user, unique);
+	}
+	
+	/**
+	 * Picks an available proxy of a group with room for a user and reserves a slot on it.
+	 * Another caller may take the last slot between picking and reserving, in which case another proxy is picked.
+	 * 
+	 * @param group The group.
+	 * 
+	 * @param user The user.
+	 * 
+	 * @param unique Whether the user may only hold one slot per proxy.
+	 * 
+	 * @return The lease or null when no proxy has room.
+	 */
+	private static ProxyLease lease(ProxyGroup group, String user, boolean unique) {
+		for (int i = 0; i < MAX_LEASE_ATTEMPTS; i++) {
+			HttpProxy proxy = pick(group, p -> p.getLocalConfig().canAddUser(user, unique));
+			
+			if (Objects.isNull(proxy)) {
+				return null;
+			}
+			ProxyLease lease = proxy.reserve(user, unique);
+			
+			if (Objects.isNull(lease)) {
+				continue;
+			}
+			if (proxy.isAvailable()) { //Only the leased proxy claims its probe
+				return lease;
+			}
+			lease.close();
+		}
+		return null;
+	}
+	
+	/**
+	 * Picks an eligible proxy of a group that's available, claiming the probe of a proxy that's down when it's picked.
+	 * Another caller may claim the probe between picking and claiming, in which case another proxy is picked.
+	 * 
+	 * @param group The group.
+	 * 
+	 * @param filter Whether a proxy is eligible.
+	 * 
+	 * @return The proxy or null when none is eligible.
+	 */
+	private static HttpProxy select(ProxyGroup group, Predicate<HttpProxy> filter) {
+		for (int i = 0; i < MAX_LEASE_ATTEMPTS; i++) {
+			HttpProxy proxy = pick(group, filter);
+			
+			if (Objects.isNull(proxy) || proxy.isAvailable()) { //Only the picked proxy claims its probe
+				return proxy;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Picks an eligible proxy of a group.
+	 * A few random draws find a handful of eligible proxies to choose between, which keeps picking cheap however many proxies are loaded.
+	 * Every proxy is only gone over when the draws find nothing, which happens when most of them are taken.
+	 * 
+	 * @param group The group.
+	 * 
+	 * @param filter Whether a proxy is eligible.
+	 * 
+	 * @return The proxy or null when none is eligible.
+	 */
+	private static HttpProxy pick(ProxyGroup group, Predicate<HttpProxy> filter) {
+		int size = group.size();
+		
+		if (size <= 0) {
+			return null;
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		HttpProxy[] candidates = new HttpProxy[SAMPLE_SIZE];
+		double[] weights = new double[SAMPLE_SIZE];
+		double totalWeight = 0D;
+		int found = 0;
+		
+		for (int draw = 0; draw < MAX_DRAWS && found < SAMPLE_SIZE; draw++) {
+			HttpProxy proxy = group.get(random.nextInt(size));
+			
+			if (Objects.isNull(proxy) || isCandidate(candidates, found, proxy) || !filter.test(proxy) || !proxy.isSelectable()) {
+				continue;
+			}
+			candidates[found] = proxy;
+			weights[found] = getWeight(proxy);
+			totalWeight += weights[found++];
+		}
+		if (found == 0) {
+			return scan(group, filter);
+		}
+		double pick = random.nextDouble() * totalWeight;
+		
+		for (int i = 0; i < found - 1; i++) {
+			if ((pick -= weights[i]) < 0D) {
+				return candidates[i];
+			}
+		}
+		return candidates[found - 1];
+	}
+	
+	/**
+	 * Picks an eligible proxy of a group by going over every proxy.
+	 * 
+	 * @param group The group.
+	 * 
+	 * @param filter Whether a proxy is eligible.
+	 * 
+	 * @return The proxy or null when none is eligible.
+	 */
+	private static HttpProxy scan(ProxyGroup group, Predicate<HttpProxy> filter) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		HttpProxy picked = null;
+		double totalWeight = 0D;
+		
+		for (HttpProxy proxy : group.getProxies()) {
+			if (!filter.test(proxy) || !proxy.isSelectable()) {
+				continue;
+			}
+			double weight = getWeight(proxy);
+			totalWeight += weight;
+			
+			if (random.nextDouble() * totalWeight < weight) { //Keeps each proxy with a chance of its share of the weight so far
+				picked = proxy;
+			}
+		}
+		return picked;
+	}
+	
+	/**
+	 * Retrieves whether a proxy has already been drawn.
+	 * 
+	 * @param candidates The drawn proxies.
+	 * 
+	 * @param found The amount of drawn proxies.
+	 * 
+	 * @param proxy The proxy.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isCandidate(HttpProxy[] candidates, int found, HttpProxy proxy) {
+		for (int i = 0; i < found; i++) {
+			if (candidates[i] == proxy) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Retrieves the selection weight of a proxy, its share of free connections times its health score.
+	 * 
+	 * @param proxy The proxy.
+	 * 
+	 * @return The weight.
+	 */
+	private static double getWeight(HttpProxy proxy) {
+		int limit = Math.max(1, proxy.getLocalConfig().getConnectionLimit());
+		int free = Math.max(1, limit - proxy.getLocalConfig().getConnectionsInUse());
+		return Math.max(0.01D, ((double)free / (double)limit) * proxy.getHealth().getScore());
+	}
+	
+	/**
+	 * Retrieves a proxy by its address.
+	 * 
+	 * @param address The address.
+	 * 
+	 * @return The proxy.
+	 */
+	public HttpProxy getByAddress(String address) {
+		return Objects.isNull(address) ? null : byAddress.get(address);
+	}
+	
+	/**
+	 * Retrieves a proxy by its host.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @return The proxy.
+	 */
+	public HttpProxy getByHost(String host) {
+		return Objects.isNull(host) ? null : byHost.get(host);
+	}
+	
+	/**
+	 * Retrieves the proxies of a proxy type.
+	 * 
+	 * @param proxyType The proxy type.
+	 * 
+	 * @return The proxies.
+	 */
+	public List<HttpProxy> getProxies(ProxyType proxyType) {
+		return byType.get(proxyType).getProxies();
+	}
+	
+	/**
+	 * Retrieves the rotating proxies of an internet connection type.
+	 * 
+	 * @param connType The internet connection type.
+	 * 
+	 * @return The proxies.
+	 */
+	public List<HttpProxy> getProxies(InternetConnectionType connType) {
+		return byConnType.get(connType).getProxies();
+	}
+	
+	/**
+	 * Retrieves the amount of connections in use by the rotating proxies of an internet connection type.
+	 * 
+	 * @param connType The internet connection type.
+	 * 
+	 * @return The amount of connections.
+	 */
+	public int getConnectionsInUse(InternetConnectionType connType) {
+		return byConnType.get(connType).getInUse().get();
+	}
+	
+	/**
+	 * Retrieves the amount of registered proxies.
+	 * 
+	 * @return The amount of proxies.
+	 */
+	public int size() {
+		return all.size();
+	}
+	
+	/**
+	 * 
+	 * @author randqm
+	 * 
+	 */
+	
+	private static class ProxyGroup {
+		
+		/**
+		 * The proxies, only the first size slots are in use.
+		 */
+		private volatile HttpProxy[] proxies;
+		
+		/**
+		 * The slot of each proxy.
+		 */
+		private final Map<HttpProxy, Integer> slots;
+		
+		/**
+		 * The amount of connections in use by the proxies.
+		 */
+		private final AtomicInteger inUse;
+		
+		/**
+		 * The amount of proxies, written after the slots so readers never see a slot before it's filled.
+		 */
+		private volatile int size;
+		
+		
+		/**
+		 * Creates a new proxy group.
+		 */
+		public ProxyGroup() {
+			this.proxies = new HttpProxy[16];
+			this.slots = new IdentityHashMap<>();
+			this.inUse = new AtomicInteger();
+		}
+		
+		/**
+		 * Adds a proxy.
+		 * 
+		 * @param proxy The proxy.
+		 */
+		public synchronized void add(HttpProxy proxy) {
+			if (slots.containsKey(proxy)) {
+				return;
+			}
+			if (size == proxies.length) {
+				proxies = Arrays.copyOf(proxies, size * 2);
+			}
+			proxies[size] = proxy;
+			slots.put(proxy, size);
+			size++;
+		}
+		
+		/**
+		 * Removes a proxy, the last proxy moves into its slot.
+		 * 
+		 * @param proxy The proxy.
+		 */
+		public synchronized void remove(HttpProxy proxy) {
+			Integer slot = slots.remove(proxy);
+			
+			if (Objects.isNull(slot)) {
+				return;
+			}
+			int last = size - 1;
+			HttpProxy moved = proxies[last];
+			
+			if (slot != last) {
+				proxies[slot] = moved;
+				slots.put(moved, slot);
+			}
+			proxies[last] = null;
+			size = last;
+		}
+		
+		/**
+		 * Retrieves the proxy in a slot.
+		 * 
+		 * @param slot The slot.
+		 * 
+		 * @return The proxy or null when the slot emptied in the meantime.
+		 */
+		public HttpProxy get(int slot) {
+			HttpProxy[] current = proxies;
+			return slot < current.length ? current[slot] : null;
+		}
+		
+		/**
+		 * Retrieves a copy of the proxies.
+		 * 
+		 * @return The proxies.
+		 */
+		public synchronized List<HttpProxy> getProxies() {
+			return new ArrayList<>(Arrays.asList(proxies).subList(0, size));
+		}
+		
+		/**
+		 * Retrieves the amount of connections in use by the proxies.
+		 * 
+		 * @return The amount of connections.
+		 */
+		public AtomicInteger getInUse() {
+			return inUse;
+		}
+		
+		/**
+		 * Retrieves the amount of proxies.
+		 * 
+		 * @return The amount of proxies.
+		 */
+		public int size() {
+			return size;
+		}
+	
+	}
+
+}
@@ -2,7 +2,14 @@ package com.nattguld.http.proxies.cfg;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nattguld.http.proxies.HttpProxy;
+import com.nattguld.http.proxies.ProxyLease;
 
 /**
  * 
@@ -18,14 +25,34 @@ public class LocalProxyConfig {
 	private static final int DEFAULT_CONNECTION_LIMIT = 5;
 	
 	/**
-	 * The current users of the proxy.
+	 * The key anonymous leases are counted under.
+	 */
+	private static final String ANONYMOUS = "";
+	
+	/**
+	 * The amount of slots each user holds.
 	 */
-	private final transient List<String> users;
+	private final transient Map<String, Integer> users;
+	
+	/**
+	 * The slots being held.
+	 */
+	private final transient Set<ProxyLease> leases;
+	
+	/**
+	 * The amount of slots in use.
+	 */
+	private final transient AtomicInteger inUse;
 	
 	/**
 	 * The limit on how many simultaneous connections can use the proxy.
 	 */
-	private int connectionLimit;
+	private volatile int connectionLimit;
+	
+	/**
+	 * The counter of connections in use shared by the proxies of a group, null when the proxy isn't registered.
+	 */
+	private transient AtomicInteger usageCounter;
 	
 	
 	/**
@@ -42,21 +69,94 @@ public class LocalProxyConfig {
 	 */
 	public LocalProxyConfig(int connectionLimit) {
 		this.connectionLimit = connectionLimit;
-		this.users = new ArrayList<>();
+		this.users = new ConcurrentHashMap<>();
+		this.leases = ConcurrentHashMap.newKeySet();
+		this.inUse = new AtomicInteger();
 	}
 	
 	/**
-	 * Adds a new user.
+	 * Reserves a slot for a user when there's room, the check and the reservation happen at once so concurrent callers can't exceed the limit.
+	 * 
+	 * @param proxy The proxy the config belongs to.
+	 * 
+	 * @param user The user.
+	 * 
+	 * @param unique Whether the user may only hold one slot.
+	 * 
+	 * @return The lease or null when there's no room or the user already holds a slot while unique.
+	 */
+	public ProxyLease reserve(HttpProxy proxy, String user, boolean unique) {
+		while (true) {
+			int used = inUse.get();
+			
+			if (used >= connectionLimit) {
+				return null;
+			}
+			if (inUse.compareAndSet(used, used + 1)) {
+				break;
+			}
+		}
+		if (unique && Objects.nonNull(users.putIfAbsent(getKey(user), 1))) {
+			inUse.decrementAndGet();
+			return null;
+		}
+		if (!unique) {
+			users.merge(getKey(user), 1, Integer::sum);
+		}
+		return register(new ProxyLease(this, proxy, user, unique));
+	}
+	
+	/**
+	 * Adds a new user, taking a slot even when the limit is reached.
 	 * 
 	 * @param user The new user.
 	 * 
 	 * @return The config.
 	 */
 	public LocalProxyConfig addUser(String user) {
-		users.add(user);
+		inUse.incrementAndGet();
+		users.merge(getKey(user), 1, Integer::sum);
+		register(new ProxyLease(this, null, user, false));
 		return this;
 	}
 	
+	/**
+	 * Registers a lease whose slot has been taken.
+	 * 
+	 * @param lease The lease.
+	 * 
+	 * @return The lease.
+	 */
+	private ProxyLease register(ProxyLease lease) {
+		leases.add(lease);
+		
+		AtomicInteger counter = usageCounter;
+		
+		if (Objects.nonNull(counter)) {
+			counter.incrementAndGet();
+		}
+		return lease;
+	}
+	
+	/**
+	 * Releases the slot of a lease, leases are released by closing them.
+	 * 
+	 * @param lease The lease.
+	 */
+	public void release(ProxyLease lease) {
+		if (!leases.remove(lease)) {
+			return;
+		}
+		users.computeIfPresent(getKey(lease.getUser()), (key, slots) -> slots > 1 ? slots - 1 : null);
+		inUse.decrementAndGet();
+		
+		AtomicInteger counter = usageCounter;
+		
+		if (Objects.nonNull(counter)) {
+			counter.decrementAndGet();
+		}
+	}
+	
 	/**
 	 * Retrieves whether a given user is present or not.
 	 * 
@@ -68,32 +168,81 @@ public class LocalProxyConfig {
 		if (Objects.isNull(user)) {
 			return false;
 		}
-		return users.contains(user);
+		return users.containsKey(user);
 	}
 	
 	/**
-	 * Removes a user.
+	 * Removes a user, releasing the longest held slot of the user.
 	 * 
 	 * @param user the user.
 	 * 
 	 * @return The config.
 	 */
 	public LocalProxyConfig removeUser(String user) {
-		users.remove(user);
+		ProxyLease oldest = null;
+		
+		for (ProxyLease lease : leases) {
+			if (Objects.equals(lease.getUser(), user) && (Objects.isNull(oldest) || lease.getAcquiredAt() < oldest.getAcquiredAt())) {
+				oldest = lease;
+			}
+		}
+		if (Objects.nonNull(oldest)) {
+			oldest.close();
+		}
 		return this;
 	}
 	
+	/**
+	 * Releases the slots held longer than a given time, which have most likely been leaked.
+	 * 
+	 * @param maxAge The time in milliseconds.
+	 * 
+	 * @return The reclaimed leases.
+	 */
+	public List<ProxyLease> reclaim(long maxAge) {
+		List<ProxyLease> reclaimed = new ArrayList<>();
+		
+		for (ProxyLease lease : leases) {
+			if (lease.getAge() > maxAge) {
+				lease.close();
+				reclaimed.add(lease);
+			}
+		}
+		return reclaimed;
+	}
+	
+	/**
+	 * Retrieves the slots being held.
+	 * 
+	 * @return The leases.
+	 */
+	public List<ProxyLease> getLeases() {
+		return new ArrayList<>(leases);
+	}
+	
+	/**
+	 * Retrieves the key a user's slots are counted under.
+	 * 
+	 * @param user The user.
+	 * 
+	 * @return The key.
+	 */
+	private static String getKey(String user) {
+		return Objects.isNull(user) ? ANONYMOUS : user;
+	}
+	
 	/**
 	 * Retrieves whether there's room for new users or not.
 	 * 
 	 * @return The result.
 	 */
 	protected boolean hasRoom() {
-		return users.size() < connectionLimit;
+		return inUse.get() < connectionLimit;
 	}
 	
 	/**
 	 * Retrieves whether a user can be added or not.
+	 * Only a hint for picking proxies, reserving decides.
 	 * 
 	 * @return The result.
 	 */
@@ -109,14 +258,26 @@ public class LocalProxyConfig {
 	 * @return The amount.
 	 */
 	public int getDuplicateUserCount(String user) {
-		int count = 0;
-		
-		for (String o : users) {
-			if (o.equals(user)) {
-				count++;
-			}
+		return users.getOrDefault(getKey(user), 0);
+	}
+	
+	/**
+	 * Modifies the counter of connections in use shared by the proxies of a group.
+	 * The connections already in use move from the previous counter to the new one.
+	 * 
+	 * @param usageCounter The new counter, null when the proxy is no longer registered.
+	 * 
+	 * @return The config.
+	 */
+	public synchronized LocalProxyConfig setUsageCounter(AtomicInteger usageCounter) {
+		if (Objects.nonNull(this.usageCounter)) {
+			this.usageCounter.addAndGet(-leases.size());
 		}
-		return count;
+		if (Objects.nonNull(usageCounter)) {
+			usageCounter.addAndGet(leases.size());
+		}
+		this.usageCounter = usageCounter;
+		return this;
 	}
 	
 	/**
@@ -146,7 +307,7 @@ public class LocalProxyConfig {
 	 * @return The amount of connections.
 	 */
 	public int getConnectionsInUse() {
-		return users.size();
+		return inUse.get();
 	}
 
 }
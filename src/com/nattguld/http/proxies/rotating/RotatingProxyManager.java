@@ -7,6 +7,7 @@ import java.util.Objects;
 
 import com.nattguld.data.json.JsonReader;
 import com.nattguld.http.proxies.HttpProxy;
+import com.nattguld.http.proxies.ProxyLease;
 import com.nattguld.http.proxies.ProxyManager;
 import com.nattguld.http.proxies.ProxyType;
 import com.nattguld.http.proxies.cfg.LocalProxyConfig;
@@ -46,12 +47,7 @@ public class RotatingProxyManager extends ProxyManager {
 	 * @return The active connections.
 	 */
 	public int getActiveConnections(InternetConnectionType connType) {
-		int count = 0;
-		
-		for (RotatingProxy rp : getProxies(connType)) {
-			count += rp.getLocalConfig().getConnectionsInUse();
-		}
-		return count;
+		return getRegistry().getConnectionsInUse(connType);
 	}
 	
 	/**
@@ -64,7 +60,9 @@ public class RotatingProxyManager extends ProxyManager {
 	}
 	
 	/**
-	 * Retrieves a random rotating proxy.
+	 * Retrieves a random rotating proxy and reserves a slot on it for the user, closing the client using it releases the slot.
+	 * 
+	 * @param connType The connection type.
 	 * 
 	 * @param user The user.
 	 * 
@@ -73,6 +71,22 @@ public class RotatingProxyManager extends ProxyManager {
 	 * @return The proxy.
 	 */
 	public RotatingProxy getRandomProxy(InternetConnectionType connType, String user, boolean unique) {
+		ProxyLease lease = leaseRandomProxy(connType, user, unique);
+		return Objects.isNull(lease) ? null : (RotatingProxy)lease.getProxy();
+	}
+	
+	/**
+	 * Reserves a slot on a random rotating proxy, closing the lease releases it.
+	 * 
+	 * @param connType The connection type.
+	 * 
+	 * @param user The user.
+	 * 
+	 * @param unique Whether the user should be unique for the proxy or not.
+	 * 
+	 * @return The lease or null when no proxy has room.
+	 */
+	public ProxyLease leaseRandomProxy(InternetConnectionType connType, String user, boolean unique) {
 		int maxThreads = (connType == InternetConnectionType.DATACENTER 
 				? ProxyConfig.getConfig().getMaxRotatingDatacenterProxyThreads()
 						: ProxyConfig.getConfig().getMaxRotatingResidentialProxyThreads());
@@ -80,8 +94,7 @@ public class RotatingProxyManager extends ProxyManager {
 		if (getActiveConnections(connType) > maxThreads) {
 			return null;
 		}
-		List<RotatingProxy> available = getProxies(connType, user, unique);
-		return available.isEmpty() ? null : available.get(Maths.random(available.size()));
+		return getRegistry().lease(connType, user, unique);
 	}
 	
 	/**
@@ -174,13 +187,10 @@ public class RotatingProxyManager extends ProxyManager {
 	public List<RotatingProxy> getProxies(InternetConnectionType connType, String user, boolean unique) {
 		List<RotatingProxy> proxies = new ArrayList<>();
 		
-		for (HttpProxy p : getResources()) {
-			RotatingProxy rp = (RotatingProxy)p;
-			
-			if (rp.getConnType() != connType || !rp.getLocalConfig().canAddUser(user, unique)) {
-				continue;
+		for (HttpProxy p : getRegistry().getProxies(connType)) {
+			if (p.getLocalConfig().canAddUser(user, unique)) {
+				proxies.add((RotatingProxy)p);
 			}
-			proxies.add(rp);
 		}
 		return proxies;
 	}
@@ -7,10 +7,10 @@ import java.util.stream.Collectors;
 
 import com.nattguld.data.json.JsonReader;
 import com.nattguld.http.proxies.HttpProxy;
+import com.nattguld.http.proxies.ProxyLease;
 import com.nattguld.http.proxies.ProxyManager;
 import com.nattguld.http.proxies.ProxyType;
 import com.nattguld.http.proxies.cfg.LocalProxyConfig;
-import com.nattguld.util.maths.Maths;
 
 /**
  * 
@@ -46,7 +46,7 @@ public class StandardProxyManager extends ProxyManager {
 	}
 	
 	/**
-	 * Retrieves a random proxy.
+	 * Retrieves a random proxy and reserves a slot on it for the user, closing the client using it releases the slot.
 	 * 
 	 * @param user The user.
 	 * 
@@ -55,8 +55,21 @@ public class StandardProxyManager extends ProxyManager {
 	 * @return The proxy.
 	 */
 	public HttpProxy getRandomProxy(String user, boolean unique) {
-		List<HttpProxy> available = getProxies(user, unique);
-		return available.isEmpty() ? null : available.get(Maths.random(available.size()));
+		ProxyLease lease = leaseRandomProxy(user, unique);
+		return Objects.isNull(lease) ? null : lease.getProxy();
+	}
+	
+	/**
+	 * Reserves a slot on a random proxy, closing the lease releases it.
+	 * 
+	 * @param user The user.
+	 * 
+	 * @param unique Whether the user should be unique for the proxy or not.
+	 * 
+	 * @return The lease or null when no proxy has room.
+	 */
+	public ProxyLease leaseRandomProxy(String user, boolean unique) {
+		return getRegistry().lease(user, unique);
 	}
 	
 	/**
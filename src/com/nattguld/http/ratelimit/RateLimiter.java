@@ -0,0 +1,282 @@
+package com.nattguld.http.ratelimit;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.nattguld.http.HTTPCode;
+import com.nattguld.http.cfg.NetConfig;
+import com.nattguld.http.headers.Headers;
+import com.nattguld.http.proxies.HttpProxy;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class RateLimiter {
+	
+	/**
+	 * The amount of buckets from which idle ones are dropped.
+	 */
+	private static final int MAX_BUCKETS = 4096;
+	
+	/**
+	 * The time in milliseconds a bucket has to be unused for before it's dropped.
+	 */
+	private static final long IDLE_TIME = 600000L;
+	
+	/**
+	 * Reset values above this are epoch seconds rather than seconds from now.
+	 */
+	private static final long EPOCH_THRESHOLD = 1000000000L;
+	
+	/**
+	 * The limiter instance.
+	 */
+	private static RateLimiter singleton;
+	
+	/**
+	 * Holds the token buckets per host and proxy.
+	 */
+	private final Map<String, TokenBucket> buckets;
+	
+	
+	/**
+	 * Creates a new rate limiter.
+	 */
+	private RateLimiter() {
+		this.buckets = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Attempts to take a token for a request to a host.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param proxy The proxy being used, null when connecting directly.
+	 * 
+	 * @return The time in milliseconds to wait before trying again, 0 when the request may be sent.
+	 */
+	public long acquire(String host, HttpProxy proxy) {
+		return getBucket(host, proxy).acquire();
+	}
+	
+	/**
+	 * Registers a response received from a host, honouring the limits it reported.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param proxy The proxy being used, null when connecting directly.
+	 * 
+	 * @param code The status code.
+	 * 
+	 * @param headers The response headers.
+	 * 
+	 * @return The time in milliseconds to wait before the next request, 0 when there's no need to.
+	 */
+	public long registerResponse(String host, HttpProxy proxy, HTTPCode code, Headers headers) {
+		TokenBucket bucket = getBucket(host, proxy);
+		
+		if (code == HTTPCode.TOO_MANY_REQUESTS || code == HTTPCode.SERVICE_UNAVAILABLE) {
+			long retryAfter = parseRetryAfter(getHeader(headers, "Retry-After"));
+			
+			if (code == HTTPCode.TOO_MANY_REQUESTS || retryAfter >= 0) {
+				return bucket.throttle(retryAfter, NetConfig.getConfig().getRateLimitBackoff() * 1000L);
+			}
+		}
+		long remaining = parseLong(getHeader(headers, "RateLimit-Remaining", "X-RateLimit-Remaining"));
+		long reset = parseReset(getHeader(headers, "RateLimit-Reset", "X-RateLimit-Reset"));
+		
+		if (remaining < 0) {
+			Map<String, String> params = parseParams(getHeader(headers, "RateLimit"));
+			remaining = parseLong(params.containsKey("r") ? params.get("r") : params.get("remaining"));
+			reset = parseReset(params.containsKey("t") ? params.get("t") : params.get("reset"));
+		}
+		if (remaining >= 0) {
+			bucket.registerQuota(remaining, reset);
+		} else {
+			bucket.registerAccepted();
+		}
+		return 0L;
+	}
+	
+	/**
+	 * Retrieves the token bucket for a host, creating it when needed.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param proxy The proxy being used, null when connecting directly.
+	 * 
+	 * @return The bucket.
+	 */
+	public TokenBucket getBucket(String host, HttpProxy proxy) {
+		String key = getKey(host, proxy);
+		TokenBucket bucket = buckets.get(key);
+		
+		if (Objects.nonNull(bucket)) {
+			return bucket;
+		}
+		if (buckets.size() >= MAX_BUCKETS) {
+			buckets.values().removeIf(b -> b.isIdle(IDLE_TIME));
+		}
+		return buckets.computeIfAbsent(key, k -> new TokenBucket(NetConfig.getConfig().getRateLimit()
+				, NetConfig.getConfig().getRateLimitBurst()));
+	}
+	
+	/**
+	 * Retrieves a snapshot of the token buckets per host and proxy.
+	 * 
+	 * @return The buckets.
+	 */
+	public Map<String, TokenBucket> getBuckets() {
+		return Collections.unmodifiableMap(new HashMap<>(buckets));
+	}
+	
+	/**
+	 * Drops all buckets, new ones pick up the current config.
+	 */
+	public void clear() {
+		buckets.clear();
+	}
+	
+	/**
+	 * Retrieves the key of the bucket for a host.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param proxy The proxy being used, null when connecting directly.
+	 * 
+	 * @return The key.
+	 */
+	private static String getKey(String host, HttpProxy proxy) {
+		return Objects.isNull(proxy) ? host : host + '|' + proxy.getUrl();
+	}
+	
+	/**
+	 * Retrieves the first header value present.
+	 * 
+	 * @param headers The headers.
+	 * 
+	 * @param keys The header keys.
+	 * 
+	 * @return The value, null when none is present.
+	 */
+	private static String getHeader(Headers headers, String... keys) {
+		if (Objects.isNull(headers)) {
+			return null;
+		}
+		for (String key : keys) {
+			String value = headers.getValueIgnoreCase(key);
+			
+			if (Objects.nonNull(value) && !value.trim().isEmpty()) {
+				return value.trim();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Parses a Retry-After value, which holds either seconds or an HTTP date.
+	 * 
+	 * @param value The value.
+	 * 
+	 * @return The time in milliseconds to wait, -1 when absent or invalid.
+	 */
+	public static long parseRetryAfter(String value) {
+		if (Objects.isNull(value)) {
+			return -1L;
+		}
+		long seconds = parseLong(value);
+		
+		if (seconds >= 0) {
+			return seconds * 1000L;
+		}
+		try {
+			long until = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			return Math.max(0L, until - System.currentTimeMillis());
+		
+		} catch (Exception ex) {
+			return -1L;
+		}
+	}
+	
+	/**
+	 * Parses a quota reset value, which holds either seconds from now or epoch seconds.
+	 * 
+	 * @param value The value.
+	 * 
+	 * @return The time in milliseconds until the reset, -1 when absent or invalid.
+	 */
+	private static long parseReset(String value) {
+		long seconds = parseLong(value);
+		
+		if (seconds < 0) {
+			return -1L;
+		}
+		if (seconds > EPOCH_THRESHOLD) {
+			return Math.max(0L, (seconds * 1000L) - System.currentTimeMillis());
+		}
+		return seconds * 1000L;
+	}
+	
+	/**
+	 * Parses the parameters of a structured RateLimit header, like "limit=100, remaining=50, reset=5".
+	 * 
+	 * @param value The value.
+	 * 
+	 * @return The parameters.
+	 */
+	private static Map<String, String> parseParams(String value) {
+		Map<String, String> params = new HashMap<>();
+		
+		if (Objects.isNull(value)) {
+			return params;
+		}
+		for (String part : value.split("[,;]")) {
+			int split = part.indexOf('=');
+			
+			if (split > 0) {
+				params.put(part.substring(0, split).trim().toLowerCase(), part.substring(split + 1).trim());
+			}
+		}
+		return params;
+	}
+	
+	/**
+	 * Parses a non-negative number.
+	 * 
+	 * @param value The value.
+	 * 
+	 * @return The number, -1 when absent or invalid.
+	 */
+	private static long parseLong(String value) {
+		if (Objects.isNull(value)) {
+			return -1L;
+		}
+		try {
+			return Math.max(-1L, Long.parseLong(value.trim()));
+		
+		} catch (NumberFormatException ex) {
+			return -1L;
+		}
+	}
+	
+	/**
+	 * Retrieves the limiter instance.
+	 * 
+	 * @return The instance.
+	 */
+	public static synchronized RateLimiter getSingleton() {
+		if (Objects.isNull(singleton)) {
+			singleton = new RateLimiter();
+		}
+		return singleton;
+	}
+
+}
@@ -0,0 +1,247 @@
+package com.nattguld.http.ratelimit;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class TokenBucket {
+	
+	/**
+	 * The most times in a row the fallback backoff is doubled.
+	 */
+	private static final int MAX_BACKOFF_DOUBLINGS = 4;
+	
+	/**
+	 * The amount of tokens added per second, 0 when unlimited.
+	 */
+	private final double rate;
+	
+	/**
+	 * The maximum amount of tokens held.
+	 */
+	private final double capacity;
+	
+	/**
+	 * The amount of tokens held.
+	 */
+	private double tokens;
+	
+	/**
+	 * The time in nanoseconds the tokens were last refilled at.
+	 */
+	private long refilledAt;
+	
+	/**
+	 * The time until which the server asked not to send requests.
+	 */
+	private long blockedUntil;
+	
+	/**
+	 * The amount of times requests were throttled by the server.
+	 */
+	private int throttles;
+	
+	/**
+	 * The amount of times in a row requests were throttled by the server.
+	 */
+	private int consecutiveThrottles;
+	
+	/**
+	 * The time the bucket was last used at.
+	 */
+	private volatile long lastUsed;
+	
+	
+	/**
+	 * Creates a new token bucket.
+	 * 
+	 * @param rate The amount of tokens added per second, 0 when unlimited.
+	 * 
+	 * @param capacity The maximum amount of tokens held.
+	 */
+	public TokenBucket(double rate, double capacity) {
+		this.rate = Math.max(0D, rate);
+		this.capacity = Math.max(1D, capacity);
+		this.tokens = this.capacity;
+		this.refilledAt = System.nanoTime();
+		this.lastUsed = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Attempts to take a token.
+	 * 
+	 * @return The time in milliseconds to wait before trying again, 0 when the token was taken.
+	 */
+	public synchronized long acquire() {
+		long now = System.currentTimeMillis();
+		lastUsed = now;
+		
+		if (now < blockedUntil) {
+			return blockedUntil - now;
+		}
+		if (rate <= 0D) {
+			return 0L;
+		}
+		refill();
+		
+		if (tokens >= 1D) {
+			tokens -= 1D;
+			return 0L;
+		}
+		return Math.max(1L, (long)Math.ceil(((1D - tokens) / rate) * 1000D));
+	}
+	
+	/**
+	 * Adds the tokens gained since the last refill.
+	 */
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (((now - refilledAt) / 1000000000D) * rate));
+		refilledAt = now;
+	}
+	
+	/**
+	 * Registers a request throttled by the server.
+	 * 
+	 * @param retryAfter The time in milliseconds the server asked to wait, -1 when it didn't say.
+	 * 
+	 * @param fallback The time in milliseconds to wait when the server didn't say, doubled for each throttle in a row.
+	 * 
+	 * @return The time in milliseconds to wait.
+	 */
+	public synchronized long throttle(long retryAfter, long fallback) {
+		throttles++;
+		consecutiveThrottles++;
+		tokens = 0D;
+		refilledAt = System.nanoTime();
+		
+		long wait = retryAfter >= 0 ? retryAfter
+				: fallback << Math.min(MAX_BACKOFF_DOUBLINGS, consecutiveThrottles - 1);
+		block(System.currentTimeMillis() + wait);
+		return wait;
+	}
+	
+	/**
+	 * Registers the quota a server reported.
+	 * 
+	 * @param remaining The amount of requests left.
+	 * 
+	 * @param reset The time in milliseconds until the quota resets.
+	 */
+	public synchronized void registerQuota(long remaining, long reset) {
+		consecutiveThrottles = 0;
+		
+		if (remaining <= 0 && reset > 0) {
+			block(System.currentTimeMillis() + reset);
+			return;
+		}
+		if (rate > 0D) {
+			refill();
+			tokens = Math.min(tokens, remaining);
+		}
+	}
+	
+	/**
+	 * Registers a request the server didn't throttle.
+	 */
+	public synchronized void registerAccepted() {
+		consecutiveThrottles = 0;
+	}
+	
+	/**
+	 * Blocks requests until a given time.
+	 * 
+	 * @param until The time.
+	 */
+	private void block(long until) {
+		blockedUntil = Math.max(blockedUntil, until);
+	}
+	
+	/**
+	 * Retrieves whether the bucket can be dropped without losing state.
+	 * 
+	 * @param idleTime The time in milliseconds the bucket has to be unused for.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean isIdle(long idleTime) {
+		long now = System.currentTimeMillis();
+		return now >= blockedUntil && now - lastUsed >= idleTime;
+	}
+	
+	/**
+	 * Retrieves the amount of tokens added per second.
+	 * 
+	 * @return The rate, 0 when unlimited.
+	 */
+	public double getRate() {
+		return rate;
+	}
+	
+	/**
+	 * Retrieves the maximum amount of tokens held.
+	 * 
+	 * @return The capacity.
+	 */
+	public double getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Retrieves the amount of tokens held.
+	 * 
+	 * @return The amount.
+	 */
+	public synchronized double getTokens() {
+		if (rate > 0D) {
+			refill();
+		}
+		return tokens;
+	}
+	
+	/**
+	 * Retrieves the time until which the server asked not to send requests.
+	 * 
+	 * @return The time.
+	 */
+	public synchronized long getBlockedUntil() {
+		return blockedUntil;
+	}
+	
+	/**
+	 * Retrieves whether requests are blocked.
+	 * 
+	 * @return The result.
+	 */
+	public synchronized boolean isBlocked() {
+		return System.currentTimeMillis() < blockedUntil;
+	}
+	
+	/**
+	 * Retrieves the amount of times requests were throttled by the server.
+	 * 
+	 * @return The amount.
+	 */
+	public synchronized int getThrottles() {
+		return throttles;
+	}
+	
+	/**
+	 * Retrieves the time the bucket was last used at.
+	 * 
+	 * @return The time.
+	 */
+	public long getLastUsed() {
+		return lastUsed;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		long blocked = blockedUntil - System.currentTimeMillis();
+		return (rate > 0D ? String.format("%.2f/%.0f tokens at %.2f/s", getTokens(), capacity, rate) : "Unlimited")
+				+ (blocked > 0 ? ", blocked for " + blocked + "ms" : "") + ", throttled " + throttles + " times";
+	}
+
+}
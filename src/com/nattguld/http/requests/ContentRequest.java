@@ -52,4 +52,12 @@ public abstract class ContentRequest extends Request {
 		return body;
 	}
 	
+	/**
+	 * Chunked uploads resend the range that wasn't acknowledged, which is safe to repeat.
+	 */
+	@Override
+	protected boolean isIdempotentByDefault() {
+		return super.isIdempotentByDefault() || (hasBody() && getBody().isChunked());
+	}
+	
 }
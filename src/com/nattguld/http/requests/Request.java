@@ -1,11 +1,16 @@
 package com.nattguld.http.requests;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import com.nattguld.http.DataCounter;
 import com.nattguld.http.content.EncType;
+import com.nattguld.http.download.DownloadSegment;
 import com.nattguld.http.headers.Headers;
+import com.nattguld.http.requests.execute.ExecutionContext;
 import com.nattguld.http.requests.execute.IRequestPostExecuteHandler;
+import com.nattguld.http.requests.execute.RequestAttempt;
 import com.nattguld.http.requests.execute.RequestProgressListener;
 import com.nattguld.http.response.RequestResponse;
 
@@ -42,6 +47,31 @@ public abstract class Request {
 	 */
 	private int attempts;
 	
+	/**
+	 * The attempts made since the request was last answered.
+	 */
+	private final List<RequestAttempt> attemptLog;
+	
+	/**
+	 * The state of the execution in progress, null when the request isn't being executed.
+	 */
+	private ExecutionContext executionContext;
+	
+	/**
+	 * Whether repeating the request is safe, null to go by the request type.
+	 */
+	private Boolean idempotent;
+	
+	/**
+	 * Whether identical concurrent requests may share one exchange even when cookies are sent.
+	 */
+	private boolean shareable;
+	
+	/**
+	 * Whether the response body is handed out as a stream read from the connection instead of being read into memory.
+	 */
+	private boolean streamBody;
+	
 	/**
 	 * Retrieves the expected response encoding type.
 	 */
@@ -67,6 +97,11 @@ public abstract class Request {
 	 */
 	private String savePath;
 	
+	/**
+	 * The segment of the file at the save path the response body is written into, if any.
+	 */
+	private DownloadSegment downloadSegment;
+	
 	/**
 	 * The progress listener.
 	 */
@@ -114,6 +149,7 @@ public abstract class Request {
 		this.responseEncType = EncType.URL_ENCODED;
 		this.decodeBody = true;
 		this.dataCounter = new DataCounter();
+		this.attemptLog = new ArrayList<>();
 		this.port = 80;
 		this.secFetchMode = "navigate";
 		this.postExecuteHandler = new IRequestPostExecuteHandler() {
@@ -286,6 +322,130 @@ public abstract class Request {
 		return attempts;
 	}
 	
+	/**
+	 * Registers the start of an attempt.
+	 * 
+	 * @param proxy The url of the proxy used, null when connecting directly.
+	 * 
+	 * @return The attempt.
+	 */
+	public RequestAttempt startAttempt(String proxy) {
+		RequestAttempt attempt = new RequestAttempt(attempts, proxy);
+		attemptLog.add(attempt);
+		return attempt;
+	}
+	
+	/**
+	 * Retrieves the latest attempt.
+	 * 
+	 * @return The attempt, null when none was made.
+	 */
+	public RequestAttempt getLastAttempt() {
+		return attemptLog.isEmpty() ? null : attemptLog.get(attemptLog.size() - 1);
+	}
+	
+	/**
+	 * Retrieves the attempts made since the request was last answered and starts a new log.
+	 * 
+	 * @return The attempts.
+	 */
+	public List<RequestAttempt> takeAttemptLog() {
+		List<RequestAttempt> log = new ArrayList<>(attemptLog);
+		attemptLog.clear();
+		return log;
+	}
+	
+	/**
+	 * Modifies the state of the execution in progress.
+	 * 
+	 * @param executionContext The new state, null when the execution ended.
+	 */
+	public void setExecutionContext(ExecutionContext executionContext) {
+		this.executionContext = executionContext;
+	}
+	
+	/**
+	 * Retrieves the state of the execution in progress.
+	 * 
+	 * @return The state, null when the request isn't being executed.
+	 */
+	public ExecutionContext getExecutionContext() {
+		return executionContext;
+	}
+	
+	/**
+	 * Modifies whether repeating the request is safe.
+	 * 
+	 * @param idempotent The new state, null to go by the request type.
+	 * 
+	 * @return The request.
+	 */
+	public Request setIdempotent(Boolean idempotent) {
+		this.idempotent = idempotent;
+		return this;
+	}
+	
+	/**
+	 * Retrieves whether repeating the request is safe, failed attempts that may have reached the server are only retried when it is.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isIdempotent() {
+		return Objects.nonNull(idempotent) ? idempotent : isIdempotentByDefault();
+	}
+	
+	/**
+	 * Retrieves whether repeating the request is safe when not set by hand.
+	 * 
+	 * @return The result.
+	 */
+	protected boolean isIdempotentByDefault() {
+		return requestType.isIdempotent();
+	}
+	
+	/**
+	 * Modifies whether identical concurrent requests may share one exchange even when cookies are sent.
+	 * 
+	 * @param shareable The new state.
+	 * 
+	 * @return The request.
+	 */
+	public Request setShareable(boolean shareable) {
+		this.shareable = shareable;
+		return this;
+	}
+	
+	/**
+	 * Retrieves whether identical concurrent requests may share one exchange even when cookies are sent.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isShareable() {
+		return shareable;
+	}
+	
+	/**
+	 * Modifies whether the response body is handed out as a stream read from the connection instead of being read into memory.
+	 * The connection stays taken until the body is closed or read up to its end.
+	 * 
+	 * @param streamBody The new state.
+	 * 
+	 * @return The request.
+	 */
+	public Request setStreamBody(boolean streamBody) {
+		this.streamBody = streamBody;
+		return this;
+	}
+	
+	/**
+	 * Retrieves whether the response body is handed out as a stream read from the connection instead of being read into memory.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isStreamBody() {
+		return streamBody;
+	}
+	
 	/**
 	 * Modifies the save path.
 	 * 
@@ -304,6 +464,27 @@ public abstract class Request {
 		return savePath;
 	}
 	
+	/**
+	 * Modifies the segment of the file at the save path the response body is written into.
+	 * 
+	 * @param downloadSegment The new download segment.
+	 * 
+	 * @return The request.
+	 */
+	public Request setDownloadSegment(DownloadSegment downloadSegment) {
+		this.downloadSegment = downloadSegment;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the segment of the file at the save path the response body is written into.
+	 * 
+	 * @return The download segment or null when the body is the whole file.
+	 */
+	public DownloadSegment getDownloadSegment() {
+		return downloadSegment;
+	}
+	
 	/**
 	 * Modifies the cache control.
 	 * 
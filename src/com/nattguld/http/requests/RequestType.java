@@ -8,15 +8,15 @@ package com.nattguld.http.requests;
 
 public enum RequestType {
     
-    POST("POST", true),
-    PUT("PUT", false),
-    GET("GET", true),
-    OPTIONS("OPTIONS", true),
-    DELETE("DELETE", true), 
-    HEAD("HEAD", false),
-    TRACE("TRACE", false),
-    CONNECT("CONNECT", false),
-    PATCH("PATCH", true);
+    POST("POST", true, false),
+    PUT("PUT", false, true),
+    GET("GET", true, true),
+    OPTIONS("OPTIONS", true, true),
+    DELETE("DELETE", true, true), 
+    HEAD("HEAD", false, true),
+    TRACE("TRACE", false, true),
+    CONNECT("CONNECT", false, false),
+    PATCH("PATCH", true, false);
     
 	
 	/**
@@ -29,6 +29,11 @@ public enum RequestType {
 	 */
 	private final boolean body;
 	
+	/**
+	 * Whether repeating the request has the same effect as sending it once.
+	 */
+	private final boolean idempotent;
+	
 	
 	/**
 	 * Creates a new request type.
@@ -36,10 +41,13 @@ public enum RequestType {
 	 * @param name The name.
 	 * 
 	 * @param body Whether the request can receive a response with body or not.
+	 * 
+	 * @param idempotent Whether repeating the request has the same effect as sending it once.
 	 */
-	private RequestType(String name, boolean body) {
+	private RequestType(String name, boolean body, boolean idempotent) {
 		this.name = name;
 		this.body = body;
+		this.idempotent = idempotent;
 	}
 	
 	/**
@@ -59,6 +67,15 @@ public enum RequestType {
 	public boolean isBody() {
 		return body;
 	}
+	
+	/**
+	 * Retrieves whether repeating the request has the same effect as sending it once.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isIdempotent() {
+		return idempotent;
+	}
     
     @Override
     public String toString() {
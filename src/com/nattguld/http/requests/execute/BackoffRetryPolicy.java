@@ -0,0 +1,99 @@
+package com.nattguld.http.requests.execute;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.nattguld.http.requests.Request;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class BackoffRetryPolicy implements IRetryPolicy {
+	
+	/**
+	 * The delay in milliseconds before the first retry.
+	 */
+	private final long baseDelay;
+	
+	/**
+	 * The longest delay in milliseconds between retries.
+	 */
+	private final long maxDelay;
+	
+	/**
+	 * Whether to switch to another proxy after connect level failures.
+	 */
+	private final boolean rotateProxy;
+	
+	
+	/**
+	 * Creates a new backoff retry policy.
+	 */
+	public BackoffRetryPolicy() {
+		this(250L, 10000L, true);
+	}
+	
+	/**
+	 * Creates a new backoff retry policy.
+	 * 
+	 * @param baseDelay The delay in milliseconds before the first retry.
+	 * 
+	 * @param maxDelay The longest delay in milliseconds between retries.
+	 * 
+	 * @param rotateProxy Whether to switch to another proxy after connect level failures.
+	 */
+	public BackoffRetryPolicy(long baseDelay, long maxDelay, boolean rotateProxy) {
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.rotateProxy = rotateProxy;
+	}
+	
+	/**
+	 * Requests that may have reached the server are only retried when repeating them is safe.
+	 * The delay doubles with each attempt, half of it is random so clients failing together don't retry together.
+	 */
+	@Override
+	public long getRetryDelay(Request request, FailureType failure, int attempt) {
+		if (!failure.isBeforeSend() && !request.isIdempotent()) {
+			return -1L;
+		}
+		long delay = Math.min(maxDelay, baseDelay << Math.min(20, Math.max(0, attempt - 1)));
+		long half = delay / 2;
+		return half + ThreadLocalRandom.current().nextLong(half + 1);
+	}
+	
+	@Override
+	public boolean isRotateProxy(FailureType failure) {
+		return rotateProxy && failure.isConnectLevel();
+	}
+	
+	/**
+	 * Retrieves the delay before the first retry.
+	 * 
+	 * @return The delay in milliseconds.
+	 */
+	public long getBaseDelay() {
+		return baseDelay;
+	}
+	
+	/**
+	 * Retrieves the longest delay between retries.
+	 * 
+	 * @return The delay in milliseconds.
+	 */
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+	
+	/**
+	 * Retrieves whether to switch to another proxy after connect level failures.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isRotateProxy() {
+		return rotateProxy;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.nattguld.http.requests.execute;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class DispatchExecutors {
+	
+	/**
+	 * The default executor for asynchronous dispatching.
+	 */
+	private static Executor defaultExecutor;
+	
+	
+	/**
+	 * Retrieves the default executor for asynchronous dispatching.
+	 * Virtual threads are used when the runtime supports them, daemon platform threads otherwise.
+	 * 
+	 * @return The executor.
+	 */
+	public static synchronized Executor getDefault() {
+		if (Objects.isNull(defaultExecutor)) {
+			defaultExecutor = createDefault();
+		}
+		return defaultExecutor;
+	}
+	
+	/**
+	 * Modifies the default executor for asynchronous dispatching.
+	 * 
+	 * @param executor The new executor.
+	 */
+	public static synchronized void setDefault(Executor executor) {
+		defaultExecutor = executor;
+	}
+	
+	/**
+	 * Creates the default executor.
+	 * 
+	 * @return The executor.
+	 */
+	private static Executor createDefault() {
+		try { //Looked up reflectively so the library keeps running on runtimes without virtual threads
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		
+		} catch (ReflectiveOperationException ex) {
+			AtomicInteger threadId = new AtomicInteger();
+			
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "HttpClient-Dispatcher-" + threadId.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.nattguld.http.requests.execute;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nattguld.http.requests.Request;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ExecutionContext {
+	
+	/**
+	 * The requests redirected from so far.
+	 */
+	private final List<Request> redirectionChain;
+	
+	/**
+	 * The referer of the session when the execution started.
+	 */
+	private final String referer;
+	
+	/**
+	 * The host contacted before the next attempt.
+	 */
+	private String contactedHost;
+	
+	/**
+	 * The last ocurred error.
+	 */
+	private String lastError;
+	
+	
+	/**
+	 * Creates a new execution context.
+	 * 
+	 * @param referer The referer of the session when the execution started.
+	 * 
+	 * @param contactedHost The host the session contacted last.
+	 */
+	public ExecutionContext(String referer, String contactedHost) {
+		this.redirectionChain = new ArrayList<>();
+		this.referer = referer;
+		this.contactedHost = contactedHost;
+		this.lastError = "Initial";
+	}
+	
+	/**
+	 * Retrieves the requests redirected from so far.
+	 * 
+	 * @return The redirection chain.
+	 */
+	public List<Request> getRedirectionChain() {
+		return redirectionChain;
+	}
+	
+	/**
+	 * Retrieves whether the execution is following a redirect.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isRedirected() {
+		return !redirectionChain.isEmpty();
+	}
+	
+	/**
+	 * Retrieves the referer of the session when the execution started.
+	 * 
+	 * @return The referer.
+	 */
+	public String getReferer() {
+		return referer;
+	}
+	
+	/**
+	 * Modifies the host contacted before the next attempt.
+	 * 
+	 * @param contactedHost The new host.
+	 */
+	public void setContactedHost(String contactedHost) {
+		this.contactedHost = contactedHost;
+	}
+	
+	/**
+	 * Retrieves the host contacted before the next attempt.
+	 * 
+	 * @return The host.
+	 */
+	public String getContactedHost() {
+		return contactedHost;
+	}
+	
+	/**
+	 * Modifies the last ocurred error.
+	 * 
+	 * @param lastError The new error.
+	 */
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+	
+	/**
+	 * Retrieves the last ocurred error.
+	 * 
+	 * @return The error.
+	 */
+	public String getLastError() {
+		return lastError;
+	}
+
+}
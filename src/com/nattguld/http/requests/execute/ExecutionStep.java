@@ -0,0 +1,136 @@
+package com.nattguld.http.requests.execute;
+
+import java.util.Objects;
+
+import com.nattguld.http.requests.Request;
+import com.nattguld.http.response.RequestResponse;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ExecutionStep {
+	
+	/**
+	 * The request to execute next.
+	 */
+	private final Request request;
+	
+	/**
+	 * The host to connect to.
+	 */
+	private final String host;
+	
+	/**
+	 * Whether to use SSL or not.
+	 */
+	private final boolean ssl;
+	
+	/**
+	 * The final response once the execution is done.
+	 */
+	private final RequestResponse response;
+	
+	/**
+	 * The delay in milliseconds before the next attempt.
+	 */
+	private long delay;
+	
+	
+	/**
+	 * Creates a new step that performs another attempt.
+	 * 
+	 * @param request The request to execute next.
+	 * 
+	 * @param host The host to connect to.
+	 * 
+	 * @param ssl Whether to use SSL or not.
+	 */
+	public ExecutionStep(Request request, String host, boolean ssl) {
+		this.request = request;
+		this.host = host;
+		this.ssl = ssl;
+		this.response = null;
+	}
+	
+	/**
+	 * Creates a new final step.
+	 * 
+	 * @param response The final response.
+	 */
+	public ExecutionStep(RequestResponse response) {
+		this.request = null;
+		this.host = null;
+		this.ssl = false;
+		this.response = response;
+	}
+	
+	/**
+	 * Modifies the delay before the next attempt.
+	 * 
+	 * @param delay The new delay in milliseconds.
+	 * 
+	 * @return The step.
+	 */
+	public ExecutionStep setDelay(long delay) {
+		this.delay = delay;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the delay before the next attempt.
+	 * 
+	 * @return The delay in milliseconds.
+	 */
+	public long getDelay() {
+		return delay;
+	}
+	
+	/**
+	 * Retrieves whether the execution is done or not.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isDone() {
+		return Objects.nonNull(response);
+	}
+	
+	/**
+	 * Retrieves the request to execute next.
+	 * 
+	 * @return The request.
+	 */
+	public Request getRequest() {
+		return request;
+	}
+	
+	/**
+	 * Retrieves the host to connect to.
+	 * 
+	 * @return The host.
+	 */
+	public String getHost() {
+		return host;
+	}
+	
+	/**
+	 * Retrieves whether to use SSL or not.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isSSL() {
+		return ssl;
+	}
+	
+	/**
+	 * Retrieves the final response.
+	 * 
+	 * @return The response.
+	 */
+	public RequestResponse getResponse() {
+		return response;
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.nattguld.http.requests.execute;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.PortUnreachableException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Objects;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public enum FailureType {
+	
+	DNS("DNS", true),
+	CONNECT("Connect", true),
+	TLS("TLS", true),
+	READ_TIMEOUT("Read timeout", false),
+	IO("IO", false),
+	PROTOCOL("Protocol", false),
+	SERVER_ERROR("Server error", false);
+	
+	
+	/**
+	 * The name.
+	 */
+	private final String name;
+	
+	/**
+	 * Whether the failure happens before the request is sent.
+	 */
+	private final boolean beforeSend;
+	
+	
+	/**
+	 * Creates a new failure type.
+	 * 
+	 * @param name The name.
+	 * 
+	 * @param beforeSend Whether the failure happens before the request is sent.
+	 */
+	private FailureType(String name, boolean beforeSend) {
+		this.name = name;
+		this.beforeSend = beforeSend;
+	}
+	
+	/**
+	 * Retrieves the name.
+	 * 
+	 * @return The name.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Retrieves whether the failure happens before the request is sent, making it safe to retry any request.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isBeforeSend() {
+		return beforeSend;
+	}
+	
+	/**
+	 * Retrieves whether the failure lies with reaching the host, which another proxy may get around.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isConnectLevel() {
+		return this == CONNECT || this == TLS;
+	}
+	
+	@Override
+	public String toString() {
+		return getName();
+	}
+	
+	/**
+	 * Classifies the exception an attempt failed with.
+	 * 
+	 * @param ex The exception.
+	 * 
+	 * @return The failure type.
+	 */
+	public static FailureType classify(Exception ex) {
+		if (ex instanceof UnknownHostException) {
+			return DNS;
+		}
+		if (ex instanceof SSLHandshakeException) { //The handshake completes before the request is written
+			return TLS;
+		}
+		if (ex instanceof SSLException) { //Record and alert failures may arrive while the response is being read
+			return IO;
+		}
+		if (ex instanceof ConnectException || ex instanceof NoRouteToHostException || ex instanceof PortUnreachableException) {
+			return CONNECT;
+		}
+		if (ex instanceof SocketTimeoutException) {
+			return Objects.nonNull(ex.getMessage()) && ex.getMessage().toLowerCase().contains("connect") ? CONNECT : READ_TIMEOUT;
+		}
+		if (ex instanceof InterruptedIOException) {
+			return READ_TIMEOUT;
+		}
+		return IO;
+	}
+
+}
@@ -0,0 +1,36 @@
+package com.nattguld.http.requests.execute;
+
+import com.nattguld.http.requests.Request;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public interface IRetryPolicy {
+	
+	
+	/**
+	 * Retrieves the time to wait before retrying a failed attempt.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param failure The failure.
+	 * 
+	 * @param attempt The attempt that failed, starting at 1.
+	 * 
+	 * @return The delay in milliseconds, -1 when the request shouldn't be retried.
+	 */
+	public long getRetryDelay(Request request, FailureType failure, int attempt);
+	
+	/**
+	 * Retrieves whether to switch to another proxy before retrying.
+	 * 
+	 * @param failure The failure.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isRotateProxy(FailureType failure);
+
+}
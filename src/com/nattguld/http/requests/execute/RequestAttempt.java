@@ -0,0 +1,166 @@
+package com.nattguld.http.requests.execute;
+
+import java.util.Objects;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class RequestAttempt {
+	
+	/**
+	 * The attempt number, starting at 1.
+	 */
+	private final int number;
+	
+	/**
+	 * The url of the proxy used, null when connecting directly.
+	 */
+	private final String proxy;
+	
+	/**
+	 * The time the attempt started at.
+	 */
+	private final long startedAt;
+	
+	/**
+	 * The time in nanoseconds the attempt started at.
+	 */
+	private final long startNanos;
+	
+	/**
+	 * The time in milliseconds the attempt took.
+	 */
+	private long duration;
+	
+	/**
+	 * The status code received, 0 when the attempt failed.
+	 */
+	private int statusCode;
+	
+	/**
+	 * The failure, null when a response was received.
+	 */
+	private FailureType failure;
+	
+	/**
+	 * The time in milliseconds waited before the next attempt.
+	 */
+	private long retryDelay;
+	
+	
+	/**
+	 * Creates a new request attempt.
+	 * 
+	 * @param number The attempt number, starting at 1.
+	 * 
+	 * @param proxy The url of the proxy used, null when connecting directly.
+	 */
+	public RequestAttempt(int number, String proxy) {
+		this.number = number;
+		this.proxy = proxy;
+		this.startedAt = System.currentTimeMillis();
+		this.startNanos = System.nanoTime();
+	}
+	
+	/**
+	 * Registers the response the attempt received.
+	 * 
+	 * @param statusCode The status code.
+	 */
+	public void complete(int statusCode) {
+		this.statusCode = statusCode;
+		this.duration = (System.nanoTime() - startNanos) / 1000000L;
+	}
+	
+	/**
+	 * Registers the failure the attempt ended with.
+	 * 
+	 * @param failure The failure.
+	 */
+	public void fail(FailureType failure) {
+		this.failure = failure;
+		this.duration = (System.nanoTime() - startNanos) / 1000000L;
+	}
+	
+	/**
+	 * Modifies the time waited before the next attempt.
+	 * 
+	 * @param retryDelay The new time in milliseconds.
+	 */
+	public void setRetryDelay(long retryDelay) {
+		this.retryDelay = retryDelay;
+	}
+	
+	/**
+	 * Retrieves the attempt number.
+	 * 
+	 * @return The number, starting at 1.
+	 */
+	public int getNumber() {
+		return number;
+	}
+	
+	/**
+	 * Retrieves the url of the proxy used.
+	 * 
+	 * @return The url, null when connecting directly.
+	 */
+	public String getProxy() {
+		return proxy;
+	}
+	
+	/**
+	 * Retrieves the time the attempt started at.
+	 * 
+	 * @return The time.
+	 */
+	public long getStartedAt() {
+		return startedAt;
+	}
+	
+	/**
+	 * Retrieves the time the attempt took.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+	
+	/**
+	 * Retrieves the status code received.
+	 * 
+	 * @return The status code, 0 when the attempt failed.
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	/**
+	 * Retrieves the failure the attempt ended with.
+	 * 
+	 * @return The failure, null when a response was received.
+	 */
+	public FailureType getFailure() {
+		return failure;
+	}
+	
+	/**
+	 * Retrieves the time waited before the next attempt.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public long getRetryDelay() {
+		return retryDelay;
+	}
+	
+	@Override
+	public String toString() {
+		return "#" + number + " " + (Objects.nonNull(failure) ? failure.getName() : String.valueOf(statusCode)) + " in " + duration + "ms"
+				+ (Objects.nonNull(proxy) ? " via " + proxy : "") + (retryDelay > 0 ? ", retried after " + retryDelay + "ms" : "");
+	}
+
+}
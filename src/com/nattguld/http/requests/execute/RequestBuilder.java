@@ -1,10 +1,26 @@
 package com.nattguld.http.requests.execute;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.nattguld.http.HTTPCode;
 import com.nattguld.http.requests.Request;
 import com.nattguld.http.response.RequestResponse;
+import com.nattguld.http.response.ResponseStatus;
+import com.nattguld.http.response.bodies.impl.StringResponseBody;
+import com.nattguld.http.util.NetUtil;
 
 /**
  * 
@@ -14,6 +30,16 @@ import com.nattguld.http.response.RequestResponse;
 
 public class RequestBuilder {
 	
+	/**
+	 * The amount of background requests browsers run in parallel per host.
+	 */
+	private static final int DEFAULT_CONNECTIONS_PER_HOST = 6;
+	
+	/**
+	 * The time in milliseconds the background requests get by default.
+	 */
+	private static final long DEFAULT_DEADLINE = 60000L;
+	
 	/**
 	 * The main request.
 	 */
@@ -24,6 +50,21 @@ public class RequestBuilder {
 	 */
 	private final Deque<Request> backgroundRequests;
 	
+	/**
+	 * The maximum amount of background requests running in parallel per host.
+	 */
+	private int connectionsPerHost;
+	
+	/**
+	 * The time in milliseconds the background requests get to finish.
+	 */
+	private long deadline;
+	
+	/**
+	 * Whether the background requests to a host are pipelined over one connection instead of running in parallel.
+	 */
+	private boolean pipelining;
+	
 	
 	/**
 	 * Creates a new request builder.
@@ -33,6 +74,8 @@ public class RequestBuilder {
 	public RequestBuilder(Request mainRequest) {
 		this.mainRequest = mainRequest;
 		this.backgroundRequests = new ArrayDeque<>();
+		this.connectionsPerHost = DEFAULT_CONNECTIONS_PER_HOST;
+		this.deadline = DEFAULT_DEADLINE;
 	}
 	
 	/**
@@ -47,8 +90,45 @@ public class RequestBuilder {
 		return this;
 	}
 	
+	/**
+	 * Modifies the maximum amount of background requests running in parallel per host.
+	 * 
+	 * @param connectionsPerHost The new amount.
+	 * 
+	 * @return The request builder.
+	 */
+	public RequestBuilder setConnectionsPerHost(int connectionsPerHost) {
+		this.connectionsPerHost = Math.max(1, connectionsPerHost);
+		return this;
+	}
+	
+	/**
+	 * Modifies the time the background requests get to finish.
+	 * 
+	 * @param deadline The new time in milliseconds.
+	 * 
+	 * @return The request builder.
+	 */
+	public RequestBuilder setDeadline(long deadline) {
+		this.deadline = deadline;
+		return this;
+	}
+	
+	/**
+	 * Modifies whether the background requests to a host are pipelined over one connection instead of running in parallel.
+	 * 
+	 * @param pipelining The new state.
+	 * 
+	 * @return The request builder.
+	 */
+	public RequestBuilder setPipelining(boolean pipelining) {
+		this.pipelining = pipelining;
+		return this;
+	}
+	
 	/**
 	 * Executes the requests.
+	 * The background requests run once the main request succeeded, in parallel like a browser loading the resources of a page.
 	 * 
 	 * @param requestExecutor The request executor to handle execution.
 	 * 
@@ -60,12 +140,99 @@ public class RequestBuilder {
 		if (!mainResponse.validate() || backgroundRequests.isEmpty()) {
 			return mainResponse;
 		}
-		while (!backgroundRequests.isEmpty()) { ////TODO same-origin/same-site/cross-site when called inside the page, like js scripts being called  cors vs no-cors etc
-			execute(requestExecutor, backgroundRequests.poll());
+		Map<String, Queue<Request>> hosts = new LinkedHashMap<>(); ////TODO same-origin/same-site/cross-site when called inside the page, like js scripts being called  cors vs no-cors etc
+		
+		while (!backgroundRequests.isEmpty()) {
+			Request request = backgroundRequests.poll();
+			hosts.computeIfAbsent(NetUtil.getDomain(request.getUrl()), h -> new ConcurrentLinkedQueue<>()).offer(request);
+		}
+		AtomicBoolean expired = new AtomicBoolean();
+		List<CompletableFuture<Void>> workers = new ArrayList<>();
+		
+		for (Queue<Request> queue : hosts.values()) {
+			if (pipelining) {
+				workers.add(CompletableFuture.runAsync(() -> drainPipelined(requestExecutor, queue), DispatchExecutors.getDefault()));
+				continue;
+			}
+			for (int i = Math.min(connectionsPerHost, queue.size()); i > 0; i--) {
+				workers.add(CompletableFuture.runAsync(() -> drain(requestExecutor, queue, expired), DispatchExecutors.getDefault()));
+			}
+		}
+		try {
+			CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).get(deadline, TimeUnit.MILLISECONDS);
+			
+		} catch (TimeoutException ex) {
+			expired.set(true);
+			
+			for (Queue<Request> queue : hosts.values()) {
+				for (Request request = queue.poll(); Objects.nonNull(request); request = queue.poll()) {
+					handle(request, new RequestResponse(request.getUrl(), request.getCode(), new ResponseStatus(HTTPCode.UNKNOWN, "Deadline exceeded")
+							, new StringResponseBody("Background requests didn't finish within " + deadline + "ms"), null));
+				}
+			}
+		} catch (InterruptedException ex) {
+			expired.set(true);
+			Thread.currentThread().interrupt();
+			
+		} catch (ExecutionException ex) {
+			ex.printStackTrace();
 		}
 		return mainResponse;
 	}
 	
+	/**
+	 * Executes the background requests to a host one after another, stopping once the deadline passed.
+	 * Requests still running at the deadline finish in the background and report to their handler when done.
+	 * 
+	 * @param requestExecutor The request executor.
+	 * 
+	 * @param queue The background requests to the host.
+	 * 
+	 * @param expired Whether the deadline passed.
+	 */
+	private static void drain(RequestExecutor requestExecutor, Queue<Request> queue, AtomicBoolean expired) {
+		while (!expired.get()) {
+			Request request = queue.poll();
+			
+			if (Objects.isNull(request)) {
+				return;
+			}
+			try {
+				execute(requestExecutor, request);
+				
+			} catch (RuntimeException ex) {
+				ex.printStackTrace();
+				System.err.println("Failed to execute background request " + request.getUrl());
+			}
+		}
+	}
+	
+	/**
+	 * Executes the background requests to a host as one pipelined batch.
+	 * The batch is taken from the queue at once, so it finishes in the background when the deadline passes.
+	 * 
+	 * @param requestExecutor The request executor.
+	 * 
+	 * @param queue The background requests to the host.
+	 */
+	private static void drainPipelined(RequestExecutor requestExecutor, Queue<Request> queue) {
+		List<Request> batch = new ArrayList<>(queue.size());
+		
+		for (Request request = queue.poll(); Objects.nonNull(request); request = queue.poll()) {
+			batch.add(request);
+		}
+		try {
+			List<RequestResponse> responses = requestExecutor.executePipelined(batch);
+			
+			for (int i = 0; i < batch.size(); i++) {
+				handle(batch.get(i), responses.get(i));
+			}
+		} catch (RuntimeException ex) {
+			ex.printStackTrace();
+			System.err.println("Failed to execute pipelined background requests");
+		}
+	}
+	
 	/**
 	 * Executes a given request.
 	 * 
@@ -75,15 +242,28 @@ public class RequestBuilder {
 	 * 
 	 * @return The request response.
 	 */
-	private RequestResponse execute(RequestExecutor requestExecutor, Request request) {
+	private static RequestResponse execute(RequestExecutor requestExecutor, Request request) {
 		RequestResponse rr = requestExecutor.execute(request);
-		
+		handle(request, rr);
+		return rr;
+	}
+	
+	/**
+	 * Hands the response of a request to its post execute handler if any.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param rr The request response.
+	 */
+	private static void handle(Request request, RequestResponse rr) {
+		if (Objects.isNull(request.getPostExecuteHandler())) {
+			return;
+		}
 		if (!rr.validate()) {
 			request.getPostExecuteHandler().onFail(request, rr);
-			return rr;
+			return;
 		}
 		request.getPostExecuteHandler().onSuccess(request, rr);
-		return rr;
 	}
 
 }
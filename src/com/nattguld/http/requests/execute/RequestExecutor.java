@@ -1,10 +1,9 @@
 package com.nattguld.http.requests.execute;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
@@ -14,20 +13,38 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.net.ssl.SSLHandshakeException;
 
 import com.nattguld.http.DataCounter;
 import com.nattguld.http.HTTPCode;
 import com.nattguld.http.browser.Browser;
+import com.nattguld.http.cache.CacheEntry;
+import com.nattguld.http.cache.HttpCache;
+import com.nattguld.http.cfg.HttpVersion;
 import com.nattguld.http.cfg.NetConfig;
+import com.nattguld.http.content.ChunkHandler;
 import com.nattguld.http.content.cookies.CookieJar;
+import com.nattguld.http.exceptions.StaleConnectionException;
 import com.nattguld.http.headers.Headers;
+import com.nattguld.http.http2.Http2Connection;
+import com.nattguld.http.http2.Http2Stream;
+import com.nattguld.http.pooling.ConnectionPool;
+import com.nattguld.http.pooling.ConnectionRoute;
+import com.nattguld.http.pooling.PooledSocket;
 import com.nattguld.http.proxies.HttpProxy;
+import com.nattguld.http.proxies.IProxyRotator;
+import com.nattguld.http.proxies.ProxyState;
 import com.nattguld.http.proxies.cfg.ProxyConfig;
+import com.nattguld.http.ratelimit.RateLimiter;
 import com.nattguld.http.requests.ContentRequest;
 import com.nattguld.http.requests.Request;
 import com.nattguld.http.requests.RequestType;
+import com.nattguld.http.requests.headers.HeaderTemplate;
 import com.nattguld.http.requests.headers.impl.DefaultHeadersBuilder;
 import com.nattguld.http.requests.headers.impl.SecFetchHeadersBuilder;
 import com.nattguld.http.requests.impl.GetRequest;
@@ -35,12 +52,14 @@ import com.nattguld.http.response.RequestResponse;
 import com.nattguld.http.response.ResponseStatus;
 import com.nattguld.http.response.bodies.IResponseBody;
 import com.nattguld.http.response.bodies.ResponseBodyParser;
+import com.nattguld.http.response.bodies.impl.StreamResponseBody;
 import com.nattguld.http.response.bodies.impl.StringResponseBody;
 import com.nattguld.http.response.decode.impl.HeaderDecoder;
 import com.nattguld.http.socket.HttpSocket;
-import com.nattguld.http.socket.ITestSocket;
+import com.nattguld.http.socket.ITransport;
 import com.nattguld.http.stream.CountInputStream;
 import com.nattguld.http.stream.CountOutputStream;
+import com.nattguld.http.stream.HTTPOutputStream;
 import com.nattguld.http.util.NetUtil;
 import com.nattguld.util.Misc;
 
@@ -58,14 +77,19 @@ public class RequestExecutor {
 	private static final int MAX_REDIRECTS = 5;
 	
 	/**
-	 * The HTTP socket being used.
+	 * The maximum amount of requests written ahead of their responses on one connection.
 	 */
-	private final HttpSocket httpSocket;
+	private static final int MAX_PIPELINE_DEPTH = 16;
 	
 	/**
-	 * The proxy being used.
+	 * The transport being used.
 	 */
-	private final HttpProxy httpProxy;
+	private final ITransport transport;
+	
+	/**
+	 * The proxy being used, switched when the proxy rotator hands out another one.
+	 */
+	private volatile HttpProxy httpProxy;
 	
 	/**
 	 * The browser being emulated.
@@ -93,20 +117,15 @@ public class RequestExecutor {
 	private final boolean disableCookies;
 	
 	/**
-	 * The redirection chain.
+	 * Whether connections are closed after each exchange instead of being pooled.
 	 */
-	private final List<Request> redirectionChain;
+	private final boolean connectionReuseDisabled;
 	
 	/**
 	 * The hosts that have been accessed by the client.
 	 */
 	private final List<String> accessedHosts;
 	
-	/**
-	 * The last ocurred error.
-	 */
-	private String lastError;
-	
 	/**
 	 * The last contacted host.
 	 */
@@ -116,12 +135,28 @@ public class RequestExecutor {
 	 * The last refered url.
 	 */
 	private String lastReferer;
-
+	
+	/**
+	 * The policy deciding when and how failed attempts are retried.
+	 */
+	private IRetryPolicy retryPolicy;
+	
+	/**
+	 * Switches to another proxy when the current one fails to connect, null when the proxy is fixed.
+	 */
+	private IProxyRotator proxyRotator;
+	
+	/**
+	 * Guards the session state, released while an exchange waits on the network so other requests of the session can proceed.
+	 * State that only concerns one execution, like its redirects and referer, is kept in the execution context of its request instead.
+	 */
+	private final ReentrantLock stateLock;
+	
 	
 	/**
 	 * Creates a new request executor.
 	 * 
-	 * @param httpSocket The HTTP socket being used.
+	 * @param transport The transport being used.
 	 * 
 	 * @param httpProxy The proxy being used.
 	 * 
@@ -134,19 +169,22 @@ public class RequestExecutor {
 	 * @param autoRedirectDisabled Whether auto redirection is disabled or not.
 	 * 
 	 *  @param disableCookies Whether to disable cookies or not.
+	 *  
+	 * @param connectionReuseDisabled Whether connections are closed after each exchange instead of being pooled.
 	 */
-	public RequestExecutor(HttpSocket httpSocket, HttpProxy httpProxy, Browser browser, CookieJar cookieJar, DataCounter dataCounter
-			, boolean autoRedirectDisabled, boolean disableCookies) {
-		this.httpSocket = httpSocket;
+	public RequestExecutor(ITransport transport, HttpProxy httpProxy, Browser browser, CookieJar cookieJar, DataCounter dataCounter
+			, boolean autoRedirectDisabled, boolean disableCookies, boolean connectionReuseDisabled) {
+		this.transport = transport;
 		this.httpProxy = httpProxy;
 		this.browser = browser;
 		this.cookieJar = cookieJar;
 		this.dataCounter = dataCounter;
 		this.autoRedirectDisabled = autoRedirectDisabled;
 		this.disableCookies = disableCookies;
-		this.redirectionChain = new ArrayList<>();
+		this.connectionReuseDisabled = connectionReuseDisabled;
 		this.accessedHosts = new ArrayList<>();
-		this.lastError = "Initial";
+		this.retryPolicy = new BackoffRetryPolicy();
+		this.stateLock = new ReentrantLock();
 	}
 	
 	/**
@@ -157,8 +195,12 @@ public class RequestExecutor {
 	 * @return The request response.
 	 */
 	public RequestResponse execute(Request request) {
-		String host = NetUtil.getDomain(request.getUrl());
-		return execute(request, host, HttpSocket.SSL_HOSTS.contains(host));
+		String flightKey = getFlightKey(request);
+		
+		if (Objects.nonNull(flightKey)) {
+			return SingleFlight.getSingleton().execute(flightKey, request, () -> execute(start(request)));
+		}
+		return execute(start(request));
 	}
 	
 	/**
@@ -173,114 +215,397 @@ public class RequestExecutor {
 	 * @return The request response.
 	 */
 	protected RequestResponse execute(Request request, String host, boolean ssl) {
+		return execute(new ExecutionStep(request, host, ssl));
+	}
+	
+	/**
+	 * Executes the attempts, redirects and retries of a request one after another.
+	 * 
+	 * @param step The first step.
+	 * 
+	 * @return The request response.
+	 */
+	private RequestResponse execute(ExecutionStep step) {
+		while (!step.isDone()) {
+			if (step.getDelay() > 0) {
+				Misc.sleep((int)step.getDelay());
+			}
+			step = attempt(step.getRequest(), step.getHost(), step.isSSL());
+		}
+		return step.getResponse();
+	}
+	
+	/**
+	 * Executes a request without blocking the calling thread.
+	 * Every attempt, redirect and retry runs as a separate stage on the given executor.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param executor The executor.
+	 * 
+	 * @return The future request response.
+	 */
+	public CompletableFuture<RequestResponse> executeAsync(Request request, Executor executor) {
+		String flightKey = getFlightKey(request);
+		
+		if (Objects.nonNull(flightKey)) {
+			return SingleFlight.getSingleton().executeAsync(flightKey, request, () -> executeAsync(start(request), executor));
+		}
+		return executeAsync(start(request), executor);
+	}
+	
+	/**
+	 * Executes the remaining steps of a request without blocking the calling thread.
+	 * 
+	 * @param step The next step.
+	 * 
+	 * @param executor The executor.
+	 * 
+	 * @return The future request response.
+	 */
+	private CompletableFuture<RequestResponse> executeAsync(ExecutionStep step, Executor executor) {
+		if (step.isDone()) {
+			return CompletableFuture.completedFuture(step.getResponse());
+		}
+		Executor stageExecutor = step.getDelay() > 0 
+				? CompletableFuture.delayedExecutor(step.getDelay(), TimeUnit.MILLISECONDS, executor) : executor;
+		
+		return CompletableFuture.supplyAsync(() -> attempt(step.getRequest(), step.getHost(), step.isSSL()), stageExecutor)
+				.thenCompose(next -> executeAsync(next, executor));
+	}
+	
+	/**
+	 * Executes a batch of requests to one host over a single connection using HTTP/1.1 pipelining.
+	 * The requests are written back to back before their responses are read in order, saving a round trip per request.
+	 * Requests left when the server closes early or answers out of spec are executed one after another instead, like batches that can't be pipelined.
+	 * 
+	 * @param requests The requests.
+	 * 
+	 * @return The request responses, in the order of the requests.
+	 */
+	public List<RequestResponse> executePipelined(List<Request> requests) {
+		List<RequestResponse> responses = new ArrayList<>(requests.size());
+		
+		if (isPipelinable(requests)) {
+			String host = NetUtil.getDomain(requests.get(0).getUrl());
+			boolean ssl = HttpSocket.SSL_HOSTS.contains(host);
+			
+			while (responses.size() < requests.size()) {
+				List<Request> batch = requests.subList(responses.size(), Math.min(requests.size(), responses.size() + MAX_PIPELINE_DEPTH));
+				List<ExecutionStep> answered = pipeline(batch, host, ssl);
+				
+				for (ExecutionStep step : answered) {
+					responses.add(execute(step)); //Redirects, retries and rate limit waits continue from the response received
+				}
+				if (answered.size() < batch.size()) {
+					break;
+				}
+			}
+		}
+		for (int i = responses.size(); i < requests.size(); i++) {
+			responses.add(execute(requests.get(i)));
+		}
+		return responses;
+	}
+	
+	/**
+	 * Retrieves whether a batch of requests can be pipelined.
+	 * Only GET and HEAD requests to the same host and port are, HTTP/2 sessions multiplex their requests instead.
+	 * 
+	 * @param requests The requests.
+	 * 
+	 * @return The result.
+	 */
+	private boolean isPipelinable(List<Request> requests) {
+		if (requests.size() < 2 || browser.useCache() || browser.getHttpVersion().getMessageVersion() != HttpVersion.HTTP_1_1) {
+			return false;
+		}
+		String host = NetUtil.getDomain(requests.get(0).getUrl());
+		
+		if (HttpSocket.SSL_HOSTS.contains(host) && browser.getHttpVersion() == HttpVersion.HTTP_2_0) {
+			return false;
+		}
+		for (Request request : requests) {
+			if ((request.getRequestType() != RequestType.GET && request.getRequestType() != RequestType.HEAD) || request.hasBody()
+					|| request.isStreamBody() || Objects.nonNull(request.getSavePath()) || Objects.nonNull(request.getDownloadSegment())) {
+				return false;
+			}
+			if (!host.equals(NetUtil.getDomain(request.getUrl())) || request.getPort() != requests.get(0).getPort()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Writes a batch of requests back to back on one connection and reads their responses in order.
+	 * Reading stops at the first response that's missing, out of spec or ends the connection, the requests left are reset to be executed anew.
+	 * 
+	 * @param batch The requests.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param ssl Whether to use SSL or not.
+	 * 
+	 * @return The next step of each answered request in order.
+	 */
+	private List<ExecutionStep> pipeline(List<Request> batch, String host, boolean ssl) {
+		List<Request> sent = new ArrayList<>(batch.size());
+		List<RequestResponse> responses = new ArrayList<>(batch.size());
+		List<ExecutionStep> steps = new ArrayList<>(batch.size());
+		ByteArrayOutputStream heads = new ByteArrayOutputStream();
+		
+		stateLock.lock();
+		
+		try {
+			for (Request request : batch) {
+				if (RateLimiter.getSingleton().acquire(host, httpProxy) > 0) { //The rest waits for the rate limit the regular way
+					break;
+				}
+				request.setExecutionContext(new ExecutionContext(lastReferer, lastContactedHost)); //The batch goes out at once, so all start from the same session state
+				request.setAttempts(request.getAttempts() + 1);
+				request.startAttempt(Objects.nonNull(httpProxy) ? httpProxy.getUrl() : null);
+				
+				String endpoint = request.getUrl().substring(request.getUrl().indexOf(host) + host.length(), request.getUrl().length());
+				Headers headers = new Headers();
+				HeaderTemplate template = buildHeaders(request, request.getExecutionContext(), ssl, headers);
+				byte[] head = template.encode(request.getRequestType().getName() + " " + (endpoint.isEmpty() ? "/" : endpoint) 
+						+ " " + HttpVersion.HTTP_1_1.getName(), headers);
+				
+				heads.write(head, 0, head.length);
+				request.getDataCounter().addUp(head.length);
+				sent.add(request);
+			}
+		} finally {
+			stateLock.unlock();
+		}
+		if (sent.isEmpty()) {
+			return steps;
+		}
+		FailureType failure = FailureType.PROTOCOL;
+		
+		try (PooledSocket socket = transport.connect(httpProxy, host, sent.get(0).getPort(), browser, ssl, !connectionReuseDisabled)) {
+			socket.setReusable(false); //Only a connection that delivered every response returns to the pool
+			
+			CountOutputStream out = new CountOutputStream(socket.getOutputStream(), getDataCounters(null));
+			out.write(heads.toByteArray()); //All requests go out in one write
+			out.flush();
+			
+			BufferedInputStream bis = new BufferedInputStream(new CountInputStream(socket.getInputStream(), getDataCounters(null)));
+			boolean persistent = true;
+			long keepAliveTimeout = 0L;
+			
+			for (Request request : sent) {
+				HeaderDecoder hd = new HeaderDecoder();
+				
+				if (Objects.isNull(hd.decode(bis)) || Objects.isNull(hd.getResponseStatus()) 
+						|| hd.getResponseStatus().getHttpCode().getCode() < 200) { //Closed early or an interim response no GET asks for
+					break;
+				}
+				ResponseStatus rs = hd.getResponseStatus();
+				Headers responseHeaders = hd.getHeaders();
+				cookieJar.importCookies(hd.getCookies(), request.getUrl());
+				
+				IResponseBody<?> responseBody = new StringResponseBody("");
+				boolean messageComplete = true;
+				
+				if (hasResponseBody(request, rs)) {
+					ResponseBodyParser bodyParser = new ResponseBodyParser(request, responseHeaders);
+					responseBody = bodyParser.parse(bis);
+					messageComplete = bodyParser.isMessageComplete();
+				}
+				responses.add(new RequestResponse(request.getUrl(), request.getCode(), rs, responseBody, responseHeaders));
+				persistent = messageComplete && ConnectionPool.isPersistent(rs, responseHeaders);
+				keepAliveTimeout = ConnectionPool.getKeepAliveTimeout(responseHeaders);
+				
+				if (!persistent) { //The responses after it can't be read from this connection
+					break;
+				}
+			}
+			if (responses.size() == sent.size() && persistent) {
+				socket.setKeepAliveTimeout(keepAliveTimeout);
+				socket.setReusable(!connectionReuseDisabled);
+			}
+		} catch (Exception ex) {
+			if (NetConfig.getConfig().isDebug()) {
+				ex.printStackTrace();
+			}
+			failure = FailureType.classify(ex);
+			System.err.println("Pipeline broken off (" + ex.getMessage() + ") [" + host + "]");
+		}
+		stateLock.lock();
+		
+		try {
+			if (Objects.nonNull(httpProxy)) {
+				httpProxy.registerAttempt(!responses.isEmpty());
+			}
+			for (int i = responses.size(); i < sent.size(); i++) { //Executed anew like requests that were never pipelined
+				Request request = sent.get(i);
+				request.getLastAttempt().fail(failure);
+				request.setAttempts(0);
+				request.takeAttemptLog();
+				request.setExecutionContext(null);
+			}
+			for (int i = 0; i < responses.size(); i++) {
+				Request request = sent.get(i);
+				RequestResponse rr = responses.get(i);
+				
+				if (Objects.nonNull(httpProxy)) {
+					httpProxy.getHealth().registerResponse(rr.getCode());
+				}
+				request.getLastAttempt().complete(rr.getCode());
+				long throttled = RateLimiter.getSingleton().registerResponse(host, httpProxy, rr.getResponseStatus().getHttpCode(), rr.getHeaders());
+				ExecutionStep next = handleResponse(request, host, ssl, rr, throttled);
+				
+				if (next.isDone()) {
+					next.getResponse().setAttempts(request.takeAttemptLog());
+					request.setExecutionContext(null);
+				}
+				steps.add(next);
+			}
+		} finally {
+			stateLock.unlock();
+		}
+		return steps;
+	}
+	
+	/**
+	 * Retrieves the key under which identical concurrent requests share one exchange.
+	 * Only idempotent requests without a body share, and only when marked shareable or coalescing is on and they send no cookies.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @return The key, null when the request is executed on its own.
+	 */
+	private String getFlightKey(Request request) {
+		if (!request.isIdempotent() || request.isStreamBody() || (request instanceof ContentRequest && ((ContentRequest)request).hasBody())
+				|| Objects.nonNull(request.getSavePath()) || Objects.nonNull(request.getDownloadSegment())) {
+			return null;
+		}
+		if (!request.isShareable() && (!NetConfig.getConfig().isCoalesceRequests() || (!disableCookies && Objects.nonNull(cookieJar) 
+				&& Objects.nonNull(cookieJar.getCookieHeader(request.getUrl()))))) {
+			return null;
+		}
+		return SingleFlight.getSingleton().getKey(request, browser, httpProxy);
+	}
+	
+	/**
+	 * Creates the first step for a request.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @return The step.
+	 */
+	private ExecutionStep start(Request request) {
+		String host = NetUtil.getDomain(request.getUrl());
+		return new ExecutionStep(request, host, HttpSocket.SSL_HOSTS.contains(host));
+	}
+	
+	/**
+	 * Performs a single attempt of a request, handing the attempts made to the response once it's final.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param ssl Whether to use SSL or not.
+	 * 
+	 * @return The next step.
+	 */
+	private ExecutionStep attempt(Request request, String host, boolean ssl) {
+		stateLock.lock();
+		
+		try {
+			if (Objects.isNull(request.getExecutionContext())) { //The execution starts from the session as it is now
+				request.setExecutionContext(new ExecutionContext(lastReferer, lastContactedHost));
+			}
+			ExecutionStep next = dispatch(request, host, ssl);
+			
+			if (next.isDone()) {
+				next.getResponse().setAttempts(request.takeAttemptLog());
+				request.setExecutionContext(null);
+			}
+			return next;
+			
+		} finally {
+			stateLock.unlock();
+		}
+	}
+	
+	/**
+	 * Performs a single attempt of a request.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param ssl Whether to use SSL or not.
+	 * 
+	 * @return The next step.
+	 */
+	private ExecutionStep dispatch(Request request, String host, boolean ssl) {
+		ExecutionContext context = request.getExecutionContext();
+		boolean caching = browser.useCache() && HttpCache.isCacheable(request);
+		
+		Headers headers = new Headers(); //Only holds the headers that change per request, the template holds the rest
+		HeaderTemplate template = buildHeaders(request, context, ssl, headers);
+		
+		Headers sent = caching ? template.fill(headers) : null;
+		CacheEntry cached = caching ? HttpCache.getSingleton().lookup(request, sent) : null;
+		boolean fresh = Objects.nonNull(cached) && cached.isFresh(sent.getValueIgnoreCase("Cache-Control"));
+		long rateLimitWait = fresh ? 0L : RateLimiter.getSingleton().acquire(host, httpProxy);
+		
+		if (rateLimitWait > 0) { //Waiting for the rate limit doesn't take up an attempt
+			return awaitRateLimit(request, host, ssl, rateLimitWait);
+		}
 		request.setAttempts(request.getAttempts() + 1);
 		
 		if (request.getAttempts() > browser.getConnectionAttempts()) {
 			RequestResponse tooManyAttemptsResponse = new RequestResponse(request.getUrl(), request.getCode()
-					, new ResponseStatus(HTTPCode.UNKNOWN, "Too many failed attempts (" + lastError + ")")
-					, new StringResponseBody("Failed to dispatch request (" + lastError + ") (attempts: " + (request.getAttempts()  - 1) + ")"), null);
+					, new ResponseStatus(HTTPCode.UNKNOWN, "Too many failed attempts (" + context.getLastError() + ")")
+					, new StringResponseBody("Failed to dispatch request (" + context.getLastError() + ") (attempts: " + (request.getAttempts()  - 1) + ")"), null);
+			request.setAttempts(0);
+			return new ExecutionStep(tooManyAttemptsResponse);
+		}
+		if (Objects.nonNull(httpProxy) && httpProxy.getState() == ProxyState.DOWN && !httpProxy.isAvailable() 
+				&& !rotateProxy()) { //Attempts through a proxy that's down fail until it may be probed
 			request.setAttempts(0);
-			return tooManyAttemptsResponse;
+			return new ExecutionStep(new RequestResponse(request.getUrl(), request.getCode(), new ResponseStatus(HTTPCode.UNKNOWN, "Proxy down")
+					, new StringResponseBody("Proxy " + httpProxy.getUrl() + " is down until " + httpProxy.getHealth().getRetryAt()), null));
 		}
+		request.startAttempt(Objects.nonNull(httpProxy) ? httpProxy.getUrl() : null);
+		
 		//String host = NetUtil.getDomain(request.getUrl());
 		String endpoint = request.getUrl().substring(request.getUrl().indexOf(host) + host.length(), request.getUrl().length());
 		
 		if (NetConfig.getConfig().isDebug()) {
 			System.out.println("Host: " + host + ", Endpoint: " + endpoint);
 		}
-		Headers headers = new Headers();
-		
-		new DefaultHeadersBuilder(browser.getUserAgent(), browser.getLanguage(), lastReferer
-				, browser.isDoNotTrack(), !redirectionChain.isEmpty(), disableCookies ? null : cookieJar)
-			.build(request, headers);
+		RequestResponse hit = null;
 		
-		if (ssl) {
-			new SecFetchHeadersBuilder(lastContactedHost, accessedHosts, redirectionChain).build(request, headers);
-		}
-		if (Objects.nonNull(request.getHeaders()) && !request.getHeaders().getHeaders().isEmpty()) { //Setting custom headers
-			for (Entry<String, String> header : request.getHeaders().getHeaders().entrySet()) {
-				if (Objects.isNull(header.getValue())) {
-					headers.remove(header.getKey());
-					continue;
-				}
-				headers.add(header.getKey(), header.getValue());
-			}
+		if (fresh) {
+			hit = HttpCache.getSingleton().hit(request, cached);
+			
+		} else if (Objects.nonNull(cached)) {
+			cached.addValidators(headers);
 		}
-		StringBuilder raw = new StringBuilder();
 		RequestResponse rr = null;
+		long requestTime = System.currentTimeMillis();
 
-		try (ITestSocket socket = httpSocket.connect(httpProxy, host, request.getPort(), browser, ssl)) {
-			try (BufferedOutputStream out = new BufferedOutputStream(new CountOutputStream(socket.getSocket().getOutputStream(), request.getDataCounter()))) {
-				PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), true) {
-					
-					/**
-					 * The string builder.
-					 */
-					private final StringBuilder raw = new StringBuilder();
-					
-					@Override
-					public void println(String s) {
-						super.println(s);
-						
-						if (NetConfig.getConfig().isDebug()) {
-							raw.append(s);
-							raw.append(System.lineSeparator());
-						}
-					}
-				};
-				writer.println(request.getRequestType().getName() + " " + (endpoint.isEmpty() ? "/" : endpoint) + " " + browser.getHttpVersion().getName());
-
-				for (Entry<String, String> header : headers.getHeaders().entrySet()) {
-					writer.println(header.getKey() + ": " + header.getValue());
-				}
-				writer.println();
-				writer.flush();
+		try {
+			rr = Objects.nonNull(hit) ? hit : exchangeUnlocked(request, host, endpoint, ssl, template, headers);
 			
-				if (NetConfig.getConfig().isDebug()) {
-					System.err.println(raw.toString());
-				}
-				if (request.hasBody()) { 
-					ContentRequest contReq = ((ContentRequest)request);
-					
-					if (Objects.nonNull(contReq.getBody().getContent())) {
-						contReq.getBody().write(out);
-					}
-				}
-				out.flush();
-
-				try (BufferedInputStream bis = new BufferedInputStream(new CountInputStream(socket.getSocket().getInputStream(), request.getDataCounter()))) {
-					HeaderDecoder hd = new HeaderDecoder();
-					hd.decode(bis);
-
-					ResponseStatus rs = hd.getResponseStatus();
-					Headers responseHeaders = hd.getHeaders();
-					
-					if (Objects.isNull(rs)) {
-						System.err.println("Failed to decode headers [" + request.getRequestType().getName() + " => " + request.getUrl() + "]");
-						return execute(request, host, ssl);
-					}
-					cookieJar.importCookies(hd.getCookies());
-					
-					IResponseBody<?> responseBody = rs.getHttpCode() != HTTPCode.NO_CONTENT 
-							? ResponseBodyParser.parseResponseBody(request, responseHeaders, bis) : new StringResponseBody("");
-					rr = new RequestResponse(request.getUrl(), request.getCode(), rs, responseBody, responseHeaders);
-
-				}
-				writer.close();
-
-				if (NetConfig.getConfig().isDebug()) {
-					System.out.println("Request Data [Down: " + request.getDataCounter().getDown() + ", Up: " + request.getDataCounter().getUp());
-					System.out.println("Session Data [Down: " + dataCounter.getDown() + ", Up: " + dataCounter.getUp());
-				}
-				if (ProxyConfig.getConfig().isCellularMode()) {
-					NetConfig.getConfig().getCellularDataCounter().addUp(request.getDataCounter().getUp());
-					NetConfig.getConfig().getCellularDataCounter().addDown(request.getDataCounter().getDown());
-				}
-				dataCounter.addUp(request.getDataCounter().getUp());
-				dataCounter.addDown(request.getDataCounter().getDown());
+			if (Objects.isNull(rr)) {
+				context.setLastError("Failed to decode headers [" + request.getRequestType().getName() + " => " + request.getUrl() + "]");
+				System.err.println(context.getLastError());
+				return retry(request, host, ssl, FailureType.PROTOCOL);
+			}
+			if (NetConfig.getConfig().isDebug()) {
+				System.out.println("Request Data [Down: " + request.getDataCounter().getDown() + ", Up: " + request.getDataCounter().getUp());
+				System.out.println("Session Data [" + dataCounter.getSummary() + "]");
+				System.out.println("Global Data [" + DataCounter.getGlobal().getSummary() + "]");
+				System.out.println("Cache [" + HttpCache.getSingleton().getCounter().getSummary() + "]");
 			}
-			socket.close();
-			
 		} catch (UnknownHostException ex) {
 			return handleRequestException("Unknown host", ex, host, request, ssl);
 			
@@ -302,19 +627,62 @@ public class RequestExecutor {
 		} catch (Exception ex) {
 			return handleRequestException("Exception", ex, host, request, ssl);
 		}
+		request.getLastAttempt().complete(rr.getCode());
+		
+		if (rr.getCode() != request.getCode()) { //Unexpected responses may be dropped for a redirect or retry, so their body can't keep the connection
+			rr = readStreamed(request, rr);
+		}
+		long throttled = 0L;
+		
+		if (Objects.isNull(hit)) { //Responses served from the cache never reached the proxy or the server
+			if (Objects.nonNull(httpProxy)) {
+				httpProxy.getHealth().registerResponse(rr.getCode());
+				httpProxy.registerAttempt(true);
+			}
+			throttled = RateLimiter.getSingleton().registerResponse(host, httpProxy, rr.getResponseStatus().getHttpCode(), rr.getHeaders());
+			
+			if (caching) {
+				rr = HttpCache.getSingleton().update(request, sent, cached, rr, requestTime);
+				
+			} else if (browser.useCache() && request.getRequestType() != RequestType.GET && request.getRequestType() != RequestType.HEAD
+					&& rr.getResponseStatus().getHttpCode().isSuccess()) { //Changing a resource makes its cached response outdated
+				HttpCache.getSingleton().invalidate(request.getUrl());
+			}
+		}
+		return handleResponse(request, host, ssl, rr, throttled);
+	}
+	
+	/**
+	 * Handles the response to an attempt, following redirects and scheduling retries where needed.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param ssl Whether SSL was used or not.
+	 * 
+	 * @param rr The response.
+	 * 
+	 * @param throttled The time in milliseconds the rate limiter asked to wait after the response.
+	 * 
+	 * @return The next step.
+	 */
+	private ExecutionStep handleResponse(Request request, String host, boolean ssl, RequestResponse rr, long throttled) {
+		ExecutionContext context = request.getExecutionContext();
+		
 		if (!accessedHosts.contains(host)) {
 			accessedHosts.add(host);
 		}
+		context.setContactedHost(host);
 		lastContactedHost = host;
 		
 		if (rr.getCode() != request.getCode()) {
 			if (rr.getResponseStatus().getHttpCode().isRedirection()) {
 				if (!autoRedirectDisabled) {
-					if (redirectionChain.size() >= MAX_REDIRECTS) {
-						redirectionChain.clear();
+					if (context.getRedirectionChain().size() >= MAX_REDIRECTS) {
 						request.setAttempts(0);
-						return new RequestResponse(request.getUrl(), request.getCode(), new ResponseStatus(HTTPCode.UNKNOWN, "Too many redirects")
-								, new StringResponseBody("Too many redirects through " + request.getUrl()), null);
+						return new ExecutionStep(new RequestResponse(request.getUrl(), request.getCode(), new ResponseStatus(HTTPCode.UNKNOWN, "Too many redirects")
+								, new StringResponseBody("Too many redirects through " + request.getUrl()), null));
 					}
 					String redirectUrl = rr.getLocation();
 						
@@ -332,50 +700,62 @@ public class RequestExecutor {
 							externalHost = false;
 						}
 						if (NetConfig.getConfig().isDebug()) {
-							System.out.println("Redirect (" + rr.getCode() + ") => " + redirectUrl + " [Last GET: " + lastReferer + "][Location: " + rr.getLocation() + "]");	
+							System.out.println("Redirect (" + rr.getCode() + ") => " + redirectUrl + " [Last GET: " + context.getReferer() + "][Location: " + rr.getLocation() + "]");	
 						}
-						redirectionChain.add(request);
+						context.getRedirectionChain().add(request);
 						
 						if (rr.getCode() == 301 && redirectUrl.equals(request.getUrl())) {
 							request.setAttempts(0);
-							lastError = "SSL redirect requested";
+							context.setLastError("SSL redirect requested");
 							System.err.println("SSL redirect");
-							return execute(request, host, true);
+							return new ExecutionStep(request, host, true);
 						}
 						request.setAttempts(0);
 						Request redirReq = new GetRequest(redirectUrl, 200, request.getHeaders())
 								.setPort(request.getPort()).setDecodeBody(request.isDecodeBody());
 						redirReq.setSavePath(request.getSavePath());
+						redirReq.setDownloadSegment(request.getDownloadSegment());
 						redirReq.setProgressListener(request.getProgressListener());
-						return externalHost ? execute(redirReq) : execute(redirReq, host, ssl);
+						redirReq.setStreamBody(request.isStreamBody());
+						redirReq.setExecutionContext(context); //The redirect continues the execution
+						request.setExecutionContext(null);
+						return externalHost ? start(redirReq) : new ExecutionStep(redirReq, host, ssl);
 					}
 					System.err.println("No redirect URL found on redirect response [" + request.getRequestType().getName() + " => " + request.getUrl() + "]");
 				}
 			} else if (rr.getResponseStatus().getHttpCode().isClientError()) {
 				if (rr.getResponseStatus().getHttpCode() == HTTPCode.FORBIDDEN && !ssl) {
 					request.setAttempts(0);
-					lastError = "Forbidden, trying with SSL";
-					return execute(request, host, true);
+					context.setLastError("Forbidden, trying with SSL");
+					return new ExecutionStep(request, host, true);
 				}
 				if (rr.getResponseStatus().getHttpCode() == HTTPCode.BAD_REQUEST) {
 					if (!ssl && request.getUrl().startsWith("https")) {
-						redirectionChain.add(request);
+						context.getRedirectionChain().add(request);
 						request.setAttempts(0);
-						lastError = "Bad request, trying with SSL";
-						return execute(request, host, true);
+						context.setLastError("Bad request, trying with SSL");
+						return new ExecutionStep(request, host, true);
 					}
 				}
 				if (rr.getResponseStatus().getHttpCode() == HTTPCode.TOO_MANY_REQUESTS) {
-					System.err.println("Too many requests, waiting for 30 seconds to try again");
-					Misc.sleep(30000);
-					lastError = "Too many requests";
-					return execute(request, host, ssl);
+					System.err.println("Too many requests, waiting for " + (throttled / 1000L) + " seconds to try again");
+					context.setLastError("Too many requests");
+					return awaitRateLimit(request, host, ssl, throttled);
 				}
 				System.err.println("Client error " + rr.getResponseStatus().getHttpCode().toString());
 				
 			} else if (rr.getResponseStatus().getHttpCode().isServerError()) {
 				System.err.println("Server error " + rr.getResponseStatus().getHttpCode().toString());
 				
+				if (request.getAttempts() < browser.getConnectionAttempts()) { //The last server error is returned as is
+					long delay = retryPolicy.getRetryDelay(request, FailureType.SERVER_ERROR, request.getAttempts());
+					
+					if (delay >= 0) {
+						context.setLastError("Server error " + rr.getCode());
+						request.getLastAttempt().setRetryDelay(delay);
+						return new ExecutionStep(request, host, ssl).setDelay(delay);
+					}
+				}
 			} else if (!rr.getResponseStatus().getHttpCode().isSuccess()) {
 				System.err.println("Unsuccessful request " + rr.getResponseStatus().getHttpCode().toString());
 			}
@@ -384,47 +764,623 @@ public class RequestExecutor {
 				&& !request.isXMLHttpRequest() && request.getUrl().contains(host)) {
 			lastReferer = request.getUrl();
 		}
-		redirectionChain.clear();
+		context.getRedirectionChain().clear();
 
 		if (request instanceof ContentRequest) {
 			ContentRequest contReq = ((ContentRequest)request);
 			
-			if (contReq.hasBody() && contReq.getBody().isChunked()) {
-				if (!contReq.getBody().getChunkHandler().isFinished()) {
+			if (contReq.hasBody() && contReq.getBody().isChunked() && Objects.nonNull(contReq.getBody().getChunkHandler())) {
+				ChunkHandler chunkHandler = contReq.getBody().getChunkHandler();
+				
+				if (rr.getResponseStatus().getHttpCode().isSuccess()) { //Failed attempts resend the same range as it was never acknowledged
+					chunkHandler.acknowledge();
+					
 					if (Objects.nonNull(contReq.getProgressListener())) {
-						contReq.getProgressListener().setProgress(contReq.getBody().getChunkHandler().getProgress());
+						contReq.getProgressListener().setProgress(chunkHandler.getProgress());
+					}
+					if (!chunkHandler.isFinished()) {
+						readStreamed(request, rr); //Only the response to the last chunk is handed out
+						request.setAttempts(0);
+						return new ExecutionStep(request, host, ssl);
 					}
-					request.setAttempts(0);
-					return execute(request, host, ssl);
 				}
 			}
 		}
 		request.setAttempts(0);
-		return rr;
+		return new ExecutionStep(rr);
 	}
 	
 	/**
-	 * Handles a request exception.
+	 * Builds the headers of a request from the session state.
 	 * 
-	 * @param message The exception error message.
+	 * @param request The request.
 	 * 
-	 * @param ex The exception.
+	 * @param context The execution context.
 	 * 
-	 * @param host The host.
+	 * @param ssl Whether to use SSL or not.
+	 * 
+	 * @param headers The headers that change per request, which are added to this.
+	 * 
+	 * @return The header template holding the rest.
+	 */
+	private HeaderTemplate buildHeaders(Request request, ExecutionContext context, boolean ssl, Headers headers) {
+		DefaultHeadersBuilder defaultHeaders = new DefaultHeadersBuilder(browser.getUserAgent(), browser.getLanguage(), context.getReferer()
+				, browser.isDoNotTrack(), context.isRedirected(), disableCookies ? null : cookieJar);
+		SecFetchHeadersBuilder secFetchHeaders = ssl ? new SecFetchHeadersBuilder(context.getContactedHost(), accessedHosts, context.getRedirectionChain()) : null;
+		
+		String layoutKey = ssl ? defaultHeaders.getLayoutKey(request) + '|' + secFetchHeaders.getLayoutKey(request) : defaultHeaders.getLayoutKey(request);
+		HeaderTemplate template = HeaderTemplate.getTemplate(layoutKey, () -> {
+			Headers layout = new Headers();
+			defaultHeaders.buildLayout(request, layout);
+			
+			if (ssl) {
+				secFetchHeaders.buildLayout(request, layout);
+			}
+			return layout;
+		});
+		defaultHeaders.buildValues(request, headers);
+		
+		if (ssl) {
+			secFetchHeaders.buildValues(request, headers);
+		}
+		if (Objects.nonNull(request.getHeaders()) && !request.getHeaders().getHeaders().isEmpty()) { //Setting custom headers, a null value removes the header
+			for (Entry<String, String> header : request.getHeaders().getHeaders().entrySet()) {
+				headers.add(header.getKey(), header.getValue());
+			}
+		}
+		return template;
+	}
+	
+	/**
+	 * Exchanges a request for its response without holding the session state.
+	 * The exchange only touches the thread safe cookie jar, pool and counters, so other requests of the session are prepared and finished meanwhile.
 	 * 
 	 * @param request The request.
 	 * 
-	 * @param ssl Whether to enforce SSL or not.
+	 * @param host The host.
 	 * 
-	 * @return The new request response.
-	 */
-	private RequestResponse handleRequestException(String message, Exception ex, String host, Request request, boolean ssl) {
+	 * @param endpoint The endpoint.
+	 * 
+	 * @param ssl Whether to use SSL or not.
+	 * 
+	 * @param template The header template.
+	 * 
+	 * @param headers The headers that change per request.
+	 * 
+	 * @return The request response or null when the response headers couldn't be decoded.
+	 * 
+	 * @throws Exception
+	 */
+	private RequestResponse exchangeUnlocked(Request request, String host, String endpoint, boolean ssl, HeaderTemplate template, Headers headers) throws Exception {
+		stateLock.unlock();
+		
+		try {
+			return exchange(request, host, endpoint, ssl, template, headers);
+			
+		} finally {
+			stateLock.lock();
+		}
+	}
+	
+	/**
+	 * Exchanges a request for its response.
+	 * HTTP/2 is used when the browser prefers it and the server agreed on it during the handshake, HTTP/1.1 otherwise.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param endpoint The endpoint.
+	 * 
+	 * @param ssl Whether to use SSL or not.
+	 * 
+	 * @param template The header template.
+	 * 
+	 * @param headers The headers that change per request.
+	 * 
+	 * @return The request response or null when the response headers couldn't be decoded.
+	 * 
+	 * @throws Exception
+	 */
+	private RequestResponse exchange(Request request, String host, String endpoint, boolean ssl, HeaderTemplate template, Headers headers) throws Exception {
+		try {
+			return exchange(request, host, endpoint, ssl, template, headers, !connectionReuseDisabled);
+			
+		} catch (StaleConnectionException ex) { //The server closed the pooled connection while it was idle, so the request never got handled
+			if (NetConfig.getConfig().isDebug()) {
+				System.out.println("Pooled connection to " + host + " went stale, sending anew over a new connection");
+			}
+			return exchange(request, host, endpoint, ssl, template, headers, false);
+		}
+	}
+	
+	/**
+	 * Exchanges a request for its response.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param endpoint The endpoint.
+	 * 
+	 * @param ssl Whether to use SSL or not.
+	 * 
+	 * @param template The header template.
+	 * 
+	 * @param headers The headers that change per request.
+	 * 
+	 * @param reuse Whether a pooled connection may be used or not.
+	 * 
+	 * @return The request response or null when the response headers couldn't be decoded.
+	 * 
+	 * @throws Exception
+	 */
+	private RequestResponse exchange(Request request, String host, String endpoint, boolean ssl, HeaderTemplate template, Headers headers, boolean reuse) throws Exception {
+		ConnectionRoute route = new ConnectionRoute(httpProxy, host, ssl ? 443 : request.getPort(), ssl);
+		
+		if (ssl && browser.getHttpVersion() == HttpVersion.HTTP_2_0 && reuse) {
+			Http2Connection connection = ConnectionPool.getSingleton().acquireMultiplexed(route);
+			
+			if (Objects.nonNull(connection)) {
+				return exchange(connection, request, host, endpoint, template.fill(headers));
+			}
+		}
+		PooledSocket socket = transport.connect(httpProxy, host, request.getPort(), browser, ssl, reuse);
+		
+		if (!Http2Connection.PROTOCOL.equals(socket.getApplicationProtocol())) {
+			RequestResponse rr = null;
+			
+			try {
+				rr = exchange(socket, request, endpoint, template, headers);
+				return rr;
+				
+			} finally {
+				if (!isStreamed(rr)) { //A streamed body releases the socket once the caller is done with it
+					socket.close();
+				}
+			}
+		}
+		Http2Connection connection = null;
+		
+		try {
+			connection = connectionReuseDisabled ? new Http2Connection(socket) : ConnectionPool.getSingleton().registerMultiplexed(route, socket);
+			
+		} catch (IOException ex) {
+			socket.setReusable(false).close();
+			throw ex;
+		}
+		RequestResponse rr = null;
+		
+		try {
+			rr = exchange(connection, request, host, endpoint, template.fill(headers));
+			return rr;
+			
+		} finally {
+			if (connectionReuseDisabled) {
+				Http2Connection single = connection;
+				
+				if (isStreamed(rr)) {
+					((StreamResponseBody)rr.getResponseBody()).onRelease(complete -> single.shutdown());
+				} else {
+					single.shutdown();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Exchanges a request for its response over an HTTP/1.1 connection.
+	 * 
+	 * @param socket The socket.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param endpoint The endpoint.
+	 * 
+	 * @param template The header template.
+	 * 
+	 * @param headers The headers that change per request.
+	 * 
+	 * @return The request response or null when the response headers couldn't be decoded.
+	 * 
+	 * @throws StaleConnectionException When a reused connection ended before any of the response arrived.
+	 * 
+	 * @throws IOException
+	 */
+	private RequestResponse exchange(PooledSocket socket, Request request, String endpoint, HeaderTemplate template, Headers headers) throws IOException {
+		//The socket streams are not closed here as closing them would close the connection, the socket decides whether it returns to the pool
+		HTTPOutputStream out = new HTTPOutputStream(new CountOutputStream(socket.getOutputStream(), getDataCounters(request)));
+		byte[] head = template.encode(request.getRequestType().getName() + " " + (endpoint.isEmpty() ? "/" : endpoint) 
+				+ " " + browser.getHttpVersion().getMessageVersion().getName(), headers);
+		
+		if (NetConfig.getConfig().isDebug()) {
+			System.err.println(new String(head, StandardCharsets.UTF_8));
+		}
+		CountInputStream in = new CountInputStream(socket.getInputStream(), getDataCounters(request));
+		BufferedInputStream bis = new BufferedInputStream(in);
+		HeaderDecoder hd = new HeaderDecoder();
+		boolean decoded = false;
+		
+		try {
+			out.write(head); //The request line and headers go out in one write
+			
+			if (request.hasBody()) { 
+				ContentRequest contReq = ((ContentRequest)request);
+				
+				if (Objects.nonNull(contReq.getBody().getContent())) {
+					contReq.getBody().write(out);
+				}
+			}
+			out.flush();
+			decoded = Objects.nonNull(hd.decode(bis));
+			
+		} catch (IOException ex) {
+			if (!(ex instanceof InterruptedIOException) && isStale(socket, in)) { //A slow server may still be handling the request
+				throw new StaleConnectionException(ex);
+			}
+			throw ex;
+		}
+		if (!decoded) { //The connection ended before a response, the attempt is retried
+			if (isStale(socket, in)) {
+				throw new StaleConnectionException("Pooled connection closed before responding");
+			}
+			return null;
+		}
+		ResponseStatus rs = hd.getResponseStatus();
+		Headers responseHeaders = hd.getHeaders();
+		
+		if (Objects.isNull(rs)) {
+			return null;
+		}
+		cookieJar.importCookies(hd.getCookies(), request.getUrl());
+		
+		IResponseBody<?> responseBody = new StringResponseBody("");
+		boolean messageComplete = true;
+		
+		if (hasResponseBody(request, rs)) {
+			ResponseBodyParser bodyParser = new ResponseBodyParser(request, responseHeaders);
+			responseBody = bodyParser.parse(bis);
+			messageComplete = bodyParser.isMessageComplete();
+		}
+		RequestResponse rr = new RequestResponse(request.getUrl(), request.getCode(), rs, responseBody, responseHeaders);
+		
+		socket.setKeepAliveTimeout(ConnectionPool.getKeepAliveTimeout(responseHeaders));
+		socket.setReusable(!connectionReuseDisabled && messageComplete && ConnectionPool.isPersistent(rs, responseHeaders));
+		
+		if (isStreamed(rr)) {
+			((StreamResponseBody)responseBody).onRelease(complete -> {
+				socket.setReusable(!connectionReuseDisabled && complete && ConnectionPool.isPersistent(rs, responseHeaders));
+				socket.close();
+			});
+		}
+		return rr;
+	}
+	
+	/**
+	 * Retrieves whether a failed exchange ran into a pooled connection the server closed while it was idle.
+	 * Nothing of the response may have arrived, otherwise the server handled the request.
+	 * 
+	 * @param socket The socket.
+	 * 
+	 * @param in The input stream of the exchange.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isStale(PooledSocket socket, CountInputStream in) {
+		return socket.isReused() && in.getBytesRead() == 0;
+	}
+	
+	/**
+	 * Exchanges a request for its response over a stream of an HTTP/2 connection.
+	 * 
+	 * @param connection The connection.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param endpoint The endpoint.
+	 * 
+	 * @param headers The request headers.
+	 * 
+	 * @return The request response or null when the response headers couldn't be decoded.
+	 * 
+	 * @throws IOException
+	 */
+	private RequestResponse exchange(Http2Connection connection, Request request, String host, String endpoint, Headers headers) throws IOException {
+		List<String[]> fields = Http2Connection.createRequestFields(request.getRequestType().getName(), host, endpoint.isEmpty() ? "/" : endpoint, headers);
+		boolean hasBody = request.hasBody() && Objects.nonNull(((ContentRequest)request).getBody().getContent());
+		
+		if (NetConfig.getConfig().isDebug()) {
+			StringBuilder raw = new StringBuilder();
+			fields.forEach(field -> raw.append(field[0] + ": " + field[1] + System.lineSeparator()));
+			System.err.println(raw.toString());
+		}
+		Http2Stream stream = connection.openStream(fields, !hasBody, browser.getConnectionTimeout() * 1000);
+		boolean streamed = false;
+		
+		try {
+			if (hasBody) {
+				HTTPOutputStream out = new HTTPOutputStream(new CountOutputStream(stream.getOutputStream(), getDataCounters(request)));
+				((ContentRequest)request).getBody().write(out);
+				stream.getOutputStream().close(); //Ends the request
+			}
+			HeaderDecoder hd = new HeaderDecoder();
+			hd.decode(stream.awaitHeaders());
+
+			ResponseStatus rs = hd.getResponseStatus();
+			Headers responseHeaders = hd.getHeaders();
+			
+			if (Objects.isNull(rs)) {
+				return null;
+			}
+			cookieJar.importCookies(hd.getCookies(), request.getUrl());
+			
+			IResponseBody<?> responseBody = new StringResponseBody("");
+			
+			if (hasResponseBody(request, rs)) {
+				BufferedInputStream bis = new BufferedInputStream(new CountInputStream(stream.getInputStream(), getDataCounters(request)));
+				responseBody = new ResponseBodyParser(request, responseHeaders).setDelimited(true).parse(bis);
+			}
+			RequestResponse rr = new RequestResponse(request.getUrl(), request.getCode(), rs, responseBody, responseHeaders);
+			
+			if (isStreamed(rr)) { //The stream is closed once the caller is done with the body, which cancels it when unread data is left
+				((StreamResponseBody)responseBody).onRelease(complete -> {
+					stream.getTrailers().forEach(field -> responseHeaders.add(field[0], field[1]));
+					stream.close();
+				});
+				streamed = true;
+				return rr;
+			}
+			stream.getTrailers().forEach(field -> responseHeaders.add(field[0], field[1]));
+			return rr;
+			
+		} finally {
+			if (!streamed) {
+				stream.close();
+			}
+		}
+	}
+	
+	/**
+	 * Retrieves whether a response hands out its body as a stream that still holds the connection.
+	 * 
+	 * @param rr The response, may be null.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isStreamed(RequestResponse rr) {
+		return Objects.nonNull(rr) && rr.getResponseBody() instanceof StreamResponseBody;
+	}
+	
+	/**
+	 * Reads a streamed body into memory, so the response can be dropped for a redirect or retry without holding the connection.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param rr The response.
+	 * 
+	 * @return The response holding its body in memory.
+	 */
+	private static RequestResponse readStreamed(Request request, RequestResponse rr) {
+		if (!isStreamed(rr)) {
+			return rr;
+		}
+		String content = "";
+		
+		try {
+			content = ((StreamResponseBody)rr.getResponseBody()).readFully();
+			
+		} catch (IOException ex) {
+			System.err.println("Failed to read streamed body of " + request.getUrl() + " (" + ex.getMessage() + ")");
+		}
+		return new RequestResponse(rr.getEndpoint(), request.getCode(), rr.getResponseStatus(), new StringResponseBody(content), rr.getHeaders());
+	}
+	
+	/**
+	 * Retrieves the data counters the traffic of a request is added to while it's transferred.
+	 * 
+	 * @param request The request, null when the traffic is shared by several requests.
+	 * 
+	 * @return The data counters, the request's own counter first.
+	 */
+	private DataCounter[] getDataCounters(Request request) {
+		List<DataCounter> counters = new ArrayList<>(5);
+		
+		if (Objects.nonNull(request)) {
+			counters.add(request.getDataCounter());
+		}
+		counters.add(dataCounter);
+		counters.add(DataCounter.getGlobal());
+		
+		if (Objects.nonNull(httpProxy)) {
+			counters.add(httpProxy.getDataCounter());
+		}
+		if (ProxyConfig.getConfig().isCellularMode()) {
+			counters.add(NetConfig.getConfig().getCellularDataCounter());
+		}
+		return counters.toArray(new DataCounter[counters.size()]);
+	}
+	
+	/**
+	 * Retrieves whether a response carries a message body.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param rs The response status.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean hasResponseBody(Request request, ResponseStatus rs) {
+		if (request.getRequestType() == RequestType.HEAD) {
+			return false;
+		}
+		return rs.getHttpCode() != HTTPCode.NO_CONTENT && rs.getHttpCode() != HTTPCode.NOT_MODIFIED;
+	}
+	
+	/**
+	 * Schedules the next attempt of a request once the rate limit of its host allows it.
+	 * The delay is served by the caller, asynchronous executions are queued on a timer instead of holding a thread.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param ssl Whether to use SSL or not.
+	 * 
+	 * @param wait The time in milliseconds to wait.
+	 * 
+	 * @return The next step.
+	 */
+	private ExecutionStep awaitRateLimit(Request request, String host, boolean ssl, long wait) {
+		if (wait > NetConfig.getConfig().getMaxRateLimitWait() * 1000L) {
+			request.setAttempts(0);
+			return new ExecutionStep(new RequestResponse(request.getUrl(), request.getCode(), new ResponseStatus(HTTPCode.TOO_MANY_REQUESTS, "Rate limited")
+					, new StringResponseBody("Rate limited by " + host + " for another " + (wait / 1000L) + " seconds"), null));
+		}
+		if (NetConfig.getConfig().isDebug()) {
+			System.out.println("[RateLimit] Waiting " + wait + "ms for " + host + " (" + RateLimiter.getSingleton().getBucket(host, httpProxy) + ")");
+		}
+		return new ExecutionStep(request, host, ssl).setDelay(wait);
+	}
+	
+	/**
+	 * Handles a request exception.
+	 * 
+	 * @param message The exception error message.
+	 * 
+	 * @param ex The exception.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param ssl Whether to enforce SSL or not.
+	 * 
+	 * @return The next step.
+	 */
+	private ExecutionStep handleRequestException(String message, Exception ex, String host, Request request, boolean ssl) {
 		//if (NetConfig.getConfig().isDebug()) {
 			ex.printStackTrace();
 		//}
-		lastError = message + " (" + host + ") [" + request.getRequestType().getName() + " => " + request.getUrl() + "]";
-		System.err.println(lastError);
-		return execute(request, host, ssl);
+		ExecutionContext context = request.getExecutionContext();
+		context.setLastError(message + " (" + host + ") [" + request.getRequestType().getName() + " => " + request.getUrl() + "]");
+		System.err.println(context.getLastError());
+		
+		if (Objects.nonNull(httpProxy)) {
+			httpProxy.registerAttempt(false);
+		}
+		return retry(request, host, ssl, FailureType.classify(ex));
+	}
+	
+	/**
+	 * Schedules the next attempt of a failed request as the retry policy sees fit.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param ssl Whether to use SSL or not.
+	 * 
+	 * @param failure The failure.
+	 * 
+	 * @return The next step.
+	 */
+	private ExecutionStep retry(Request request, String host, boolean ssl, FailureType failure) {
+		request.getLastAttempt().fail(failure);
+		String lastError = request.getExecutionContext().getLastError();
+		
+		if (request.getAttempts() >= browser.getConnectionAttempts()) {
+			return fail(request, "Too many failed attempts (" + lastError + ")");
+		}
+		long delay = retryPolicy.getRetryDelay(request, failure, request.getAttempts());
+		
+		if (delay < 0) {
+			return fail(request, failure.getName() + " failure not retried (" + lastError + ")");
+		}
+		if (retryPolicy.isRotateProxy(failure)) {
+			rotateProxy();
+		}
+		request.getLastAttempt().setRetryDelay(delay);
+		return new ExecutionStep(request, host, ssl).setDelay(delay);
+	}
+	
+	/**
+	 * Ends a request that won't be attempted again.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param message The reason.
+	 * 
+	 * @return The final step.
+	 */
+	private ExecutionStep fail(Request request, String message) {
+		request.setAttempts(0);
+		return new ExecutionStep(new RequestResponse(request.getUrl(), request.getCode(), new ResponseStatus(HTTPCode.UNKNOWN, message)
+				, new StringResponseBody("Failed to dispatch request (" + message + ")"), null));
+	}
+	
+	/**
+	 * Switches to another proxy when a proxy rotator is set.
+	 * 
+	 * @return Whether the proxy was switched.
+	 */
+	private boolean rotateProxy() {
+		if (Objects.isNull(httpProxy) || Objects.isNull(proxyRotator)) {
+			return false;
+		}
+		HttpProxy next = proxyRotator.rotate(httpProxy);
+		
+		if (Objects.isNull(next) || next == httpProxy) {
+			return false;
+		}
+		if (NetConfig.getConfig().isDebug()) {
+			System.out.println("[Proxy] Switched from " + httpProxy.getUrl() + " to " + next.getUrl());
+		}
+		httpProxy = next;
+		return true;
+	}
+	
+	/**
+	 * Modifies the policy deciding when and how failed attempts are retried.
+	 * 
+	 * @param retryPolicy The new retry policy.
+	 * 
+	 * @return The request executor.
+	 */
+	public RequestExecutor setRetryPolicy(IRetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the policy deciding when and how failed attempts are retried.
+	 * 
+	 * @return The retry policy.
+	 */
+	public IRetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+	
+	/**
+	 * Modifies the proxy rotator used when the proxy fails to connect.
+	 * 
+	 * @param proxyRotator The new proxy rotator, null to keep the proxy fixed.
+	 * 
+	 * @return The request executor.
+	 */
+	public RequestExecutor setProxyRotator(IProxyRotator proxyRotator) {
+		this.proxyRotator = proxyRotator;
+		return this;
+	}
+	
+	/**
+	 * Retrieves the proxy being used.
+	 * 
+	 * @return The proxy.
+	 */
+	public HttpProxy getHttpProxy() {
+		return httpProxy;
 	}
 	
 	/**
@@ -0,0 +1,251 @@
+package com.nattguld.http.requests.execute;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.nattguld.http.browser.Browser;
+import com.nattguld.http.headers.Headers;
+import com.nattguld.http.proxies.HttpProxy;
+import com.nattguld.http.requests.Request;
+import com.nattguld.http.response.RequestResponse;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class SingleFlight {
+	
+	/**
+	 * The amount of urls from which the remembered Vary headers are dropped.
+	 */
+	private static final int MAX_VARIES = 4096;
+	
+	/**
+	 * The lowercase names of the headers that identify the sender, which always count whatever a response varies on.
+	 */
+	private static final List<String> CREDENTIAL_HEADERS = Arrays.asList("authorization", "proxy-authorization", "cookie");
+	
+	/**
+	 * The single flight instance.
+	 */
+	private static SingleFlight singleton;
+	
+	/**
+	 * Holds the exchanges in flight by key.
+	 */
+	private final Map<String, CompletableFuture<RequestResponse>> inFlight;
+	
+	/**
+	 * Holds the lowercase header names responses vary on by url.
+	 */
+	private final Map<String, List<String>> varies;
+	
+	/**
+	 * The amount of requests that shared another one's exchange.
+	 */
+	private final LongAdder coalesced;
+	
+	
+	/**
+	 * Creates a new single flight.
+	 */
+	private SingleFlight() {
+		this.inFlight = new ConcurrentHashMap<>();
+		this.varies = new ConcurrentHashMap<>();
+		this.coalesced = new LongAdder();
+	}
+	
+	/**
+	 * Executes a request, or waits for the identical one in flight and shares its response.
+	 * 
+	 * @param key The key of the request.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param exchange Executes the request.
+	 * 
+	 * @return The request response.
+	 */
+	public RequestResponse execute(String key, Request request, Supplier<RequestResponse> exchange) {
+		CompletableFuture<RequestResponse> own = new CompletableFuture<>();
+		CompletableFuture<RequestResponse> leader = inFlight.putIfAbsent(key, own);
+		
+		if (Objects.nonNull(leader)) {
+			coalesced.increment();
+			return share(leader.join(), request);
+		}
+		try {
+			RequestResponse rr = exchange.get();
+			registerVary(request.getUrl(), rr);
+			own.complete(rr);
+			return rr;
+		
+		} catch (RuntimeException ex) {
+			own.completeExceptionally(ex);
+			throw ex;
+		
+		} finally {
+			inFlight.remove(key, own);
+		}
+	}
+	
+	/**
+	 * Executes a request without blocking the calling thread, or shares the response of the identical one in flight.
+	 * 
+	 * @param key The key of the request.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param exchange Executes the request.
+	 * 
+	 * @return The future request response.
+	 */
+	public CompletableFuture<RequestResponse> executeAsync(String key, Request request, Supplier<CompletableFuture<RequestResponse>> exchange) {
+		CompletableFuture<RequestResponse> own = new CompletableFuture<>();
+		CompletableFuture<RequestResponse> leader = inFlight.putIfAbsent(key, own);
+		
+		if (Objects.nonNull(leader)) {
+			coalesced.increment();
+			return leader.thenApply(rr -> share(rr, request));
+		}
+		exchange.get().whenComplete((rr, ex) -> {
+			inFlight.remove(key, own);
+			
+			if (Objects.nonNull(ex)) {
+				own.completeExceptionally(ex);
+				return;
+			}
+			registerVary(request.getUrl(), rr);
+			own.complete(rr);
+		});
+		return own;
+	}
+	
+	/**
+	 * Creates the key identical requests share.
+	 * Once a response told which request headers it varies on only those count, all headers that can differ between sessions do until then.
+	 * Credentials and the proxy always count, so a response is never handed to a session that sent other credentials.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param browser The browser being emulated.
+	 * 
+	 * @param proxy The proxy being used, null when connecting directly.
+	 * 
+	 * @return The key.
+	 */
+	public String getKey(Request request, Browser browser, HttpProxy proxy) {
+		Map<String, String> headers = new TreeMap<>();
+		headers.put("user-agent", browser.getUserAgent());
+		headers.put("accept-language", browser.getLanguage());
+		headers.put("cache-control", request.getCacheControl());
+		
+		if (Objects.nonNull(request.getHeaders())) {
+			for (Entry<String, String> header : request.getHeaders().getHeaders().entrySet()) {
+				headers.put(header.getKey().toLowerCase(), header.getValue());
+			}
+		}
+		List<String> vary = varies.get(request.getUrl());
+		
+		if (Objects.nonNull(vary)) {
+			headers.keySet().removeIf(name -> !vary.contains(name) && !CREDENTIAL_HEADERS.contains(name));
+		}
+		StringBuilder key = new StringBuilder(request.getRequestType().getName()).append(' ').append(request.getUrl())
+				.append(request.isXMLHttpRequest() ? "|xhr" : "").append(Objects.nonNull(proxy) ? "|proxy=" + proxy.getUrl() : "");
+		
+		for (Entry<String, String> header : headers.entrySet()) {
+			key.append('|').append(header.getKey()).append('=').append(header.getValue());
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * Remembers the request headers a response varies on.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @param rr The response.
+	 */
+	private void registerVary(String url, RequestResponse rr) {
+		String value = Objects.isNull(rr.getHeaders()) ? null : rr.getHeaders().getValueIgnoreCase("Vary");
+		
+		if (Objects.isNull(value) || value.contains("*")) {
+			varies.remove(url);
+			return;
+		}
+		List<String> names = new ArrayList<>();
+		
+		for (String name : value.split(",")) {
+			if (!name.trim().isEmpty()) {
+				names.add(name.trim().toLowerCase());
+			}
+		}
+		if (varies.size() >= MAX_VARIES) {
+			varies.clear();
+		}
+		varies.put(url, Collections.unmodifiableList(names));
+	}
+	
+	/**
+	 * Creates the copy of a shared response handed to a request that waited for it.
+	 * The body is shared as it's immutable, the parsed document and attempts aren't.
+	 * 
+	 * @param rr The shared response.
+	 * 
+	 * @param request The request that waited.
+	 * 
+	 * @return The response.
+	 */
+	private static RequestResponse share(RequestResponse rr, Request request) {
+		Headers headers = null;
+		
+		if (Objects.nonNull(rr.getHeaders())) {
+			headers = new Headers();
+			headers.add(rr.getHeaders());
+		}
+		return new RequestResponse(rr.getEndpoint(), request.getCode(), rr.getResponseStatus(), rr.getResponseBody(), headers);
+	}
+	
+	/**
+	 * Retrieves the amount of requests in flight.
+	 * 
+	 * @return The amount.
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+	
+	/**
+	 * Retrieves the amount of requests that shared another one's exchange.
+	 * 
+	 * @return The amount.
+	 */
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+	
+	/**
+	 * Retrieves the single flight instance.
+	 * 
+	 * @return The instance.
+	 */
+	public static synchronized SingleFlight getSingleton() {
+		if (Objects.isNull(singleton)) {
+			singleton = new SingleFlight();
+		}
+		return singleton;
+	}
+
+}
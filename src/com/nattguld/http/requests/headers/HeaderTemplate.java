@@ -0,0 +1,245 @@
+package com.nattguld.http.requests.headers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.nattguld.http.headers.Headers;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class HeaderTemplate {
+	
+	/**
+	 * The maximum amount of cached templates before the cache is cleared.
+	 */
+	private static final int MAX_CACHED_TEMPLATES = 512;
+	
+	/**
+	 * The line separator used in HTTP messages.
+	 */
+	private static final byte[] CRLF = {'\r', '\n'};
+	
+	/**
+	 * Holds the cached templates by layout key.
+	 */
+	private static final Map<String, HeaderTemplate> TEMPLATES = new ConcurrentHashMap<>();
+	
+	/**
+	 * The header layout, headers without a value are filled in per request.
+	 */
+	private final Headers layout;
+	
+	/**
+	 * The names of the headers filled in per request, in the order they're written.
+	 */
+	private final String[] slots;
+	
+	/**
+	 * The encoded slot names including the separator.
+	 */
+	private final byte[][] slotNames;
+	
+	/**
+	 * The encoded fixed headers, the fixed headers preceding a slot share its index and the last segment follows all slots.
+	 */
+	private final byte[][] segments;
+	
+	
+	/**
+	 * Creates a new header template.
+	 * 
+	 * @param layout The header layout, headers without a value are filled in per request.
+	 */
+	public HeaderTemplate(Headers layout) {
+		this.layout = layout;
+		
+		List<String> slots = new ArrayList<>();
+		List<byte[]> segments = new ArrayList<>();
+		StringBuilder segment = new StringBuilder();
+		
+		for (Entry<String, String> header : layout.getHeaders().entrySet()) {
+			if (Objects.nonNull(header.getValue())) {
+				segment.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+				continue;
+			}
+			slots.add(header.getKey());
+			segments.add(segment.toString().getBytes(StandardCharsets.UTF_8));
+			segment.setLength(0);
+		}
+		segments.add(segment.toString().getBytes(StandardCharsets.UTF_8));
+		
+		this.slots = slots.toArray(new String[slots.size()]);
+		this.segments = segments.toArray(new byte[segments.size()][]);
+		this.slotNames = new byte[this.slots.length][];
+		
+		for (int i = 0; i < this.slots.length; i++) {
+			slotNames[i] = (this.slots[i] + ": ").getBytes(StandardCharsets.UTF_8);
+		}
+	}
+	
+	/**
+	 * Encodes the head of a request, the request line followed by the headers and the blank line ending them.
+	 * Values for headers without a slot are appended, a null value leaves a header out.
+	 * 
+	 * @param requestLine The request line.
+	 * 
+	 * @param values The values of the headers filled in per request.
+	 * 
+	 * @return The encoded head.
+	 */
+	public byte[] encode(String requestLine, Headers values) {
+		for (String name : values.getHeaders().keySet()) {
+			if (overridesFixed(name)) { //Fixed headers keep their position but take the new value, so encode them one by one
+				return encodeFields(requestLine, fill(values));
+			}
+		}
+		byte[] line = requestLine.getBytes(StandardCharsets.UTF_8);
+		byte[][] slotValues = new byte[slots.length][];
+		List<byte[]> extra = new ArrayList<>();
+		int size = line.length + CRLF.length * 2;
+		
+		for (byte[] segment : segments) {
+			size += segment.length;
+		}
+		for (int i = 0; i < slots.length; i++) {
+			String value = values.getValue(slots[i]);
+			
+			if (Objects.nonNull(value)) {
+				slotValues[i] = value.getBytes(StandardCharsets.UTF_8);
+				size += slotNames[i].length + slotValues[i].length + CRLF.length;
+			}
+		}
+		for (Entry<String, String> header : values.getHeaders().entrySet()) {
+			if (Objects.nonNull(header.getValue()) && !layout.getHeaders().containsKey(header.getKey())) {
+				byte[] encoded = (header.getKey() + ": " + header.getValue() + "\r\n").getBytes(StandardCharsets.UTF_8);
+				extra.add(encoded);
+				size += encoded.length;
+			}
+		}
+		byte[] head = new byte[size];
+		int pos = put(head, 0, line);
+		pos = put(head, pos, CRLF);
+		
+		for (int i = 0; i < slots.length; i++) {
+			pos = put(head, pos, segments[i]);
+			
+			if (Objects.nonNull(slotValues[i])) {
+				pos = put(head, pos, slotNames[i]);
+				pos = put(head, pos, slotValues[i]);
+				pos = put(head, pos, CRLF);
+			}
+		}
+		pos = put(head, pos, segments[slots.length]);
+		
+		for (byte[] encoded : extra) {
+			pos = put(head, pos, encoded);
+		}
+		put(head, pos, CRLF);
+		return head;
+	}
+	
+	/**
+	 * Encodes the head of a request header by header.
+	 * 
+	 * @param requestLine The request line.
+	 * 
+	 * @param headers The headers.
+	 * 
+	 * @return The encoded head.
+	 */
+	private static byte[] encodeFields(String requestLine, Headers headers) {
+		StringBuilder sb = new StringBuilder(requestLine).append("\r\n");
+		
+		for (Entry<String, String> header : headers.getHeaders().entrySet()) {
+			sb.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+		}
+		return sb.append("\r\n").toString().getBytes(StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Creates the complete headers of a request.
+	 * Values for headers without a slot are appended, a null value leaves a header out.
+	 * 
+	 * @param values The values of the headers filled in per request.
+	 * 
+	 * @return The headers.
+	 */
+	public Headers fill(Headers values) {
+		Headers headers = new Headers();
+		
+		for (Entry<String, String> header : layout.getHeaders().entrySet()) {
+			String value = values.getHeaders().containsKey(header.getKey()) ? values.getValue(header.getKey()) : header.getValue();
+			
+			if (Objects.nonNull(value)) {
+				headers.add(header.getKey(), value);
+			}
+		}
+		for (Entry<String, String> header : values.getHeaders().entrySet()) {
+			if (Objects.nonNull(header.getValue()) && !layout.getHeaders().containsKey(header.getKey())) {
+				headers.add(header.getKey(), header.getValue());
+			}
+		}
+		return headers;
+	}
+	
+	/**
+	 * Retrieves whether a header replaces one of the fixed headers.
+	 * 
+	 * @param name The header name.
+	 * 
+	 * @return The result.
+	 */
+	private boolean overridesFixed(String name) {
+		return Objects.nonNull(layout.getValue(name));
+	}
+	
+	/**
+	 * Copies bytes into the head being encoded.
+	 * 
+	 * @param head The head.
+	 * 
+	 * @param pos The position to copy to.
+	 * 
+	 * @param data The bytes.
+	 * 
+	 * @return The position after the copied bytes.
+	 */
+	private static int put(byte[] head, int pos, byte[] data) {
+		System.arraycopy(data, 0, head, pos, data.length);
+		return pos + data.length;
+	}
+	
+	/**
+	 * Retrieves the template for a layout, creating it the first time it's requested.
+	 * 
+	 * @param key The key identifying everything the layout depends on.
+	 * 
+	 * @param layout Builds the layout when it isn't cached yet.
+	 * 
+	 * @return The template.
+	 */
+	public static HeaderTemplate getTemplate(String key, Supplier<Headers> layout) {
+		HeaderTemplate template = TEMPLATES.get(key);
+		
+		if (Objects.nonNull(template)) {
+			return template;
+		}
+		if (TEMPLATES.size() >= MAX_CACHED_TEMPLATES) { //Templates are cheap to rebuild, so there's no need to track their use
+			TEMPLATES.clear();
+		}
+		template = new HeaderTemplate(layout.get());
+		TEMPLATES.putIfAbsent(key, template);
+		return template;
+	}
+
+}
@@ -19,6 +19,41 @@ public interface IheadersBuilder {
 	 * 
 	 * @param headers The headers container.
 	 */
-	public void build(Request request, Headers headers);
+	public default void build(Request request, Headers headers) {
+		Headers layout = new Headers();
+		Headers values = new Headers();
+		
+		buildLayout(request, layout);
+		buildValues(request, values);
+		headers.add(new HeaderTemplate(layout).fill(values));
+	}
+	
+	/**
+	 * Retrieves the key identifying everything the header layout of a request depends on.
+	 * Requests with the same key share a cached header template.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @return The key.
+	 */
+	public String getLayoutKey(Request request);
+	
+	/**
+	 * Builds the header layout, headers that change per request are added without a value.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param layout The layout container.
+	 */
+	public void buildLayout(Request request, Headers layout);
+	
+	/**
+	 * Builds the values of the headers that change per request.
+	 * 
+	 * @param request The request.
+	 * 
+	 * @param values The values container.
+	 */
+	public void buildValues(Request request, Headers values);
 
 }
\ No newline at end of file
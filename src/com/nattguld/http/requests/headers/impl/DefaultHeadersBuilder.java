@@ -76,55 +76,83 @@ public class DefaultHeadersBuilder implements IheadersBuilder {
 	}
 	
 	@Override
-	public void build(Request request, Headers headers) {
+	public String getLayoutKey(Request request) {
+		StringBuilder key = new StringBuilder(256)
+				.append(request.getRequestType().getName()).append('|')
+				.append(NetUtil.getBaseUrl(request.getUrl())).append('|')
+				.append(request.isXMLHttpRequest()).append('|')
+				.append(request instanceof ContentRequest).append('|')
+				.append(request.hasBody()).append('|')
+				.append(redirect).append('|')
+				.append(request.getCacheControl()).append('|')
+				.append(request.getResponseEncType().name()).append('|')
+				.append(isDoNotTrack).append('|')
+				.append(language).append('|')
+				.append(userAgent);
+		
+		if (request.getRequestType() == RequestType.OPTIONS) {
+			key.append('|').append(((OptionsRequest)request).getRequestTypeOption().getName());
+		}
+		return key.toString();
+	}
+	
+	@Override
+	public void buildLayout(Request request, Headers layout) {
 		String host = NetUtil.getDomain(request.getUrl());
 		
-		headers.add("Host", host);
-		headers.add("Connection", "keep-alive");
+		layout.add("Host", host);
+		layout.add("Connection", "keep-alive");
 		
 		if ((request.getRequestType() == RequestType.POST && !request.isXMLHttpRequest()) || redirect || Objects.nonNull(request.getCacheControl())) {
-			headers.add("Cache-Control", Objects.nonNull(request.getCacheControl()) ? request.getCacheControl() : "max-age=0");
+			layout.add("Cache-Control", Objects.nonNull(request.getCacheControl()) ? request.getCacheControl() : "max-age=0");
 		}
 		if (!request.isXMLHttpRequest()) {
-			headers.add("Upgrade-Insecure-Requests", "1");
+			layout.add("Upgrade-Insecure-Requests", "1");
 		}
-		headers.add("Accept", request.getResponseEncType().getAcceptHeader());
+		layout.add("Accept", request.getResponseEncType().getAcceptHeader());
 		
 		if (request.isXMLHttpRequest()) {
-			headers.add("X-Requested-With", "XMLHttpRequest");
+			layout.add("X-Requested-With", "XMLHttpRequest");
 		}
 		if (request.isXMLHttpRequest() || request instanceof ContentRequest) {
-			headers.add("Origin", NetUtil.getBaseUrl(request.getUrl()));
+			layout.add("Origin", NetUtil.getBaseUrl(request.getUrl()));
 		}
-		headers.add("User-Agent", userAgent);
+		layout.add("User-Agent", userAgent);
 		
 		if (isDoNotTrack) {
-			headers.add("DNT", "1");
+			layout.add("DNT", "1");
 		}
-        if (Objects.nonNull(lastReferer)) {
-        	headers.add("Referer", lastReferer);
-        }
-        headers.add("Accept-Encoding", "gzip, deflate, br");
-		headers.add("Accept-Language", language);
+		layout.add("Referer", null);
+		layout.add("Accept-Encoding", "gzip, deflate, br");
+		layout.add("Accept-Language", language);
 		
 		if (request.getRequestType() == RequestType.OPTIONS) { //Sets the request method for options request
-			headers.add("Access-Control-Request-Method", ((OptionsRequest)request).getRequestTypeOption().getName()); //Sets the option request header
-			headers.add("Origin", NetUtil.getBaseUrl(request.getUrl()));
+			layout.add("Access-Control-Request-Method", ((OptionsRequest)request).getRequestTypeOption().getName()); //Sets the option request header
+			layout.add("Origin", NetUtil.getBaseUrl(request.getUrl()));
+			
+		} else {
+			layout.add("Cookie", null);
+		}
+		if (request.hasBody()) {
+			layout.add("Content-Type", null);
+			layout.add("Content-Length", null);
+		}
+	}
+	
+	@Override
+	public void buildValues(Request request, Headers values) {
+		if (Objects.nonNull(lastReferer)) {
+			values.add("Referer", lastReferer);
 		}
-		if (request.getRequestType() != RequestType.OPTIONS && Objects.nonNull(cookieJar) && !cookieJar.isEmpty()) {
-			StringBuilder cookieSb = new StringBuilder();
+		if (request.getRequestType() != RequestType.OPTIONS && Objects.nonNull(cookieJar)) {
+			String cookieHeader = cookieJar.getCookieHeader(request.getUrl());
 			
-			for (int i = 0; i < cookieJar.getCookies().size(); i++) {
-				cookieSb.append(cookieJar.getCookies().get(i).getName() + "=" + cookieJar.getCookies().get(i).getValue());
-				
-				if (i < (cookieJar.getCookies().size() - 1)) {
-					cookieSb.append("; ");
-				}
+			if (Objects.nonNull(cookieHeader)) {
+				values.add("Cookie", cookieHeader);
 			}
-			headers.add("Cookie", cookieSb.toString());
 		}
 		if (request.hasBody()) {
-			((ContentRequest)request).getBody().prepare(headers);
+			((ContentRequest)request).getBody().prepare(values);
 		}
 	}
 
@@ -51,8 +51,22 @@ public class SecFetchHeadersBuilder implements IheadersBuilder {
 	}
 	
 	@Override
-	public void build(Request request, Headers headers) {
-		headers.add("Sec-Fetch-Mode", request.getSecFetchMode()); 
+	public String getLayoutKey(Request request) {
+		return request.getSecFetchMode() + '|' + request.isXMLHttpRequest();
+	}
+	
+	@Override
+	public void buildLayout(Request request, Headers layout) {
+		layout.add("Sec-Fetch-Mode", request.getSecFetchMode()); 
+		layout.add("Sec-Fetch-Site", null);
+		
+		if (!request.isXMLHttpRequest()) {
+			layout.add("Sec-Fetch-User", "?1");
+		}
+	}
+	
+	@Override
+	public void buildValues(Request request, Headers values) {
 		//TODO  nested-navigate  redirect to internal page by clicking button etc, no link? Form <<<
 		//TODO same-origin/same-site/cross-site when called inside the page, like js scripts being called
 		
@@ -82,16 +96,13 @@ public class SecFetchHeadersBuilder implements IheadersBuilder {
 			}
 		}
 		if (firstHostContact) {
-			headers.add("Sec-Fetch-Site", "none");
+			values.add("Sec-Fetch-Site", "none");
 		} else if (crossSite) {
-			headers.add("Sec-Fetch-Site", "cross-site");
+			values.add("Sec-Fetch-Site", "cross-site");
 		} else if (sameSite) {
-			headers.add("Sec-Fetch-Site", "same-site");
+			values.add("Sec-Fetch-Site", "same-site");
 		} else {
-			headers.add("Sec-Fetch-Site", "same-origin");
-		}
-		if (!request.isXMLHttpRequest()) {
-			headers.add("Sec-Fetch-User", "?1");
+			values.add("Sec-Fetch-Site", "same-origin");
 		}
 	}
 	
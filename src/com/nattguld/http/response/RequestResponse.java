@@ -1,8 +1,12 @@
 package com.nattguld.http.response;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 import org.jsoup.Jsoup;
@@ -12,7 +16,9 @@ import org.jsoup.parser.Parser;
 import com.nattguld.data.ResourceIO;
 import com.nattguld.data.json.JsonReader;
 import com.nattguld.http.headers.Headers;
+import com.nattguld.http.requests.execute.RequestAttempt;
 import com.nattguld.http.response.bodies.IResponseBody;
+import com.nattguld.http.response.bodies.impl.StreamResponseBody;
 import com.nattguld.http.response.bodies.impl.StringResponseBody;
 import com.nattguld.http.util.NetUtil;
 
@@ -40,9 +46,9 @@ public class RequestResponse {
 	private final ResponseStatus responseStatus;
 	
 	/**
-	 * The response body.
+	 * The response body, a streamed body is swapped for its content once read into memory.
 	 */
-	private final IResponseBody<?> responseBody;
+	private IResponseBody<?> responseBody;
 	
 	/**
 	 * The response headers.
@@ -58,6 +64,11 @@ public class RequestResponse {
      * The response json reader.
      */
     private JsonReader jsonReader;
+    
+    /**
+     * The attempts made to receive the response.
+     */
+    private List<RequestAttempt> attempts;
 	
 	
     /**
@@ -79,6 +90,7 @@ public class RequestResponse {
 		this.responseStatus = responseStatus;
 		this.responseBody = responseBody;
 		this.headers = headers;
+		this.attempts = Collections.emptyList();
 	}
 	
 	/**
@@ -143,6 +155,15 @@ public class RequestResponse {
 	 * @return The response content.
 	 */
 	public String getResponseContent() {
+		if (getResponseBody() instanceof StreamResponseBody) { //Read up to the end on first use, which releases the connection
+			try {
+				responseBody = new StringResponseBody(((StreamResponseBody)getResponseBody()).readFully());
+				
+			} catch (IOException ex) {
+				ex.printStackTrace();
+				responseBody = new StringResponseBody("");
+			}
+		}
 		if (!(getResponseBody() instanceof StringResponseBody)) {
 			try {
 				throw new Exception("Unable to fetch response content from a non-StringResponseBody");
@@ -154,6 +175,19 @@ public class RequestResponse {
 		return ((StringResponseBody)getResponseBody()).getBody();
 	}
 	
+	/**
+	 * Retrieves the response content as stream.
+	 * A streamed body is read from the connection as the caller goes and releases it when closed.
+	 * 
+	 * @return The input stream.
+	 */
+	public InputStream getResponseStream() {
+		if (getResponseBody() instanceof StreamResponseBody) {
+			return ((StreamResponseBody)getResponseBody()).getBody();
+		}
+		return new ByteArrayInputStream(getResponseContent().getBytes(StandardCharsets.UTF_8));
+	}
+	
 	/**
 	 * Retrieves the headers.
 	 * 
@@ -163,6 +197,27 @@ public class RequestResponse {
 		return headers;
 	}
 	
+	/**
+	 * Modifies the attempts made to receive the response.
+	 * 
+	 * @param attempts The new attempts.
+	 * 
+	 * @return The response.
+	 */
+	public RequestResponse setAttempts(List<RequestAttempt> attempts) {
+		this.attempts = Collections.unmodifiableList(attempts);
+		return this;
+	}
+	
+	/**
+	 * Retrieves the attempts made to receive the response, with the time each took and how it ended.
+	 * 
+	 * @return The attempts.
+	 */
+	public List<RequestAttempt> getAttempts() {
+		return attempts;
+	}
+	
 	/**
 	 * Parses a document to the response.
 	 * 
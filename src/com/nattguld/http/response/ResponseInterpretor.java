@@ -2,7 +2,7 @@ package com.nattguld.http.response;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.nattguld.http.response.bodies.IResponseBody;
 
@@ -18,21 +18,21 @@ public abstract class ResponseInterpretor<T extends IResponseBody<? extends Obje
 	/**
 	 * The interpretation progress.
 	 */
-	private final AtomicInteger progress;
+	private final AtomicLong progress;
 	
 	/**
 	 * The body size.
 	 */
-	private int bodySize;
+	private long bodySize;
 	
 	
 	/**
 	 * Creates a new response interpretor.
 	 * 
-	 * @param bodySize The body size.
+	 * @param bodySize The body size or -1 when unknown.
 	 */
-	public ResponseInterpretor(int bodySize) {
-		this.progress = new AtomicInteger();
+	public ResponseInterpretor(long bodySize) {
+		this.progress = new AtomicLong();
 		this.bodySize = bodySize;
 	}
 	
@@ -53,7 +53,7 @@ public abstract class ResponseInterpretor<T extends IResponseBody<? extends Obje
 	 * 
 	 * @param progress The new progress.
 	 */
-	protected void addProgress(int progress) {
+	protected void addProgress(long progress) {
 		this.progress.addAndGet(progress);
 	}
 	
@@ -62,7 +62,7 @@ public abstract class ResponseInterpretor<T extends IResponseBody<? extends Obje
 	 * 
 	 * @return The decoded body size.
 	 */
-	protected int getBodySize() {
+	protected long getBodySize() {
 		return bodySize;
 	}
 	
@@ -72,6 +72,9 @@ public abstract class ResponseInterpretor<T extends IResponseBody<? extends Obje
 	 * @return The progress.
 	 */
 	public int getProgress() {
+		if (getBodySize() <= 0) {
+			return 0;
+		}
 		return (int)Math.round(((double)((double)progress.get() / (double)getBodySize() * 100)));
 	}
 	
@@ -0,0 +1,23 @@
+package com.nattguld.http.response.bodies;
+
+import java.io.IOException;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public interface IReleaseHandler {
+	
+	
+	/**
+	 * Releases the connection a streamed body was read from.
+	 * 
+	 * @param complete Whether the body was read up to the end of its message, which leaves the connection reusable.
+	 * 
+	 * @throws IOException
+	 */
+	public void release(boolean complete) throws IOException;
+
+}
@@ -1,8 +1,6 @@
 package com.nattguld.http.response.bodies;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
@@ -16,8 +14,10 @@ import com.nattguld.http.response.ResponseInterpretor;
 import com.nattguld.http.response.bodies.impl.FileResponseBody;
 import com.nattguld.http.response.bodies.impl.StringResponseBody;
 import com.nattguld.http.response.interpretors.FileInterpretor;
+import com.nattguld.http.response.interpretors.StreamInterpretor;
 import com.nattguld.http.response.interpretors.StringInterpretor;
-import com.nattguld.util.maths.Maths;
+import com.nattguld.http.stream.ChunkedInputStream;
+import com.nattguld.http.stream.FixedLengthInputStream;
 
 /**
  * 
@@ -26,14 +26,47 @@ import com.nattguld.util.maths.Maths;
  */
 
 public class ResponseBodyParser {
-
 	
 	/**
-	 * Reads the request response body.
+	 * The maximum amount of unread body bytes discarded to keep a connection reusable.
+	 */
+	private static final long MAX_DRAIN_BYTES = 65536L;
+	
+	/**
+	 * The request.
+	 */
+	private final Request request;
+	
+	/**
+	 * The response headers.
+	 */
+	private final Headers responseHeaders;
+	
+	/**
+	 * Whether the response message has been read up to its end or not.
+	 */
+	private boolean messageComplete;
+	
+	/**
+	 * Whether the stream ends with the message, as is the case for HTTP/2 streams.
+	 */
+	private boolean delimited;
+	
+	
+	/**
+	 * Creates a new response body parser.
 	 * 
 	 * @param request The request.
 	 * 
 	 * @param responseHeaders The response headers.
+	 */
+	public ResponseBodyParser(Request request, Headers responseHeaders) {
+		this.request = request;
+		this.responseHeaders = responseHeaders;
+	}
+	
+	/**
+	 * Reads the request response body.
 	 * 
 	 * @param bis The input stream.
 	 * 
@@ -41,153 +74,176 @@ public class ResponseBodyParser {
 	 * 
 	 * @throws IOException
 	 */
-	public static IResponseBody<? extends Object> parseResponseBody(Request request, Headers responseHeaders, BufferedInputStream bis) throws IOException {
-		if (!request.isDecodeBody() && NetConfig.getConfig().isSaveDataMode()) {
-			return new StringResponseBody("Body decoding is turned off for this request");
-		}
+	public IResponseBody<? extends Object> parse(BufferedInputStream bis) throws IOException {
 		String contentEncoding = responseHeaders.getValueIgnoreCase("Content-Encoding"); //The content encoding of the response, will be null when it's plain text
 		String contentLength = responseHeaders.getValueIgnoreCase("Content-Length");
 		String contentType = responseHeaders.getValueIgnoreCase("Content-Type");
 		String chunkedValue = responseHeaders.getValueIgnoreCase("Transfer-Encoding"); //The transfer encoding if any
 		boolean chunked = Objects.nonNull(chunkedValue) && Objects.isNull(contentLength) && chunkedValue.equals("chunked"); //Whether the response is sent chunked or not
-
-		int bodySize = 0;
+		
+		long bodySize = 0;
 		
 		if (Objects.nonNull(contentLength)) {
-			if (!Maths.isInteger(contentLength)) {
+			try {
+				bodySize = Long.parseLong(contentLength.trim());
+				
+			} catch (NumberFormatException ex) {
+				bodySize = -1;
+			}
+			if (bodySize < 0) {
 				throw new NetException("Content length for " + request.getUrl() + " is not a valid integer: " + contentLength);
 			}
-			bodySize = Maths.parseInt(contentLength, 0);
 		}
-		if (!chunked && Objects.isNull(contentLength)) {
+		FixedLengthInputStream fixedBody = Objects.nonNull(contentLength) ? new FixedLengthInputStream(bis, bodySize) : null;
+		ChunkedInputStream chunkedBody = chunked ? new ChunkedInputStream(bis) : null;
+		
+		if (!request.isDecodeBody() && NetConfig.getConfig().isSaveDataMode()) {
+			messageComplete = drain(fixedBody, chunkedBody);
+			return new StringResponseBody("Body decoding is turned off for this request");
+		}
+		if (!chunked && Objects.isNull(contentLength) && delimited) {
+			bodySize = -1; //Unknown until the stream ends
+			
+		} else if (!chunked && Objects.isNull(contentLength)) {
 			//TODO Temporary removed to not block throw new NetException("Response for " + request.getUrl() + " is not chunked but has no Content-Length header.");
 			System.err.println("Response for " + request.getUrl() + " is not chunked but has no Content-Length header.");
 		}
 		boolean download = Objects.nonNull(request.getSavePath()) && Objects.nonNull(contentType);
 		
+		if (download && Objects.nonNull(request.getDownloadSegment()) 
+				&& !isRangeOf(responseHeaders.getValueIgnoreCase("Content-Range"), request.getDownloadSegment().getOffset())) {
+			messageComplete = drain(fixedBody, chunkedBody); //Anything but the requested range would end up at the wrong position in the file
+			return new StringResponseBody("Response for " + request.getUrl() + " doesn't hold the requested range");
+		}
+		
 		if (NetConfig.getConfig().isDebug()) {
-			System.out.println("Parsing server response body for [" + request.getUrl() + "] with properties [Content-Encoding: " + contentEncoding 
+			System.out.println("Parsing server response body for [" + request.getUrl() + "] with properties [Content-Encoding: " + contentEncoding
 					+ ", Transfer-Encoding: " + chunkedValue + ", Content-Length: " + bodySize + ", Content-Type: " + contentType + "]");
 		}
-		if (chunked) { //Read the chunks if the response is chunked
-			if (Objects.nonNull(responseHeaders.getValueIgnoreCase("Location"))) { //When it's a redirect we don't need to read any body
+		if (chunked) { //Decode the chunks on the fly if the response is chunked
+			if (Objects.nonNull(responseHeaders.getValueIgnoreCase("Location"))) { //When it's a redirect we don't need the body
+				messageComplete = drain(fixedBody, chunkedBody);
 				return new StringResponseBody("");
 			}
-			bis = readChunks(bis);
+			bis = new BufferedInputStream(chunkedBody);
+			bodySize = -1; //Unknown until the last chunk has been read
 			
-			if (Objects.isNull(bis)) {
-				System.err.println("Failed to read chunks on " + request.getUrl());
+		} else if (Objects.nonNull(fixedBody)) {
+			bis = new BufferedInputStream(fixedBody);
+		}
+		if (request.isStreamBody() && !download) { //The message is completed by the caller, who releases the connection by closing the body
+			return new StreamInterpretor(bodySize, contentEncoding, contentType, () -> {
+				boolean complete = drain(fixedBody, chunkedBody);
 				
-				if (NetConfig.getConfig().isDebug()) {
-					throw new NetException("Failed to read chunks on " + request.getUrl());
+				if (Objects.nonNull(chunkedBody)) {
+					chunkedBody.getTrailers().getHeaders().forEach(responseHeaders::add);
 				}
-				return download ? new FileResponseBody(null) : new StringResponseBody("Failed to read chunks");
-			}
-			if (bodySize > 0 && bodySize != bis.available()) {
-				System.err.println("Unexpected body size for " + request.getUrl() + ", received " + bis.available() + " instead of " + bodySize);
-			}
-			bodySize = bis.available();
+				return complete;
+			}).interpret(bis);
 		}
 		if (Objects.nonNull(contentLength) && contentLength.equals("0")) {
 			if (NetConfig.getConfig().isDebug()) {
 				System.out.println("Content length is zero for " + request.getUrl() + ", no body to parse");
 			}
+			messageComplete = true;
 			return new StringResponseBody("");
 		}
-		ResponseInterpretor<? extends Object> interpretor = download 
-				? new FileInterpretor(bodySize, request.getSavePath())
+		ResponseInterpretor<? extends Object> interpretor = download
+				? new FileInterpretor(bodySize, request.getSavePath(), request.getDownloadSegment())
 						: new StringInterpretor(bodySize, contentEncoding, contentType);
-				
+		
 		ExecutorService executor = null;
-				
+		
 		if (Objects.nonNull(request.getProgressListener())) {
 			executor = Executors.newSingleThreadExecutor();
-					
+			
 			executor.submit(new Runnable() {
 				@Override
 				public void run() {
-					while (interpretor.getProgress() < 100) {
+					while (interpretor.getProgress() < 100 && !Thread.currentThread().isInterrupted()) {
 						request.getProgressListener().setProgress(interpretor.getProgress());
 					}
 				}
 			});
 		}
 		IResponseBody<? extends Object> responseBody = interpretor.interpret(bis);
-				
+		
 		if (Objects.nonNull(executor)) {
 			executor.shutdownNow();
 		}
+		messageComplete = drain(fixedBody, chunkedBody);
+		
+		if (Objects.nonNull(chunkedBody)) {
+			chunkedBody.getTrailers().getHeaders().forEach(responseHeaders::add);
+		}
 		return responseBody;
 	}
 	
 	/**
-	 * Writes the body chunks to an unchunked input stream.
+	 * Discards the unread rest of the body so the connection can be reused.
 	 * 
-	 * @param bis The original input stream.
+	 * @param fixedBody The fixed length body if any.
 	 * 
-	 * @return The unchunked input stream.
+	 * @param chunkedBody The chunked body if any.
 	 * 
-	 * @throws IOException
+	 * @return Whether the end of the message has been reached or not.
 	 */
-	private static BufferedInputStream readChunks(BufferedInputStream bis) throws IOException {
-		byte[] bodyPayload = null; //Will hold our unchunked body payload once received
-		
-		try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-			int bytesRead = 0; //The bytes read in the read session
-			byte[] lineBuffer = new byte[1024]; //The line reading buffer
-			int chunkSize = 0; //The current chunk size we're supposed to receive
-			
-			while (true) {
-				byte b = (byte)bis.read();
-				
-				if (b < 0) { //We reached the end of the input stream
-					break;
-				}
-				lineBuffer[bytesRead++] = b;
-				
-				if (b != '\n') { //Keep collecting bytes if there's no new line indicated
-					continue;
-				}
-				String s = new String(lineBuffer, 0, bytesRead, "ASCII7").trim(); //Build a string out of our collected bytes and trim off the line break
-				
-				if (s.isEmpty()) { //Nothing to handle here
-					continue;
-				}
-				if (s.equals("0")) { //End of body indicated by the server
-					break;
-				}
-				try { //Check if the line is a hex giving us the chunk size and convert to decimal if so
-					chunkSize = Maths.hexToInteger(s); //Integer.parseInt(s.trim(), 16);
-						
-				} catch (NumberFormatException ex) { //Get rid of the received bytes if it's not a chunk size indicator
-					baos.write(lineBuffer, 0, bytesRead); //Write the line buffer to our unchunked body stream
-					bytesRead = 0; //Reset the bytes read for next read
-					lineBuffer = new byte[1024]; //Clear the buffer for next read
-					continue;
-				}
-				bytesRead = 0; //Reset the bytes read for next read
-				lineBuffer = new byte[1024]; //Clear the buffer for next read
-				
-				int received = 0; //Holds how many bytes we've received in total for this chunk
-				
-				while (received < chunkSize) { //As long as we didn't receive the expected bytes, keep waiting and reading
-					byte[] chunkBuffer = new byte[chunkSize - received]; //Create a byte buffer with the chunk size
-					int readCount = bis.read(chunkBuffer); //Fill up the chunk buffer and retrieve the amount of bytes we've read
-					baos.write(chunkBuffer, 0, readCount); //Write the chunk buffer to our unchunked body stream
-					received += readCount; //Add the count we read to our total received count
-				}
-			}
-			bodyPayload = baos.toByteArray(); //Write the received bytes to our body payload array
+	private static boolean drain(FixedLengthInputStream fixedBody, ChunkedInputStream chunkedBody) {
+		if (Objects.nonNull(fixedBody)) {
+			return fixedBody.drain(MAX_DRAIN_BYTES);
 		}
-		if (Objects.isNull(bodyPayload)) {
-			System.err.println("No body payload received after reading chunks");
-			return null;
+		if (Objects.nonNull(chunkedBody)) {
+			return chunkedBody.drain(MAX_DRAIN_BYTES);
 		}
-		if (bodyPayload.length <= 0) {
-			System.err.println("Empty payload received after reading chunks");
-			return null;
+		return false;
+	}
+	
+	/**
+	 * Retrieves whether a content range starts at a given position.
+	 * 
+	 * @param contentRange The content range header value.
+	 * 
+	 * @param position The position.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isRangeOf(String contentRange, long position) {
+		if (Objects.isNull(contentRange) || !contentRange.startsWith("bytes ")) {
+			return false;
+		}
+		int dash = contentRange.indexOf('-');
+		
+		if (dash < 0) {
+			return false;
+		}
+		try {
+			return Long.parseLong(contentRange.substring(6, dash).trim()) == position;
+			
+		} catch (NumberFormatException ex) {
+			return false;
 		}
-		return new BufferedInputStream(new ByteArrayInputStream(bodyPayload));
 	}
 	
+	/**
+	 * Modifies whether the stream ends with the message.
+	 * 
+	 * @param delimited The new state.
+	 * 
+	 * @return The response body parser.
+	 */
+	public ResponseBodyParser setDelimited(boolean delimited) {
+		this.delimited = delimited;
+		return this;
+	}
+	
+	/**
+	 * Retrieves whether the response message has been read up to its end or not.
+	 * Only complete messages leave the connection in a reusable state.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isMessageComplete() {
+		return messageComplete;
+	}
+
 }
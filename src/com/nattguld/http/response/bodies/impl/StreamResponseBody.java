@@ -0,0 +1,213 @@
+package com.nattguld.http.response.bodies.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import com.nattguld.http.response.bodies.IReleaseHandler;
+import com.nattguld.http.response.bodies.IResponseBody;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class StreamResponseBody implements IResponseBody<InputStream>, AutoCloseable {
+	
+	/**
+	 * The size of the read buffer.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+	
+	/**
+	 * The decoded body.
+	 */
+	private final InputStream decoded;
+	
+	/**
+	 * The body handed to the caller, read from the connection as the caller goes.
+	 */
+	private final InputStream in;
+	
+	/**
+	 * The charset of the body.
+	 */
+	private final Charset charset;
+	
+	/**
+	 * Discards the unread rest of the message, returning whether its end was reached.
+	 */
+	private final BooleanSupplier drainer;
+	
+	/**
+	 * Holds the handlers releasing the connection.
+	 */
+	private final List<IReleaseHandler> releaseHandlers;
+	
+	/**
+	 * Whether the connection has been released.
+	 */
+	private final AtomicBoolean released;
+	
+	
+	/**
+	 * Creates a new stream response body.
+	 * 
+	 * @param decoded The decoded body.
+	 * 
+	 * @param charset The charset of the body.
+	 * 
+	 * @param drainer Discards the unread rest of the message, returning whether its end was reached.
+	 */
+	public StreamResponseBody(InputStream decoded, Charset charset, BooleanSupplier drainer) {
+		this.decoded = decoded;
+		this.charset = charset;
+		this.drainer = drainer;
+		this.releaseHandlers = new CopyOnWriteArrayList<>();
+		this.released = new AtomicBoolean();
+		this.in = new FilterInputStream(decoded) { //Reaching the end releases the connection, reads after the release find nothing
+			
+			@Override
+			public int read() throws IOException {
+				if (released.get()) {
+					return -1;
+				}
+				int b = super.read();
+				
+				if (b < 0) {
+					StreamResponseBody.this.close();
+				}
+				return b;
+			}
+			
+			@Override
+			public int read(byte[] buffer, int off, int len) throws IOException {
+				if (released.get()) {
+					return -1;
+				}
+				int read = super.read(buffer, off, len);
+				
+				if (read < 0) {
+					StreamResponseBody.this.close();
+				}
+				return read;
+			}
+			
+			@Override
+			public void close() throws IOException {
+				StreamResponseBody.this.close();
+			}
+		};
+	}
+	
+	/**
+	 * Adds a handler releasing the connection once the body is closed or read up to its end.
+	 * 
+	 * @param releaseHandler The release handler.
+	 * 
+	 * @return The stream response body.
+	 */
+	public StreamResponseBody onRelease(IReleaseHandler releaseHandler) {
+		releaseHandlers.add(releaseHandler);
+		return this;
+	}
+	
+	/**
+	 * Releases the connection, releasing it again does nothing.
+	 * The unread rest of a short body is discarded so the connection can be reused, a longer one gets the connection closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!released.compareAndSet(false, true)) {
+			return;
+		}
+		boolean complete = drainer.getAsBoolean();
+		IOException failure = null;
+		
+		try {
+			decoded.close(); //Frees the decoder, the message streams below it leave the connection open
+		
+		} catch (IOException ex) {
+			failure = ex;
+		}
+		for (IReleaseHandler releaseHandler : releaseHandlers) {
+			try {
+				releaseHandler.release(complete);
+			
+			} catch (IOException ex) {
+				failure = ex;
+			}
+		}
+		if (Objects.nonNull(failure)) {
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Reads the rest of the body and releases the connection.
+	 * 
+	 * @return The body.
+	 * 
+	 * @throws IOException
+	 */
+	public String readFully() throws IOException {
+		try (InputStream stream = in) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(BUFFER_SIZE);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read = 0;
+			
+			while ((read = stream.read(buffer)) != -1) {
+				baos.write(buffer, 0, read);
+			}
+			return baos.toString(charset.name());
+		}
+	}
+	
+	/**
+	 * Retrieves the body as channel.
+	 * Closing it releases the connection.
+	 * 
+	 * @return The channel.
+	 */
+	public ReadableByteChannel getChannel() {
+		return Channels.newChannel(in);
+	}
+	
+	/**
+	 * Retrieves whether the connection has been released.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isReleased() {
+		return released.get();
+	}
+	
+	/**
+	 * Retrieves the charset of the body.
+	 * 
+	 * @return The charset.
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	/**
+	 * Retrieves the body as stream, read from the connection as the caller goes.
+	 * Closing it releases the connection.
+	 */
+	@Override
+	public InputStream getBody() {
+		return in;
+	}
+
+}
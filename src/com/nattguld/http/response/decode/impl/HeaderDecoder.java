@@ -1,15 +1,22 @@
 package com.nattguld.http.response.decode.impl;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.nattguld.http.HTTPCode;
 import com.nattguld.http.cfg.HttpVersion;
 import com.nattguld.http.cfg.NetConfig;
 import com.nattguld.http.content.cookies.Cookie;
+import com.nattguld.http.exceptions.NetException;
 import com.nattguld.http.headers.Headers;
 import com.nattguld.http.response.ResponseStatus;
 import com.nattguld.http.response.decode.IResponseDecoder;
@@ -22,6 +29,53 @@ import com.nattguld.util.maths.Maths;
  */
 
 public class HeaderDecoder implements IResponseDecoder {
+	
+	/**
+	 * The initial size of the line buffers.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+	
+	/**
+	 * The largest line buffer kept around for reuse.
+	 */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 65536;
+	
+	/**
+	 * The maximum amount of idle line buffers kept for reuse.
+	 */
+	private static final int MAX_IDLE = 16;
+	
+	/**
+	 * Holds the idle line buffers shared by all decoding threads.
+	 */
+	private static final Queue<byte[]> BUFFERS = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * The amount of idle line buffers.
+	 */
+	private static final AtomicInteger IDLE = new AtomicInteger();
+	
+	/**
+	 * Holds the header names that are shared instead of allocated for each response.
+	 */
+	private static final String[] COMMON_HEADER_NAMES;
+	
+	static {
+		String[] names = new String[] {
+				"Accept-Ranges", "Access-Control-Allow-Credentials", "Access-Control-Allow-Headers", "Access-Control-Allow-Methods"
+				, "Access-Control-Allow-Origin", "Age", "Alt-Svc", "Cache-Control", "Connection", "Content-Disposition", "Content-Encoding"
+				, "Content-Language", "Content-Length", "Content-Security-Policy", "Content-Type", "Date", "ETag", "Expires", "Keep-Alive"
+				, "Last-Modified", "Link", "Location", "P3P", "Pragma", "Proxy-Connection", "Referrer-Policy", "Retry-After", "Server"
+				, "Set-Cookie", "Strict-Transport-Security", "Timing-Allow-Origin", "Transfer-Encoding", "Vary", "Via", "X-Cache"
+				, "X-Content-Type-Options", "X-Frame-Options", "X-Powered-By", "X-XSS-Protection"
+		};
+		COMMON_HEADER_NAMES = new String[names.length * 2];
+		
+		for (int i = 0; i < names.length; i++) { //Servers either send the canonical or the lower case form
+			COMMON_HEADER_NAMES[i * 2] = names[i];
+			COMMON_HEADER_NAMES[i * 2 + 1] = names[i].toLowerCase();
+		}
+	}
 
 	/**
 	 * The status response.
@@ -38,78 +92,350 @@ public class HeaderDecoder implements IResponseDecoder {
 	 */
 	private List<Cookie> cookies = new ArrayList<>();
 	
+	/**
+	 * Whether the status line has been parsed or not.
+	 */
+	private boolean statusParsed;
+	
 	
+	/**
+	 * Decodes the status line and headers of a response.
+	 * When the input stream supports marking the header block is read in bulk and the stream is repositioned
+	 * right behind it, otherwise it's read byte per byte so nothing past the headers is consumed.
+	 */
 	@Override
 	public InputStream decode(InputStream in) throws IOException {
-		List<Byte> lineBuffer = new LinkedList<>();
+		int maxLineLength = NetConfig.getConfig().getMaxHeaderLineLength();
+		int maxLines = NetConfig.getConfig().getMaxResponseHeaders() + 1; //Include the status line
+		int maxBlockSize = (int)Math.min(Integer.MAX_VALUE - 8, (long)maxLineLength * maxLines);
+		boolean bulk = in.markSupported();
 		
-		while (true) {
-			byte b = (byte)in.read();
-			
-			if (b < 0) {
-				System.err.println("Malformed server response received, EOF reached unexpectedly");
-				return null;
-			}
-			lineBuffer.add(b);
-			
-			if (b != '\n') { //Keep collecting bytes if there's no new line indicated
-				continue;
-			}
-			byte[] lineBufferArray = new byte[lineBuffer.size()];
-			
-			for (int i = 0; i < lineBufferArray.length; i++) {
-				lineBufferArray[i] = lineBuffer.get(i);
+		byte[] buffer = acquireBuffer();
+		int limit = 0; //The amount of bytes in the buffer
+		int scan = 0; //The position to continue scanning for a line feed from
+		int lineStart = 0; //The start of the current line
+		int lines = 0;
+		
+		try {
+			if (bulk) {
+				in.mark(maxBlockSize);
 			}
-			String s = new String(lineBufferArray, "ASCII7").trim(); //Build a string out of our collected bytes and trim off the line break
-			lineBuffer.clear(); //Clears the line buffer for the next read
-			
-			if (s.isEmpty()) { //When an empty line is found it means we parsed all headers
-				break;
-			}
-			if (s.startsWith("HTTP")) { //The status line of the response
-				String[] msgParts = s.split(" ");
-				String httpProtocolVersion = msgParts[0];
-				String responseCode = msgParts[1];
-				StringBuilder responseMsgBuilder = new StringBuilder();
+			while (true) {
+				int lf = indexOf(buffer, scan, limit, (byte)'\n');
 				
-				for (int i = 2; i < msgParts.length; i ++) {
-					responseMsgBuilder.append(msgParts[i] + " ");
+				if (lf < 0) { //No complete line buffered yet, read more
+					scan = limit;
+					
+					if (limit - lineStart > maxLineLength) {
+						throw new NetException("Response header line exceeds " + maxLineLength + " bytes");
+					}
+					if (limit == buffer.length) {
+						if (limit >= maxBlockSize) {
+							throw new NetException("Response header block exceeds " + maxBlockSize + " bytes");
+						}
+						buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, maxBlockSize));
+					}
+					int read = bulk ? in.read(buffer, limit, buffer.length - limit) : in.read();
+					
+					if (read < 0) {
+						System.err.println("Malformed server response received, EOF reached unexpectedly");
+						return null;
+					}
+					if (bulk) {
+						limit += read;
+					} else {
+						buffer[limit++] = (byte)read;
+					}
+					continue;
 				}
-				int code = Integer.parseInt(responseCode);
-				HTTPCode httpCode = HTTPCode.getForCode(code);
-				String msg = responseMsgBuilder.toString().trim();
+				int start = lineStart;
+				int end = lf;
 				
-				if (msg.isEmpty()) {
-					msg = httpCode.getMessage();
+				scan = lineStart = lf + 1;
+				
+				while (start < end && buffer[start] <= ' ') { //Trim off the leading whitespace
+					start++;
 				}
-				if (httpCode == HTTPCode.INVALID) {
-					msg = "[Unhandled code: " + code + "] - " + msg;
+				while (end > start && buffer[end - 1] <= ' ') { //Trim off the line break and trailing whitespace
+					end--;
 				}
-				rs = new ResponseStatus(HttpVersion.parse(httpProtocolVersion), httpCode, msg);
-				continue;
+				if (start == end) {
+					if (!statusParsed && lines == 0) { //Stray line breaks in front of the status line are ignored
+						continue;
+					}
+					break; //When an empty line is found it means we parsed all headers
+				}
+				if (++lines > maxLines) {
+					throw new NetException("Response exceeds " + (maxLines - 1) + " headers");
+				}
+				parseLine(buffer, start, end);
 			}
-			if (s.equals("\r\n")) {
-				break;
+			if (bulk) { //Reposition the stream right behind the header block
+				in.reset();
+				skipFully(in, lineStart);
 			}
-			String key = s.substring(0, s.indexOf(":")).trim();
-			String value = s.substring(s.indexOf(":") + 1, s.length()).trim();
-			
-			if (!key.equalsIgnoreCase("Set-Cookie")) {
-				headers.add(key, value);
-				
-				if (NetConfig.getConfig().isDebug()) {
-					System.out.println("RESPONSE-HEADER => " + key + ": " + value);
-				}
+			return in;
+		
+		} finally {
+			releaseBuffer(buffer);
+		}
+	}
+	
+	/**
+	 * Retrieves an idle line buffer or creates one when none are idle.
+	 * 
+	 * @return The buffer.
+	 */
+	private static byte[] acquireBuffer() {
+		byte[] buffer = BUFFERS.poll();
+		
+		if (Objects.nonNull(buffer)) {
+			IDLE.decrementAndGet();
+			return buffer;
+		}
+		return new byte[BUFFER_SIZE];
+	}
+	
+	/**
+	 * Returns a line buffer for reuse unless it grew too large or enough buffers are idle.
+	 * 
+	 * @param buffer The buffer.
+	 */
+	private static void releaseBuffer(byte[] buffer) {
+		if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+			return;
+		}
+		if (IDLE.incrementAndGet() > MAX_IDLE) {
+			IDLE.decrementAndGet();
+			return;
+		}
+		BUFFERS.offer(buffer);
+	}
+	
+	/**
+	 * Parses a single trimmed header line.
+	 * 
+	 * @param buffer The buffer.
+	 * 
+	 * @param start The start of the line.
+	 * 
+	 * @param end The end of the line.
+	 */
+	private void parseLine(byte[] buffer, int start, int end) {
+		if (startsWith(buffer, start, end, "HTTP/")) { //The status line of the response
+			parseStatusLine(buffer, start, end);
+			return;
+		}
+		int colon = indexOf(buffer, start, end, (byte)':');
+		
+		if (colon < 0) {
+			System.err.println("Malformed response header: " + new String(buffer, start, end - start, StandardCharsets.ISO_8859_1));
+			return;
+		}
+		int keyEnd = colon;
+		int valueStart = colon + 1;
+		
+		while (keyEnd > start && buffer[keyEnd - 1] <= ' ') {
+			keyEnd--;
+		}
+		while (valueStart < end && buffer[valueStart] <= ' ') {
+			valueStart++;
+		}
+		addHeader(headerName(buffer, start, keyEnd), new String(buffer, valueStart, end - valueStart, StandardCharsets.ISO_8859_1));
+	}
+	
+	/**
+	 * Decodes the header fields of an HTTP/2 response.
+	 * 
+	 * @param fields The header fields as name and value pairs.
+	 */
+	public void decode(List<String[]> fields) {
+		for (String[] field : fields) {
+			if (field[0].equals(":status")) {
+				parseStatus(field[1]);
+				continue;
+			}
+			if (field[0].startsWith(":")) { //Other pseudo headers don't apply to responses
 				continue;
 			}
-			Cookie cookie = extractCookie(value);
-			cookies.add(cookie);
+			addHeader(field[0], field[1]);
+		}
+	}
+	
+	/**
+	 * Adds a response header, extracting the cookies.
+	 * 
+	 * @param key The header name.
+	 * 
+	 * @param value The header value.
+	 */
+	private void addHeader(String key, String value) {
+		if (!key.equalsIgnoreCase("Set-Cookie")) {
+			headers.add(key, value);
 			
 			if (NetConfig.getConfig().isDebug()) {
-				System.out.println("RESPONSE-COOKIE => " + cookie.getName() + ": " + cookie.getValue());
+				System.out.println("RESPONSE-HEADER => " + key + ": " + value);
 			}
+			return;
+		}
+		Cookie cookie = extractCookie(value);
+		cookies.add(cookie);
+		
+		if (NetConfig.getConfig().isDebug()) {
+			System.out.println("RESPONSE-COOKIE => " + cookie.getName() + ": " + cookie.getValue());
+		}
+	}
+	
+	/**
+	 * Parses the status line.
+	 * 
+	 * @param buffer The buffer.
+	 * 
+	 * @param start The start of the line.
+	 * 
+	 * @param end The end of the line.
+	 */
+	private void parseStatusLine(byte[] buffer, int start, int end) {
+		int versionEnd = indexOf(buffer, start, end, (byte)' ');
+		
+		if (versionEnd < 0) {
+			versionEnd = end;
+		}
+		int pos = versionEnd;
+		
+		while (pos < end && buffer[pos] == ' ') {
+			pos++;
+		}
+		int code = 0;
+		int digits = 0;
+		
+		while (pos < end && buffer[pos] >= '0' && buffer[pos] <= '9') {
+			code = code * 10 + (buffer[pos++] - '0');
+			digits++;
+		}
+		while (pos < end && buffer[pos] == ' ') {
+			pos++;
+		}
+		HTTPCode httpCode = digits == 3 ? HTTPCode.getForCode(code) : HTTPCode.INVALID;
+		String msg = pos < end ? new String(buffer, pos, end - pos, StandardCharsets.ISO_8859_1) : "";
+		
+		if (msg.isEmpty()) {
+			msg = httpCode.getMessage();
+		}
+		if (httpCode == HTTPCode.INVALID) {
+			msg = "[Unhandled code: " + code + "] - " + msg;
+		}
+		rs = new ResponseStatus(HttpVersion.parse(new String(buffer, start, versionEnd - start, StandardCharsets.ISO_8859_1)), httpCode, msg);
+		statusParsed = true;
+	}
+	
+	/**
+	 * Parses the status pseudo header of an HTTP/2 response, which only carries the code.
+	 * 
+	 * @param status The status value.
+	 */
+	private void parseStatus(String status) {
+		int code = Maths.parseInt(status, 0);
+		HTTPCode httpCode = status.length() == 3 && code > 0 ? HTTPCode.getForCode(code) : HTTPCode.INVALID;
+		String msg = httpCode.getMessage();
+		
+		if (httpCode == HTTPCode.INVALID) {
+			msg = "[Unhandled code: " + status + "] - " + msg;
+		}
+		rs = new ResponseStatus(HttpVersion.HTTP_2_0, httpCode, msg);
+		statusParsed = true;
+	}
+	
+	/**
+	 * Retrieves a header name, sharing the instance of common header names.
+	 * 
+	 * @param buffer The buffer.
+	 * 
+	 * @param start The start of the name.
+	 * 
+	 * @param end The end of the name.
+	 * 
+	 * @return The header name.
+	 */
+	private static String headerName(byte[] buffer, int start, int end) {
+		int length = end - start;
+		
+		for (String name : COMMON_HEADER_NAMES) {
+			if (name.length() == length && startsWith(buffer, start, end, name)) {
+				return name;
+			}
+		}
+		return new String(buffer, start, length, StandardCharsets.ISO_8859_1);
+	}
+	
+	/**
+	 * Retrieves whether a buffer region starts with a given ASCII prefix.
+	 * 
+	 * @param buffer The buffer.
+	 * 
+	 * @param start The start of the region.
+	 * 
+	 * @param end The end of the region.
+	 * 
+	 * @param prefix The prefix.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean startsWith(byte[] buffer, int start, int end, String prefix) {
+		if (end - start < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (buffer[start + i] != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Retrieves the index of a byte in a buffer region.
+	 * 
+	 * @param buffer The buffer.
+	 * 
+	 * @param start The start of the region.
+	 * 
+	 * @param end The end of the region.
+	 * 
+	 * @param b The byte.
+	 * 
+	 * @return The index or -1 when not found.
+	 */
+	private static int indexOf(byte[] buffer, int start, int end, byte b) {
+		for (int i = start; i < end; i++) {
+			if (buffer[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Skips an exact amount of bytes.
+	 * 
+	 * @param in The input stream.
+	 * 
+	 * @param amount The amount of bytes.
+	 * 
+	 * @throws IOException
+	 */
+	private static void skipFully(InputStream in, long amount) throws IOException {
+		while (amount > 0) {
+			long skipped = in.skip(amount);
+			
+			if (skipped <= 0) {
+				if (in.read() < 0) {
+					throw new EOFException("Unable to skip past the response headers");
+				}
+				skipped = 1;
+			}
+			amount -= skipped;
 		}
-		return in;
 	}
 	
 	/**
@@ -125,12 +451,12 @@ public class HeaderDecoder implements IResponseDecoder {
 		String key = fields[0].substring(0, fields[0].indexOf("=")).trim();
 		String value = fields[0].substring(fields[0].indexOf("=") + 1, fields[0].length());
 		String expires = null;
-		String path = "/";
-		String domain = "/";
+		String path = null; //Resolved against the request url by the cookie jar
+		String domain = null; //Host only unless the server widens it
 		boolean secure = false;
 		@SuppressWarnings("unused")
 		boolean httpOnly = false;
-		long maxAge = 0L;
+		long maxAge = -1L;
 		
 		for (int i = 1; i < fields.length; i ++) {
 			String field = fields[i].trim();
@@ -155,15 +481,19 @@ public class HeaderDecoder implements IResponseDecoder {
 				continue;
 			}
 			if (fieldKey.equalsIgnoreCase("domain")) {
-				domain = fieldValue;
+				domain = fieldValue.trim();
 				continue;
 			}
 			if (fieldKey.equalsIgnoreCase("path")) {
-				path = fieldValue;
+				path = fieldValue.trim();
 				continue;
 			}
 			if (fieldKey.equalsIgnoreCase("Max-Age")) {
-				maxAge = Maths.parseLong(fieldValue, 0L);
+				long age = Maths.parseLong(fieldValue.trim(), Long.MIN_VALUE);
+				
+				if (age != Long.MIN_VALUE) {
+					maxAge = Math.max(0L, age); //Zero or less expires the cookie right away
+				}
 				continue;
 			}
 			System.err.println("Unhandled cookie field: " + fields[i]);
@@ -2,11 +2,17 @@ package com.nattguld.http.response.interpretors;
 
 import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
 
+import com.nattguld.http.download.DownloadSegment;
 import com.nattguld.http.response.ResponseInterpretor;
 import com.nattguld.http.response.bodies.impl.FileResponseBody;
+import com.nattguld.http.stream.BufferPool;
 
 /**
  * 
@@ -21,6 +27,22 @@ public class FileInterpretor extends ResponseInterpretor<FileResponseBody> {
 	 */
 	private final String savePath;
 	
+	/**
+	 * The segment of the file the body is written into, null when the body is the whole file.
+	 */
+	private final DownloadSegment segment;
+	
+	
+	/**
+	 * Creates a new file decoder.
+	 * 
+	 * @param bodySize The expected body size.
+	 * 
+	 * @param savePath The save path.
+	 */
+	public FileInterpretor(long bodySize, String savePath) {
+		this(bodySize, savePath, null);
+	}
 	
 	/**
 	 * Creates a new file decoder.
@@ -28,38 +50,58 @@ public class FileInterpretor extends ResponseInterpretor<FileResponseBody> {
 	 * @param bodySize The expected body size.
 	 * 
 	 * @param savePath The save path.
+	 * 
+	 * @param segment The segment of the file the body is written into, null when the body is the whole file.
 	 */
-	public FileInterpretor(int bodySize, String savePath) {
+	public FileInterpretor(long bodySize, String savePath, DownloadSegment segment) {
 		super(bodySize);
 		
 		this.savePath = savePath;
+		this.segment = segment;
 	}
 	
 	@Override
 	public FileResponseBody interpret(BufferedInputStream bis) throws IOException {
-		int read = 0;
+		long read = 0;
+		long limit = Objects.nonNull(segment) ? segment.getRemaining() : getBodySize() > 0 ? getBodySize() : Long.MAX_VALUE;
+		StandardOpenOption[] options = Objects.nonNull(segment)
+				? new StandardOpenOption[] {StandardOpenOption.CREATE, StandardOpenOption.WRITE}
+						: new StandardOpenOption[] {StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING};
+		
+		ByteBuffer buffer = BufferPool.acquire();
 		
-		try (FileOutputStream fileOutputStream = new FileOutputStream(savePath)) {
-			byte dataBuffer[] = new byte[4096];
-			int bytesRead = 0;
+		try (FileChannel channel = FileChannel.open(Paths.get(savePath), options)) {
+			long position = Objects.nonNull(segment) ? segment.getOffset() : 0L;
 			
-			while ((bytesRead = bis.read(dataBuffer, 0, 4096)) != -1) {
-				fileOutputStream.write(dataBuffer, 0, bytesRead);
+			while (read < limit) {
+				int bytesRead = bis.read(buffer.array(), 0, (int)Math.min(buffer.capacity(), limit - read));
+				
+				if (bytesRead == -1) {
+					break;
+				}
+				buffer.clear().limit(bytesRead);
+				
+				while (buffer.hasRemaining()) {
+					position += channel.write(buffer, position); //Positional writes let segments of the same file be written at once
+				}
 				read += bytesRead;
 				
 				addProgress(bytesRead);
 				
-				if (read == getBodySize()) {
-					break;
+				if (Objects.nonNull(segment)) {
+					segment.addWritten(bytesRead);
 				}
 			}
 			return new FileResponseBody(new File(savePath));
-			
+		
 		} catch (IOException ex) {
 			ex.printStackTrace();
 			System.err.println("Exception occurred while decoding file");
+		
+		} finally {
+			BufferPool.release(buffer);
 		}
 		return null;
 	}
- 
+
 }
@@ -0,0 +1,68 @@
+package com.nattguld.http.response.interpretors;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+import com.nattguld.http.cfg.NetConfig;
+import com.nattguld.http.response.ResponseInterpretor;
+import com.nattguld.http.response.bodies.impl.StreamResponseBody;
+import com.nattguld.http.response.decode.IResponseDecoder;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class StreamInterpretor extends ResponseInterpretor<StreamResponseBody> {
+	
+	/**
+	 * The content encoding.
+	 */
+	private final String contentEncoding;
+	
+	/**
+	 * The content type.
+	 */
+	private final String contentType;
+	
+	/**
+	 * Discards the unread rest of the message, returning whether its end was reached.
+	 */
+	private final BooleanSupplier drainer;
+	
+	
+	/**
+	 * Creates a new stream interpretor.
+	 * 
+	 * @param bodySize The body size.
+	 * 
+	 * @param contentEncoding The content encoding.
+	 * 
+	 * @param contentType The content type.
+	 * 
+	 * @param drainer Discards the unread rest of the message, returning whether its end was reached.
+	 */
+	public StreamInterpretor(long bodySize, String contentEncoding, String contentType, BooleanSupplier drainer) {
+		super(bodySize);
+		
+		this.contentEncoding = contentEncoding;
+		this.contentType = contentType;
+		this.drainer = drainer;
+	}
+	
+	@Override
+	public StreamResponseBody interpret(BufferedInputStream bis) throws IOException {
+		IResponseDecoder decoder = StringInterpretor.getDecoder(contentEncoding);
+		
+		if (NetConfig.getConfig().isDebug()) {
+			System.out.println("Streaming body through decoder " + decoder + " for content type " + contentType);
+		}
+		InputStream decoded = Objects.isNull(decoder) ? bis : decoder.decode(bis);
+		return new StreamResponseBody(decoded, StringInterpretor.getCharset(contentType), drainer);
+	}
+
+}
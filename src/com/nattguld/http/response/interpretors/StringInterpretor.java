@@ -1,9 +1,12 @@
 package com.nattguld.http.response.interpretors;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -29,6 +32,16 @@ public class StringInterpretor extends ResponseInterpretor<StringResponseBody> {
 	 */
 	private static Map<String, IResponseDecoder> decoders = new HashMap<>();
 	
+	/**
+	 * The size of the read buffer.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+	
+	/**
+	 * The largest buffer allocated up front from the declared body size, larger bodies grow the buffer as they arrive.
+	 */
+	private static final int MAX_PREALLOCATED_SIZE = 1048576;
+	
 	/**
 	 * Loads the available response decoders into a static manner.
 	 */
@@ -58,7 +71,7 @@ public class StringInterpretor extends ResponseInterpretor<StringResponseBody> {
 	 * 
 	 * @param contentType The content type.
 	 */
-	public StringInterpretor(int bodySize, String contentEncoding, String contentType) {
+	public StringInterpretor(long bodySize, String contentEncoding, String contentType) {
 		super(bodySize);
 		
 		this.contentEncoding = contentEncoding;
@@ -68,28 +81,112 @@ public class StringInterpretor extends ResponseInterpretor<StringResponseBody> {
 	@Override
 	public StringResponseBody interpret(BufferedInputStream bis) throws IOException {
 		IResponseDecoder decoder = Objects.nonNull(contentEncoding) ? decoders.get(contentEncoding) : null;
+		Charset charset = getCharset(contentType);
 
 		if (NetConfig.getConfig().isDebug()) {
-			System.out.println("Interpret decoder " + decoder + " for content type " + contentType);
+			System.out.println("Interpret decoder " + decoder + " for content type " + contentType + " (" + charset + ")");
 		}
-		StringBuilder sb = new StringBuilder();
-		
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(Objects.isNull(decoder) ? bis : decoder.decode(bis), "UTF-8"))) {
-			byte b = 0;
-	
-			while ((b = (byte)br.read()) != -1) {
-				sb.append((char)b);
-				addProgress(1);
+		InputStream progressStream = new FilterInputStream(bis) { //Progress is tracked on the raw body as that's what the body size refers to
+			
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				
+				if (b >= 0) {
+					addProgress(1);
+				}
+				return b;
+			}
+			
+			@Override
+			public int read(byte[] buffer, int off, int len) throws IOException {
+				int read = super.read(buffer, off, len);
 				
-				if (Objects.isNull(contentEncoding) && sb.length() >= getBodySize()) {
-					break;
+				if (read > 0) {
+					addProgress(read);
 				}
+				return read;
+			}
+		};
+		try (InputStream in = Objects.isNull(decoder) ? progressStream : decoder.decode(progressStream)) {
+			if (Objects.isNull(decoder) && getBodySize() > 0 && getBodySize() <= MAX_PREALLOCATED_SIZE) { //The exact size is known so the bytes can be decoded without copying
+				byte[] body = new byte[(int)getBodySize()];
+				int length = 0;
+				
+				while (length < body.length) {
+					int read = in.read(body, length, body.length - length);
+					
+					if (read < 0) {
+						break;
+					}
+					length += read;
+				}
+				return finish(new String(body, 0, length, charset));
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream((int)Math.min(Math.max(getBodySize(), BUFFER_SIZE), MAX_PREALLOCATED_SIZE));
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read = 0;
+			
+			while ((read = in.read(buffer)) != -1) {
+				baos.write(buffer, 0, read);
 			}
+			return finish(baos.toString(charset.name()));
 		}
+	}
+	
+	/**
+	 * Wraps up the interpretation.
+	 * 
+	 * @param body The decoded body.
+	 * 
+	 * @return The response body.
+	 */
+	private StringResponseBody finish(String body) {
 		if (NetConfig.getConfig().isDebug()) {
 			System.out.println("Body interpretation successfull");
 		}
-		return new StringResponseBody(new String(sb.toString().getBytes(), "UTF-8"));
+		return new StringResponseBody(body);
+	}
+	
+	/**
+	 * Retrieves the decoder for a content encoding.
+	 * 
+	 * @param contentEncoding The content encoding, null when the body is plain.
+	 * 
+	 * @return The decoder, null when the body isn't decoded.
+	 */
+	static IResponseDecoder getDecoder(String contentEncoding) {
+		return Objects.isNull(contentEncoding) ? null : decoders.get(contentEncoding);
+	}
+	
+	/**
+	 * Retrieves the charset declared by a content type.
+	 * 
+	 * @param contentType The content type.
+	 * 
+	 * @return The charset, UTF-8 when none or an unsupported one is declared.
+	 */
+	static Charset getCharset(String contentType) {
+		if (Objects.isNull(contentType)) {
+			return StandardCharsets.UTF_8;
+		}
+		for (String param : contentType.split(";")) {
+			String trim = param.trim();
+			
+			if (!trim.regionMatches(true, 0, "charset=", 0, 8)) {
+				continue;
+			}
+			String name = trim.substring(8).replace("\"", "").replace("'", "").trim();
+			
+			try {
+				return Charset.forName(name);
+				
+			} catch (IllegalArgumentException ex) {
+				System.err.println("Unsupported charset " + name + ", falling back to UTF-8");
+				break;
+			}
+		}
+		return StandardCharsets.UTF_8;
 	}
 
 }
@@ -5,15 +5,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
+import java.net.ConnectException;
 import java.net.Socket;
 import java.net.SocketException;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
@@ -22,10 +21,15 @@ import com.nattguld.http.HTTPCode;
 import com.nattguld.http.browser.Browser;
 import com.nattguld.http.cfg.NetConfig;
 import com.nattguld.http.headers.Headers;
+import com.nattguld.http.pooling.ConnectionPool;
+import com.nattguld.http.pooling.ConnectionRoute;
+import com.nattguld.http.pooling.PooledSocket;
 import com.nattguld.http.proxies.HttpProxy;
 import com.nattguld.http.proxies.ProxyManager;
 import com.nattguld.http.response.decode.impl.HeaderDecoder;
+import com.nattguld.http.socket.dns.DnsCache;
 import com.nattguld.http.ssl.SSLManager;
+import com.nattguld.http.ssl.SSLProfile;
 
 /**
  * 
@@ -33,17 +37,12 @@ import com.nattguld.http.ssl.SSLManager;
  *
  */
 
-public class HttpSocket {
+public class HttpSocket implements ITransport {
 	
 	/**
 	 * Holds the SSL hosts.
 	 */
-	public static final List<String> SSL_HOSTS = new ArrayList<>();
-	
-	/**
-	 * Holds the host resolves.
-	 */
-	private final List<String> hostResolves = new ArrayList<>();
+	public static final List<String> SSL_HOSTS = new CopyOnWriteArrayList<>();
 
 	
 	/**
@@ -57,7 +56,7 @@ public class HttpSocket {
 	 */
 	private void setSocketConfigs(Socket socket, Browser browser) throws SocketException {
 		socket.setSoTimeout(browser.getConnectionTimeout() * 1000);
-		socket.setKeepAlive(false); //TODO Experimental - usually: true
+		socket.setKeepAlive(true);
 		socket.setSendBufferSize(65536);
 		socket.setReceiveBufferSize(65536);
 		socket.setTcpNoDelay(true);
@@ -80,15 +79,51 @@ public class HttpSocket {
 	 * 
 	 * @throws Exception
 	 */
-	public ITestSocket connect(HttpProxy httpProxy, String host, int port, Browser browser, boolean ssl) throws Exception {
+	public PooledSocket connect(HttpProxy httpProxy, String host, int port, Browser browser, boolean ssl) throws Exception {
+		return connect(httpProxy, host, port, browser, ssl, true);
+	}
+	
+	/**
+	 * Attempts to connect to the target server.
+	 * 
+	 * @param proxy The proxy to tunnel through if any.
+	 * 
+	 * @param host The target server host.
+	 * 
+	 * @param port The target server port.
+	 * 
+	 * @param browser The browser configurations.
+	 * 
+	 * @param ssl Whether to force the use of SSL or not.
+	 * 
+	 * @param reuse Whether an idle pooled connection may be reused or not.
+	 * 
+	 * @throws Exception
+	 */
+	@Override
+	public PooledSocket connect(HttpProxy httpProxy, String host, int port, Browser browser, boolean ssl, boolean reuse) throws Exception {
 		if (httpProxy == ProxyManager.INVALID_PROXY) {
 			throw new IOException("Invalid Proxy");
 		}
-		if (hostResolves.contains(host)) {
-			host = InetAddress.getByName(host).getHostAddress();
+		ConnectionRoute route = new ConnectionRoute(httpProxy, host, ssl ? 443 : port, ssl);
+		
+		PooledSocket pooled = ConnectionPool.getSingleton().lease(route, reuse, browser.getConnectionTimeout() * 1000L);
+		
+		if (Objects.nonNull(pooled)) {
+			pooled.setReadTimeout(browser.getConnectionTimeout() * 1000);
+			return pooled;
+		}
+		ITestSocket socket = null;
+		
+		try {
+			socket = ssl ? connectSSL(httpProxy, host, port, browser) 
+							: connect(httpProxy, host, port, browser);
+		} finally {
+			if (Objects.isNull(socket)) {
+				ConnectionPool.getSingleton().cancel(route);
+			}
 		}
-		return ssl ? connectSSL(httpProxy, host, port, browser) 
-						: connect(httpProxy, host, port, browser);
+		return ConnectionPool.getSingleton().register(route, socket);
 	}
 	
 	/**
@@ -107,29 +142,56 @@ public class HttpSocket {
 	 * @throws IOException
 	 */
 	private ITestSocket connect(HttpProxy httpProxy, String host, int port, Browser browser) throws IOException {
-		Socket socket = Objects.isNull(httpProxy) ? new Socket() : new Socket(httpProxy.getHost(), httpProxy.getPort());
-		setSocketConfigs(socket, browser);
+		long started = System.currentTimeMillis();
+		Socket socket = Objects.isNull(httpProxy) ? open(host, port, browser) : open(httpProxy.getHost(), httpProxy.getPort(), browser);
+		
+		if (Objects.nonNull(httpProxy)) {
+			httpProxy.getHealth().registerConnect(System.currentTimeMillis() - started);
+		}
 
 		try {
 			if (Objects.nonNull(httpProxy) && httpProxy.hasAuthentication()) {
 				doTunnelHandshake(socket, httpProxy, host, port, browser);
 			}
-			if (!socket.isConnected()) {
-				socket.connect(new InetSocketAddress(host, port));
-			}
 			return new StandardSocket(socket);
 			
 		} catch (IOException ex) {
-			if (hostResolves.contains(host)) {
-				hostResolves.remove(host);
-				ex.printStackTrace();
-				return new StandardSocket(socket);
-			}
-			hostResolves.add(host);
-			return connect(httpProxy, host, port, browser);
+			socket.close();
+			throw ex;
 		}
 	}
 	
+	/**
+	 * Opens a socket to a host through the DNS cache, racing its addresses when it has several.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param port The port.
+	 * 
+	 * @param browser The browser configurations.
+	 * 
+	 * @return The connected socket.
+	 * 
+	 * @throws IOException
+	 */
+	private Socket open(String host, int port, Browser browser) throws IOException {
+		int timeout = browser.getConnectionTimeout() * 1000;
+		
+		return DnsCache.getSingleton().connect(host, port, address -> {
+			Socket socket = new Socket();
+			
+			try {
+				setSocketConfigs(socket, browser);
+				socket.connect(address, timeout);
+				return socket;
+				
+			} catch (IOException ex) {
+				socket.close();
+				throw ex;
+			}
+		});
+	}
+	
 	/**
 	 * Retrieves an SSL socket.
 	 * 
@@ -146,43 +208,50 @@ public class HttpSocket {
 	 * @throws IOException
 	 */
 	private ITestSocket connectSSL(HttpProxy httpProxy, String host, int port, Browser browser) throws IOException {
-		SSLSocketFactory sslSocketFactory = SSLManager.buildSocketFactory();
+		SSLProfile profile = SSLProfile.forVersion(browser.getHttpVersion());
+		SSLSocketFactory sslSocketFactory = SSLManager.getSocketFactory(profile);
 		ITestSocket testSocket = null;
 		SSLSocket sslSocket = null;
 		
 		if (Objects.nonNull(httpProxy)) {
-			Socket tunnel = new Socket(httpProxy.getHost(), httpProxy.getPort());
+			long started = System.currentTimeMillis();
+			Socket tunnel = open(httpProxy.getHost(), httpProxy.getPort(), browser);
+			httpProxy.getHealth().registerConnect(System.currentTimeMillis() - started);
 			
-			setSocketConfigs(tunnel, browser);
-				
-			doTunnelHandshake(tunnel, httpProxy, host, 443, browser);
+			try {
+				doTunnelHandshake(tunnel, httpProxy, host, 443, browser);
 				
+			} catch (IOException ex) {
+				tunnel.close();
+				throw ex;
+			}
 			sslSocket = (SSLSocket)sslSocketFactory.createSocket(tunnel, host, port, true);
 			
 			testSocket = new TunnelSocket(sslSocket, tunnel);
 			
 		} else {
-			sslSocket = (SSLSocket)sslSocketFactory.createSocket(host, 443);
+			sslSocket = (SSLSocket)sslSocketFactory.createSocket(open(host, 443, browser), host, 443, true);
 			testSocket = new StandardSocket(sslSocket);
 		}
 		setSocketConfigs(sslSocket, browser);
+		SSLManager.configure(sslSocket, profile);
 			
 		try {
-			sslSocket.startHandshake();
-				
+			long started = System.currentTimeMillis();
+			SSLManager.handshake(sslSocket);
+			
+			if (Objects.nonNull(httpProxy)) {
+				httpProxy.getHealth().registerHandshake(System.currentTimeMillis() - started);
+			}
+			
 			if (!SSL_HOSTS.contains(host)) {
 				SSL_HOSTS.add(host);
 			}
 			return testSocket;
 				
 		} catch (IOException ex) {
-			if (hostResolves.contains(host)) {
-				hostResolves.remove(host);
-				ex.printStackTrace();
-				return testSocket;
-			}
-			hostResolves.add(host);
-			return connectSSL(httpProxy, host, port, browser);
+			sslSocket.close(); //Also closes the underlying socket
+			throw ex;
 		}
 	}
 	
@@ -202,6 +271,27 @@ public class HttpSocket {
 	 * @throws IOException
 	 */
     private void doTunnelHandshake(Socket tunnel, HttpProxy proxy, String host, int port, Browser browser) throws IOException {
+    	doTunnelHandshake(tunnel.getInputStream(), tunnel.getOutputStream(), proxy, host, port, browser);
+    }
+    
+	/**
+	 * Connect with our tunnel connection to a given host.
+	 * 
+	 * @param in The input stream of the tunnel connection.
+	 * 
+	 * @param out The output stream of the tunnel connection.
+	 * 
+	 * @param proxy The proxy if any.
+	 * 
+	 * @param host The host to connect to.
+	 * 
+	 * @param port The port.
+	 * 
+	 * @param browser The browser configurations.
+	 * 
+	 * @throws IOException
+	 */
+    static void doTunnelHandshake(InputStream in, OutputStream out, HttpProxy proxy, String host, int port, Browser browser) throws IOException {
     	Headers headers = new Headers();
     	headers.add("Host", host + ":" + port);
     	headers.add("User-Agent", browser.getUserAgent());
@@ -213,8 +303,7 @@ public class HttpSocket {
         }
     	StringBuilder raw = new StringBuilder();
     	
-        OutputStream out = tunnel.getOutputStream();
-        PrintWriter writer = new PrintWriter(new OutputStreamWriter(tunnel.getOutputStream(), Charset.forName("UTF-8").newEncoder()), true) {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, Charset.forName("UTF-8").newEncoder()), true) {
 			@Override
 			public void println(String s) {
 				super.println(s);
@@ -225,7 +314,7 @@ public class HttpSocket {
 				}
 			}
 		};
-        writer.println("CONNECT " + host + ":" + port + " " + browser.getHttpVersion().getName());
+        writer.println("CONNECT " + host + ":" + port + " " + browser.getHttpVersion().getMessageVersion().getName());
         
         for (Entry<String, String> header : headers.getHeaders().entrySet()) {
 			writer.println(header.getKey() + ": " + header.getValue());
@@ -238,16 +327,21 @@ public class HttpSocket {
         
         out.flush();
         
-        InputStream in = tunnel.getInputStream();
-        
         HeaderDecoder hd = new HeaderDecoder();
-        hd.decode(in);
         
-        if (hd.getResponseStatus().getHttpCode() != HTTPCode.OK) {
+        try {
+        	hd.decode(in);
+        	
+        } catch (IOException ex) {
+        	proxy.getHealth().registerConnectFailure();
+        	throw ex;
+        }
+        if (Objects.isNull(hd.getResponseStatus()) || hd.getResponseStatus().getHttpCode() != HTTPCode.OK) {
+        	proxy.getHealth().registerConnectFailure();
         	writer.close();
         	out.close();
         	in.close();
-        	throw new IOException("Unable to tunnel through proxy (" + hd.getResponseStatus() + ")");
+        	throw new ConnectException("Unable to tunnel through proxy (" + hd.getResponseStatus() + ")");
         }
         if (NetConfig.getConfig().isDebug()) {
         	System.out.println("Tunneled through proxy for " + host + ":" + port);
@@ -1,6 +1,12 @@
 package com.nattguld.http.socket;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.Objects;
+
+import javax.net.ssl.SSLSocket;
 
 /**
  * 
@@ -17,5 +23,82 @@ public interface ITestSocket extends AutoCloseable {
 	 * @return The socket.
 	 */
 	public Socket getSocket();
+	
+	/**
+	 * Retrieves the input stream of the connection.
+	 * 
+	 * @return The input stream.
+	 * 
+	 * @throws IOException
+	 */
+	default InputStream getInputStream() throws IOException {
+		return getSocket().getInputStream();
+	}
+	
+	/**
+	 * Retrieves the output stream of the connection.
+	 * 
+	 * @return The output stream.
+	 * 
+	 * @throws IOException
+	 */
+	default OutputStream getOutputStream() throws IOException {
+		return getSocket().getOutputStream();
+	}
+	
+	/**
+	 * Modifies the read timeout of the connection.
+	 * 
+	 * @param timeout The new timeout in milliseconds.
+	 * 
+	 * @throws IOException
+	 */
+	default void setReadTimeout(int timeout) throws IOException {
+		getSocket().setSoTimeout(timeout);
+	}
+	
+	/**
+	 * Retrieves the application protocol negotiated during the SSL handshake.
+	 * 
+	 * @return The protocol or null when none was negotiated.
+	 */
+	default String getApplicationProtocol() {
+		Socket socket = getSocket();
+		
+		if (!(socket instanceof SSLSocket)) {
+			return null;
+		}
+		String protocol = ((SSLSocket)socket).getApplicationProtocol();
+		return Objects.isNull(protocol) || protocol.isEmpty() ? null : protocol;
+	}
+	
+	/**
+	 * Retrieves whether the connection is open or not.
+	 * 
+	 * @return The result.
+	 */
+	default boolean isOpen() {
+		Socket socket = getSocket();
+		return !socket.isClosed() && socket.isConnected() && !socket.isInputShutdown() && !socket.isOutputShutdown();
+	}
+	
+	/**
+	 * Retrieves whether the connection is still usable for a new exchange.
+	 * The check doesn't block. Unread data on an idle connection means the server is closing it or sent something unexpected.
+	 * A close without any data is only noticed by the next exchange, which then goes out anew over a new connection.
+	 * 
+	 * @return The result.
+	 */
+	default boolean isAlive() {
+		if (!isOpen()) {
+			return false;
+		}
+		try {
+			return getInputStream().available() == 0;
+			
+		} catch (IOException ex) {
+			return false;
+		}
+	}
 
 }
@@ -0,0 +1,37 @@
+package com.nattguld.http.socket;
+
+import com.nattguld.http.browser.Browser;
+import com.nattguld.http.pooling.PooledSocket;
+import com.nattguld.http.proxies.HttpProxy;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public interface ITransport {
+	
+	
+	/**
+	 * Attempts to connect to the target server.
+	 * 
+	 * @param httpProxy The proxy to tunnel through if any.
+	 * 
+	 * @param host The target server host.
+	 * 
+	 * @param port The target server port.
+	 * 
+	 * @param browser The browser configurations.
+	 * 
+	 * @param ssl Whether to force the use of SSL or not.
+	 * 
+	 * @param reuse Whether an idle pooled connection may be reused or not.
+	 * 
+	 * @return The connection.
+	 * 
+	 * @throws Exception
+	 */
+	public PooledSocket connect(HttpProxy httpProxy, String host, int port, Browser browser, boolean ssl, boolean reuse) throws Exception;
+
+}
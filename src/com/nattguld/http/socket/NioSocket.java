@@ -0,0 +1,560 @@
+package com.nattguld.http.socket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+
+import com.nattguld.http.ssl.SSLManager;
+import com.nattguld.http.stream.BufferPool;
+import com.nattguld.http.stream.ITransferStream;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class NioSocket implements ITestSocket {
+	
+	/**
+	 * An empty buffer used to drive handshakes.
+	 */
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+	
+	/**
+	 * The size of the plain text read buffer.
+	 */
+	private static final int BUFFER_SIZE = 16384;
+	
+	/**
+	 * The selector loop watching the channel.
+	 */
+	private final SelectorLoop loop;
+	
+	/**
+	 * The channel.
+	 */
+	private final SocketChannel channel;
+	
+	/**
+	 * The input stream.
+	 */
+	private final InputStream in;
+	
+	/**
+	 * The output stream.
+	 */
+	private final OutputStream out;
+	
+	/**
+	 * The SSL engine once SSL has been started.
+	 */
+	private SSLEngine engine;
+	
+	/**
+	 * Holds the received network data that has yet to be unwrapped.
+	 */
+	private ByteBuffer netIn;
+	
+	/**
+	 * Holds the wrapped network data to send.
+	 */
+	private ByteBuffer netOut;
+	
+	/**
+	 * Holds the received application data that has yet to be read.
+	 */
+	private ByteBuffer appIn;
+	
+	/**
+	 * Serializes the writes, a reader answering post handshake messages wraps alongside writer threads.
+	 */
+	private final Object writeLock;
+	
+	/**
+	 * The read timeout in milliseconds.
+	 */
+	private volatile int readTimeout;
+	
+	/**
+	 * Whether the socket has been closed or not.
+	 */
+	private volatile boolean closed;
+	
+	
+	/**
+	 * Creates a new NIO socket.
+	 * 
+	 * @param loop The selector loop watching the channel.
+	 * 
+	 * @param channel The non-blocking channel.
+	 */
+	public NioSocket(SelectorLoop loop, SocketChannel channel) {
+		this.loop = loop;
+		this.channel = channel;
+		this.appIn = ByteBuffer.allocate(BUFFER_SIZE);
+		this.writeLock = new Object();
+		this.in = new ChannelInputStream();
+		this.out = new ChannelOutputStream();
+	}
+	
+	/**
+	 * Connects the channel.
+	 * 
+	 * @param address The address to connect to.
+	 * 
+	 * @param timeout The connect timeout in milliseconds.
+	 * 
+	 * @throws IOException
+	 */
+	public void connect(InetSocketAddress address, int timeout) throws IOException {
+		if (channel.connect(address)) {
+			return;
+		}
+		while (!channel.finishConnect()) {
+			loop.await(channel, SelectionKey.OP_CONNECT, timeout);
+		}
+	}
+	
+	/**
+	 * Performs the SSL handshake after which all traffic is encrypted.
+	 * 
+	 * @param engine The client mode SSL engine.
+	 * 
+	 * @throws IOException
+	 */
+	public void startSSL(SSLEngine engine) throws IOException {
+		int packetSize = engine.getSession().getPacketBufferSize();
+		
+		appIn.flip(); //Anything already received belongs to the handshake
+		this.netIn = ByteBuffer.allocate(Math.max(packetSize, appIn.remaining()));
+		this.netIn.put(appIn);
+		this.netOut = ByteBuffer.allocate(packetSize);
+		this.appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+		this.engine = engine;
+		
+		try {
+			engine.beginHandshake();
+			
+			HandshakeStatus hs = engine.getHandshakeStatus();
+			
+			while (hs != HandshakeStatus.FINISHED && hs != HandshakeStatus.NOT_HANDSHAKING) {
+				switch (hs) {
+				case NEED_WRAP:
+					hs = wrap(EMPTY).getHandshakeStatus();
+					break;
+				
+				case NEED_TASK:
+					runDelegatedTasks();
+					hs = engine.getHandshakeStatus();
+					break;
+				
+				default:
+					SSLEngineResult result = unwrap();
+					
+					if (Objects.isNull(result) || result.getStatus() == Status.CLOSED) {
+						throw new SSLHandshakeException("Connection closed during handshake");
+					}
+					hs = result.getHandshakeStatus();
+					break;
+				}
+			}
+		
+		} catch (SSLException ex) {
+			throw SSLManager.asHandshakeFailure(ex);
+		}
+		SSLManager.recordHandshake(engine.getSession());
+	}
+	
+	/**
+	 * Wraps and sends application data.
+	 * 
+	 * @param src The application data.
+	 * 
+	 * @return The engine result.
+	 * 
+	 * @throws IOException
+	 */
+	private SSLEngineResult wrap(ByteBuffer src) throws IOException {
+		synchronized (writeLock) {
+			while (true) {
+				netOut.clear();
+				SSLEngineResult result = engine.wrap(src, netOut);
+				
+				if (result.getStatus() == Status.BUFFER_OVERFLOW) {
+					netOut = ByteBuffer.allocate(Math.max(netOut.capacity() * 2, engine.getSession().getPacketBufferSize()));
+					continue;
+				}
+				netOut.flip();
+				writeNetwork(netOut);
+				return result;
+			}
+		}
+	}
+	
+	/**
+	 * Unwraps received network data, reading more from the network when needed.
+	 * 
+	 * @return The engine result or null when the connection reached its end.
+	 * 
+	 * @throws IOException
+	 */
+	private SSLEngineResult unwrap() throws IOException {
+		while (true) {
+			netIn.flip();
+			SSLEngineResult result = null;
+			
+			try {
+				result = engine.unwrap(netIn, appIn);
+			
+			} finally {
+				netIn.compact();
+			}
+			switch (result.getStatus()) {
+			case BUFFER_UNDERFLOW:
+				if (!netIn.hasRemaining()) {
+					netIn = enlarge(netIn, engine.getSession().getPacketBufferSize());
+				}
+				if (readNetwork(netIn) < 0) {
+					return null;
+				}
+				break;
+			
+			case BUFFER_OVERFLOW:
+				appIn = enlarge(appIn, engine.getSession().getApplicationBufferSize());
+				break;
+			
+			default:
+				return result;
+			}
+		}
+	}
+	
+	/**
+	 * Runs the tasks the SSL engine delegated.
+	 */
+	private void runDelegatedTasks() {
+		Runnable task = null;
+		
+		while (Objects.nonNull(task = engine.getDelegatedTask())) {
+			task.run();
+		}
+	}
+	
+	/**
+	 * Makes sure there's application data available for reading.
+	 * 
+	 * @return Whether data is available or the end of the stream was reached.
+	 * 
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException {
+		if (appIn.position() > 0) {
+			return true;
+		}
+		if (Objects.isNull(engine)) {
+			return readNetwork(appIn) >= 0;
+		}
+		while (appIn.position() == 0) {
+			SSLEngineResult result = unwrap();
+			
+			if (Objects.isNull(result) || result.getStatus() == Status.CLOSED) {
+				return false;
+			}
+			if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) { //Post handshake messages like session tickets
+				runDelegatedTasks();
+			}
+			if (engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP) {
+				wrap(EMPTY);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads from the network, waiting for data when none is available yet.
+	 * 
+	 * @param dst The buffer to read into.
+	 * 
+	 * @return The amount of bytes read or -1 when the connection reached its end.
+	 * 
+	 * @throws IOException
+	 */
+	private int readNetwork(ByteBuffer dst) throws IOException {
+		while (true) {
+			int read = channel.read(dst);
+			
+			if (read != 0) {
+				return read;
+			}
+			loop.await(channel, SelectionKey.OP_READ, readTimeout);
+		}
+	}
+	
+	/**
+	 * Writes to the network, waiting for room when the send buffer is full.
+	 * 
+	 * @param src The data to write.
+	 * 
+	 * @throws IOException
+	 */
+	private void writeNetwork(ByteBuffer src) throws IOException {
+		synchronized (writeLock) {
+			while (src.hasRemaining()) {
+				if (channel.write(src) == 0) {
+					loop.await(channel, SelectionKey.OP_WRITE, readTimeout);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates a larger copy of a buffer in write mode.
+	 * 
+	 * @param buffer The buffer.
+	 * 
+	 * @param minSize The minimum size.
+	 * 
+	 * @return The larger buffer.
+	 */
+	private static ByteBuffer enlarge(ByteBuffer buffer, int minSize) {
+		ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, minSize));
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		
+		if (Objects.nonNull(engine) && channel.isConnected()) {
+			synchronized (writeLock) {
+				try { //Best effort close notify, the channel is closed either way
+					engine.closeOutbound();
+					netOut.clear();
+					engine.wrap(EMPTY, netOut);
+					netOut.flip();
+					channel.write(netOut);
+				
+				} catch (IOException ex) {
+					//Nothing to do, the peer will notice the closed connection
+				}
+			}
+		}
+		loop.close(channel); //Threads still waiting on the channel find out it's closed
+	}
+	
+	@Override
+	public Socket getSocket() {
+		return channel.socket();
+	}
+	
+	@Override
+	public InputStream getInputStream() {
+		return in;
+	}
+	
+	@Override
+	public OutputStream getOutputStream() {
+		return out;
+	}
+	
+	@Override
+	public void setReadTimeout(int timeout) {
+		this.readTimeout = timeout;
+	}
+	
+	@Override
+	public String getApplicationProtocol() {
+		if (Objects.isNull(engine)) {
+			return null;
+		}
+		String protocol = engine.getApplicationProtocol();
+		return Objects.isNull(protocol) || protocol.isEmpty() ? null : protocol;
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return !closed && channel.isOpen() && channel.isConnected();
+	}
+	
+	@Override
+	public boolean isAlive() {
+		if (!isOpen() || appIn.position() > 0) { //Unread data means the previous exchange didn't end cleanly
+			return false;
+		}
+		try {
+			int read = channel.read(Objects.isNull(engine) ? appIn : netIn);
+			
+			if (read < 0) {
+				return false;
+			}
+			if (Objects.isNull(engine)) {
+				return read == 0;
+			}
+			while (netIn.position() > 0) { //Encrypted records may be session tickets which don't render the connection unusable
+				netIn.flip();
+				SSLEngineResult result = engine.unwrap(netIn, appIn);
+				netIn.compact();
+				
+				if (result.getStatus() != Status.OK || result.bytesConsumed() == 0) {
+					return result.getStatus() == Status.BUFFER_UNDERFLOW && appIn.position() == 0;
+				}
+				runDelegatedTasks();
+			}
+			return appIn.position() == 0;
+		
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+	
+	/**
+	 * 
+	 * @author randqm
+	 * 
+	 */
+	
+	private class ChannelInputStream extends InputStream {
+		
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+		
+		@Override
+		public int read(byte[] buffer, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			appIn.flip();
+			int read = Math.min(len, appIn.remaining());
+			appIn.get(buffer, off, read);
+			appIn.compact();
+			return read;
+		}
+		
+		@Override
+		public int available() {
+			return appIn.position();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			NioSocket.this.close();
+		}
+	
+	}
+	
+	/**
+	 * 
+	 * @author randqm
+	 * 
+	 */
+	
+	private class ChannelOutputStream extends OutputStream implements ITransferStream {
+		
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte)b}, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] buffer, int off, int len) throws IOException {
+			if (closed) {
+				throw new SocketException("Socket is closed");
+			}
+			ByteBuffer src = ByteBuffer.wrap(buffer, off, len);
+			
+			if (Objects.isNull(engine)) {
+				writeNetwork(src);
+				return;
+			}
+			while (src.hasRemaining()) {
+				if (wrap(src).getStatus() == Status.CLOSED) {
+					throw new EOFException("SSL engine closed");
+				}
+			}
+		}
+		
+		@Override
+		public long transferFrom(FileChannel file, long position, long count) throws IOException {
+			if (closed) {
+				throw new SocketException("Socket is closed");
+			}
+			long sent = 0;
+			
+			if (Objects.isNull(engine)) { //Plain connections let the kernel copy straight from the file
+				synchronized (writeLock) {
+					while (sent < count) {
+						long transferred = file.transferTo(position + sent, count - sent, channel);
+						
+						if (transferred == 0) {
+							if (position + sent >= file.size()) {
+								throw new EOFException("File ended " + (count - sent) + " bytes early");
+							}
+							loop.await(channel, SelectionKey.OP_WRITE, readTimeout);
+						}
+						sent += transferred;
+					}
+				}
+				return sent;
+			}
+			ByteBuffer src = BufferPool.acquireDirect(); //The file data only has to pass the engine, so it never enters the heap
+			
+			try {
+				while (sent < count) {
+					src.clear().limit((int)Math.min(src.capacity(), count - sent));
+					int read = file.read(src, position + sent);
+					
+					if (read < 0) {
+						throw new EOFException("File ended " + (count - sent) + " bytes early");
+					}
+					src.flip();
+					
+					while (src.hasRemaining()) {
+						if (wrap(src).getStatus() == Status.CLOSED) {
+							throw new EOFException("SSL engine closed");
+						}
+					}
+					sent += read;
+				}
+				return sent;
+			
+			} finally {
+				BufferPool.release(src);
+			}
+		}
+		
+		@Override
+		public void close() throws IOException {
+			NioSocket.this.close();
+		}
+	
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.nattguld.http.socket;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLEngine;
+
+import com.nattguld.http.browser.Browser;
+import com.nattguld.http.pooling.ConnectionPool;
+import com.nattguld.http.pooling.ConnectionRoute;
+import com.nattguld.http.pooling.PooledSocket;
+import com.nattguld.http.proxies.HttpProxy;
+import com.nattguld.http.proxies.ProxyManager;
+import com.nattguld.http.socket.dns.DnsCache;
+import com.nattguld.http.ssl.SSLManager;
+import com.nattguld.http.ssl.SSLProfile;
+import com.nattguld.util.SystemUtil;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class NioTransport implements ITransport {
+	
+	/**
+	 * The transport instance.
+	 */
+	private static NioTransport singleton;
+	
+	/**
+	 * The selector loops the connections are spread over.
+	 */
+	private final SelectorLoop[] loops;
+	
+	/**
+	 * The index of the next selector loop to assign.
+	 */
+	private final AtomicInteger nextLoop;
+	
+	
+	/**
+	 * Creates a new NIO transport.
+	 */
+	private NioTransport() {
+		this.loops = new SelectorLoop[Math.max(1, Math.min(4, SystemUtil.getCPUCores() / 2))];
+		this.nextLoop = new AtomicInteger();
+	}
+	
+	@Override
+	public PooledSocket connect(HttpProxy httpProxy, String host, int port, Browser browser, boolean ssl, boolean reuse) throws Exception {
+		if (httpProxy == ProxyManager.INVALID_PROXY) {
+			throw new IOException("Invalid Proxy");
+		}
+		int targetPort = ssl ? 443 : port;
+		int timeout = browser.getConnectionTimeout() * 1000;
+		ConnectionRoute route = new ConnectionRoute(httpProxy, host, targetPort, ssl);
+		
+		PooledSocket pooled = ConnectionPool.getSingleton().lease(route, reuse, timeout);
+		
+		if (Objects.nonNull(pooled)) {
+			pooled.setReadTimeout(timeout);
+			return pooled;
+		}
+		PooledSocket registered = null;
+		
+		try {
+			long connectStarted = System.currentTimeMillis();
+			NioSocket socket = Objects.isNull(httpProxy) ? open(host, targetPort, timeout) : open(httpProxy.getHost(), httpProxy.getPort(), timeout);
+			
+			try {
+				if (Objects.nonNull(httpProxy)) {
+					httpProxy.getHealth().registerConnect(System.currentTimeMillis() - connectStarted);
+					
+					if (ssl || httpProxy.hasAuthentication()) {
+						HttpSocket.doTunnelHandshake(socket.getInputStream(), socket.getOutputStream(), httpProxy, host, targetPort, browser);
+					}
+				}
+				if (ssl) {
+					SSLProfile profile = SSLProfile.forVersion(browser.getHttpVersion());
+					SSLEngine engine = SSLManager.getContext(profile).createSSLEngine(host, targetPort);
+					SSLManager.configure(engine, profile);
+					
+					long started = System.currentTimeMillis();
+					socket.startSSL(engine);
+					
+					if (Objects.nonNull(httpProxy)) {
+						httpProxy.getHealth().registerHandshake(System.currentTimeMillis() - started);
+					}
+					
+					if (!HttpSocket.SSL_HOSTS.contains(host)) {
+						HttpSocket.SSL_HOSTS.add(host);
+					}
+				}
+			} catch (IOException ex) {
+				socket.close();
+				throw ex;
+			}
+			registered = ConnectionPool.getSingleton().register(route, socket);
+			return registered;
+		
+		} finally {
+			if (Objects.isNull(registered)) {
+				ConnectionPool.getSingleton().cancel(route);
+			}
+		}
+	}
+	
+	/**
+	 * Opens a channel to a host through the DNS cache, racing its addresses when it has several.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param port The port.
+	 * 
+	 * @param timeout The connect timeout in milliseconds.
+	 * 
+	 * @return The connected socket.
+	 * 
+	 * @throws IOException
+	 */
+	private NioSocket open(String host, int port, int timeout) throws IOException {
+		return DnsCache.getSingleton().connect(host, port, address -> {
+			SocketChannel channel = SocketChannel.open();
+			NioSocket socket = null;
+			
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+				channel.setOption(StandardSocketOptions.SO_SNDBUF, 65536);
+				channel.setOption(StandardSocketOptions.SO_RCVBUF, 65536);
+				
+				socket = new NioSocket(getLoop(), channel);
+				socket.setReadTimeout(timeout);
+				socket.connect(address, timeout);
+				return socket;
+				
+			} catch (IOException ex) {
+				if (Objects.nonNull(socket)) {
+					socket.close();
+				} else {
+					channel.close();
+				}
+				throw ex;
+			}
+		});
+	}
+	
+	/**
+	 * Retrieves the selector loop for a new connection.
+	 * The loops are started on first use.
+	 * 
+	 * @return The selector loop.
+	 * 
+	 * @throws IOException
+	 */
+	private SelectorLoop getLoop() throws IOException {
+		int index = Math.floorMod(nextLoop.getAndIncrement(), loops.length);
+		
+		synchronized (loops) {
+			if (Objects.isNull(loops[index])) {
+				loops[index] = new SelectorLoop("NioTransport-Selector-" + index);
+			}
+			return loops[index];
+		}
+	}
+	
+	/**
+	 * Retrieves the singleton instance.
+	 * 
+	 * @return The singleton instance.
+	 */
+	public static synchronized NioTransport getSingleton() {
+		if (Objects.isNull(singleton)) {
+			singleton = new NioTransport();
+		}
+		return singleton;
+	}
+
+}
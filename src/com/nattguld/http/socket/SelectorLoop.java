@@ -0,0 +1,279 @@
+package com.nattguld.http.socket;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class SelectorLoop implements Runnable {
+	
+	/**
+	 * The selector.
+	 */
+	private final Selector selector;
+	
+	/**
+	 * Holds the registration changes to perform on the loop thread.
+	 */
+	private final Queue<Runnable> tasks;
+	
+	
+	/**
+	 * Creates a new selector loop and starts its thread.
+	 * 
+	 * @param name The thread name.
+	 * 
+	 * @throws IOException
+	 */
+	public SelectorLoop(String name) throws IOException {
+		this.selector = Selector.open();
+		this.tasks = new ConcurrentLinkedQueue<>();
+		
+		Thread thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	@Override
+	public void run() {
+		while (selector.isOpen()) {
+			try {
+				selector.select();
+				
+				Runnable task = null;
+				
+				while (Objects.nonNull(task = tasks.poll())) {
+					task.run();
+				}
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					
+					Waiters waiters = (Waiters)key.attachment();
+					
+					try {
+						waiters.complete(key.readyOps());
+						key.interestOps(waiters.getInterestOps());
+					
+					} catch (CancelledKeyException ex) { //The channel got closed while it was selected, the waiting sides find out on their next operation
+						waiters.completeAll();
+					}
+				}
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Waits until a channel is ready for a given operation.
+	 * The calling thread parks while the loop thread watches the channel, a channel has one waiter per operation so a reader and a writer can wait at the same time.
+	 * 
+	 * @param channel The channel.
+	 * 
+	 * @param op The operation to wait for.
+	 * 
+	 * @param timeout The timeout in milliseconds, 0 to wait indefinitely.
+	 * 
+	 * @throws IOException
+	 */
+	public void await(SelectableChannel channel, int op, long timeout) throws IOException {
+		CompletableFuture<Void> ready = new CompletableFuture<>();
+		
+		tasks.offer(() -> register(channel, op, ready));
+		selector.wakeup();
+		
+		try {
+			if (timeout > 0) {
+				ready.get(timeout, TimeUnit.MILLISECONDS);
+			} else {
+				ready.get();
+			}
+		} catch (TimeoutException ex) {
+			tasks.offer(() -> {
+				SelectionKey key = channel.keyFor(selector);
+				
+				if (Objects.nonNull(key) && key.isValid()) {
+					Waiters waiters = (Waiters)key.attachment();
+					waiters.remove(ready);
+					key.interestOps(waiters.getInterestOps());
+				}
+			});
+			selector.wakeup();
+			throw new SocketTimeoutException("Timed out after " + timeout + "ms");
+		
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the channel");
+		
+		} catch (ExecutionException ex) {
+			throw new IOException(ex.getCause());
+		}
+	}
+	
+	/**
+	 * Closes a channel on the loop thread, waking up the threads waiting on it.
+	 * Closing it in line with the registrations means no thread starts waiting on the channel once it's closed.
+	 * 
+	 * @param channel The channel.
+	 */
+	public void close(SelectableChannel channel) {
+		tasks.offer(() -> {
+			SelectionKey key = channel.keyFor(selector);
+			
+			try {
+				channel.close();
+			
+			} catch (IOException ex) {
+				//Nothing to do, the channel is unusable either way
+			}
+			if (Objects.nonNull(key)) {
+				((Waiters)key.attachment()).completeAll();
+			}
+		});
+		selector.wakeup();
+	}
+	
+	/**
+	 * Registers the interest of a waiting thread, must run on the loop thread.
+	 * 
+	 * @param channel The channel.
+	 * 
+	 * @param op The operation to wait for.
+	 * 
+	 * @param ready The future to complete once the channel is ready.
+	 */
+	private void register(SelectableChannel channel, int op, CompletableFuture<Void> ready) {
+		try {
+			SelectionKey key = channel.keyFor(selector);
+			
+			if (Objects.nonNull(key) && key.isValid()) {
+				Waiters waiters = (Waiters)key.attachment();
+				waiters.add(op, ready);
+				key.interestOps(waiters.getInterestOps());
+				return;
+			}
+			if (Objects.nonNull(key)) { //A cancelled key blocks new registrations until it has been flushed
+				selector.selectNow();
+			}
+			Waiters waiters = new Waiters();
+			waiters.add(op, ready);
+			channel.register(selector, op, waiters);
+		
+		} catch (IOException | RuntimeException ex) {
+			ready.completeExceptionally(ex);
+		}
+	}
+	
+	/**
+	 * 
+	 * @author randqm
+	 * 
+	 */
+	
+	private static class Waiters {
+		
+		/**
+		 * The operations that can be waited for.
+		 */
+		private static final int[] OPS = new int[] {SelectionKey.OP_READ, SelectionKey.OP_WRITE, SelectionKey.OP_CONNECT};
+		
+		/**
+		 * Holds the waiting future per operation, in the order of the operations.
+		 */
+		private final CompletableFuture<?>[] futures = new CompletableFuture<?>[OPS.length];
+		
+		
+		/**
+		 * Adds the waiter of an operation, waiters of the same operation are woken up together.
+		 * 
+		 * @param op The operation.
+		 * 
+		 * @param ready The future to complete once the channel is ready.
+		 */
+		private void add(int op, CompletableFuture<Void> ready) {
+			for (int i = 0; i < OPS.length; i++) {
+				if (OPS[i] == op) {
+					if (Objects.nonNull(futures[i])) {
+						futures[i].thenRun(() -> ready.complete(null));
+						return;
+					}
+					futures[i] = ready;
+					return;
+				}
+			}
+			throw new IllegalArgumentException("Unsupported operation " + op);
+		}
+		
+		/**
+		 * Removes a waiter that gave up.
+		 * 
+		 * @param ready The future of the waiter.
+		 */
+		private void remove(CompletableFuture<Void> ready) {
+			for (int i = 0; i < OPS.length; i++) {
+				if (futures[i] == ready && ready.getNumberOfDependents() == 0) { //Others still wait on it otherwise
+					futures[i] = null;
+				}
+			}
+		}
+		
+		/**
+		 * Completes the waiters of the operations a channel is ready for.
+		 * 
+		 * @param readyOps The ready operations.
+		 */
+		private void complete(int readyOps) {
+			for (int i = 0; i < OPS.length; i++) {
+				if ((readyOps & OPS[i]) != 0 && Objects.nonNull(futures[i])) {
+					futures[i].complete(null);
+					futures[i] = null;
+				}
+			}
+		}
+		
+		/**
+		 * Completes all waiters.
+		 */
+		private void completeAll() {
+			complete(-1);
+		}
+		
+		/**
+		 * Retrieves the operations being waited for.
+		 * 
+		 * @return The interest operations.
+		 */
+		private int getInterestOps() {
+			int ops = 0;
+			
+			for (int i = 0; i < OPS.length; i++) {
+				if (Objects.nonNull(futures[i])) {
+					ops |= OPS[i];
+				}
+			}
+			return ops;
+		}
+	
+	}
+
+}
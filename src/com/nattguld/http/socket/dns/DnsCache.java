@@ -0,0 +1,397 @@
+package com.nattguld.http.socket.dns;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.nattguld.http.cfg.NetConfig;
+import com.nattguld.http.requests.execute.DispatchExecutors;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class DnsCache {
+	
+	/**
+	 * The amount of cached hosts from which expired ones are dropped.
+	 */
+	private static final int MAX_ENTRIES = 4096;
+	
+	/**
+	 * The share of the time to live after which a used entry is refreshed in the background.
+	 */
+	private static final double REFRESH_AT = 0.75D;
+	
+	/**
+	 * The cache instance.
+	 */
+	private static DnsCache singleton;
+	
+	/**
+	 * Holds the resolved entries per host.
+	 */
+	private final Map<String, DnsEntry> entries;
+	
+	/**
+	 * Holds the lookups in progress per host, callers asking for the same host wait for the same lookup.
+	 */
+	private final Map<String, CompletableFuture<DnsEntry>> lookups;
+	
+	/**
+	 * The resolver.
+	 */
+	private volatile IHostResolver resolver;
+	
+	
+	/**
+	 * Creates a new DNS cache.
+	 */
+	private DnsCache() {
+		this.entries = new ConcurrentHashMap<>();
+		this.lookups = new ConcurrentHashMap<>();
+		this.resolver = new SystemResolver();
+	}
+	
+	/**
+	 * Resolves a host and connects to the first of its addresses that answers.
+	 * The host is resolved again on the next connect when none of its addresses answer.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param port The port.
+	 * 
+	 * @param connector The connector.
+	 * 
+	 * @return The connection.
+	 * 
+	 * @throws IOException
+	 */
+	public <T extends AutoCloseable> T connect(String host, int port, IAddressConnector<T> connector) throws IOException {
+		List<InetAddress> addresses = resolve(host);
+		
+		try {
+			return HappyEyeballs.connect(addresses, port, NetConfig.getConfig().getHappyEyeballsDelay(), connector);
+		
+		} catch (IOException ex) {
+			invalidate(host);
+			throw ex;
+		}
+	}
+	
+	/**
+	 * Resolves the addresses of a host, from the cache while they're valid.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @return The addresses, alternating between address families.
+	 * 
+	 * @throws UnknownHostException
+	 */
+	public List<InetAddress> resolve(String host) throws UnknownHostException {
+		if (isLiteral(host)) { //Parsed without a lookup
+			return Collections.singletonList(InetAddress.getByName(host));
+		}
+		DnsEntry entry = entries.get(host);
+		
+		if (Objects.isNull(entry) || entry.isExpired()) {
+			entry = lookup(host);
+		
+		} else if (entry.isRefreshDue() && entry.claimRefresh()) {
+			refresh(host);
+		}
+		if (Objects.nonNull(entry.getError())) {
+			throw new UnknownHostException(entry.getError().getMessage());
+		}
+		return entry.getAddresses();
+	}
+	
+	/**
+	 * Resolves a host in the background so a later connect finds it cached.
+	 * 
+	 * @param host The host.
+	 */
+	public void prefetch(String host) {
+		if (isLiteral(host)) {
+			return;
+		}
+		DnsEntry entry = entries.get(host);
+		
+		if (Objects.isNull(entry) || entry.isExpired()) {
+			DispatchExecutors.getDefault().execute(() -> lookup(host));
+		}
+	}
+	
+	/**
+	 * Looks up a host, joining the lookup already in progress if there is one.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @return The entry.
+	 */
+	private DnsEntry lookup(String host) {
+		CompletableFuture<DnsEntry> lookup = new CompletableFuture<>();
+		CompletableFuture<DnsEntry> inProgress = lookups.putIfAbsent(host, lookup);
+		
+		if (Objects.nonNull(inProgress)) {
+			try {
+				return inProgress.join();
+			
+			} catch (CompletionException ex) {
+				return new DnsEntry(null, new UnknownHostException(host), NetConfig.getConfig().getDnsNegativeTtl());
+			}
+		}
+		try {
+			DnsEntry entry = query(host);
+			store(host, entry);
+			lookup.complete(entry);
+			return entry;
+		
+		} catch (RuntimeException ex) {
+			lookup.completeExceptionally(ex);
+			throw ex;
+		
+		} finally {
+			lookups.remove(host, lookup);
+		}
+	}
+	
+	/**
+	 * Refreshes the entry of a host in the background, the current entry is kept when the lookup fails.
+	 * 
+	 * @param host The host.
+	 */
+	private void refresh(String host) {
+		DispatchExecutors.getDefault().execute(() -> {
+			DnsEntry entry = query(host);
+			
+			if (Objects.isNull(entry.getError())) {
+				store(host, entry);
+			}
+		});
+	}
+	
+	/**
+	 * Queries the resolver for a host.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @return The entry, holding the error when the host doesn't resolve.
+	 */
+	private DnsEntry query(String host) {
+		try {
+			InetAddress[] addresses = resolver.resolve(host);
+			
+			if (Objects.isNull(addresses) || addresses.length <= 0) {
+				throw new UnknownHostException(host);
+			}
+			return new DnsEntry(HappyEyeballs.interleave(addresses), null, NetConfig.getConfig().getDnsTtl());
+		
+		} catch (UnknownHostException ex) {
+			return new DnsEntry(null, ex, NetConfig.getConfig().getDnsNegativeTtl());
+		}
+	}
+	
+	/**
+	 * Stores the entry of a host.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @param entry The entry.
+	 */
+	private void store(String host, DnsEntry entry) {
+		if (entries.size() >= MAX_ENTRIES) {
+			entries.values().removeIf(DnsEntry::isExpired);
+		}
+		entries.put(host, entry);
+	}
+	
+	/**
+	 * Drops the entry of a host so it's resolved again on next use.
+	 * 
+	 * @param host The host.
+	 */
+	public void invalidate(String host) {
+		entries.remove(host);
+	}
+	
+	/**
+	 * Drops all entries.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+	
+	/**
+	 * Modifies the resolver, clearing the entries it didn't resolve.
+	 * 
+	 * @param resolver The new resolver.
+	 * 
+	 * @return The cache.
+	 */
+	public DnsCache setResolver(IHostResolver resolver) {
+		this.resolver = resolver;
+		clear();
+		return this;
+	}
+	
+	/**
+	 * Retrieves the resolver.
+	 * 
+	 * @return The resolver.
+	 */
+	public IHostResolver getResolver() {
+		return resolver;
+	}
+	
+	/**
+	 * Retrieves the amount of cached hosts.
+	 * 
+	 * @return The amount.
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Retrieves whether a host is an IP address.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @return The result.
+	 */
+	private static boolean isLiteral(String host) {
+		if (host.indexOf(':') >= 0) {
+			return true;
+		}
+		for (int i = 0; i < host.length(); i++) {
+			char c = host.charAt(i);
+			
+			if (c != '.' && !Character.isDigit(c)) {
+				return false;
+			}
+		}
+		return !host.isEmpty();
+	}
+	
+	/**
+	 * Retrieves the cache instance.
+	 * 
+	 * @return The instance.
+	 */
+	public static synchronized DnsCache getSingleton() {
+		if (Objects.isNull(singleton)) {
+			singleton = new DnsCache();
+		}
+		return singleton;
+	}
+	
+	/**
+	 * 
+	 * @author randqm
+	 * 
+	 */
+	
+	private static class DnsEntry {
+		
+		/**
+		 * The addresses, null when the host didn't resolve.
+		 */
+		private final List<InetAddress> addresses;
+		
+		/**
+		 * The error when the host didn't resolve.
+		 */
+		private final UnknownHostException error;
+		
+		/**
+		 * The time the host was resolved at.
+		 */
+		private final long resolvedAt;
+		
+		/**
+		 * The time the entry expires at.
+		 */
+		private final long expiresAt;
+		
+		/**
+		 * Whether a background refresh was started.
+		 */
+		private final AtomicBoolean refreshing;
+		
+		
+		/**
+		 * Creates a new entry.
+		 * 
+		 * @param addresses The addresses, null when the host didn't resolve.
+		 * 
+		 * @param error The error when the host didn't resolve.
+		 * 
+		 * @param ttl The time to live in seconds.
+		 */
+		public DnsEntry(List<InetAddress> addresses, UnknownHostException error, int ttl) {
+			this.addresses = Objects.isNull(addresses) ? null : Collections.unmodifiableList(addresses);
+			this.error = error;
+			this.resolvedAt = System.currentTimeMillis();
+			this.expiresAt = resolvedAt + (ttl * 1000L);
+			this.refreshing = new AtomicBoolean();
+		}
+		
+		/**
+		 * Claims the background refresh of the entry.
+		 * 
+		 * @return Whether the refresh was claimed.
+		 */
+		public boolean claimRefresh() {
+			return refreshing.compareAndSet(false, true);
+		}
+		
+		/**
+		 * Retrieves whether the entry is close enough to expiring to be refreshed.
+		 * 
+		 * @return The result.
+		 */
+		public boolean isRefreshDue() {
+			return Objects.isNull(error) && System.currentTimeMillis() >= resolvedAt + (long)((expiresAt - resolvedAt) * REFRESH_AT);
+		}
+		
+		/**
+		 * Retrieves whether the entry expired.
+		 * 
+		 * @return The result.
+		 */
+		public boolean isExpired() {
+			return System.currentTimeMillis() >= expiresAt;
+		}
+		
+		/**
+		 * Retrieves the addresses.
+		 * 
+		 * @return The addresses, null when the host didn't resolve.
+		 */
+		public List<InetAddress> getAddresses() {
+			return addresses;
+		}
+		
+		/**
+		 * Retrieves the error when the host didn't resolve.
+		 * 
+		 * @return The error.
+		 */
+		public UnknownHostException getError() {
+			return error;
+		}
+	
+	}
+
+}
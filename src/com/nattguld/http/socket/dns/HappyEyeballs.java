@@ -0,0 +1,155 @@
+package com.nattguld.http.socket.dns;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.nattguld.http.requests.execute.DispatchExecutors;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class HappyEyeballs {
+	
+	
+	/**
+	 * Connects to the first address that answers.
+	 * The next address is tried alongside the earlier ones when they don't connect in time or right after one fails.
+	 * 
+	 * @param addresses The addresses, in the order to try them.
+	 * 
+	 * @param port The port.
+	 * 
+	 * @param delay The time in milliseconds an attempt gets before the next one starts.
+	 * 
+	 * @param connector The connector.
+	 * 
+	 * @return The connection.
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends AutoCloseable> T connect(List<InetAddress> addresses, int port, long delay, IAddressConnector<T> connector) throws IOException {
+		if (addresses.size() == 1) {
+			return connector.connect(new InetSocketAddress(addresses.get(0), port));
+		}
+		BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+		AtomicBoolean won = new AtomicBoolean();
+		IOException lastError = null;
+		int started = 0;
+		int finished = 0;
+		
+		start(addresses.get(started++), port, connector, won, results);
+		
+		while (finished < addresses.size()) {
+			Object result;
+			
+			try {
+				result = started < addresses.size() ? results.poll(delay, TimeUnit.MILLISECONDS) : results.take();
+			
+			} catch (InterruptedException ex) {
+				won.set(true); //Attempts finishing later close their connection
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while connecting");
+			}
+			if (result instanceof IOException) {
+				lastError = (IOException)result;
+				finished++;
+			
+			} else if (Objects.nonNull(result)) {
+				return (T)result;
+			}
+			if (started < addresses.size()) { //The earlier attempts failed or are taking too long
+				start(addresses.get(started++), port, connector, won, results);
+			}
+		}
+		throw lastError;
+	}
+	
+	/**
+	 * Starts an attempt to connect to an address.
+	 * 
+	 * @param address The address.
+	 * 
+	 * @param port The port.
+	 * 
+	 * @param connector The connector.
+	 * 
+	 * @param won Whether an attempt connected already.
+	 * 
+	 * @param results The queue receiving the connection or the failure.
+	 */
+	private static <T extends AutoCloseable> void start(InetAddress address, int port, IAddressConnector<T> connector
+			, AtomicBoolean won, BlockingQueue<Object> results) {
+		DispatchExecutors.getDefault().execute(() -> {
+			T connection;
+			
+			try {
+				connection = connector.connect(new InetSocketAddress(address, port));
+			
+			} catch (IOException ex) {
+				results.add(ex);
+				return;
+			
+			} catch (Exception ex) {
+				results.add(new IOException(ex));
+				return;
+			}
+			if (won.compareAndSet(false, true)) {
+				results.add(connection);
+				return;
+			}
+			try { //Another attempt was quicker
+				connection.close();
+			
+			} catch (Exception ex) {
+				//Nothing to do, the connection was never used
+			}
+		});
+	}
+	
+	/**
+	 * Orders addresses so the address families alternate, starting with the family the resolver put first.
+	 * 
+	 * @param addresses The addresses.
+	 * 
+	 * @return The ordered addresses.
+	 */
+	public static List<InetAddress> interleave(InetAddress[] addresses) {
+		List<InetAddress> preferred = new ArrayList<>();
+		List<InetAddress> other = new ArrayList<>();
+		boolean preferIpv6 = addresses.length > 0 && addresses[0] instanceof Inet6Address;
+		
+		for (InetAddress address : addresses) {
+			if ((address instanceof Inet6Address) == preferIpv6) {
+				preferred.add(address);
+			} else {
+				other.add(address);
+			}
+		}
+		List<InetAddress> ordered = new ArrayList<>(addresses.length);
+		
+		for (int i = 0; i < Math.max(preferred.size(), other.size()); i++) {
+			if (i < preferred.size()) {
+				ordered.add(preferred.get(i));
+			}
+			if (i < other.size()) {
+				ordered.add(other.get(i));
+			}
+		}
+		return ordered;
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.nattguld.http.socket.dns;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public interface IAddressConnector<T extends AutoCloseable> {
+	
+	
+	/**
+	 * Opens a connection to an address, closing whatever it opened when it fails.
+	 * 
+	 * @param address The address.
+	 * 
+	 * @return The connection.
+	 * 
+	 * @throws IOException
+	 */
+	public T connect(InetSocketAddress address) throws IOException;
+
+}
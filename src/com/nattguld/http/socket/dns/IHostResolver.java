@@ -0,0 +1,26 @@
+package com.nattguld.http.socket.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public interface IHostResolver {
+	
+	
+	/**
+	 * Resolves the addresses of a host.
+	 * 
+	 * @param host The host.
+	 * 
+	 * @return The addresses.
+	 * 
+	 * @throws UnknownHostException
+	 */
+	public InetAddress[] resolve(String host) throws UnknownHostException;
+
+}
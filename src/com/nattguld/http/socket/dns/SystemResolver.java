@@ -0,0 +1,22 @@
+package com.nattguld.http.socket.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class SystemResolver implements IHostResolver {
+	
+	/**
+	 * Resolves through the resolver of the system, which returns all A and AAAA records.
+	 */
+	@Override
+	public InetAddress[] resolve(String host) throws UnknownHostException {
+		return InetAddress.getAllByName(host);
+	}
+
+}
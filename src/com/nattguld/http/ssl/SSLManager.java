@@ -1,15 +1,32 @@
 package com.nattguld.http.ssl;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import com.nattguld.http.cfg.NetConfig;
+
 /**
  * 
  * @author randqm
@@ -17,41 +34,224 @@ import javax.net.ssl.X509TrustManager;
  */
 
 public class SSLManager {
-
 	
 	/**
-	 * Builds & retrieves an SSL socket factory.
+	 * Holds the SSL contexts per profile.
+	 * Sharing the context shares its client session cache, which is what allows abbreviated handshakes.
+	 */
+	private static final Map<SSLProfile, SSLContext> CONTEXTS = new ConcurrentHashMap<>();
+	
+	/**
+	 * Holds the IDs of the negotiated sessions, a handshake that ends up with a known ID resumed that session.
+	 * As many are remembered as the session caches hold.
+	 */
+	@SuppressWarnings("serial")
+	private static final Map<ByteBuffer, Boolean> SESSION_IDS = Collections.synchronizedMap(new LinkedHashMap<ByteBuffer, Boolean>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+			int max = NetConfig.getConfig().getSSLSessionCacheSize();
+			return max > 0 && size() > max;
+		}
+	});
+	
+	/**
+	 * The amount of full handshakes performed.
+	 */
+	private static final AtomicLong FULL_HANDSHAKES = new AtomicLong();
+	
+	/**
+	 * The amount of handshakes that resumed a cached session.
+	 */
+	private static final AtomicLong RESUMED_HANDSHAKES = new AtomicLong();
+	
+	
+	/**
+	 * Retrieves the shared SSL socket factory.
 	 * 
 	 * @return The SSL socket factory.
 	 */
 	public static SSLSocketFactory buildSocketFactory() {
+		return getSocketFactory(SSLProfile.DEFAULT);
+	}
+	
+	/**
+	 * Retrieves the shared SSL socket factory for a given profile.
+	 * 
+	 * @param profile The profile.
+	 * 
+	 * @return The SSL socket factory.
+	 */
+	public static SSLSocketFactory getSocketFactory(SSLProfile profile) {
+		return getContext(profile).getSocketFactory();
+	}
+	
+	/**
+	 * Retrieves the shared SSL context for a given profile.
+	 * 
+	 * @param profile The profile.
+	 * 
+	 * @return The SSL context.
+	 */
+	public static SSLContext getContext(SSLProfile profile) {
+		return CONTEXTS.computeIfAbsent(profile, SSLManager::createContext);
+	}
+	
+	/**
+	 * Builds an SSL context for a given profile.
+	 * Fails when the platform lacks the SSL implementation, as no secure connection can be made without it.
+	 * 
+	 * @param profile The profile.
+	 * 
+	 * @return The SSL context.
+	 */
+	private static SSLContext createContext(SSLProfile profile) {
 		try {
-			TrustManager[] trustAllCerts = new TrustManager[] {
-				new X509TrustManager() {
-					@Override
-					public X509Certificate[] getAcceptedIssuers() {
-						return null;
-					}
+			TrustManager[] trustManagers = null;
+			
+			if (profile.isTrustAll()) {
+				trustManagers = new TrustManager[] {
+					new X509TrustManager() {
+						@Override
+						public X509Certificate[] getAcceptedIssuers() {
+							return null;
+						}
 						
-					@Override
-					public void checkClientTrusted(X509Certificate[] certs, String authType) {
-					}
+						@Override
+						public void checkClientTrusted(X509Certificate[] certs, String authType) {
+						}
 						
-					@Override
-					public void checkServerTrusted(X509Certificate[] certs, String authType) {
+						@Override
+						public void checkServerTrusted(X509Certificate[] certs, String authType) {
+						}
 					}
-				}
-			};
-			// Install the all-trusting trust manager
+				};
+			}
 			SSLContext sc = SSLContext.getInstance("SSL");
-			sc.init(null, trustAllCerts, new SecureRandom());
-	    
-			return sc.getSocketFactory();
+			sc.init(null, trustManagers, new SecureRandom());
+			
+			SSLSessionContext sessionContext = sc.getClientSessionContext();
+			sessionContext.setSessionCacheSize(NetConfig.getConfig().getSSLSessionCacheSize());
+			sessionContext.setSessionTimeout(NetConfig.getConfig().getSSLSessionTimeout());
 			
+			return sc;
+		
 		} catch (NoSuchAlgorithmException | KeyManagementException ex) {
-			ex.printStackTrace();
-			return null;
+			throw new IllegalStateException("Failed to create the SSL context for " + profile, ex);
+		}
+	}
+	
+	/**
+	 * Applies the socket level settings of a profile.
+	 * Must be called before the handshake starts.
+	 * 
+	 * @param socket The SSL socket.
+	 * 
+	 * @param profile The profile.
+	 */
+	public static void configure(SSLSocket socket, SSLProfile profile) {
+		if (!profile.hasApplicationProtocols()) {
+			return;
+		}
+		SSLParameters params = socket.getSSLParameters();
+		params.setApplicationProtocols(profile.getApplicationProtocols());
+		socket.setSSLParameters(params);
+	}
+	
+	/**
+	 * Applies the engine level settings of a profile.
+	 * Must be called before the handshake starts.
+	 * 
+	 * @param engine The SSL engine.
+	 * 
+	 * @param profile The profile.
+	 */
+	public static void configure(SSLEngine engine, SSLProfile profile) {
+		engine.setUseClientMode(true);
+		
+		if (!profile.hasApplicationProtocols()) {
+			return;
+		}
+		SSLParameters params = engine.getSSLParameters();
+		params.setApplicationProtocols(profile.getApplicationProtocols());
+		engine.setSSLParameters(params);
+	}
+	
+	/**
+	 * Performs the handshake on a socket and keeps track of whether the session was resumed.
+	 * 
+	 * @param socket The SSL socket.
+	 * 
+	 * @throws IOException
+	 */
+	public static void handshake(SSLSocket socket) throws IOException {
+		try {
+			socket.startHandshake();
+		
+		} catch (SSLException ex) {
+			throw asHandshakeFailure(ex);
+		}
+		recordHandshake(socket.getSession());
+	}
+	
+	/**
+	 * Marks an exception thrown during the handshake as a handshake failure.
+	 * Nothing of a request has been written at that point, which makes any request safe to retry.
+	 * 
+	 * @param ex The exception.
+	 * 
+	 * @return The handshake exception.
+	 */
+	public static SSLHandshakeException asHandshakeFailure(SSLException ex) {
+		if (ex instanceof SSLHandshakeException) {
+			return (SSLHandshakeException)ex;
 		}
+		SSLHandshakeException handshakeEx = new SSLHandshakeException(ex.getMessage());
+		handshakeEx.initCause(ex);
+		return handshakeEx;
+	}
+	
+	/**
+	 * Keeps track of whether a completed handshake resumed a cached session.
+	 * A resumed session keeps the ID it was first negotiated with.
+	 * 
+	 * @param session The negotiated session.
+	 */
+	public static void recordHandshake(SSLSession session) {
+		byte[] id = session.getId();
+		
+		if (Objects.nonNull(id) && id.length > 0 && Objects.nonNull(SESSION_IDS.put(ByteBuffer.wrap(id), Boolean.TRUE))) {
+			RESUMED_HANDSHAKES.incrementAndGet();
+			return;
+		}
+		FULL_HANDSHAKES.incrementAndGet();
+	}
+	
+	/**
+	 * Retrieves the amount of full handshakes performed.
+	 * 
+	 * @return The amount of full handshakes.
+	 */
+	public static long getFullHandshakes() {
+		return FULL_HANDSHAKES.get();
+	}
+	
+	/**
+	 * Retrieves the amount of handshakes that resumed a cached session.
+	 * TLS 1.3 hands out a new session ID on resumption, so those handshakes count as full ones.
+	 * 
+	 * @return The amount of resumed handshakes.
+	 */
+	public static long getResumedHandshakes() {
+		return RESUMED_HANDSHAKES.get();
+	}
+	
+	/**
+	 * Drops the cached contexts, which clears their session caches.
+	 * New contexts pick up the current session cache configurations.
+	 */
+	public static void reset() {
+		CONTEXTS.clear();
+		SESSION_IDS.clear();
 	}
 
 }
@@ -0,0 +1,108 @@
+package com.nattguld.http.ssl;
+
+import java.util.Arrays;
+
+import com.nattguld.http.cfg.HttpVersion;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class SSLProfile {
+	
+	/**
+	 * The default profile, trusting all certificates without protocol negotiation.
+	 */
+	public static final SSLProfile DEFAULT = new SSLProfile(true);
+	
+	/**
+	 * The profile offering HTTP/2 with a fallback to HTTP/1.1, trusting all certificates.
+	 */
+	public static final SSLProfile HTTP_2 = new SSLProfile(true, "h2", "http/1.1");
+	
+	/**
+	 * Whether all certificates are trusted or not.
+	 */
+	private final boolean trustAll;
+	
+	/**
+	 * The application protocols offered during ALPN, in order of preference.
+	 */
+	private final String[] applicationProtocols;
+	
+	
+	/**
+	 * Creates a new SSL profile.
+	 * 
+	 * @param trustAll Whether all certificates are trusted or not.
+	 * 
+	 * @param applicationProtocols The application protocols offered during ALPN, in order of preference.
+	 */
+	public SSLProfile(boolean trustAll, String... applicationProtocols) {
+		this.trustAll = trustAll;
+		this.applicationProtocols = applicationProtocols.clone();
+	}
+	
+	/**
+	 * Retrieves whether all certificates are trusted or not.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isTrustAll() {
+		return trustAll;
+	}
+	
+	/**
+	 * Retrieves the application protocols offered during ALPN.
+	 * 
+	 * @return The application protocols.
+	 */
+	public String[] getApplicationProtocols() {
+		return applicationProtocols.clone();
+	}
+	
+	/**
+	 * Retrieves whether application protocols are negotiated or not.
+	 * 
+	 * @return The result.
+	 */
+	public boolean hasApplicationProtocols() {
+		return applicationProtocols.length > 0;
+	}
+	
+	/**
+	 * Retrieves the profile to use for a given HTTP version.
+	 * 
+	 * @param httpVersion The HTTP version.
+	 * 
+	 * @return The profile.
+	 */
+	public static SSLProfile forVersion(HttpVersion httpVersion) {
+		return httpVersion == HttpVersion.HTTP_2_0 ? HTTP_2 : DEFAULT;
+	}
+	
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof SSLProfile)) {
+			return false;
+		}
+		SSLProfile profile = (SSLProfile)other;
+		return trustAll == profile.trustAll && Arrays.equals(applicationProtocols, profile.applicationProtocols);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * Boolean.hashCode(trustAll) + Arrays.hashCode(applicationProtocols);
+	}
+	
+	@Override
+	public String toString() {
+		return "[Trust all: " + trustAll + ", ALPN: " + Arrays.toString(applicationProtocols) + "]";
+	}
+
+}
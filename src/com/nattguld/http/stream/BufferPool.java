@@ -0,0 +1,107 @@
+package com.nattguld.http.stream;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class BufferPool {
+	
+	/**
+	 * The size of the pooled buffers.
+	 */
+	public static final int BUFFER_SIZE = 65536;
+	
+	/**
+	 * The maximum amount of idle buffers kept per kind.
+	 */
+	private static final int MAX_IDLE = 32;
+	
+	/**
+	 * Holds the idle heap buffers.
+	 */
+	private static final Queue<ByteBuffer> HEAP = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * Holds the idle direct buffers.
+	 */
+	private static final Queue<ByteBuffer> DIRECT = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * The amount of idle heap buffers.
+	 */
+	private static final AtomicInteger IDLE_HEAP = new AtomicInteger();
+	
+	/**
+	 * The amount of idle direct buffers.
+	 */
+	private static final AtomicInteger IDLE_DIRECT = new AtomicInteger();
+	
+	
+	/**
+	 * Retrieves a cleared heap buffer, the backing array can be used directly.
+	 * 
+	 * @return The buffer.
+	 */
+	public static ByteBuffer acquire() {
+		return acquire(HEAP, IDLE_HEAP, false);
+	}
+	
+	/**
+	 * Retrieves a cleared direct buffer.
+	 * 
+	 * @return The buffer.
+	 */
+	public static ByteBuffer acquireDirect() {
+		return acquire(DIRECT, IDLE_DIRECT, true);
+	}
+	
+	/**
+	 * Returns a buffer to the pool.
+	 * 
+	 * @param buffer The buffer.
+	 */
+	public static void release(ByteBuffer buffer) {
+		if (Objects.isNull(buffer) || buffer.capacity() != BUFFER_SIZE) {
+			return;
+		}
+		Queue<ByteBuffer> idle = buffer.isDirect() ? DIRECT : HEAP;
+		AtomicInteger idleCount = buffer.isDirect() ? IDLE_DIRECT : IDLE_HEAP;
+		
+		if (idleCount.incrementAndGet() > MAX_IDLE) {
+			idleCount.decrementAndGet();
+			return;
+		}
+		buffer.clear();
+		idle.offer(buffer);
+	}
+	
+	/**
+	 * Retrieves a buffer from the pool or creates one when none are idle.
+	 * 
+	 * @param idle The idle buffers.
+	 * 
+	 * @param idleCount The amount of idle buffers.
+	 * 
+	 * @param direct Whether to create a direct buffer or not.
+	 * 
+	 * @return The buffer.
+	 */
+	private static ByteBuffer acquire(Queue<ByteBuffer> idle, AtomicInteger idleCount, boolean direct) {
+		ByteBuffer buffer = idle.poll();
+		
+		if (Objects.nonNull(buffer)) {
+			idleCount.decrementAndGet();
+			return buffer;
+		}
+		return direct ? ByteBuffer.allocateDirect(BUFFER_SIZE) : ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+}
@@ -0,0 +1,249 @@
+package com.nattguld.http.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.nattguld.http.exceptions.NetException;
+import com.nattguld.http.headers.Headers;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class ChunkedInputStream extends InputStream {
+	
+	/**
+	 * The maximum length of a chunk size or trailer line.
+	 */
+	private static final int MAX_LINE_LENGTH = 8192;
+	
+	/**
+	 * The input stream.
+	 */
+	private final InputStream in;
+	
+	/**
+	 * The trailer headers received after the last chunk.
+	 */
+	private final Headers trailers;
+	
+	/**
+	 * The line buffer for chunk sizes and trailers.
+	 */
+	private final StringBuilder line;
+	
+	/**
+	 * The amount of bytes left in the current chunk.
+	 */
+	private long chunkRemaining;
+	
+	/**
+	 * Whether the first chunk size has been read or not.
+	 */
+	private boolean started;
+	
+	/**
+	 * Whether the last chunk and trailers have been read or not.
+	 */
+	private boolean complete;
+	
+	
+	/**
+	 * Creates a new chunked input stream.
+	 * 
+	 * @param in The input stream.
+	 */
+	public ChunkedInputStream(InputStream in) {
+		this.in = in;
+		this.trailers = new Headers();
+		this.line = new StringBuilder();
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (!nextChunk()) {
+			return -1;
+		}
+		int b = in.read();
+		
+		if (b < 0) {
+			throw new EOFException("Connection closed in the middle of a chunk");
+		}
+		chunkRemaining--;
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] buffer, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextChunk()) {
+			return -1;
+		}
+		int read = in.read(buffer, off, (int)Math.min(len, chunkRemaining));
+		
+		if (read < 0) {
+			throw new EOFException("Connection closed in the middle of a chunk");
+		}
+		chunkRemaining -= read;
+		return read;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		if (complete || chunkRemaining <= 0) {
+			return 0;
+		}
+		return (int)Math.min(in.available(), chunkRemaining);
+	}
+	
+	/**
+	 * Does not close the underlaying stream as it belongs to the connection.
+	 */
+	@Override
+	public void close() throws IOException {
+		//The connection is managed by the socket owner
+	}
+	
+	/**
+	 * Moves on to the next chunk when the current one has been consumed.
+	 * 
+	 * @return Whether there's chunk data left to read or not.
+	 * 
+	 * @throws IOException
+	 */
+	private boolean nextChunk() throws IOException {
+		if (complete) {
+			return false;
+		}
+		if (chunkRemaining > 0) {
+			return true;
+		}
+		if (started && !readLine().isEmpty()) { //Every chunk's data is followed by a line break
+			throw new NetException("Missing line break after chunk data");
+		}
+		started = true;
+		
+		String sizeLine = readLine();
+		int extension = sizeLine.indexOf(';');
+		
+		if (extension >= 0) { //Chunk extensions are ignored
+			sizeLine = sizeLine.substring(0, extension).trim();
+		}
+		try {
+			chunkRemaining = Long.parseLong(sizeLine, 16);
+		
+		} catch (NumberFormatException ex) {
+			throw new NetException("Invalid chunk size: " + sizeLine);
+		}
+		if (chunkRemaining < 0) {
+			throw new NetException("Invalid chunk size: " + sizeLine);
+		}
+		if (chunkRemaining == 0) {
+			readTrailers();
+			complete = true;
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads the trailer headers following the last chunk.
+	 * 
+	 * @throws IOException
+	 */
+	private void readTrailers() throws IOException {
+		while (true) {
+			String trailer = readLine();
+			
+			if (trailer.isEmpty()) {
+				return;
+			}
+			int colon = trailer.indexOf(':');
+			
+			if (colon > 0) {
+				trailers.add(trailer.substring(0, colon).trim(), trailer.substring(colon + 1).trim());
+			}
+		}
+	}
+	
+	/**
+	 * Reads a line without its line break.
+	 * 
+	 * @return The trimmed line.
+	 * 
+	 * @throws IOException
+	 */
+	private String readLine() throws IOException {
+		line.setLength(0);
+		
+		while (true) {
+			int b = in.read();
+			
+			if (b < 0) {
+				throw new EOFException("Connection closed while reading chunk framing");
+			}
+			if (b == '\n') {
+				return line.toString().trim();
+			}
+			if (line.length() >= MAX_LINE_LENGTH) {
+				throw new NetException("Chunk framing line exceeds " + MAX_LINE_LENGTH + " bytes");
+			}
+			line.append((char)b);
+		}
+	}
+	
+	/**
+	 * Reads and discards the rest of the message.
+	 * 
+	 * @param maxBytes The maximum amount of bytes to discard.
+	 * 
+	 * @return Whether the end of the message has been reached or not.
+	 */
+	public boolean drain(long maxBytes) {
+		try {
+			byte[] buffer = new byte[4096];
+			long drained = 0;
+			
+			while (!complete) {
+				int read = read(buffer, 0, (int)Math.min(buffer.length, Math.max(1, maxBytes - drained)));
+				
+				if (read < 0) {
+					break;
+				}
+				drained += read;
+				
+				if (drained > maxBytes) {
+					return false;
+				}
+			}
+			return complete;
+		
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Retrieves whether the last chunk and trailers have been read or not.
+	 * 
+	 * @return The result.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+	
+	/**
+	 * Retrieves the trailer headers received after the last chunk.
+	 * 
+	 * @return The trailer headers.
+	 */
+	public Headers getTrailers() {
+		return trailers;
+	}
+
+}
@@ -13,18 +13,38 @@ import com.nattguld.http.DataCounter;
 
 public class CountInputStream extends InputStream implements ICountedStream {
 	
+	/**
+	 * The amount of single byte reads collected before they're counted.
+	 */
+	private static final int COUNT_BATCH = 8192;
+	
 	/**
 	 * The input stream.
 	 */
 	private final InputStream in;
 	
 	/**
-	 * The data counter.
+	 * The data counters, the first one belongs to the stream.
+	 */
+	private final DataCounter[] counters;
+	
+	/**
+	 * The position in the stream.
 	 */
-	private final DataCounter dc;
+	private long position;
 	
 	/**
-	 * The marked input.
+	 * The furthest position counted, bytes read again after a reset aren't counted twice.
+	 */
+	private long counted;
+	
+	/**
+	 * The amount of bytes read but not yet added to the counters.
+	 */
+	private long pending;
+	
+	/**
+	 * The marked position.
 	 */
 	private long marked;
 	
@@ -34,58 +54,92 @@ public class CountInputStream extends InputStream implements ICountedStream {
 	 * 
 	 * @param in The input stream.
 	 * 
-	 * @param dc The data counter.
+	 * @param counters The data counters, the first one belongs to the stream.
 	 */
-	public CountInputStream(InputStream in, DataCounter dc) {
+	public CountInputStream(InputStream in, DataCounter... counters) {
 		this.in = in;
-		this.dc = dc;
+		this.counters = counters;
 		this.marked = -1;
 	}
-
+	
 	@Override
 	public int read() throws IOException {
 		int b = in.read();
 		
-		if (b > 0) {
-			dc.addDown(1);
+		if (b >= 0) {
+			advance(1);
+			
+			if (pending >= COUNT_BATCH) {
+				flushCount();
+			}
+		} else {
+			flushCount();
 		}
-	    return b;
+		return b;
 	}
 	
 	@Override
 	public int read(byte[] buffer, int off, int len) throws IOException {
 		int b = in.read(buffer, off, len);
-	    
+		
 		if (b > 0) {
-			dc.addDown(b);
+			advance(b);
 		}
+		flushCount();
 		return b;
 	}
-
+	
 	@Override
 	public long skip(long skipped) throws IOException {
-	    long l = in.skip(skipped);
-	    
-	    if (l > 0) {
-	    	dc.addDown(l);
-	    }
-	    return l;
+		long l = in.skip(skipped);
+		
+		if (l > 0) {
+			advance(l);
+		}
+		flushCount();
+		return l;
+	}
+	
+	/**
+	 * Moves the position forward, collecting the bytes that weren't counted yet.
+	 * 
+	 * @param amount The amount of bytes.
+	 */
+	private void advance(long amount) {
+		position += amount;
+		
+		if (position > counted) {
+			pending += position - counted;
+			counted = position;
+		}
+	}
+	
+	@Override
+	public void flushCount() {
+		if (pending <= 0) {
+			return;
+		}
+		for (DataCounter dc : counters) {
+			dc.addDown(pending);
+		}
+		pending = 0;
 	}
 	
 	@Override
 	public void mark(int readlimit) {
 		in.mark(readlimit);
-		marked = dc.getDown();
+		marked = position;
 	}
 	
 	@Override
 	public void reset() throws IOException {
 		in.reset();
-		dc.setDown(marked);
+		position = marked;
 	}
 	
 	@Override
 	public void close() throws IOException {
+		flushCount();
 		in.close();
 	}
 	
@@ -93,15 +147,24 @@ public class CountInputStream extends InputStream implements ICountedStream {
 	public boolean markSupported() {
 		return in.markSupported();
 	}
-	  
+	
 	@Override
 	public int available() throws IOException {
 		return in.available();
 	}
-
+	
+	/**
+	 * Retrieves the amount of bytes read from the underlaying stream.
+	 * 
+	 * @return The amount of bytes.
+	 */
+	public long getBytesRead() {
+		return counted;
+	}
+	
 	@Override
 	public DataCounter getDataCounter() {
-		return dc;
+		return counters[0];
 	}
 
 }
@@ -2,6 +2,7 @@ package com.nattguld.http.stream;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 import com.nattguld.http.DataCounter;
 
@@ -11,17 +12,27 @@ import com.nattguld.http.DataCounter;
  *
  */
 
-public class CountOutputStream extends OutputStream implements ICountedStream {
+public class CountOutputStream extends OutputStream implements ICountedStream, ITransferStream {
+	
+	/**
+	 * The amount of single byte writes collected before they're counted.
+	 */
+	private static final int COUNT_BATCH = 8192;
 	
 	/**
 	 * The output stream.
 	 */
 	private final OutputStream out;
-
+	
 	/**
-	 * The data counter.
+	 * The data counters, the first one belongs to the stream.
 	 */
-	private final DataCounter dc;
+	private final DataCounter[] counters;
+	
+	/**
+	 * The amount of bytes written but not yet added to the counters.
+	 */
+	private long pending;
 	
 	
 	/**
@@ -29,44 +40,68 @@ public class CountOutputStream extends OutputStream implements ICountedStream {
 	 * 
 	 * @param out The output stream.
 	 * 
-	 * @param dc The data counter.
+	 * @param counters The data counters, the first one belongs to the stream.
 	 */
-	public CountOutputStream(OutputStream out, DataCounter dc) {
+	public CountOutputStream(OutputStream out, DataCounter... counters) {
 		this.out = out;
-		this.dc = dc;
+		this.counters = counters;
 	}
 	
 	@Override
 	public void write(byte[] buffer) throws IOException {
-		out.write(buffer);
-		dc.addUp(buffer.length);
+		write(buffer, 0, buffer.length);
 	}
-
+	
 	@Override
 	public void write(byte[] buffer, int off, int len) throws IOException {
 		out.write(buffer, off, len);
-		dc.addUp(len);
+		pending += len;
+		flushCount();
 	}
-
+	
 	@Override
 	public void write(int b) throws IOException {
 		out.write(b);
-		dc.addUp(1);
+		
+		if (++pending >= COUNT_BATCH) {
+			flushCount();
+		}
+	}
+	
+	@Override
+	public long transferFrom(FileChannel channel, long position, long count) throws IOException {
+		long sent = ITransferStream.transfer(out, channel, position, count);
+		pending += sent;
+		flushCount();
+		return sent;
+	}
+	
+	@Override
+	public void flushCount() {
+		if (pending <= 0) {
+			return;
+		}
+		for (DataCounter dc : counters) {
+			dc.addUp(pending);
+		}
+		pending = 0;
 	}
 	
 	@Override
 	public void flush() throws IOException {
+		flushCount();
 		out.flush();
 	}
 	
 	@Override
 	public void close() throws IOException {
+		flushCount();
 		out.close();
 	}
 	
 	@Override
 	public DataCounter getDataCounter() {
-		return dc;
+		return counters[0];
 	}
 
 }
@@ -0,0 +1,121 @@
+package com.nattguld.http.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public class FixedLengthInputStream extends InputStream {
+	
+	/**
+	 * The input stream.
+	 */
+	private final InputStream in;
+	
+	/**
+	 * The amount of bytes left to read.
+	 */
+	private long remaining;
+	
+	
+	/**
+	 * Creates a new fixed length input stream.
+	 * 
+	 * @param in The input stream.
+	 * 
+	 * @param length The amount of bytes that belong to the message.
+	 */
+	public FixedLengthInputStream(InputStream in, long length) {
+		this.in = in;
+		this.remaining = length;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (remaining <= 0) {
+			return -1;
+		}
+		int b = in.read();
+		
+		if (b >= 0) {
+			remaining--;
+		}
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] buffer, int off, int len) throws IOException {
+		if (remaining <= 0) {
+			return -1;
+		}
+		int read = in.read(buffer, off, (int)Math.min(len, remaining));
+		
+		if (read > 0) {
+			remaining -= read;
+		}
+		return read;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(Math.min(n, remaining));
+		
+		if (skipped > 0) {
+			remaining -= skipped;
+		}
+		return skipped;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return (int)Math.min(in.available(), remaining);
+	}
+	
+	/**
+	 * Does not close the underlaying stream as it belongs to the connection.
+	 */
+	@Override
+	public void close() throws IOException {
+		//The connection is managed by the socket owner
+	}
+	
+	/**
+	 * Reads and discards the rest of the message.
+	 * 
+	 * @param maxBytes The maximum amount of bytes to discard.
+	 * 
+	 * @return Whether the end of the message has been reached or not.
+	 */
+	public boolean drain(long maxBytes) {
+		if (remaining > maxBytes) {
+			return false;
+		}
+		try {
+			byte[] buffer = new byte[(int)Math.min(4096, Math.max(1, remaining))];
+			
+			while (remaining > 0) {
+				if (read(buffer, 0, buffer.length) < 0) {
+					return false;
+				}
+			}
+			return true;
+		
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Retrieves the amount of bytes left to read.
+	 * 
+	 * @return The amount of bytes.
+	 */
+	public long getRemaining() {
+		return remaining;
+	}
+
+}
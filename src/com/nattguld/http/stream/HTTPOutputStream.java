@@ -1,9 +1,13 @@
 package com.nattguld.http.stream;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
 
 /**
  * 
@@ -11,13 +15,87 @@ import java.io.UnsupportedEncodingException;
  *
  */
 
-public class HTTPOutputStream extends ByteArrayOutputStream {
+public class HTTPOutputStream extends OutputStream implements ITransferStream {
 	
 	/**
 	 * The line feed string.
 	 */
 	protected static final String LINE_FEED = "\r\n";
-
+	
+	/**
+	 * The size of the buffer collecting small writes.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+	
+	/**
+	 * The output stream, null when the stream only measures what's written.
+	 */
+	private final OutputStream out;
+	
+	/**
+	 * The buffer collecting small writes.
+	 */
+	private final byte[] buffer;
+	
+	/**
+	 * The amount of bytes in the buffer.
+	 */
+	private int buffered;
+	
+	/**
+	 * The amount of bytes written.
+	 */
+	private long size;
+	
+	
+	/**
+	 * Creates a new HTTP output stream which only measures what's written to it.
+	 */
+	public HTTPOutputStream() {
+		this(null);
+	}
+	
+	/**
+	 * Creates a new HTTP output stream.
+	 * 
+	 * @param out The output stream.
+	 */
+	public HTTPOutputStream(OutputStream out) {
+		this.out = out;
+		this.buffer = Objects.isNull(out) ? null : new byte[BUFFER_SIZE];
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		size++;
+		
+		if (Objects.isNull(out)) {
+			return;
+		}
+		if (buffered == buffer.length) {
+			flushBuffer();
+		}
+		buffer[buffered++] = (byte)b;
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		size += len;
+		
+		if (Objects.isNull(out)) {
+			return;
+		}
+		if (len >= buffer.length) { //Large writes skip the buffer
+			flushBuffer();
+			out.write(b, off, len);
+			return;
+		}
+		if (len > buffer.length - buffered) {
+			flushBuffer();
+		}
+		System.arraycopy(b, off, buffer, buffered, len);
+		buffered += len;
+	}
 	
 	/**
 	 * Writes a line.
@@ -26,9 +104,9 @@ public class HTTPOutputStream extends ByteArrayOutputStream {
 	 * 
 	 * @return The stream.
 	 * 
-	 * @throws IOException 
+	 * @throws IOException
 	 * 
-	 * @throws UnsupportedEncodingException 
+	 * @throws UnsupportedEncodingException
 	 */
 	public HTTPOutputStream writeLine(String line) throws UnsupportedEncodingException, IOException {
 		writeString(line);
@@ -41,9 +119,9 @@ public class HTTPOutputStream extends ByteArrayOutputStream {
 	 * 
 	 * @return The stream.
 	 * 
-	 * @throws IOException 
+	 * @throws IOException
 	 * 
-	 * @throws UnsupportedEncodingException 
+	 * @throws UnsupportedEncodingException
 	 */
 	public HTTPOutputStream writeLine() throws UnsupportedEncodingException, IOException {
 		return writeString(LINE_FEED);
@@ -61,10 +139,96 @@ public class HTTPOutputStream extends ByteArrayOutputStream {
 	 * @throws IOException
 	 */
 	public HTTPOutputStream writeString(String s) throws UnsupportedEncodingException, IOException {
-		OutputStreamWriter osw = new OutputStreamWriter(this, "UTF-8");
-		osw.append(s);
-		osw.close();
+		write(s.getBytes(StandardCharsets.UTF_8));
+		return this;
+	}
+	
+	/**
+	 * Writes a file, only its length is taken into account when the stream only measures.
+	 * 
+	 * @param file The file.
+	 * 
+	 * @return The stream.
+	 * 
+	 * @throws IOException
+	 */
+	public HTTPOutputStream writeFile(File file) throws IOException {
+		return writeFile(file, 0, file.length());
+	}
+	
+	/**
+	 * Writes a region of a file, only its length is taken into account when the stream only measures.
+	 * 
+	 * @param file The file.
+	 * 
+	 * @param position The position in the file to start at.
+	 * 
+	 * @param count The amount of bytes to write.
+	 * 
+	 * @return The stream.
+	 * 
+	 * @throws IOException
+	 */
+	public HTTPOutputStream writeFile(File file, long position, long count) throws IOException {
+		if (Objects.isNull(out)) {
+			size += count;
+			return this;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			transferFrom(channel, position, count);
+		}
 		return this;
 	}
+	
+	@Override
+	public long transferFrom(FileChannel channel, long position, long count) throws IOException {
+		if (Objects.isNull(out)) {
+			size += count;
+			return count;
+		}
+		flushBuffer();
+		
+		long sent = ITransferStream.transfer(out, channel, position, count);
+		size += sent;
+		return sent;
+	}
+	
+	/**
+	 * Writes the buffered bytes to the output stream.
+	 * 
+	 * @throws IOException
+	 */
+	private void flushBuffer() throws IOException {
+		if (buffered > 0) {
+			out.write(buffer, 0, buffered);
+			buffered = 0;
+		}
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		if (Objects.isNull(out)) {
+			return;
+		}
+		flushBuffer();
+		out.flush();
+	}
+	
+	/**
+	 * Flushes the stream, the output stream stays open as it belongs to the connection.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+	
+	/**
+	 * Retrieves the amount of bytes written.
+	 * 
+	 * @return The amount of bytes.
+	 */
+	public long size() {
+		return size;
+	}
 
 }
@@ -17,5 +17,10 @@ public interface ICountedStream {
 	 * @return The data counter.
 	 */
 	public DataCounter getDataCounter();
+	
+	/**
+	 * Adds the bytes transferred since the last time to the data counters.
+	 */
+	public void flushCount();
  
 }
@@ -0,0 +1,74 @@
+package com.nattguld.http.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 
+ * @author randqm
+ *
+ */
+
+public interface ITransferStream {
+	
+	
+	/**
+	 * Sends a region of a file without passing it through the heap where the underlying connection allows it.
+	 * 
+	 * @param channel The file channel.
+	 * 
+	 * @param position The position in the file to start at.
+	 * 
+	 * @param count The amount of bytes to send.
+	 * 
+	 * @return The amount of bytes sent.
+	 * 
+	 * @throws IOException
+	 */
+	public long transferFrom(FileChannel channel, long position, long count) throws IOException;
+	
+	/**
+	 * Sends a region of a file to an output stream, copying it through a pooled buffer when the stream can't transfer files itself.
+	 * 
+	 * @param out The output stream.
+	 * 
+	 * @param channel The file channel.
+	 * 
+	 * @param position The position in the file to start at.
+	 * 
+	 * @param count The amount of bytes to send.
+	 * 
+	 * @return The amount of bytes sent.
+	 * 
+	 * @throws IOException
+	 */
+	public static long transfer(OutputStream out, FileChannel channel, long position, long count) throws IOException {
+		if (out instanceof ITransferStream) {
+			return ((ITransferStream)out).transferFrom(channel, position, count);
+		}
+		ByteBuffer buffer = BufferPool.acquire();
+		
+		try {
+			long sent = 0;
+			
+			while (sent < count) {
+				buffer.clear().limit((int)Math.min(buffer.capacity(), count - sent));
+				int read = channel.read(buffer, position + sent);
+				
+				if (read < 0) {
+					throw new EOFException("File ended " + (count - sent) + " bytes early");
+				}
+				out.write(buffer.array(), buffer.arrayOffset(), read);
+				sent += read;
+			}
+			return sent;
+		
+		} finally {
+			BufferPool.release(buffer);
+		}
+	}
+
+}
@@ -154,8 +154,34 @@ public class NetUtil {
 	 * @return The domain.
 	 */
 	public static String getDomain(String url) {
-		String[] args = url.split("/");
-		return url.startsWith("http") ? args[2] : args[0];
+		int start = url.startsWith("http") ? url.indexOf('/', url.indexOf('/') + 1) + 1 : 0;
+		int end = url.indexOf('/', start);
+		return end < 0 ? url.substring(start) : url.substring(start, end);
+	}
+	
+	/**
+	 * Retrieves the path from a given url, without the query and fragment.
+	 * 
+	 * @param url The url.
+	 * 
+	 * @return The path.
+	 */
+	public static String getPath(String url) {
+		int hostStart = url.startsWith("http") ? url.indexOf("//") + 2 : 0;
+		int pathStart = url.indexOf('/', hostStart);
+		
+		if (pathStart < 0) {
+			return "/";
+		}
+		int pathEnd = url.length();
+		
+		for (int i = pathStart; i < url.length(); i++) {
+			if (url.charAt(i) == '?' || url.charAt(i) == '#') {
+				pathEnd = i;
+				break;
+			}
+		}
+		return url.substring(pathStart, pathEnd);
 	}
 	
 	/**